@@ -430,7 +430,7 @@ final class REngine implements Engine, Engine.Timings {
         if (n instanceof ConstantNode) {
             return ((ConstantNode) n).getValue();
         }
-        RootCallTarget callTarget = doMakeCallTarget(n, RSource.Internal.EVAL_WRAPPER.string, false, false);
+        RootCallTarget callTarget = getEvalCallTarget(n.asRSyntaxNode(), frame.getFrameDescriptor());
         return callTarget.call(frame);
     }
 
@@ -461,13 +461,23 @@ final class REngine implements Engine, Engine.Timings {
     }
 
     private Object evalNode(RSyntaxElement exprRep, REnvironment envir, RCaller caller) {
-        // we need to copy the node, otherwise it (and its children) will specialized to a specific
-        // frame descriptor and will fail on subsequent re-executions
-        RSyntaxNode n = RContext.getASTBuilder().process(exprRep);
-        RootCallTarget callTarget = doMakeCallTarget(n.asRNode(), RSource.Internal.EVAL_WRAPPER.string, false, false);
+        RootCallTarget callTarget = getEvalCallTarget(exprRep, envir.getFrame().getFrameDescriptor());
         return evalTarget(callTarget, caller, envir);
     }
 
+    /**
+     * Returns the call target evaluating {@code exprRep} in frames with the given descriptor,
+     * reusing the one created by an earlier evaluation of the same expression if possible.
+     */
+    private RootCallTarget getEvalCallTarget(RSyntaxElement exprRep, FrameDescriptor descriptor) {
+        return RContext.getInstance().evalCallTargetCache.get(exprRep, descriptor, () -> {
+            // we need to copy the node, otherwise it (and its children) will specialized to a
+            // specific frame descriptor and will fail on subsequent re-executions
+            RSyntaxNode n = RContext.getASTBuilder().process(exprRep);
+            return doMakeCallTarget(n.asRNode(), RSource.Internal.EVAL_WRAPPER.string, false, false);
+        });
+    }
+
     /**
      * This is tricky because the {@link Frame} "f" associated with {@code envir} has been
      * materialized so we can't evaluate in it directly. Instead we create a new
@@ -28,6 +28,7 @@ import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.data.RIntVector;
 import com.oracle.truffle.r.runtime.data.RLogicalVector;
+import com.oracle.truffle.r.runtime.data.RVector;
 import com.oracle.truffle.r.runtime.gnur.SEXPTYPE;
 
 /**
@@ -96,6 +97,9 @@ public class TruffleNFI_NativeArray {
                     }
                 }
                 TruffleNFI_Call.freeArray(info.arrayAddress);
+                if (info.x instanceof RVector) {
+                    ((RVector<?>) info.x).incrementVersion();
+                }
             }
         }
         tableHwm = oldHwm;
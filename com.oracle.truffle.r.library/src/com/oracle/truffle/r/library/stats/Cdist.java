@@ -17,6 +17,11 @@ import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.missingValue
 import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.instanceOf;
 import static com.oracle.truffle.r.runtime.nmath.MathConstants.DBL_MIN;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.object.DynamicObject;
@@ -32,10 +37,11 @@ import com.oracle.truffle.r.runtime.data.RDoubleVector;
 import com.oracle.truffle.r.runtime.data.RList;
 import com.oracle.truffle.r.runtime.data.RStringVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
-import com.oracle.truffle.r.runtime.ops.na.NACheck;
 
+/**
+ * Computes the distances between the rows of a matrix, see {@link Kernel} for how.
+ */
 public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
-    private static final NACheck naCheck = NACheck.create();
 
     @Child private GetFixedAttributeNode getNamesAttrNode = GetFixedAttributeNode.createNames();
 
@@ -55,11 +61,16 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
                     @Cached("create()") GetDimAttributeNode getDimNode) {
         int nr = getDimNode.nrows(x);
         int nc = getDimNode.ncols(x);
-        int n = nr * (nr - 1) / 2; /* avoid int overflow for N ~ 50,000 */
-        double[] ans = new double[n];
+        if ((long) nr * (nr - 1) / 2 > Integer.MAX_VALUE) {
+            throw error(RError.Message.VECTOR_IS_TOO_LARGE);
+        }
+        if (methodObj == Method.MINKOWSKI && (!RRuntime.isFinite(p) || p <= 0)) {
+            throw error(RError.Message.GENERIC, "distance(): invalid p");
+        }
         RDoubleVector xm = x.materialize();
-        rdistance(xm.getDataWithoutCopying(), nr, nc, ans, false, methodObj, p);
-        RDoubleVector result = RDataFactory.createDoubleVector(ans, naCheck.neverSeenNA());
+        Kernel kernel = new Kernel(xm.getDataWithoutCopying(), nr, nc, methodObj, p);
+        double[] ans = kernel.lowerTriangle();
+        RDoubleVector result = RDataFactory.createDoubleVector(ans, kernel.isComplete());
         DynamicObject resultAttrs = result.initAttributes();
 
         RStringVector names = (RStringVector) getNamesAttrNode.execute(list);
@@ -93,32 +104,364 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
         return Method.values()[method - 1];
     }
 
-    private void rdistance(double[] x, int nr, int nc, double[] d, boolean diag, Method method, double p) {
-        int ij; /* can exceed 2^31 - 1, but Java can't handle that */
-        //
-        if (method == Method.MINKOWSKI) {
-            if (!RRuntime.isFinite(p) || p <= 0) {
-                throw error(RError.Message.GENERIC, "distance(): invalid p");
+    /**
+     * Computes the distances between the rows of a column-major matrix. The rows are copied into a
+     * row-major matrix, so that the elements of a pair of rows are contiguous, and the pairs are
+     * computed in tiles of {@link #TILE} times {@link #TILE} rows, in parallel on the common
+     * {@link ForkJoinPool} if there are enough of them.
+     *
+     * If all the elements are finite, Euclidean distances are computed from the Gram matrix of the
+     * column-centered rows, i.e., as {@code sqrt(|xi|^2 + |xj|^2 - 2 xi.xj)}, where the dot
+     * products of a row with several other rows are computed in one pass. Whenever the difference
+     * cancels too many digits, i.e., for rows that are close to each other relative to their norms,
+     * the distance is computed directly instead.
+     */
+    public static final class Kernel {
+
+        private static final int TILE = 64;
+        private static final long PARALLEL_THRESHOLD = 1 << 22;
+        /**
+         * The squared distance obtained from the Gram matrix is only used if it is at least this
+         * fraction of the sum of the squared norms.
+         */
+        private static final double GRAM_TOLERANCE = 1e-3;
+        /**
+         * The Gram matrix is not used if the absolute value of an element exceeds this, as the
+         * squared norms could overflow.
+         */
+        private static final double GRAM_MAX = 1e100;
+        /**
+         * R keeps at most this many warnings by default.
+         */
+        private static final int MAX_WARNINGS = 50;
+
+        private final double[] rows;
+        private final int nr;
+        private final int nc;
+        private final Method method;
+        private final double p;
+        private final boolean parallel;
+        /**
+         * The squared norms of the column-centered rows, if the Gram matrix is used.
+         */
+        private final double[] norms;
+
+        private volatile boolean seenNA;
+        private final AtomicLong nonFinite = new AtomicLong();
+
+        public Kernel(double[] x, int nr, int nc, Method method, double p) {
+            this.nr = nr;
+            this.nc = nc;
+            this.method = method;
+            this.p = p;
+            this.parallel = (long) nr * nr * nc / 2 >= PARALLEL_THRESHOLD;
+            this.rows = new double[nr * nc];
+            boolean gram = method == Method.EUCLIDEAN && nc > 1;
+            for (int k = 0; k < nc; k++) {
+                int offset = k * nr;
+                double sum = 0;
+                for (int i = 0; i < nr; i++) {
+                    double v = x[offset + i];
+                    rows[i * nc + k] = v;
+                    sum += v;
+                }
+                if (gram) {
+                    double mean = sum / nr;
+                    for (int i = 0; i < nr; i++) {
+                        double v = x[offset + i];
+                        if (!(Math.abs(v) <= GRAM_MAX)) {
+                            // also covers NA and NaN
+                            gram = false;
+                            break;
+                        }
+                        rows[i * nc + k] = v - mean;
+                    }
+                }
+            }
+            if (gram) {
+                norms = new double[nr];
+                for (int i = 0; i < nr; i++) {
+                    norms[i] = dot(rows, i * nc, i * nc, nc);
+                }
+            } else {
+                if (method == Method.EUCLIDEAN) {
+                    // undo any centering
+                    for (int k = 0; k < nc; k++) {
+                        for (int i = 0; i < nr; i++) {
+                            rows[i * nc + k] = x[k * nr + i];
+                        }
+                    }
+                }
+                norms = null;
             }
         }
-        int dc = diag ? 0 : 1; /* diag=1: we do the diagonal */
-        ij = 0;
-        naCheck.enable(true);
-        for (int j = 0; j <= nr; j++) {
-            for (int i = j + dc; i < nr; i++) {
-                double r = method.dist(x, nr, nc, i, j, p);
-                naCheck.check(r);
-                d[ij++] = r;
+
+        public boolean isComplete() {
+            return !seenNA;
+        }
+
+        /**
+         * Returns the distances between all pairs of rows as the packed lower triangle of the
+         * distance matrix, i.e., in the order (2, 1), (3, 1), ..., (nr, 1), (3, 2), ...
+         */
+        @TruffleBoundary
+        public double[] lowerTriangle() {
+            double[] d = new double[(int) ((long) nr * (nr - 1) / 2)];
+            forEachTile((iFrom, iTo, values) -> {
+                for (int jFrom = 0; jFrom < iTo - 1; jFrom += TILE) {
+                    int jTo = Math.min(jFrom + TILE, iTo - 1);
+                    computeTile(iFrom, iTo, jFrom, jTo, true, values);
+                    for (int j = jFrom; j < jTo; j++) {
+                        // the index of (j + 1, j) in the packed lower triangle
+                        int column = (int) ((long) j * (2L * nr - j - 1) / 2) - j - 1;
+                        for (int i = Math.max(iFrom, j + 1); i < iTo; i++) {
+                            d[column + i] = values[(i - iFrom) * TILE + j - jFrom];
+                        }
+                    }
+                }
+            });
+            warnNonFinite();
+            return d;
+        }
+
+        /**
+         * Stores the (1-based) indices of and the distances to the {@code k} nearest other rows of
+         * each row, ordered by distance and index, into the column-major {@code nr} times {@code k}
+         * matrices {@code index} and {@code distance}. Rows at an {@code NA} distance are not
+         * neighbours, and missing neighbours are {@code NA}. The distance matrix is not
+         * materialized.
+         */
+        @TruffleBoundary
+        public void nearestNeighbours(int k, int[] index, double[] distance) {
+            if (k <= 0) {
+                return;
+            }
+            forEachTile((iFrom, iTo, values) -> {
+                int[] heapIndex = new int[(iTo - iFrom) * k];
+                double[] heapDistance = new double[(iTo - iFrom) * k];
+                int[] heapSize = new int[iTo - iFrom];
+                for (int jFrom = 0; jFrom < nr; jFrom += TILE) {
+                    int jTo = Math.min(jFrom + TILE, nr);
+                    computeTile(iFrom, iTo, jFrom, jTo, false, values);
+                    for (int i = iFrom; i < iTo; i++) {
+                        int r = i - iFrom;
+                        for (int j = jFrom; j < jTo; j++) {
+                            double v = values[r * TILE + j - jFrom];
+                            if (j != i && !Double.isNaN(v)) {
+                                heapSize[r] = offer(heapIndex, heapDistance, r * k, heapSize[r], k, j, v);
+                            }
+                        }
+                    }
+                }
+                for (int i = iFrom; i < iTo; i++) {
+                    int r = i - iFrom;
+                    int size = heapSize[r];
+                    // sort the heap by removing the farthest neighbour until it is empty
+                    while (size > 0) {
+                        int last = --size;
+                        index[i + last * nr] = heapIndex[r * k] + 1;
+                        distance[i + last * nr] = heapDistance[r * k];
+                        heapIndex[r * k] = heapIndex[r * k + last];
+                        heapDistance[r * k] = heapDistance[r * k + last];
+                        siftDown(heapIndex, heapDistance, r * k, size, 0);
+                    }
+                    for (int l = heapSize[r]; l < k; l++) {
+                        index[i + l * nr] = RRuntime.INT_NA;
+                        distance[i + l * nr] = RRuntime.DOUBLE_NA;
+                    }
+                }
+            });
+            warnNonFinite();
+        }
+
+        private static boolean farther(double d1, int j1, double d2, int j2) {
+            return d1 > d2 || (d1 == d2 && j1 > j2);
+        }
+
+        /**
+         * Offers neighbour {@code j} to the max-heap of at most {@code k} neighbours starting at
+         * {@code offset} and returns its new size.
+         */
+        private static int offer(int[] heapIndex, double[] heapDistance, int offset, int size, int k, int j, double d) {
+            if (size < k) {
+                int pos = size;
+                while (pos > 0) {
+                    int parent = (pos - 1) >>> 1;
+                    if (!farther(d, j, heapDistance[offset + parent], heapIndex[offset + parent])) {
+                        break;
+                    }
+                    heapIndex[offset + pos] = heapIndex[offset + parent];
+                    heapDistance[offset + pos] = heapDistance[offset + parent];
+                    pos = parent;
+                }
+                heapIndex[offset + pos] = j;
+                heapDistance[offset + pos] = d;
+                return size + 1;
+            }
+            if (farther(heapDistance[offset], heapIndex[offset], d, j)) {
+                heapIndex[offset] = j;
+                heapDistance[offset] = d;
+                siftDown(heapIndex, heapDistance, offset, size, 0);
+            }
+            return size;
+        }
+
+        private static void siftDown(int[] heapIndex, double[] heapDistance, int offset, int size, int start) {
+            int pos = start;
+            while (true) {
+                int child = 2 * pos + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && farther(heapDistance[offset + child + 1], heapIndex[offset + child + 1], heapDistance[offset + child], heapIndex[offset + child])) {
+                    child++;
+                }
+                if (!farther(heapDistance[offset + child], heapIndex[offset + child], heapDistance[offset + pos], heapIndex[offset + pos])) {
+                    break;
+                }
+                int tmpIndex = heapIndex[offset + pos];
+                double tmpDistance = heapDistance[offset + pos];
+                heapIndex[offset + pos] = heapIndex[offset + child];
+                heapDistance[offset + pos] = heapDistance[offset + child];
+                heapIndex[offset + child] = tmpIndex;
+                heapDistance[offset + child] = tmpDistance;
+                pos = child;
+            }
+        }
+
+        private void warnNonFinite() {
+            long count = Math.min(nonFinite.get(), MAX_WARNINGS);
+            for (long i = 0; i < count; i++) {
+                RError.warning(RError.SHOW_CALLER2, RError.Message.GENERIC, "treating non-finite values as NA");
+            }
+        }
+
+        @FunctionalInterface
+        private interface TileBody {
+            void run(int iFrom, int iTo, double[] values);
+        }
+
+        /**
+         * Runs {@code body} for the tiles of rows, in parallel if there are enough pairs. Each run
+         * gets a buffer for the distances of a tile.
+         */
+        private void forEachTile(TileBody body) {
+            if (!parallel) {
+                double[] values = new double[TILE * TILE];
+                for (int from = 0; from < nr; from += TILE) {
+                    body.run(from, Math.min(from + TILE, nr), values);
+                }
+            } else {
+                ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[(nr + TILE - 1) / TILE];
+                // the tiles of the last rows have the most pairs, so they are submitted first
+                for (int t = tasks.length - 1; t >= 0; t--) {
+                    int from = t * TILE;
+                    int to = Math.min(from + TILE, nr);
+                    tasks[t] = ForkJoinPool.commonPool().submit(() -> body.run(from, to, new double[TILE * TILE]));
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+            }
+        }
+
+        /**
+         * Computes the distances of rows {@code iFrom..iTo-1} to rows {@code jFrom..jTo-1}, or only
+         * to the rows with a smaller index if {@code lower}, into {@code values} with stride
+         * {@link #TILE}.
+         */
+        private void computeTile(int iFrom, int iTo, int jFrom, int jTo, boolean lower, double[] values) {
+            boolean na = false;
+            for (int i = iFrom; i < iTo; i++) {
+                int jEnd = lower ? Math.min(jTo, i) : jTo;
+                int base = (i - iFrom) * TILE - jFrom;
+                int j = jFrom;
+                if (norms != null) {
+                    for (; j + 3 < jEnd; j += 4) {
+                        gram4(i, j, values, base);
+                    }
+                    for (; j < jEnd; j++) {
+                        values[base + j] = fromGram(i, j, dot(rows, i * nc, j * nc, nc));
+                    }
+                } else {
+                    for (; j < jEnd; j++) {
+                        double r = method.dist(rows, nc, i * nc, j * nc, p, nonFinite);
+                        na |= RRuntime.isNA(r);
+                        values[base + j] = r;
+                    }
+                }
+            }
+            if (na) {
+                seenNA = true;
+            }
+        }
+
+        /**
+         * Computes the distances of row {@code i} to rows {@code j..j+3} in one pass over row
+         * {@code i}.
+         */
+        private void gram4(int i, int j, double[] values, int base) {
+            int oi = i * nc;
+            int o0 = j * nc;
+            int o1 = o0 + nc;
+            int o2 = o1 + nc;
+            int o3 = o2 + nc;
+            double s0 = 0;
+            double s1 = 0;
+            double s2 = 0;
+            double s3 = 0;
+            for (int k = 0; k < nc; k++) {
+                double v = rows[oi + k];
+                s0 += v * rows[o0 + k];
+                s1 += v * rows[o1 + k];
+                s2 += v * rows[o2 + k];
+                s3 += v * rows[o3 + k];
+            }
+            values[base + j] = fromGram(i, j, s0);
+            values[base + j + 1] = fromGram(i, j + 1, s1);
+            values[base + j + 2] = fromGram(i, j + 2, s2);
+            values[base + j + 3] = fromGram(i, j + 3, s3);
+        }
+
+        private double fromGram(int i, int j, double dot) {
+            double sum = norms[i] + norms[j];
+            double d2 = sum - 2 * dot;
+            if (d2 <= GRAM_TOLERANCE * sum) {
+                // too much cancellation, all elements are finite
+                int oi = i * nc;
+                int oj = j * nc;
+                d2 = 0;
+                for (int k = 0; k < nc; k++) {
+                    double dev = rows[oi + k] - rows[oj + k];
+                    d2 += dev * dev;
+                }
+            }
+            return Math.sqrt(d2);
+        }
+
+        private static double dot(double[] x, int o1, int o2, int n) {
+            double s0 = 0;
+            double s1 = 0;
+            int k = 0;
+            for (; k + 1 < n; k += 2) {
+                s0 += x[o1 + k] * x[o2 + k];
+                s1 += x[o1 + k + 1] * x[o2 + k + 1];
+            }
+            if (k < n) {
+                s0 += x[o1 + k] * x[o2 + k];
             }
+            return s0 + s1;
         }
     }
 
+    /**
+     * The distance methods, which take the offsets of two rows of a row-major matrix with
+     * {@code nc} columns.
+     */
     public enum Method {
         EUCLIDEAN {
             @Override
-            public double dist(double[] x, int nr, int nc, final int i1in, final int i2in, double p) {
-                int i1 = i1in;
-                int i2 = i2in;
+            public double dist(double[] x, int nc, final int i1, final int i2, double p, AtomicLong nonFinite) {
                 double dev;
                 double dist;
                 int count;
@@ -127,15 +470,13 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
                 count = 0;
                 dist = 0;
                 for (j = 0; j < nc; j++) {
-                    if (bothNonNAN(x[i1], x[i2])) {
-                        dev = (x[i1] - x[i2]);
+                    if (bothNonNAN(x[i1 + j], x[i2 + j])) {
+                        dev = (x[i1 + j] - x[i2 + j]);
                         if (!RRuntime.isNAorNaN(dev)) {
                             dist += dev * dev;
                             count++;
                         }
                     }
-                    i1 += nr;
-                    i2 += nr;
                 }
                 if (count == 0) {
                     return RRuntime.DOUBLE_NA;
@@ -149,9 +490,7 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
         },
         MAXIMUM {
             @Override
-            public double dist(double[] x, int nr, int nc, final int i1in, final int i2in, double p) {
-                int i1 = i1in;
-                int i2 = i2in;
+            public double dist(double[] x, int nc, final int i1, final int i2, double p, AtomicLong nonFinite) {
                 double dev;
                 double dist;
                 int count;
@@ -160,8 +499,8 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
                 count = 0;
                 dist = -Double.MAX_VALUE;
                 for (j = 0; j < nc; j++) {
-                    if (bothNonNAN(x[i1], x[i2])) {
-                        dev = Math.abs(x[i1] - x[i2]);
+                    if (bothNonNAN(x[i1 + j], x[i2 + j])) {
+                        dev = Math.abs(x[i1 + j] - x[i2 + j]);
                         if (!RRuntime.isNAorNaN(dev)) {
                             if (dev > dist) {
                                 dist = dev;
@@ -169,8 +508,6 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
                             count++;
                         }
                     }
-                    i1 += nr;
-                    i2 += nr;
                 }
                 if (count == 0) {
                     return RRuntime.DOUBLE_NA;
@@ -181,9 +518,7 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
         },
         MANHATTAN {
             @Override
-            public double dist(double[] x, int nr, int nc, final int i1in, final int i2in, double p) {
-                int i1 = i1in;
-                int i2 = i2in;
+            public double dist(double[] x, int nc, final int i1, final int i2, double p, AtomicLong nonFinite) {
                 double dev;
                 double dist;
                 int count;
@@ -192,15 +527,13 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
                 count = 0;
                 dist = 0;
                 for (j = 0; j < nc; j++) {
-                    if (bothNonNAN(x[i1], x[i2])) {
-                        dev = Math.abs(x[i1] - x[i2]);
+                    if (bothNonNAN(x[i1 + j], x[i2 + j])) {
+                        dev = Math.abs(x[i1 + j] - x[i2 + j]);
                         if (!RRuntime.isNAorNaN(dev)) {
                             dist += dev;
                             count++;
                         }
                     }
-                    i1 += nr;
-                    i2 += nr;
                 }
                 if (count == 0) {
                     return RRuntime.DOUBLE_NA;
@@ -214,9 +547,7 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
         },
         CANBERRA {
             @Override
-            public double dist(double[] x, int nr, int nc, final int i1in, final int i2in, double p) {
-                int i1 = i1in;
-                int i2 = i2in;
+            public double dist(double[] x, int nc, final int i1, final int i2, double p, AtomicLong nonFinite) {
                 double dev;
                 double dist;
                 double sum;
@@ -227,9 +558,9 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
                 count = 0;
                 dist = 0;
                 for (j = 0; j < nc; j++) {
-                    if (bothNonNAN(x[i1], x[i2])) {
-                        sum = Math.abs(x[i1] + x[i2]);
-                        diff = Math.abs(x[i1] - x[i2]);
+                    if (bothNonNAN(x[i1 + j], x[i2 + j])) {
+                        sum = Math.abs(x[i1 + j] + x[i2 + j]);
+                        diff = Math.abs(x[i1 + j] - x[i2 + j]);
                         if (sum > DBL_MIN || diff > DBL_MIN) {
                             dev = diff / sum;
                             if (!RRuntime.isNAorNaN(dev) ||
@@ -240,8 +571,6 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
                             }
                         }
                     }
-                    i1 += nr;
-                    i2 += nr;
                 }
                 if (count == 0) {
                     return RRuntime.DOUBLE_NA;
@@ -255,9 +584,7 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
         },
         BINARY {
             @Override
-            public double dist(double[] x, int nr, int nc, final int i1in, final int i2in, double p) {
-                int i1 = i1in;
-                int i2 = i2in;
+            public double dist(double[] x, int nc, final int i1, final int i2, double p, AtomicLong nonFinite) {
                 int total;
                 int count;
                 int dist;
@@ -268,21 +595,20 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
                 dist = 0;
 
                 for (j = 0; j < nc; j++) {
-                    if (bothNonNAN(x[i1], x[i2])) {
-                        if (!bothFinite(x[i1], x[i2])) {
-                            RError.warning(RError.SHOW_CALLER2, RError.Message.GENERIC, "treating non-finite values as NA");
+                    if (bothNonNAN(x[i1 + j], x[i2 + j])) {
+                        if (!bothFinite(x[i1 + j], x[i2 + j])) {
+                            // the warning is given by the calling thread
+                            nonFinite.incrementAndGet();
                         } else {
-                            if (x[i1] != 0. || x[i2] != 0.) {
+                            if (x[i1 + j] != 0. || x[i2 + j] != 0.) {
                                 count++;
-                                if (!(x[i1] != 0. && x[i2] != 0.)) {
+                                if (!(x[i1 + j] != 0. && x[i2 + j] != 0.)) {
                                     dist++;
                                 }
                             }
                             total++;
                         }
                     }
-                    i1 += nr;
-                    i2 += nr;
                 }
 
                 if (total == 0) {
@@ -297,9 +623,7 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
         },
         MINKOWSKI {
             @Override
-            public double dist(double[] x, int nr, int nc, final int i1in, final int i2in, double p) {
-                int i1 = i1in;
-                int i2 = i2in;
+            public double dist(double[] x, int nc, final int i1, final int i2, double p, AtomicLong nonFinite) {
                 double dev;
                 double dist;
                 int count;
@@ -308,15 +632,13 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
                 count = 0;
                 dist = 0;
                 for (j = 0; j < nc; j++) {
-                    if (bothNonNAN(x[i1], x[i2])) {
-                        dev = (x[i1] - x[i2]);
+                    if (bothNonNAN(x[i1 + j], x[i2 + j])) {
+                        dev = (x[i1 + j] - x[i2 + j]);
                         if (!RRuntime.isNAorNaN(dev)) {
                             dist += Math.pow(Math.abs(dev), p);
                             count++;
                         }
                     }
-                    i1 += nr;
-                    i2 += nr;
                 }
                 if (count == 0) {
                     return RRuntime.DOUBLE_NA;
@@ -328,6 +650,10 @@ public abstract class Cdist extends RExternalBuiltinNode.Arg4 {
             }
         };
 
-        public abstract double dist(double[] x, int nr, int nc, int i1, int i2, double p);
+        /**
+         * @param nonFinite incremented for each pair of elements that is treated as {@code NA}
+         *            because one of them is not finite
+         */
+        public abstract double dist(double[] x, int nc, int i1, int i2, double p, AtomicLong nonFinite);
     }
 }
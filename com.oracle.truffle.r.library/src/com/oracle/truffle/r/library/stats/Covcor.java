@@ -11,34 +11,49 @@
  */
 package com.oracle.truffle.r.library.stats;
 
+import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.gte;
+import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.lte;
 import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.nullValue;
-import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.eq;
 import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.toBoolean;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.profiles.BranchProfile;
-import com.oracle.truffle.api.profiles.ConditionProfile;
-import com.oracle.truffle.api.profiles.LoopConditionProfile;
 import com.oracle.truffle.r.nodes.attributes.SpecialAttributesFunctions.GetDimAttributeNode;
 import com.oracle.truffle.r.nodes.builtin.RExternalBuiltinNode;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RError.Message;
+import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
 import com.oracle.truffle.r.runtime.data.RDoubleVector;
-import com.oracle.truffle.r.runtime.data.RIntVector;
 import com.oracle.truffle.r.runtime.data.RNull;
 import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
 import com.oracle.truffle.r.runtime.nodes.RBaseNode;
-import com.oracle.truffle.r.runtime.ops.na.NACheck;
 
 /*
  * Logic derived from GNU-R, library/stats/src/cov.c
+ *
+ * The columns are centered once, after which the sums of products of all pairs of columns are
+ * computed in blocks of columns and rows that stay in the cache. For large inputs, the blocks are
+ * processed in parallel on the common ForkJoinPool. The complete cases are gathered into dense
+ * columns first, and pairs of columns without NaNs take the same path when pairwise complete
+ * observations are used.
  */
 public abstract class Covcor extends RExternalBuiltinNode.Arg4 {
 
+    private static final int COLUMN_BLOCK = 16;
+    private static final int ROW_BLOCK = 2048;
+    /**
+     * The minimal number of multiplications for which the work is split among threads.
+     */
+    private static final long PARALLEL_THRESHOLD = 1 << 22;
+
     private final boolean isCor;
 
     public Covcor(boolean isCor) {
@@ -49,7 +64,7 @@ public abstract class Covcor extends RExternalBuiltinNode.Arg4 {
         Casts casts = new Casts(Covcor.class);
         casts.arg(0).mustNotBeMissing().mustBe(nullValue().not(), Message.IS_NULL, "x").asDoubleVector();
         casts.arg(1).mustNotBeMissing().asDoubleVector();
-        casts.arg(2).asIntegerVector().findFirst().mustBe(eq(4), Message.NYI, "covcor: other method than 4 not implemented.");
+        casts.arg(2).asIntegerVector().findFirst().mustBe(gte(1).and(lte(5)), Message.GENERIC, "invalid 'use' (computational method)");
         casts.arg(3).asLogicalVector().findFirst().map(toBoolean());
     }
 
@@ -63,23 +78,12 @@ public abstract class Covcor extends RExternalBuiltinNode.Arg4 {
         return corcov(x.materialize(), y.materialize(), method, iskendall, this);
     }
 
-    private final NACheck check = NACheck.create();
-
-    private final ConditionProfile noNAXProfile = ConditionProfile.createBinaryProfile();
-    private final ConditionProfile noNAYProfile = ConditionProfile.createBinaryProfile();
-    private final ConditionProfile xCompleteProfile = ConditionProfile.createBinaryProfile();
-    private final ConditionProfile yCompleteProfile = ConditionProfile.createBinaryProfile();
-    private final ConditionProfile bothZeroProfile = ConditionProfile.createBinaryProfile();
-    private final BranchProfile tooManyMissing = BranchProfile.create();
-    private final BranchProfile naInRes = BranchProfile.create();
     private final BranchProfile error = BranchProfile.create();
     private final BranchProfile warning = BranchProfile.create();
 
     @Child private GetDimAttributeNode getDimsNode = GetDimAttributeNode.create();
 
-    private final LoopConditionProfile loopLength = LoopConditionProfile.createCountingProfile();
-
-    public RDoubleVector corcov(RDoubleVector x, RDoubleVector y, @SuppressWarnings("unused") int method, boolean iskendall, RBaseNode invokingNode) throws RError {
+    public RDoubleVector corcov(RDoubleVector x, RDoubleVector y, int method, boolean iskendall, RBaseNode invokingNode) throws RError {
 
         boolean ansmat = getDimsNode.isMatrix(x);
         int n;
@@ -110,43 +114,68 @@ public abstract class Covcor extends RExternalBuiltinNode.Arg4 {
             ncy = 1;
         }
 
-        // TODO adopt full use semantics
-
         /* "default: complete" (easier for -Wall) */
         boolean naFail = false;
         boolean everything = false;
         boolean emptyErr = true;
+        boolean pair = false;
 
-        // case 4: /* "everything": NAs are propagated */
-        everything = true;
-        emptyErr = false;
+        switch (method) {
+            case 1: /* use all : no NAs */
+                naFail = true;
+                break;
+            case 2: /* complete */
+                /* did na.omit in R */
+                if (x.getLength() == 0) {
+                    error.enter();
+                    throw error("no complete element pairs");
+                }
+                break;
+            case 3: /* pairwise.complete */
+                pair = true;
+                break;
+            case 4: /* "everything": NAs are propagated */
+                everything = true;
+                emptyErr = false;
+                break;
+            case 5: /* "na.or.complete": NAs are propagated */
+                emptyErr = false;
+                break;
+            default:
+                throw RInternalError.shouldNotReachHere();
+        }
 
         if (emptyErr && x.getLength() == 0) {
             error.enter();
             throw error("'x' is empty");
         }
+        if (iskendall) {
+            throw RError.nyi(invokingNode, "method = \"kendall\"");
+        }
 
         double[] answerData = new double[ncx * ncy];
-
-        double[] xm = new double[ncx];
+        double[] xData = x.getDataWithoutCopying();
+        double[] yData = y == null ? null : y.getDataWithoutCopying();
         boolean sd0;
-        if (y == null) {
-            if (everything) {
-                sd0 = covNA1(n, ncx, x, xm, answerData, isCor, iskendall);
-            } else {
-                RIntVector ind = RDataFactory.createIntVector(n);
-                complete1(n, ncx, x, ind, naFail);
-                sd0 = covComplete1(n, ncx, x, xm, ind, answerData, isCor, iskendall);
-            }
+        if (everything || pair) {
+            sd0 = cov(n, ncx, ncy, xData, yData, answerData, isCor, pair);
         } else {
-            double[] ym = new double[ncy];
-            if (everything) {
-                sd0 = covNA2(n, ncx, ncy, x, y, xm, ym, answerData, isCor, iskendall);
-            } else {
-                RIntVector ind = RDataFactory.createIntVector(n);
-                complete2(n, ncx, ncy, x, y, ind, naFail);
-                sd0 = covComplete2(n, ncx, ncy, x, y, xm, ym, ind, answerData, isCor, iskendall);
+            boolean[] ind = complete(n, ncx, ncy, xData, yData, naFail);
+            int nobs = 0;
+            for (int k = 0; k < n; k++) {
+                if (ind[k]) {
+                    nobs++;
+                }
+            }
+            if (emptyErr && nobs == 0) {
+                error.enter();
+                throw error("no complete element pairs");
             }
+            if (nobs < n) {
+                xData = gather(n, ncx, xData, ind, nobs);
+                yData = yData == null ? null : gather(n, ncy, yData, ind, nobs);
+            }
+            sd0 = cov(nobs, ncx, ncy, xData, yData, answerData, isCor, false);
         }
 
         if (sd0) { /* only in cor() */
@@ -157,7 +186,6 @@ public abstract class Covcor extends RExternalBuiltinNode.Arg4 {
         boolean seenNA = false;
         for (int i = 0; i < answerData.length; i++) {
             if (RRuntime.isNA(answerData[i])) {
-                naInRes.enter();
                 seenNA = true;
                 break;
             }
@@ -182,575 +210,303 @@ public abstract class Covcor extends RExternalBuiltinNode.Arg4 {
         return getDimsNode.getDimensions(x)[0];
     }
 
-    private void complete1(int n, int ncx, RDoubleVector x, RIntVector ind, boolean naFail) {
-        int i;
-        int j;
-        for (i = 0; i < n; i++) {
-            ind.updateDataAt(i, 1, check);
-        }
-        for (j = 0; j < ncx; j++) {
-            // z = &x[j * n];
-            for (i = 0; i < n; i++) {
-                if (Double.isNaN(x.getDataAt(j * n + i))) {
-                    if (naFail) {
-                        throw error("missing observations in cov/cor");
-                    } else {
-                        ind.updateDataAt(i, 0, check);
-                    }
-                }
+    /**
+     * Returns which rows of {@code x} and {@code y} do not contain NaNs.
+     */
+    private boolean[] complete(int n, int ncx, int ncy, double[] x, double[] y, boolean naFail) {
+        boolean[] ind = new boolean[n];
+        Arrays.fill(ind, true);
+        if (!markIncomplete(n, ncx, x, ind) || (y != null && !markIncomplete(n, ncy, y, ind))) {
+            if (naFail) {
+                error.enter();
+                throw error("missing observations in cov/cor");
             }
         }
+        return ind;
     }
 
-    private void complete2(int n, int ncx, int ncy, RDoubleVector x, RDoubleVector y, RIntVector ind, boolean naFail) {
-        int i;
-        int j;
-        for (i = 0; i < n; i++) {
-            ind.updateDataAt(i, 1, check);
-        }
-        for (j = 0; j < ncx; j++) {
-            // z = &x[j * n];
-            for (i = 0; i < n; i++) {
-                if (Double.isNaN(x.getDataAt(j * n + i))) {
-                    if (naFail) {
-                        throw error("missing observations in cov/cor");
-                    } else {
-                        ind.updateDataAt(i, 0, check);
-                    }
-                }
-            }
-        }
-
-        for (j = 0; j < ncy; j++) {
-            // z = &y[j * n];
-            for (i = 0; i < n; i++) {
-                if (Double.isNaN(y.getDataAt(j * n + i))) {
-                    if (naFail) {
-                        throw error("missing observations in cov/cor");
-                    } else {
-                        ind.updateDataAt(i, 0, check);
-                    }
+    private static boolean markIncomplete(int n, int nc, double[] x, boolean[] ind) {
+        boolean complete = true;
+        for (int j = 0; j < nc; j++) {
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(x[j * n + i])) {
+                    ind[i] = false;
+                    complete = false;
                 }
             }
         }
+        return complete;
     }
 
-    private static boolean covComplete1(int n, int ncx, RDoubleVector x, double[] xm, RIntVector indInput, double[] ans, boolean cor, boolean kendall) {
-        int n1 = -1;
-        int nobs;
-        boolean isSd0 = false;
-
-        /* total number of complete observations */
-        nobs = 0;
-        for (int k = 0; k < n; k++) {
-            if (indInput.getDataAt(k) != 0) {
-                nobs++;
-            }
-        }
-        if (nobs <= 1) { /* too many missing */
-            for (int i = 0; i < ans.length; i++) {
-                ans[i] = RRuntime.DOUBLE_NA;
-            }
-            return isSd0;
-        }
-
-        RIntVector ind = indInput;
-        if (nobs == ind.getLength()) {
-            // No values of ind are zeroed.
-            ind = null;
-        }
-
-        if (!kendall) {
-            mean(x, xm, ind, n, ncx, nobs);
-            n1 = nobs - 1;
-        }
-        for (int i = 0; i < ncx; i++) {
-            if (!kendall) {
-                double xxm = xm[i];
-                for (int j = 0; j <= i; j++) {
-                    double yym = xm[j];
-                    double sum = 0.0;
-                    for (int k = 0; k < n; k++) {
-                        if (ind == null || ind.getDataAt(k) != 0) {
-                            sum += (x.getDataAt(i * n + k) - xxm) * (x.getDataAt(j * n + k) - yym);
-                        }
-                    }
-                    double r = sum / n1;
-                    ans[i + j * ncx] = r;
-                    ans[j + i * ncx] = r;
-                }
-            } else { /* Kendall's tau */
-                throw new UnsupportedOperationException("kendall's unsupported");
-            }
-        }
-
-        if (cor) {
-            for (int i = 0; i < ncx; i++) {
-                xm[i] = Math.sqrt(ans[i + i * ncx]);
-            }
-            for (int i = 0; i < ncx; i++) {
-                for (int j = 0; j < i; j++) {
-                    if (xm[i] == 0 || xm[j] == 0) {
-                        isSd0 = true;
-                        ans[i + j * ncx] = RRuntime.DOUBLE_NA;
-                        ans[j + i * ncx] = RRuntime.DOUBLE_NA;
-                    } else {
-                        double sum = ans[i + j * ncx] / (xm[i] * xm[j]);
-                        if (sum > 1.0) {
-                            sum = 1.0;
-                        }
-                        ans[i + j * ncx] = sum;
-                        ans[j + i * ncx] = sum;
-                    }
+    private static double[] gather(int n, int nc, double[] x, boolean[] ind, int nobs) {
+        double[] result = new double[nobs * nc];
+        int index = 0;
+        for (int j = 0; j < nc; j++) {
+            for (int i = 0; i < n; i++) {
+                if (ind[i]) {
+                    result[index++] = x[j * n + i];
                 }
-                ans[i + i * ncx] = 1.0;
             }
         }
-
-        return isSd0;
+        return result;
     }
 
-    private static boolean covComplete2(int n, int ncx, int ncy, RDoubleVector x, RDoubleVector y, double[] xm, double[] ym, RIntVector indInput, double[] ans, boolean cor, boolean kendall) {
-        int n1 = -1;
-        int nobs;
-        boolean isSd0 = false;
+    @FunctionalInterface
+    private interface BlockBody {
+        void run(int from, int to);
+    }
 
-        /* total number of complete observations */
-        nobs = 0;
-        for (int k = 0; k < n; k++) {
-            if (indInput.getDataAt(k) != 0) {
-                nobs++;
-            }
-        }
-        if (nobs <= 1) { /* too many missing */
-            for (int i = 0; i < ans.length; i++) {
-                ans[i] = RRuntime.DOUBLE_NA;
+    /**
+     * Runs {@code body} for the blocks of {@code count} items, in parallel if requested.
+     */
+    private static void forEachBlock(int count, int blockSize, boolean parallel, BlockBody body) {
+        if (!parallel || count <= blockSize) {
+            for (int from = 0; from < count; from += blockSize) {
+                body.run(from, Math.min(from + blockSize, count));
             }
-            return isSd0;
-        }
-
-        RIntVector ind = indInput;
-        if (nobs == ind.getLength()) {
-            // No values of ind are zeroed.
-            ind = null;
-        }
-
-        if (!kendall) {
-            mean(x, xm, ind, n, ncx, nobs);
-            mean(y, ym, ind, n, ncy, nobs);
-            n1 = nobs - 1;
-        }
-        for (int i = 0; i < ncx; i++) {
-            if (!kendall) {
-                double xxm = xm[i];
-                for (int j = 0; j < ncy; j++) {
-                    double yym = ym[j];
-                    double sum = 0;
-                    for (int k = 0; k < n; k++) {
-                        if (ind == null || ind.getDataAt(k) != 0) {
-                            sum += (x.getDataAt(i * n + k) - xxm) * (y.getDataAt(j * n + k) - yym);
-                        }
-                    }
-                    ans[i + j * ncx] = (sum / n1);
-                }
-            } else { /* Kendall's tau */
-                throw new UnsupportedOperationException("kendall's unsupported");
+        } else {
+            ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[(count + blockSize - 1) / blockSize];
+            for (int i = 0; i < tasks.length; i++) {
+                int from = i * blockSize;
+                int to = Math.min(from + blockSize, count);
+                tasks[i] = ForkJoinPool.commonPool().submit(() -> body.run(from, to));
             }
-        }
-
-        if (cor) {
-            covsdev(x, xm, ind, n, ncx, n1, kendall); /* -> xm[.] */
-            covsdev(y, ym, ind, n, ncy, n1, kendall); /* -> ym[.] */
-
-            for (int i = 0; i < ncx; i++) {
-                for (int j = 0; j < ncy; j++) {
-                    double divisor = (xm[i] * ym[j]);
-                    if (divisor == 0.0) {
-                        isSd0 = true;
-                        ans[i + j * ncx] = RRuntime.DOUBLE_NA;
-                    } else {
-                        double value = ans[i + j * ncx] / divisor;
-                        if (value > 1) {
-                            value = 1;
-                        }
-                        ans[i + j * ncx] = value;
-                    }
-                }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
             }
         }
-        return isSd0;
     }
 
-    private static void covsdev(RDoubleVector vector, double[] vectorM, RIntVector ind, int n, int len, int n1, boolean kendall) {
-        for (int i = 0; i < len; i++) {
-            double sum = 0;
-            if (!kendall) {
-                double xxm = vectorM[i];
-                for (int k = 0; k < n; k++) {
-                    if (ind == null || ind.getDataAt(k) != 0) {
-                        double value = vector.getDataAt(i * n + k);
-                        sum += (value - xxm) * (value - xxm);
-                    }
+    /**
+     * Columns from which their means were subtracted, with the sums of their squares. Columns
+     * containing NaNs are left out.
+     */
+    private static final class Centered {
+        private final double[] data;
+        private final boolean[] hasNaN;
+        private final double[] sumSquares;
+
+        Centered(double[] x, int n, int nc, boolean parallel) {
+            data = new double[n * nc];
+            hasNaN = new boolean[nc];
+            sumSquares = new double[nc];
+            forEachBlock(nc, COLUMN_BLOCK, parallel, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    center(x, n, i);
                 }
-                sum /= n1;
-            } else { /* Kendall's tau */
-                throw new UnsupportedOperationException("kendall's unsupported");
-            }
-            vectorM[i] = Math.sqrt(sum);
+            });
         }
-    }
 
-    private static void mean(RDoubleVector vector, double[] vectorM, RIntVector ind, int n, int len, int nobs) {
-        /* variable means */
-        for (int i = 0; i < len; i++) {
+        private void center(double[] x, int n, int i) {
+            int offset = i * n;
             double sum = 0.0;
             for (int k = 0; k < n; k++) {
-                if (ind == null || ind.getDataAt(k) != 0) {
-                    sum += vector.getDataAt(i * n + k);
+                double u = x[offset + k];
+                if (Double.isNaN(u)) {
+                    hasNaN[i] = true;
+                    return;
                 }
+                sum += u;
             }
-            double tmp = sum / nobs;
-            if (!Double.isInfinite(tmp)) {
+            double tmp = sum / n;
+            if (RRuntime.isFinite(tmp)) {
                 sum = 0.0;
                 for (int k = 0; k < n; k++) {
-                    if (ind == null || ind.getDataAt(k) != 0) {
-                        sum += (vector.getDataAt(i * n + k) - tmp);
-                    }
+                    sum += x[offset + k] - tmp;
                 }
-                tmp = tmp + sum / nobs;
+                tmp += sum / n;
             }
-            vectorM[i] = tmp;
-        }
-    }
-
-    private static boolean[] findNAs(int n, int nc, RDoubleVector v) {
-        boolean[] hasNA = new boolean[nc];
-        double[] data = v.getDataWithoutCopying();
-        for (int j = 0; j < nc; j++) {
-            for (int i = 0; i < n; i++) {
-                if (Double.isNaN(data[j * n + i])) {
-                    hasNA[j] = true;
-                    break;
-                }
+            for (int k = 0; k < n; k++) {
+                data[offset + k] = x[offset + k] - tmp;
             }
+            sumSquares[i] = dot(data, offset, data, offset, n);
         }
-        return hasNA;
     }
 
-    private boolean covNA1(int n, int ncx, RDoubleVector x, double[] xm, double[] ans, boolean cor, boolean iskendall) {
-        double sum;
-        double xxm;
-        double yym;
-        int n1 = -1;
-        boolean sd0 = false;
-
-        double[] xData = x.getDataWithoutCopying();
-        boolean[] hasNAx = findNAs(n, ncx, x);
-
-        if (n <= 1) { /* too many missing */
-            tooManyMissing.enter();
-            Arrays.fill(ans, RRuntime.DOUBLE_NA);
-            return sd0;
-        }
-
-        if (!iskendall) {
-            if (xCompleteProfile.profile(x.isComplete())) {
-                meanNoNA(n, ncx, xData, xm, hasNAx);
-            } else {
-                mean(n, ncx, xData, xm, hasNAx);
-            }
-            n1 = n - 1;
-        }
+    private static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double s0 = 0.0;
+        double s1 = 0.0;
+        double s2 = 0.0;
+        double s3 = 0.0;
+        int k = 0;
+        for (; k + 3 < length; k += 4) {
+            s0 += a[aOffset + k] * b[bOffset + k];
+            s1 += a[aOffset + k + 1] * b[bOffset + k + 1];
+            s2 += a[aOffset + k + 2] * b[bOffset + k + 2];
+            s3 += a[aOffset + k + 3] * b[bOffset + k + 3];
+        }
+        for (; k < length; k++) {
+            s0 += a[aOffset + k] * b[bOffset + k];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
 
-        for (int i = 0; i < ncx; i++) {
-            double[] temp = new double[n];
-            if (noNAXProfile.profile(!hasNAx[i])) {
-                if (!iskendall) {
-                    xxm = xm[i];
-                    for (int j = 0; j <= i; j++) {
-                        double r;
-                        if (noNAXProfile.profile(!hasNAx[j])) {
-                            yym = xm[j];
-                            if (checkNAs(xxm, yym)) {
-                                r = RRuntime.DOUBLE_NA;
-                            } else {
-                                sum = 0.0;
-                                loopLength.profileCounted(n);
-                                for (int k = 0; loopLength.inject(k < n); k++) {
-                                    double u = xData[i * n + k];
-                                    double v = xData[j * n + k];
-                                    temp[k] = (u - xxm) * (v - yym);
-                                }
-                                for (int k = 0; loopLength.inject(k < n); k++) {
-                                    sum += temp[k];
-                                }
-                                r = checkNAs(sum) ? RRuntime.DOUBLE_NA : sum / n1;
+    /**
+     * Computes the sums of products of the pairs of columns of {@code x} and {@code y} that do not
+     * contain NaNs, into {@code ans[i + j * ncx]}. If {@code y == x}, only the lower triangle is
+     * computed and mirrored.
+     */
+    private static void crossProducts(int n, int ncx, int ncy, Centered x, Centered y, double[] ans, boolean parallel) {
+        boolean symmetric = x == y;
+        forEachBlock(ncx, COLUMN_BLOCK, parallel, (iFrom, iTo) -> {
+            double[] sums = new double[COLUMN_BLOCK * COLUMN_BLOCK];
+            int jEnd = symmetric ? iTo : ncy;
+            for (int jFrom = 0; jFrom < jEnd; jFrom += COLUMN_BLOCK) {
+                int jTo = Math.min(jFrom + COLUMN_BLOCK, jEnd);
+                Arrays.fill(sums, 0.0);
+                for (int kFrom = 0; kFrom < n; kFrom += ROW_BLOCK) {
+                    int length = Math.min(ROW_BLOCK, n - kFrom);
+                    for (int i = iFrom; i < iTo; i++) {
+                        if (x.hasNaN[i]) {
+                            continue;
+                        }
+                        int jLast = symmetric ? Math.min(jTo, i + 1) : jTo;
+                        for (int j = jFrom; j < jLast; j++) {
+                            if (!y.hasNaN[j]) {
+                                sums[(i - iFrom) * COLUMN_BLOCK + j - jFrom] += dot(x.data, i * n + kFrom, y.data, j * n + kFrom, length);
                             }
-                        } else {
-                            r = RRuntime.DOUBLE_NA;
                         }
-                        ans[j + i * ncx] = r;
-                        ans[i + j * ncx] = r;
                     }
-                } else { /* Kendall's tau */
-                    throw new UnsupportedOperationException("kendall's unsupported");
                 }
-            } else {
-                for (int j = 0; j <= i; j++) {
-                    ans[j + i * ncx] = RRuntime.DOUBLE_NA;
-                    ans[i + j * ncx] = RRuntime.DOUBLE_NA;
-                }
-            }
-        }
-
-        if (cor) {
-            for (int i = 0; i < ncx; i++) {
-                if (noNAXProfile.profile(!hasNAx[i])) {
-                    double u = ans[i + i * ncx];
-                    xm[i] = checkNAs(u) ? RRuntime.DOUBLE_NA : Math.sqrt(u);
-                }
-            }
-            for (int i = 0; i < ncx; i++) {
-                if (noNAXProfile.profile(!hasNAx[i])) {
-                    for (int j = 0; j < i; j++) {
-                        if (bothZeroProfile.profile(xm[i] == 0 || xm[j] == 0)) {
-                            sd0 = true;
-                            ans[j + i * ncx] = RRuntime.DOUBLE_NA;
-                            ans[i + j * ncx] = RRuntime.DOUBLE_NA;
-                        } else {
-                            double u = ans[i + j * ncx];
-                            double v = xm[i];
-                            double w = xm[j];
-                            sum = checkNAs(u, v, w) ? RRuntime.DOUBLE_NA : u / (v * w);
-                            if (sum > 1.0) {
-                                sum = 1.0;
-                            }
+                for (int i = iFrom; i < iTo; i++) {
+                    int jLast = symmetric ? Math.min(jTo, i + 1) : jTo;
+                    for (int j = jFrom; j < jLast; j++) {
+                        double sum = sums[(i - iFrom) * COLUMN_BLOCK + j - jFrom];
+                        ans[i + j * ncx] = sum;
+                        if (symmetric) {
                             ans[j + i * ncx] = sum;
-                            ans[i + j * ncx] = sum;
                         }
                     }
                 }
-                ans[i + i * ncx] = 1.0;
             }
-        }
-
-        return sd0;
+        });
     }
 
-    private static void meanNoNA(int n, int ncx, double[] x, double[] xm, boolean[] hasNA) {
-        double sum;
-        double tmp;
-        /* variable means (has_na) */
-        for (int i = 0; i < ncx; i++) {
-            if (hasNA[i]) {
-                tmp = RRuntime.DOUBLE_NA;
-            } else {
-                sum = 0.0;
-                for (int k = 0; k < n; k++) {
-                    double u = x[i * n + k];
-                    sum += u;
-                }
-                tmp = sum / n;
-                if (RRuntime.isFinite(tmp)) {
-                    sum = 0.0;
-                    for (int k = 0; k < n; k++) {
-                        double u = x[i * n + k];
-                        sum += u - tmp;
-                    }
-                    tmp += sum / n;
-                }
-            }
-            xm[i] = tmp;
+    /**
+     * Computes the covariances or correlations of the columns of {@code x} and {@code y}, or of
+     * {@code x} with itself if {@code y == null}. Pairs of columns containing NaNs are {@code NA},
+     * or use the rows where both are not NaN if {@code pairwise}. Returns whether a standard
+     * deviation was zero.
+     */
+    @TruffleBoundary
+    private static boolean cov(int n, int ncx, int ncy, double[] x, double[] y, double[] ans, boolean cor, boolean pairwise) {
+        if (n <= 1) { /* too many missing */
+            Arrays.fill(ans, RRuntime.DOUBLE_NA);
+            return false;
         }
-    }
+        boolean parallel = (long) n * ncx * ncy >= PARALLEL_THRESHOLD;
+        Centered cx = new Centered(x, n, ncx, parallel);
+        Centered cy = y == null ? cx : new Centered(y, n, ncy, parallel);
+        crossProducts(n, ncx, ncy, cx, cy, ans, parallel);
 
-    private void mean(int n, int ncx, double[] x, double[] xm, boolean[] hasNA) {
-        double sum;
-        double tmp;
-        /* variable means (has_na) */
+        int n1 = n - 1;
+        boolean sd0 = false;
         for (int i = 0; i < ncx; i++) {
-            if (hasNA[i]) {
-                tmp = RRuntime.DOUBLE_NA;
-            } else {
-                sum = 0.0;
-                for (int k = 0; k < n; k++) {
-                    double u = x[i * n + k];
-                    if (checkNAs(u)) {
-                        sum = RRuntime.DOUBLE_NA;
-                        break;
-                    }
-                    sum += u;
-                }
-                tmp = checkNAs(sum) ? RRuntime.DOUBLE_NA : sum / n;
-                if (RRuntime.isFinite(tmp)) {
-                    sum = 0.0;
-                    for (int k = 0; k < n; k++) {
-                        double u = x[i * n + k];
-                        if (checkNAs(u)) {
-                            sum = RRuntime.DOUBLE_NA;
-                            break;
+            for (int j = 0; j < ncy; j++) {
+                int index = i + j * ncx;
+                if (cx.hasNaN[i] || cy.hasNaN[j]) {
+                    ans[index] = RRuntime.DOUBLE_NA;
+                } else if (!cor) {
+                    ans[index] /= n1;
+                } else {
+                    double u = Math.sqrt(cx.sumSquares[i] / n1);
+                    double v = Math.sqrt(cy.sumSquares[j] / n1);
+                    if (u == 0.0 || v == 0.0) {
+                        if (y != null || i != j || pairwise) {
+                            sd0 = true;
+                            ans[index] = RRuntime.DOUBLE_NA;
                         }
-                        sum += u - tmp;
-                    }
-                    if (checkNAs(sum)) {
-                        tmp = RRuntime.DOUBLE_NA;
                     } else {
-                        tmp += sum / n;
-                    }
-                }
-            }
-            xm[i] = tmp;
-        }
-    }
-
-    private boolean covNA2(int n, int ncx, int ncy, RDoubleVector x, RDoubleVector y, double[] xm, double[] ym, double[] ans, boolean cor, boolean iskendall) {
-        double sum;
-        double xxm;
-        double yym;
-        int n1 = -1;
-        boolean sd0 = false;
-
-        double[] xData = x.getDataWithoutCopying();
-        double[] yData = y.getDataWithoutCopying();
-        boolean[] hasNAx = findNAs(n, ncx, x);
-        boolean[] hasNAy = findNAs(n, ncy, y);
-
-        if (n <= 1) { /* too many missing */
-            tooManyMissing.enter();
-            for (int i = 0; i < ncx; i++) {
-                for (int j = 0; j < ncy; j++) {
-                    ans[i + j * ncx] = RRuntime.DOUBLE_NA;
-                }
-            }
-            return sd0;
-        }
-
-        if (!iskendall) {
-            if (xCompleteProfile.profile(x.isComplete())) {
-                meanNoNA(n, ncx, xData, xm, hasNAx);
-            } else {
-                mean(n, ncx, xData, xm, hasNAx);
-            }
-            if (yCompleteProfile.profile(y.isComplete())) {
-                meanNoNA(n, ncy, yData, ym, hasNAy);
-            } else {
-                mean(n, ncy, yData, ym, hasNAy);
-            }
-            n1 = n - 1;
-        }
-
-        for (int i = 0; i < ncx; i++) {
-            if (noNAXProfile.profile(!hasNAx[i])) {
-                if (!iskendall) {
-                    xxm = xm[i];
-                    for (int j = 0; j < ncy; j++) {
-                        double r;
-                        if (noNAYProfile.profile(!hasNAy[j])) {
-                            yym = ym[j];
-                            if (checkNAs(xxm, yym)) {
-                                r = RRuntime.DOUBLE_NA;
-                            } else {
-                                sum = 0.0;
-                                for (int k = 0; k < n; k++) {
-                                    double u = xData[i * n + k];
-                                    double v = yData[j * n + k];
-                                    sum += (u - xxm) * (v - yym);
-                                }
-                                r = checkNAs(sum) ? RRuntime.DOUBLE_NA : sum / n1;
-                            }
-                        } else {
-                            r = RRuntime.DOUBLE_NA;
+                        double value = ans[index] / n1 / (u * v);
+                        if (value > 1.0) {
+                            value = 1.0;
                         }
-                        ans[i + j * ncx] = r;
+                        ans[index] = value;
                     }
-                } else { /* Kendall's tau */
-                    throw new UnsupportedOperationException("kendall's unsupported");
-                }
-            } else {
-                for (int j = 0; j < ncy; j++) {
-                    ans[i + j * ncx] = RRuntime.DOUBLE_NA;
                 }
             }
-        }
-
-        if (cor) {
-            covsdev(n, n1, ncx, x, hasNAx, xm, iskendall);
-            covsdev(n, n1, ncy, y, hasNAy, ym, iskendall);
-
-            for (int i = 0; i < ncx; i++) {
-                if (noNAXProfile.profile(!hasNAx[i])) {
-                    for (int j = 0; j < ncy; j++) {
-                        if (noNAYProfile.profile(!hasNAy[j])) {
-                            if (xm[i] == 0.0 || ym[j] == 0.0) {
-                                sd0 = true;
-                                ans[i + j * ncx] = RRuntime.DOUBLE_NA;
-                            } else {
-                                double u = xm[i];
-                                double v = ym[j];
-                                if (checkNAs(u, v)) {
-                                    ans[i + j * ncx] = RRuntime.DOUBLE_NA;
-                                } else {
-                                    ans[i + j * ncx] /= u * v;
-                                }
-                                if (ans[i + j * ncx] > 1.0) {
-                                    ans[i + j * ncx] = 1.0;
-                                }
-                            }
-                        }
-                    }
-                }
+            if (cor && y == null && !(pairwise && (cx.hasNaN[i] || RRuntime.isNA(ans[i + i * ncx])))) {
+                ans[i + i * ncx] = 1.0;
             }
         }
-
+        if (pairwise) {
+            sd0 |= covPairwise(n, ncx, ncy, x, y == null ? x : y, cx, cy, ans, cor, parallel);
+        }
         return sd0;
     }
 
-    private void covsdev(int n, int n1, int ncx, RDoubleVector x, boolean[] hasNA, double[] xm, boolean iskendall) {
-        for (int i = 0; i < ncx; i++) {
-            if (!hasNA[i]) { /* Var(X[j]) */
-                double sum = 0.0;
-                if (!iskendall) {
-                    double xxm = xm[i];
-                    if (checkNAs(xxm)) {
-                        sum = RRuntime.DOUBLE_NA;
-                    } else {
-                        for (int k = 0; k < n; k++) {
-                            double u = x.getDataAt(i * n + k);
-                            double v = x.getDataAt(i * n + k);
-                            if (checkNAs(u, v)) {
-                                sum = RRuntime.DOUBLE_NA;
-                                break;
-                            }
-                            sum += (u - xxm) * (v - xxm);
+    /**
+     * Computes the entries of pairs of columns containing NaNs from the rows where both are not
+     * NaN.
+     */
+    private static boolean covPairwise(int n, int ncx, int ncy, double[] x, double[] y, Centered cx, Centered cy, double[] ans, boolean cor, boolean parallel) {
+        boolean symmetric = cx == cy;
+        AtomicBoolean sd0 = new AtomicBoolean();
+        forEachBlock(ncx, COLUMN_BLOCK, parallel, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int jEnd = symmetric ? i + 1 : ncy;
+                for (int j = 0; j < jEnd; j++) {
+                    if (cx.hasNaN[i] || cy.hasNaN[j]) {
+                        double value = covPair(n, x, i * n, y, j * n, cor, sd0);
+                        ans[i + j * ncx] = value;
+                        if (symmetric) {
+                            ans[j + i * ncx] = value;
                         }
                     }
-                    if (!checkNAs(sum)) {
-                        sum /= n1;
-                    }
-                } else { /* Kendall's tau */
-                    throw new UnsupportedOperationException("kendall's unsupported");
                 }
-                xm[i] = checkNAs(sum) ? RRuntime.DOUBLE_NA : Math.sqrt(sum);
             }
-        }
-    }
-
-    private RuntimeException error(String message) {
-        throw error(Message.GENERIC, message);
+        });
+        return sd0.get();
     }
 
-    private boolean checkNAs(double... xs) {
-        for (double x : xs) {
-            check.enable(x);
-            if (check.check(x)) {
-                return true;
+    private static double covPair(int n, double[] xx, int xOffset, double[] yy, int yOffset, boolean cor, AtomicBoolean sd0) {
+        double xmean = 0.0;
+        double ymean = 0.0;
+        int nobs = 0;
+        for (int k = 0; k < n; k++) {
+            double u = xx[xOffset + k];
+            double v = yy[yOffset + k];
+            if (!(Double.isNaN(u) || Double.isNaN(v))) {
+                nobs++;
+                xmean += u;
+                ymean += v;
             }
         }
-        return false;
+        if (nobs < 2) {
+            return RRuntime.DOUBLE_NA;
+        }
+        xmean /= nobs;
+        ymean /= nobs;
+        int n1 = nobs - 1;
+        double xsd = 0.0;
+        double ysd = 0.0;
+        double sum = 0.0;
+        for (int k = 0; k < n; k++) {
+            double u = xx[xOffset + k];
+            double v = yy[yOffset + k];
+            if (!(Double.isNaN(u) || Double.isNaN(v))) {
+                double xm = u - xmean;
+                double ym = v - ymean;
+                sum += xm * ym;
+                xsd += xm * xm;
+                ysd += ym * ym;
+            }
+        }
+        if (!cor) {
+            return sum / n1;
+        }
+        if (xsd == 0.0 || ysd == 0.0) {
+            sd0.set(true);
+            return RRuntime.DOUBLE_NA;
+        }
+        xsd /= n1;
+        ysd /= n1;
+        sum /= n1;
+        sum /= Math.sqrt(xsd) * Math.sqrt(ysd);
+        return sum > 1.0 ? 1.0 : sum;
     }
 
-    private boolean checkNAs(double x) {
-        check.enable(x);
-        return check.check(x);
+    private RuntimeException error(String message) {
+        throw error(Message.GENERIC, message);
     }
 }
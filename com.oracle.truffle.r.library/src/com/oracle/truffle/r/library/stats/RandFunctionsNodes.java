@@ -20,12 +20,16 @@ import static com.oracle.truffle.r.runtime.RError.SHOW_CALLER;
 import static com.oracle.truffle.r.runtime.RError.Message.INVALID_UNNAMED_ARGUMENTS;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.nodes.Node;
 import com.oracle.truffle.api.profiles.BranchProfile;
+import com.oracle.truffle.api.profiles.ConditionProfile;
 import com.oracle.truffle.api.profiles.LoopConditionProfile;
 import com.oracle.truffle.r.library.stats.RandFunctionsNodesFactory.ConvertToLengthNodeGen;
 import com.oracle.truffle.r.library.stats.RandFunctionsNodesFactory.RandFunction1NodeGen;
@@ -49,6 +53,8 @@ import com.oracle.truffle.r.runtime.nmath.RandomFunctions.RandFunction3_Double;
 import com.oracle.truffle.r.runtime.nmath.RandomFunctions.RandomNumberProvider;
 import com.oracle.truffle.r.runtime.nodes.RBaseNode;
 import com.oracle.truffle.r.runtime.rng.RRNG;
+import com.oracle.truffle.r.runtime.rng.RRNG.Kind;
+import com.oracle.truffle.r.runtime.rng.RandomNumberGenerator;
 
 /**
  * Contains infrastructure for R external functions implementing generation of a random value from
@@ -57,6 +63,12 @@ import com.oracle.truffle.r.runtime.rng.RRNG;
  */
 public final class RandFunctionsNodes {
     @CompilationFinal private static final RDouble DUMMY_VECTOR = RDouble.valueOf(1);
+    /**
+     * Vectors with at least this many values are generated in bulk, if possible.
+     */
+    private static final int BULK_THRESHOLD = 64;
+    private static final int BLOCK_SIZE = 1 << 12;
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
 
     private RandFunctionsNodes() {
         // static class
@@ -105,6 +117,7 @@ public final class RandFunctionsNodes {
             final BranchProfile nan = BranchProfile.create();
             final VectorLengthProfile resultVectorLengthProfile = VectorLengthProfile.create();
             final LoopConditionProfile loopConditionProfile = LoopConditionProfile.createCountingProfile();
+            final ConditionProfile bulkProfile = ConditionProfile.createBinaryProfile();
 
             public static RandGenerationNodeData create() {
                 return new RandGenerationNodeData();
@@ -159,6 +172,117 @@ public final class RandFunctionsNodes {
         }
     }
 
+    /**
+     * Generates {@code result.length} values with the same parameters, where each value consumes
+     * {@code uniforms} uniform random numbers. The uniform random numbers are generated in blocks.
+     * If the generator can skip values, the blocks are generated in parallel from generators that
+     * start where the previous block ends, so that the result and the final state of the generator
+     * are the same as if the values were generated one by one. The values themselves are always
+     * computed on the calling thread, as {@code function} is a node.
+     *
+     * @return whether there are any {@code NaN} values
+     */
+    @TruffleBoundary
+    private static boolean generateBulk(RandFunction3_Double function, double[] result, int uniforms, double a, double b, double c, RandomNumberProvider rand) {
+        RandomNumberGenerator generator = rand.getGenerator();
+        int length = result.length;
+        UniformBlock block = new UniformBlock();
+        RandomNumberProvider provider = rand.withGenerator(block);
+        boolean nans = false;
+        if (length < PARALLEL_THRESHOLD || !generator.canJumpAhead()) {
+            double[] values = new double[Math.min(length, BLOCK_SIZE) * uniforms];
+            for (int start = 0; start < length; start += BLOCK_SIZE) {
+                int end = Math.min(start + BLOCK_SIZE, length);
+                generator.fillDoubles(values, (end - start) * uniforms);
+                nans |= generateRange(function, result, start, end, a, b, c, provider, block, values);
+            }
+            return nans;
+        }
+        int parts = ForkJoinPool.getCommonPoolParallelism() * 4;
+        double[][] values = new double[parts][BLOCK_SIZE * uniforms];
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[parts];
+        for (int round = 0; round < length; round += parts * BLOCK_SIZE) {
+            for (int i = 0; i < parts; i++) {
+                int start = round + i * BLOCK_SIZE;
+                if (start >= length) {
+                    tasks[i] = null;
+                    continue;
+                }
+                double[] target = values[i];
+                int count = (Math.min(start + BLOCK_SIZE, length) - start) * uniforms;
+                long skip = (long) start * uniforms;
+                tasks[i] = ForkJoinPool.commonPool().submit(() -> generator.jumpAhead(skip).fillDoubles(target, count));
+            }
+            for (int i = 0; i < parts && tasks[i] != null; i++) {
+                tasks[i].join();
+                int start = round + i * BLOCK_SIZE;
+                nans |= generateRange(function, result, start, Math.min(start + BLOCK_SIZE, length), a, b, c, provider, block, values[i]);
+            }
+        }
+        generator.setISeed(generator.jumpAhead((long) length * uniforms).getSeeds());
+        return nans;
+    }
+
+    private static boolean generateRange(RandFunction3_Double function, double[] result, int from, int to, double a, double b, double c, RandomNumberProvider provider, UniformBlock block,
+                    double[] values) {
+        block.reset(values);
+        boolean nans = false;
+        for (int i = from; i < to; i++) {
+            double value = function.execute(a, b, c, provider);
+            nans |= Double.isNaN(value);
+            result[i] = value;
+        }
+        return nans;
+    }
+
+    /**
+     * Hands out uniform random numbers that were generated in bulk by another generator.
+     */
+    private static final class UniformBlock implements RandomNumberGenerator {
+        private double[] values;
+        private int index;
+
+        void reset(double[] newValues) {
+            values = newValues;
+            index = 0;
+        }
+
+        @Override
+        public double genrandDouble() {
+            return values[index++];
+        }
+
+        @Override
+        public void init(int seed) {
+            throw RInternalError.shouldNotReachHere();
+        }
+
+        @Override
+        public void fixupSeeds(boolean initial) {
+            throw RInternalError.shouldNotReachHere();
+        }
+
+        @Override
+        public int[] getSeeds() {
+            throw RInternalError.shouldNotReachHere();
+        }
+
+        @Override
+        public Kind getKind() {
+            throw RInternalError.shouldNotReachHere();
+        }
+
+        @Override
+        public int getNSeed() {
+            throw RInternalError.shouldNotReachHere();
+        }
+
+        @Override
+        public void setISeed(int[] seeds) {
+            throw RInternalError.shouldNotReachHere();
+        }
+    }
+
     protected abstract static class RandFunctionIntExecutorNode extends RandFunctionExecutorBase {
         @Child private RandFunction3_Double function;
 
@@ -228,6 +352,20 @@ public final class RandFunctionsNodes {
             boolean nans = false;
             double[] result;
             result = new double[length];
+            if (aLength == 1 && bLength == 1 && cLength == 1 && length >= BULK_THRESHOLD) {
+                double aValue = a.getDataAt(0);
+                double bValue = b.getDataAt(0);
+                double cValue = c.getDataAt(0);
+                int uniforms = function.getUniformsPerValue(aValue, bValue, cValue, randProvider);
+                if (nodeData.bulkProfile.profile(uniforms > 0)) {
+                    nans = generateBulk(function, result, uniforms, aValue, bValue, cValue, randProvider);
+                    putRNGState();
+                    if (nans) {
+                        showNAWarning();
+                    }
+                    return RDataFactory.createDoubleVector(result, !nans);
+                }
+            }
             nodeData.loopConditionProfile.profileCounted(length);
             for (int i = 0; nodeData.loopConditionProfile.inject(i < length); i++) {
                 double aValue = a.getDataAt(i % aLength);
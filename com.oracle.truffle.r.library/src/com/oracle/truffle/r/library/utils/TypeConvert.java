@@ -34,20 +34,21 @@ import static com.oracle.truffle.r.runtime.RError.Message.FIRST_ARGUMENT_MUST_BE
 import static com.oracle.truffle.r.runtime.RError.Message.INVALID_ARG;
 import static com.oracle.truffle.r.runtime.RRuntime.LOGICAL_FALSE;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.TreeSet;
 
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.r.nodes.attributes.SetFixedAttributeNode;
 import com.oracle.truffle.r.nodes.builtin.RExternalBuiltinNode;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashMapCharacter;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.conn.TextColumn;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
-import com.oracle.truffle.r.runtime.data.RDoubleVector;
 import com.oracle.truffle.r.runtime.data.RIntVector;
-import com.oracle.truffle.r.runtime.data.RLogicalVector;
 import com.oracle.truffle.r.runtime.data.RVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
 import com.oracle.truffle.r.runtime.nodes.RBaseNode;
 
 public abstract class TypeConvert extends RExternalBuiltinNode.Arg5 {
@@ -81,143 +82,51 @@ public abstract class TypeConvert extends RExternalBuiltinNode.Arg5 {
         return false;
     }
 
-    /*
-     * In the next three methods, firstPos is the index of the first element in the vector that is
-     * not isNA(elem, naStrings). However, there may be isNA values after that.
-     */
-
-    private static RIntVector readIntVector(RAbstractStringVector x, int firstPos, int firstVal, RAbstractStringVector naStrings) {
-        int[] data = new int[x.getLength()];
-        Arrays.fill(data, 0, firstPos, RRuntime.INT_NA);
-        boolean complete = canBeComplete(firstPos);
-        data[firstPos] = firstVal;
-        for (int i = firstPos + 1; i < data.length; i++) {
-            String s = x.getDataAt(i);
-            boolean isNA = isNA(s, naStrings);
-            data[i] = isNA ? RRuntime.INT_NA : RRuntime.string2intNoCheck(s, true);
-            complete = complete && !isNA;
-        }
-        return RDataFactory.createIntVector(data, complete);
-    }
-
-    private static RDoubleVector readDoubleVector(RAbstractStringVector x, int firstPos, double firstVal, RAbstractStringVector naStrings) {
-        double[] data = new double[x.getLength()];
-        Arrays.fill(data, 0, firstPos, RRuntime.DOUBLE_NA);
-        boolean complete = canBeComplete(firstPos);
-        data[firstPos] = firstVal;
-        for (int i = firstPos + 1; i < data.length; i++) {
-            String s = x.getDataAt(i);
-            boolean isNA = isNA(s, naStrings);
-            data[i] = isNA ? RRuntime.DOUBLE_NA : RRuntime.string2doubleNoCheck(s, true);
-            complete = complete && !isNA;
-        }
-        return RDataFactory.createDoubleVector(data, complete);
-    }
-
-    private static RLogicalVector readLogicalVector(RAbstractStringVector x, int firstPos, byte firstVal, RAbstractStringVector naStrings) {
-        byte[] data = new byte[x.getLength()];
-        Arrays.fill(data, 0, firstPos, RRuntime.LOGICAL_NA);
-        boolean complete = canBeComplete(firstPos);
-        data[firstPos] = firstVal;
-        for (int i = firstPos + 1; i < data.length; i++) {
-            String s = x.getDataAt(i);
-            boolean isNA = isNA(s, naStrings);
-            data[i] = isNA ? RRuntime.LOGICAL_NA : RRuntime.string2logicalNoCheck(s, true);
-            complete = complete && !isNA;
-        }
-        return RDataFactory.createLogicalVector(data, complete);
-    }
-
-    private static boolean canBeComplete(int firstNonNAPos) {
-        return firstNonNAPos == 0 ? RDataFactory.COMPLETE_VECTOR : RDataFactory.INCOMPLETE_VECTOR;
-    }
-
     @Specialization
     protected Object typeConvert(RAbstractStringVector x, RAbstractStringVector naStrings, boolean asIs, @SuppressWarnings("unused") Object dec, @SuppressWarnings("unused") Object numeral) {
         if (x.getLength() == 0) {
             return RDataFactory.createEmptyLogicalVector();
         }
 
-        int i = 0;
-        while (i < x.getLength() && isNA(x.getDataAt(i), naStrings)) {
-            i++;
-        }
-
-        if (i == x.getLength()) {
-            // all NAs
-            byte[] data = new byte[i];
-            Arrays.fill(data, RRuntime.LOGICAL_NA);
-            return RDataFactory.createLogicalVector(data, RDataFactory.INCOMPLETE_VECTOR);
-        }
-
-        String s = x.getDataAt(i);
-        if (RRuntime.hasHexPrefix(s)) {
-            // this is a mess
-            // double takes precedense even if s is a hexadecimal integer
-            try {
-                double doubleVal = RRuntime.string2doubleNoCheck(s, true);
-                return readDoubleVector(x, i, doubleVal, naStrings);
-            } catch (NumberFormatException ix) {
-                // fall through
-            }
-        } else {
-            try {
-                int intVal = RRuntime.string2intNoCheck(s, true);
-                return readIntVector(x, i, intVal, naStrings);
-            } catch (NumberFormatException ix) {
-                try {
-                    double doubleVal = RRuntime.string2doubleNoCheck(s, true);
-                    try {
-                        return readDoubleVector(x, i, doubleVal, naStrings);
-                    } catch (NumberFormatException lx) {
-                        // fall through
-                    }
-                } catch (NumberFormatException dx) {
-                    try {
-                        byte logicalVal = RRuntime.string2logicalNoCheck(s, true);
-                        try {
-                            return readLogicalVector(x, i, logicalVal, naStrings);
-                        } catch (NumberFormatException lx) {
-                            // fall through
-                        }
-                    } catch (NumberFormatException lx) {
-                        // fall through
-                    }
-                }
-            }
+        RAbstractVector converted = TextColumn.convert(x, naStrings);
+        if (converted != null) {
+            return converted;
         }
-        // fall through target - conversion to int, double or logical failed
 
         if (asIs) {
             return x;
         } else {
-            // create a factor
-            TreeSet<String> levels = new TreeSet<>();
-            for (int j = 0; j < x.getLength(); j++) {
-                s = x.getDataAt(j);
-                if (!isNA(s, naStrings)) {
-                    levels.add(s);
-                }
-            }
-            String[] levelsArray = new String[levels.size()];
-            levels.toArray(levelsArray);
-
+            // create a factor with sorted levels
+            NonRecursiveHashMapCharacter levels = new NonRecursiveHashMapCharacter(0);
+            ArrayList<String> levelsList = new ArrayList<>();
             int[] data = new int[x.getLength()];
             boolean complete = true;
             for (int j = 0; j < data.length; j++) {
-                s = x.getDataAt(j);
+                String s = x.getDataAt(j);
                 if (!isNA(s, naStrings)) {
-                    for (int k = 0; k < levelsArray.length; k++) {
-                        if (levelsArray[k].equals(s)) {
-                            data[j] = k + 1;
-                            break;
-                        }
+                    int level = levels.get(s);
+                    if (level < 0) {
+                        level = levelsList.size();
+                        levels.put(s, level);
+                        levelsList.add(s);
                     }
+                    data[j] = level;
                 } else {
                     data[j] = RRuntime.INT_NA;
                     complete = false;
                 }
             }
+            String[] levelsArray = levelsList.toArray(new String[levelsList.size()]);
+            Arrays.sort(levelsArray);
+            int[] order = new int[levelsArray.length];
+            for (int k = 0; k < levelsArray.length; k++) {
+                order[levels.get(levelsArray[k])] = k + 1;
+            }
+            for (int j = 0; j < data.length; j++) {
+                if (data[j] != RRuntime.INT_NA) {
+                    data[j] = order[data[j]];
+                }
+            }
             RIntVector res = RDataFactory.createIntVector(data, complete);
             setLevelsAttrNode.execute(res, RDataFactory.createStringVector(levelsArray, RDataFactory.COMPLETE_VECTOR));
             return RVector.setVectorClassAttr(res, RDataFactory.createStringVector("factor"));
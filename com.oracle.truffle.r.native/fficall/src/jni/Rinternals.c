@@ -261,17 +261,18 @@ void init_internals(JNIEnv *env) {
 	restoreHandlerStacksMethodID = checkGetMethodID(env, JNIUpCallsRFFIImplClass, "R_ToplevelExecRestoreErrorHandlerStacks", "(Ljava/lang/Object;)V", 1);
     setCompleteMethodID = checkGetMethodID(env, JNIUpCallsRFFIImplClass, "setComplete", "(Ljava/lang/Object;Z)V", 1);
 	logNotCharSXPWrapperMethodID = checkGetMethodID(env, JNIUpCallsRFFIImplClass, "logNotCharSXPWrapper", "(Ljava/lang/Object;)V", 1);
+	init_elt_buffers(env);
 }
 
 SEXP Rf_ScalarInteger(int value) {
 	TRACE(TARGp, value);
-	JNIEnv *thisenv = getEnv();
+	JNIEnv *thisenv = getEnvNoFlush();
 	SEXP result = (*thisenv)->CallObjectMethod(thisenv, UpCallsRFFIObject, Rf_ScalarIntegerMethodID, value);
     return checkRef(thisenv, result);
 }
 
 SEXP Rf_ScalarReal(double value) {
-	JNIEnv *thisenv = getEnv();
+	JNIEnv *thisenv = getEnvNoFlush();
 	SEXP result = (*thisenv)->CallObjectMethod(thisenv, UpCallsRFFIObject, Rf_ScalarDoubleMethodID, value);
     return checkRef(thisenv, result);
 }
@@ -285,7 +286,7 @@ SEXP Rf_ScalarString(SEXP value) {
 
 SEXP Rf_ScalarLogical(int value) {
 	TRACE(TARGp, value);
-	JNIEnv *thisenv = getEnv();
+	JNIEnv *thisenv = getEnvNoFlush();
 	SEXP result = (*thisenv)->CallObjectMethod(thisenv, UpCallsRFFIObject, Rf_ScalarLogicalMethodID, value);
     return checkRef(thisenv, result);
 }
@@ -296,7 +297,7 @@ SEXP Rf_allocVector3(SEXPTYPE t, R_xlen_t len, R_allocator_t* allocator) {
 	    return NULL;
     }
     TRACE(TARGpd, t, len);
-    JNIEnv *thisenv = getEnv();
+    JNIEnv *thisenv = getEnvNoFlush();
     SEXP result = (*thisenv)->CallObjectMethod(thisenv, UpCallsRFFIObject, Rf_allocVectorMethodID, t, len);
     return checkRef(thisenv, result);
 }
@@ -314,7 +315,7 @@ SEXP Rf_alloc3DArray(SEXPTYPE t, int x, int y, int z) {
 
 SEXP Rf_allocMatrix(SEXPTYPE mode, int nrow, int ncol) {
 	TRACE(TARGppd, mode, nrow, ncol);
-	JNIEnv *thisenv = getEnv();
+	JNIEnv *thisenv = getEnvNoFlush();
 	SEXP result = (*thisenv)->CallObjectMethod(thisenv, UpCallsRFFIObject, Rf_allocMatrixMethodID, mode, nrow, ncol);
 	return checkRef(thisenv, result);
 }
@@ -513,7 +514,7 @@ SEXP Rf_mkCharLen(const char *x, int y) {
 
 SEXP Rf_mkCharLenCE(const char *x, int len, cetype_t enc) {
 	TRACE(TARGsdd, x, len, enc);
-	JNIEnv *thisenv = getEnv();
+	JNIEnv *thisenv = getEnvNoFlush();
 	jbyteArray bytes = (*thisenv)->NewByteArray(thisenv, len);
 	(*thisenv)->SetByteArrayRegion(thisenv, bytes, 0, len, (const jbyte *) x);
 	SEXP result = (*thisenv)->CallObjectMethod(thisenv, UpCallsRFFIObject, Rf_mkCharLenCEMethodID, bytes, len, (int) enc);
@@ -1021,7 +1022,7 @@ void SET_PRCODE(SEXP x, SEXP v) {
 
 int LENGTH(SEXP x) {
     TRACE(TARGp, x);
-    JNIEnv *thisenv = getEnv();
+    JNIEnv *thisenv = getEnvNoFlush();
     return (int) (*thisenv)->CallIntMethod(thisenv, UpCallsRFFIObject, LENGTH_MethodID, x);
 }
 
@@ -1107,8 +1108,11 @@ Rcomplex *COMPLEX(SEXP x){
 
 SEXP STRING_ELT(SEXP x, R_xlen_t i){
 	TRACE(TARGpd, x, i);
-	JNIEnv *thisenv = getEnv();
-    SEXP result = (*thisenv)->CallObjectMethod(thisenv, UpCallsRFFIObject, STRING_ELT_MethodID, x, i);
+	JNIEnv *thisenv = getEnvNoFlush();
+	SEXP result = getStringElt(thisenv, x, i);
+	if (result == NULL) {
+		result = (*thisenv)->CallObjectMethod(thisenv, UpCallsRFFIObject, STRING_ELT_MethodID, x, i);
+	}
     return checkRef(thisenv, result);
 }
 
@@ -1122,15 +1126,15 @@ SEXP VECTOR_ELT(SEXP x, R_xlen_t i){
 
 void SET_STRING_ELT(SEXP x, R_xlen_t i, SEXP v){
 	TRACE("%s(%p, %d, %p)\n", x, i, v);
-	JNIEnv *thisenv = getEnv();
-	(*thisenv)->CallVoidMethod(thisenv, UpCallsRFFIObject, SET_STRING_ELT_MethodID, x, i, v);
+	JNIEnv *thisenv = getEnvNoFlush();
+	setElt(thisenv, STRSXP, x, i, v);
 }
 
 
 SEXP SET_VECTOR_ELT(SEXP x, R_xlen_t i, SEXP v){
 	TRACE("%s(%p, %d, %p)\n", x, i, v);
-	JNIEnv *thisenv = getEnv();
-	(*thisenv)->CallVoidMethod(thisenv, UpCallsRFFIObject, SET_VECTOR_ELT_MethodID, x, i, v);
+	JNIEnv *thisenv = getEnvNoFlush();
+	setElt(thisenv, VECSXP, x, i, v);
 	return v;
 }
 
@@ -1201,7 +1205,7 @@ Rcomplex Rf_asComplex(SEXP x){
 
 int TYPEOF(SEXP x) {
 	TRACE(TARGp, x);
-	JNIEnv *thisenv = getEnv();
+	JNIEnv *thisenv = getEnvNoFlush();
 	return (*thisenv)->CallIntMethod(thisenv, UpCallsRFFIObject, TYPEOF_MethodID, x);
 }
 
@@ -1259,7 +1263,7 @@ void DUPLICATE_ATTRIB(SEXP to, SEXP from){
 
 const char *R_CHAR(SEXP charsxp) {
 	TRACE("%s(%p)", charsxp);
-	JNIEnv *thisenv = getEnv();
+	JNIEnv *thisenv = getEnvNoFlush();
 	const char *copyChars = (const char *) getNativeArray(thisenv, charsxp, CHARSXP);
 	TRACE(" %s(%s)\n", copyChars);
 	return copyChars;
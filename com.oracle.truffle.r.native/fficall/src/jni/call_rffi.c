@@ -46,6 +46,13 @@ Java_com_oracle_truffle_r_runtime_ffi_jni_JNI_1Call_nativeSetTempDir(JNIEnv *env
 	setTempDir(env, tempDir);
 }
 
+JNIEXPORT void JNICALL
+Java_com_oracle_truffle_r_runtime_ffi_jni_JNI_1Call_nativeGetGlobalRefStats(JNIEnv *env, jclass c, jlongArray stats) {
+	jlong values[4];
+	getGlobalRefStats(values);
+	(*env)->SetLongArrayRegion(env, stats, 0, 4, values);
+}
+
 
 // Boilerplate methods for the actual calls
 
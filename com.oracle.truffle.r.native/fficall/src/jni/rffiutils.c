@@ -25,6 +25,7 @@
 #include <stdlib.h>
 #include <errno.h>
 #include <assert.h>
+#include <stdint.h>
 
 
 /*
@@ -45,13 +46,29 @@ FILE *traceFile = NULL;
 
 typedef struct globalRefTable_struct {
     int permanent;
-    SEXP gref;         // The jobject (SEXP) global ref
+    int generation;    // for a ref released when the down call at this depth returns, the depth, else 0
+    SEXP gref;         // The jobject (SEXP) global ref, NULL for a free entry
+    jint hash;         // the identity hash code of the object, only set once the table is indexed
+    int next;          // the next entry in the same bucket of cachedGlobalRefsIndex, or in the free list
 } GlobalRefElem;
 
 #define CACHED_GLOBALREFS_INITIAL_SIZE 64
 static GlobalRefElem *cachedGlobalRefs;
 static int cachedGlobalRefsHwm;
+// always a power of two, also the number of buckets of cachedGlobalRefsIndex
 static int cachedGlobalRefsLength;
+// Hash index of cachedGlobalRefs keyed by the identity hash code of the objects, the buckets
+// are chains of entries linked by next. Unlike the address of an object, its identity hash
+// code is not changed by the GC. Getting it takes an up call though, so the index is only
+// built once the table outgrows its initial size, until then the table is simply scanned.
+static int *cachedGlobalRefsIndex;
+// the first of the free entries below the hwm, linked by next, or -1
+static int cachedGlobalRefsFree;
+// counters reported when tracing native calls
+static jlong globalRefsCreated;
+static jlong globalRefsReused;
+static jlong globalRefsReleased;
+static jlong globalRefsLive;
 
 // Data structure for managing the required copying of
 // Java arrays to return C arrays, e.g, int*.
@@ -59,9 +76,14 @@ static int cachedGlobalRefsLength;
 // wraps, e.g.,  int[] in an RIntVector.
 typedef struct nativeArrayTable_struct {
     SEXPTYPE type;
-    SEXP obj;         // The jobject (SEXP) that data is derived from (e.g, RIntVector)
+    SEXP obj;         // The jobject (SEXP) that data is derived from (e.g, RIntVector), NULL once released
+    SEXP ref;         // The jobject the entry was created for, kept after obj is released
     void *jArray;     // the jarray corresponding to obj
     void *data;       // the (possibly) copied (or pinned) data from JNI GetXXXArrayElements
+    jint hash;        // the identity hash code of obj, only set once the table is indexed by it
+    int original;     // for another reference to an object already in the table, the index of its entry, else -1
+    int nextByRef;    // the next entry in the same bucket of nativeArrayRefIndex, or -1
+    int nextByHash;   // the next entry in the same bucket of nativeArrayHashIndex, or -1
 } NativeArrayElem;
 
 #define NATIVE_ARRAY_TABLE_INITIAL_SIZE 64
@@ -71,9 +93,69 @@ static NativeArrayElem *nativeArrayTable;
 // hwm of nativeArrayTable
 static int nativeArrayTableHwm;
 static int nativeArrayTableLastIndex;
+// always a power of two, also the number of buckets of the indexes
 static int nativeArrayTableLength;
+// Hash indexes of nativeArrayTable, the buckets are chains of entries linked by nextByRef
+// (nextByHash), starting with the most recently added one. As entries are only removed from
+// the end of the table, they are always at the start of their chains when they are removed.
+// The first index is keyed by the jobject itself, which is the common case of native code
+// accessing the same vector repeatedly. The second one is keyed by the identity hash code of
+// the object, which unlike its address is not changed by the GC, and finds other references
+// to the same object. Getting the hash code takes an up call, so the second index is only
+// built once the table outgrows its initial size, until then the table is simply scanned.
+static int *nativeArrayRefIndex;
+static int *nativeArrayHashIndex;
 static void releaseNativeArray(JNIEnv *env, int index);
 
+static jmethodID identityHashCodeMethodID;
+static jclass SystemClass;
+
+static jint identityHash(JNIEnv *env, SEXP x) {
+    return (*env)->CallStaticIntMethod(env, SystemClass, identityHashCodeMethodID, x);
+}
+
+static int hashBucket(jint hash, int length) {
+    unsigned int h = (unsigned int) hash;
+    return (int) ((h ^ (h >> 16)) & (length - 1));
+}
+
+/*
+ * Buffers for element accesses, so that loops over the elements of big vectors do not need
+ * an up call per element: SET_STRING_ELT (SET_VECTOR_ELT) calls on the same vector are
+ * collected and performed by a single up call, and STRING_ELT calls with consecutive indexes
+ * are served from blocks of elements, fetched by a single up call and growing as long as the
+ * accesses stay sequential. The values are held in Java arrays, which can be accessed by JNI
+ * functions without a transition into Java code.
+ * The buffers are flushed by getEnv, i.e., before any up call that may observe or change
+ * the vectors, only up calls that do neither may use getEnvNoFlush instead. The buffered
+ * calls go through UpCallsRFFIObject, so they are traced, and an error in one of them, e.g.,
+ * for an invalid index, is raised by the next access to the buffers or by getEnv.
+ */
+#define ELT_BUFFER_SIZE 4096
+#define ELT_BLOCK_INITIAL_SIZE 16
+
+static SEXP pendingEltsVector;        // the vector of the pending writes, if any
+static SEXPTYPE pendingEltsType;      // STRSXP or VECSXP
+static int pendingEltsCount;
+static jint pendingEltsIndexes[ELT_BUFFER_SIZE];
+static jintArray pendingEltsIndexesArray;
+static jobjectArray pendingEltsValues;
+
+static SEXP stringEltsVector;         // the vector of the fetched block, if any
+static R_xlen_t stringEltsStart;
+static int stringEltsCount;
+static int stringEltsBlockSize;
+static jobjectArray stringEltsValues;
+static SEXP stringEltsLastVector;     // the vector of the last STRING_ELT call
+static R_xlen_t stringEltsNext;       // the index following the one of the last STRING_ELT call
+static int stringEltsRun;             // the number of sequential STRING_ELT calls not served from a block
+
+static jmethodID setStringEltsMethodID;
+static jmethodID setVectorEltsMethodID;
+static jmethodID getStringEltsMethodID;
+
+static void flushEltBuffers(JNIEnv *env);
+
 static jfieldID CharSXPWrapperContentsFieldID;
 extern jmethodID logNotCharSXPWrapperMethodID;
 
@@ -124,12 +206,112 @@ static jboolean fast_IsSameObject(jobject a, jobject b) {
     }
 }
 
+void init_elt_buffers(JNIEnv *env) {
+    setStringEltsMethodID = checkGetMethodID(env, JNIUpCallsRFFIImplClass, "setStringElts", "(Lcom/oracle/truffle/r/runtime/ffi/UpCallsRFFI;Ljava/lang/Object;[I[Ljava/lang/Object;I)V", 1);
+    setVectorEltsMethodID = checkGetMethodID(env, JNIUpCallsRFFIImplClass, "setVectorElts", "(Lcom/oracle/truffle/r/runtime/ffi/UpCallsRFFI;Ljava/lang/Object;[I[Ljava/lang/Object;I)V", 1);
+    getStringEltsMethodID = checkGetMethodID(env, JNIUpCallsRFFIImplClass, "getStringElts", "(Lcom/oracle/truffle/r/runtime/ffi/UpCallsRFFI;Ljava/lang/Object;I[Ljava/lang/Object;I)I", 1);
+    jclass objectClass = (*env)->FindClass(env, "java/lang/Object");
+    pendingEltsIndexesArray = (*env)->NewGlobalRef(env, (*env)->NewIntArray(env, ELT_BUFFER_SIZE));
+    pendingEltsValues = (*env)->NewGlobalRef(env, (*env)->NewObjectArray(env, ELT_BUFFER_SIZE, objectClass, NULL));
+    stringEltsValues = (*env)->NewGlobalRef(env, (*env)->NewObjectArray(env, ELT_BUFFER_SIZE, objectClass, NULL));
+}
+
+static jboolean isSameVector(SEXP a, SEXP b) {
+    return a == b || fast_IsSameObject(a, b);
+}
+
+static void flushPendingElts(JNIEnv *env) {
+    int count = pendingEltsCount;
+    SEXP x = pendingEltsVector;
+    pendingEltsCount = 0;
+    pendingEltsVector = NULL;
+    (*env)->SetIntArrayRegion(env, pendingEltsIndexesArray, 0, count, pendingEltsIndexes);
+    jmethodID methodID = pendingEltsType == STRSXP ? setStringEltsMethodID : setVectorEltsMethodID;
+    (*env)->CallStaticVoidMethod(env, JNIUpCallsRFFIImplClass, methodID, UpCallsRFFIObject, x, pendingEltsIndexesArray, pendingEltsValues, count);
+}
+
+// transfers control back to the entry of the down call if an up call of the buffers failed
+static void checkEltsException(JNIEnv *env) {
+    if ((*env)->ExceptionCheck(env)) {
+        longjmp(*getErrorJmpBuf(), 1);
+    }
+}
+
+static void flushEltBuffers(JNIEnv *env) {
+    stringEltsVector = NULL;
+    stringEltsLastVector = NULL;
+    if (pendingEltsCount > 0) {
+        flushPendingElts(env);
+    }
+}
+
+void setElt(JNIEnv *env, SEXPTYPE type, SEXP x, R_xlen_t i, SEXP v) {
+    if (pendingEltsCount > 0 && (pendingEltsCount == ELT_BUFFER_SIZE || pendingEltsType != type || !isSameVector(pendingEltsVector, x))) {
+        flushPendingElts(env);
+        checkEltsException(env);
+    }
+    if (stringEltsVector != NULL && i >= stringEltsStart && i < stringEltsStart + stringEltsCount && isSameVector(stringEltsVector, x)) {
+        // keep the fetched block up to date
+        (*env)->SetObjectArrayElement(env, stringEltsValues, (jsize) (i - stringEltsStart), v);
+    }
+    pendingEltsVector = x;
+    pendingEltsType = type;
+    pendingEltsIndexes[pendingEltsCount] = (jint) i;
+    (*env)->SetObjectArrayElement(env, pendingEltsValues, pendingEltsCount, v);
+    pendingEltsCount++;
+}
+
+/*
+ * Returns the element i of the character vector x if it is in the fetched block or if the
+ * accesses to x have been sequential for a while, else NULL.
+ */
+SEXP getStringElt(JNIEnv *env, SEXP x, R_xlen_t i) {
+    SEXP result = NULL;
+    if (stringEltsVector != NULL && i >= stringEltsStart && i < stringEltsStart + stringEltsCount && isSameVector(stringEltsVector, x)) {
+        result = (*env)->GetObjectArrayElement(env, stringEltsValues, (jsize) (i - stringEltsStart));
+    } else {
+        if (pendingEltsCount > 0) {
+            flushPendingElts(env);
+            checkEltsException(env);
+        }
+        if (x == stringEltsLastVector && i == stringEltsNext && ++stringEltsRun >= 2) {
+            // sequential accesses, fetch a block of elements
+            stringEltsBlockSize = stringEltsVector == NULL ? ELT_BLOCK_INITIAL_SIZE : stringEltsBlockSize * 2;
+            if (stringEltsBlockSize > ELT_BUFFER_SIZE) {
+                stringEltsBlockSize = ELT_BUFFER_SIZE;
+            }
+            stringEltsVector = NULL;
+            stringEltsCount = (*env)->CallStaticIntMethod(env, JNIUpCallsRFFIImplClass, getStringEltsMethodID, UpCallsRFFIObject, x, (jint) i, stringEltsValues, stringEltsBlockSize);
+            checkEltsException(env);
+            stringEltsVector = x;
+            stringEltsStart = i;
+            result = (*env)->GetObjectArrayElement(env, stringEltsValues, 0);
+        } else {
+            if (x != stringEltsLastVector || i != stringEltsNext) {
+                stringEltsRun = 0;
+            }
+            stringEltsVector = NULL;
+        }
+    }
+    stringEltsLastVector = x;
+    stringEltsNext = i + 1;
+    return result;
+}
+
 // native down call depth, indexes nativeArrayTableHwmStack
 int callDepth = 0;
 
 #define CALLDEPTH_STACK_SIZE 16
 static int nativeArrayTableHwmStack[CALLDEPTH_STACK_SIZE];
 
+// The entries of cachedGlobalRefs to be released when a down call returns, in the order they
+// were created, and the number of them when the down call at each depth was entered.
+static int *transientGlobalRefs;
+static int transientGlobalRefsCount;
+static int transientGlobalRefsLength;
+static int transientGlobalRefsStack[CALLDEPTH_STACK_SIZE];
+static void releaseTransientGlobalRefs(JNIEnv *env);
+
 // stack of jmp_buf ptrs for non-local control transfer on error
 static jmp_buf* callErrorJmpBufTable[CALLDEPTH_STACK_SIZE];
 
@@ -161,9 +343,21 @@ void init_utils(JNIEnv *env, jobject upCallsInstance) {
     cachedGlobalRefs = calloc(CACHED_GLOBALREFS_INITIAL_SIZE, sizeof(GlobalRefElem));
     cachedGlobalRefsLength = CACHED_GLOBALREFS_INITIAL_SIZE;
     cachedGlobalRefsHwm = 0;
+    cachedGlobalRefsIndex = NULL;
+    cachedGlobalRefsFree = -1;
+    transientGlobalRefs = malloc(CACHED_GLOBALREFS_INITIAL_SIZE * sizeof(int));
+    transientGlobalRefsLength = CACHED_GLOBALREFS_INITIAL_SIZE;
+    transientGlobalRefsCount = 0;
     nativeArrayTable = calloc(NATIVE_ARRAY_TABLE_INITIAL_SIZE, sizeof(NativeArrayElem));
     nativeArrayTableLength = NATIVE_ARRAY_TABLE_INITIAL_SIZE;
     nativeArrayTableHwm = 0;
+    nativeArrayRefIndex = malloc(NATIVE_ARRAY_TABLE_INITIAL_SIZE * sizeof(int));
+    for (int i = 0; i < NATIVE_ARRAY_TABLE_INITIAL_SIZE; i++) {
+        nativeArrayRefIndex[i] = -1;
+    }
+    nativeArrayHashIndex = NULL;
+    SystemClass = checkFindClass(env, "java/lang/System");
+    identityHashCodeMethodID = checkGetMethodID(env, SystemClass, "identityHashCode", "(Ljava/lang/Object;)I", 1);
 
 	CharSXPWrapperClass = checkFindClass(env, "com/oracle/truffle/r/runtime/ffi/CharSXPWrapper");
 	CharSXPWrapperContentsFieldID = checkGetFieldID(env, CharSXPWrapperClass, "contents", "Ljava/lang/String;", 0);
@@ -189,6 +383,7 @@ void callEnter(JNIEnv *env, jmp_buf *jmpbuf) {
         fatalError("call stack overflow\n");
     }
     nativeArrayTableHwmStack[callDepth] = nativeArrayTableHwm;
+    transientGlobalRefsStack[callDepth] = transientGlobalRefsCount;
     callDepth++;
 }
 
@@ -197,12 +392,16 @@ jmp_buf *getErrorJmpBuf() {
     return callErrorJmpBufTable[callDepth - 1];
 }
 
+static void truncateNativeArrays(int hwm);
+
 void callExit(JNIEnv *env) {
+    flushEltBuffers(env);
     int oldHwm = nativeArrayTableHwmStack[callDepth - 1];
     for (int i = oldHwm; i < nativeArrayTableHwm; i++) {
         releaseNativeArray(env, i);
     }
-    nativeArrayTableHwm = oldHwm;
+    truncateNativeArrays(oldHwm);
+    releaseTransientGlobalRefs(env);
     callDepth--;
 }
 
@@ -233,10 +432,50 @@ void updateNativeArrays(JNIEnv *env) {
 }
 
 
-static void *findNativeArray(JNIEnv *env, SEXP x) {
+static int refBucket(SEXP x) {
+    return (int) (((uintptr_t) x >> 3) & (nativeArrayTableLength - 1));
+}
+
+// whether the entry has not been released (nor the one it refers to)
+static int isLiveNativeArray(int i) {
+    NativeArrayElem *cv = &nativeArrayTable[i];
+    return cv->obj != NULL && (cv->original < 0 || nativeArrayTable[cv->original].obj != NULL);
+}
+
+static void indexNativeArray(int i) {
+    NativeArrayElem *cv = &nativeArrayTable[i];
+    int bucket = refBucket(cv->ref);
+    cv->nextByRef = nativeArrayRefIndex[bucket];
+    nativeArrayRefIndex[bucket] = i;
+    if (cv->original < 0 && nativeArrayHashIndex != NULL) {
+        bucket = hashBucket(cv->hash, nativeArrayTableLength);
+        cv->nextByHash = nativeArrayHashIndex[bucket];
+        nativeArrayHashIndex[bucket] = i;
+    }
+}
+
+// removes the entries from hwm on, which are at the start of their chains
+static void truncateNativeArrays(int hwm) {
+    for (int i = nativeArrayTableHwm - 1; i >= hwm; i--) {
+        NativeArrayElem *cv = &nativeArrayTable[i];
+        nativeArrayRefIndex[refBucket(cv->ref)] = cv->nextByRef;
+        if (cv->original < 0 && nativeArrayHashIndex != NULL) {
+            nativeArrayHashIndex[hashBucket(cv->hash, nativeArrayTableLength)] = cv->nextByHash;
+        }
+    }
+    nativeArrayTableHwm = hwm;
+}
+
+static void addNativeArray(JNIEnv *env, SEXP x, SEXPTYPE type, void *jArray, void *data, jint hash, int original);
+
+/*
+ * Returns the data of x if it is in the table, otherwise NULL and, if the table is indexed by
+ * identity hash code, the one of x in hashPtr.
+ */
+static void *findNativeArray(JNIEnv *env, SEXP x, jint *hashPtr) {
     if (nativeArrayTableLastIndex < nativeArrayTableHwm) {
         NativeArrayElem cv = nativeArrayTable[nativeArrayTableLastIndex];
-        if (cv.obj != NULL && (cv.obj == x || fast_IsSameObject(cv.obj, x))) {
+        if (isLiveNativeArray(nativeArrayTableLastIndex) && (cv.obj == x || fast_IsSameObject(cv.obj, x))) {
             void *data = cv.data;
 #if TRACE_NATIVE_ARRAYS
             fprintf(traceFile, "findNativeArray(%p): found %p (cached)\n", x, data);
@@ -246,51 +485,109 @@ static void *findNativeArray(JNIEnv *env, SEXP x) {
     }
     int i;
     assert(isValidJNIRef(env, x));
-    for (i = 0; i < nativeArrayTableHwm; i++) {
+    for (i = nativeArrayRefIndex[refBucket(x)]; i >= 0; i = nativeArrayTable[i].nextByRef) {
         NativeArrayElem cv = nativeArrayTable[i];
-        if (cv.obj != NULL) {
+        if (cv.ref == x && isLiveNativeArray(i)) {
             assert(isValidJNIRef(env, cv.obj));
-            if (fast_IsSameObject(cv.obj, x)) {
-                nativeArrayTableLastIndex = i;
-                void *data = cv.data;
+            nativeArrayTableLastIndex = i;
+            void *data = cv.data;
 #if TRACE_NATIVE_ARRAYS
-                fprintf(traceFile, "findNativeArray(%p): found %p\n", x, data);
+            fprintf(traceFile, "findNativeArray(%p): found %p\n", x, data);
 #endif
-                return data;
+            return data;
+        }
+    }
+    // another reference to an object in the table?
+    jint hash = 0;
+    int original = -1;
+    if (nativeArrayHashIndex == NULL) {
+        for (i = 0; i < nativeArrayTableHwm; i++) {
+            NativeArrayElem cv = nativeArrayTable[i];
+            if (cv.original < 0 && cv.obj != NULL && fast_IsSameObject(cv.obj, x)) {
+                original = i;
+                break;
             }
         }
+    } else {
+        hash = identityHash(env, x);
+        for (i = nativeArrayHashIndex[hashBucket(hash, nativeArrayTableLength)]; i >= 0; i = nativeArrayTable[i].nextByHash) {
+            NativeArrayElem cv = nativeArrayTable[i];
+            if (cv.hash == hash && cv.obj != NULL && fast_IsSameObject(cv.obj, x)) {
+                original = i;
+                break;
+            }
+        }
+    }
+    if (original >= 0) {
+        NativeArrayElem cv = nativeArrayTable[original];
+        void *data = cv.data;
+#if TRACE_NATIVE_ARRAYS
+        fprintf(traceFile, "findNativeArray(%p): found %p (other reference)\n", x, data);
+#endif
+        // so that x is found by reference next time
+        addNativeArray(env, x, cv.type, cv.jArray, data, cv.hash, original);
+        nativeArrayTableLastIndex = nativeArrayTableHwm - 1;
+        return data;
     }
 #if TRACE_NATIVE_ARRAYS
     fprintf(traceFile, "findNativeArray(%p): not found\n", x);
 #endif
+    *hashPtr = hash;
     return NULL;
 }
 
-static void addNativeArray(JNIEnv *env, SEXP x, SEXPTYPE type, void *jArray, void *data) {
+static void addNativeArray(JNIEnv *env, SEXP x, SEXPTYPE type, void *jArray, void *data, jint hash, int original) {
 #if TRACE_NATIVE_ARRAYS
     fprintf(traceFile, "addNativeArray(x=%p, t=%p, ix=%d)\n", x, data, nativeArrayTableHwm);
 #endif
     // check for overflow
     if (nativeArrayTableHwm >= nativeArrayTableLength) {
+        int indexed = nativeArrayHashIndex != NULL;
         int newLength = 2 * nativeArrayTableLength;
         NativeArrayElem *newnativeArrayTable = calloc(newLength, sizeof(NativeArrayElem));
-        if (newnativeArrayTable == NULL) {
+        int *newRefIndex = malloc(newLength * sizeof(int));
+        int *newHashIndex = malloc(newLength * sizeof(int));
+        if (newnativeArrayTable == NULL || newRefIndex == NULL || newHashIndex == NULL) {
             fatalError("FFI copied vectors table expansion failure");
         }
         memcpy(newnativeArrayTable, nativeArrayTable, nativeArrayTableLength * sizeof(NativeArrayElem));
         free(nativeArrayTable);
+        free(nativeArrayRefIndex);
+        free(nativeArrayHashIndex);
         nativeArrayTable = newnativeArrayTable;
+        nativeArrayRefIndex = newRefIndex;
+        nativeArrayHashIndex = newHashIndex;
         nativeArrayTableLength = newLength;
+        // the buckets depend on the length
+        for (int i = 0; i < newLength; i++) {
+            nativeArrayRefIndex[i] = -1;
+            nativeArrayHashIndex[i] = -1;
+        }
+        for (int i = 0; i < nativeArrayTableHwm; i++) {
+            NativeArrayElem *cv = &nativeArrayTable[i];
+            if (!indexed && cv->original < 0 && cv->obj != NULL) {
+                cv->hash = identityHash(env, cv->obj);
+            }
+            indexNativeArray(i);
+        }
+        if (!indexed && original < 0) {
+            hash = identityHash(env, x);
+        }
     }
     nativeArrayTable[nativeArrayTableHwm].obj = x;
+    nativeArrayTable[nativeArrayTableHwm].ref = x;
     nativeArrayTable[nativeArrayTableHwm].data = data;
     nativeArrayTable[nativeArrayTableHwm].type = type;
     nativeArrayTable[nativeArrayTableHwm].jArray = jArray;
+    nativeArrayTable[nativeArrayTableHwm].hash = hash;
+    nativeArrayTable[nativeArrayTableHwm].original = original;
+    indexNativeArray(nativeArrayTableHwm);
     nativeArrayTableHwm++;
 }
 
 void *getNativeArray(JNIEnv *thisenv, SEXP x, SEXPTYPE type) {
-    void *data = findNativeArray(thisenv, x);
+    jint hash;
+    void *data = findNativeArray(thisenv, x, &hash);
     jboolean isCopy;
     if (data == NULL) {
         jarray jArray;
@@ -346,7 +643,7 @@ void *getNativeArray(JNIEnv *thisenv, SEXP x, SEXPTYPE type) {
             fatalError("getNativeArray: unexpected type");
 
         }
-        addNativeArray(thisenv, x, type, jArray, data);
+        addNativeArray(thisenv, x, type, jArray, data, hash, -1);
     }
     return data;
 }
@@ -356,7 +653,10 @@ static void releaseNativeArray(JNIEnv *env, int i) {
 #if TRACE_NATIVE_ARRAYS
                fprintf(traceFile, "releaseNativeArray(x=%p, ix=%d, freedata=%d)\n", cv.obj, i, freedata);
 #endif
-    if (cv.obj != NULL) {
+    if (cv.obj != NULL && cv.original >= 0) {
+        // the data belongs to the original entry
+        nativeArrayTable[i].obj = NULL;
+    } else if (cv.obj != NULL) {
         assert(isValidJNIRef(env, cv.obj));
         jboolean complete = JNI_FALSE; // pessimal
         switch (cv.type) {
@@ -419,82 +719,206 @@ static void releaseNativeArray(JNIEnv *env, int i) {
     }
 }
 
-static SEXP findCachedGlobalRef(JNIEnv *env, SEXP obj) {
+/*
+ * Returns the index of the entry of obj, or -1. If the table is indexed, the identity hash code
+ * of obj is stored in hashPtr.
+ */
+static int findCachedGlobalRef(JNIEnv *env, SEXP obj, jint *hashPtr) {
     // TODO: this assert fails in test RFFI: assert(isValidJNIRef(env, obj));
-    for (int i = 0; i < cachedGlobalRefsHwm; i++) {
-        GlobalRefElem elem = cachedGlobalRefs[i];
-        if (elem.gref == NULL) {
-            continue;
+    if (cachedGlobalRefsIndex == NULL) {
+        for (int i = 0; i < cachedGlobalRefsHwm; i++) {
+            SEXP gref = cachedGlobalRefs[i].gref;
+            if (gref != NULL && fast_IsSameObject(gref, obj)) {
+#if TRACE_REF_CACHE
+                fprintf(traceFile, "gref: cache hit: %d\n", i);
+#endif
+                return i;
+            }
         }
-        if (fast_IsSameObject(elem.gref, obj)) {
+        return -1;
+    }
+    jint hash = identityHash(env, obj);
+    *hashPtr = hash;
+    for (int i = cachedGlobalRefsIndex[hashBucket(hash, cachedGlobalRefsLength)]; i >= 0; i = cachedGlobalRefs[i].next) {
+        GlobalRefElem elem = cachedGlobalRefs[i];
+        if (elem.hash == hash && fast_IsSameObject(elem.gref, obj)) {
 #if TRACE_REF_CACHE
             fprintf(traceFile, "gref: cache hit: %d\n", i);
 #endif
-            return elem.gref;
+            return i;
         }
     }
-    return NULL;
+    return -1;
 }
 
-SEXP addGlobalRef(JNIEnv *env, SEXP obj, int permanent) {
-    SEXP gref;
-    assert(isValidJNIRef(env, obj));
-    if (cachedGlobalRefsHwm >= cachedGlobalRefsLength) {
+static void indexGlobalRef(int i) {
+    int bucket = hashBucket(cachedGlobalRefs[i].hash, cachedGlobalRefsLength);
+    cachedGlobalRefs[i].next = cachedGlobalRefsIndex[bucket];
+    cachedGlobalRefsIndex[bucket] = i;
+}
+
+static SEXP newGlobalRef(JNIEnv *env, SEXP obj, jint hash, int permanent, int generation) {
+    int indexed = cachedGlobalRefsIndex != NULL;
+    if (cachedGlobalRefsFree < 0 && cachedGlobalRefsHwm >= cachedGlobalRefsLength) {
         int newLength = cachedGlobalRefsLength * 2;
 #if TRACE_REF_CACHE
         fprintf(traceFile, "gref: extending table to %d\n", newLength);
 #endif
-        SEXP newCachedGlobalRefs = calloc(newLength, sizeof(GlobalRefElem));
-        if (newCachedGlobalRefs == NULL) {
+        GlobalRefElem *newCachedGlobalRefs = calloc(newLength, sizeof(GlobalRefElem));
+        int *newIndex = malloc(newLength * sizeof(int));
+        if (newCachedGlobalRefs == NULL || newIndex == NULL) {
             fatalError("FFI global refs table expansion failure");
         }
         memcpy(newCachedGlobalRefs, cachedGlobalRefs, cachedGlobalRefsLength * sizeof(GlobalRefElem));
         free(cachedGlobalRefs);
+        free(cachedGlobalRefsIndex);
         cachedGlobalRefs = newCachedGlobalRefs;
+        cachedGlobalRefsIndex = newIndex;
         cachedGlobalRefsLength = newLength;
+        // the buckets depend on the length, there are no free entries
+        for (int i = 0; i < newLength; i++) {
+            cachedGlobalRefsIndex[i] = -1;
+        }
+        for (int i = 0; i < cachedGlobalRefsHwm; i++) {
+            if (!indexed) {
+                cachedGlobalRefs[i].hash = identityHash(env, cachedGlobalRefs[i].gref);
+            }
+            indexGlobalRef(i);
+        }
+        if (!indexed) {
+            hash = identityHash(env, obj);
+        }
+    }
+    int index;
+    if (cachedGlobalRefsFree >= 0) {
+        index = cachedGlobalRefsFree;
+        cachedGlobalRefsFree = cachedGlobalRefs[index].next;
+    } else {
+        index = cachedGlobalRefsHwm++;
+    }
+    SEXP gref = (*env)->NewGlobalRef(env, obj);
+    cachedGlobalRefs[index].gref = gref;
+    cachedGlobalRefs[index].permanent = permanent;
+    cachedGlobalRefs[index].generation = generation;
+    if (cachedGlobalRefsIndex != NULL) {
+        cachedGlobalRefs[index].hash = hash;
+        indexGlobalRef(index);
+    }
+    if (generation > 0) {
+        if (transientGlobalRefsCount >= transientGlobalRefsLength) {
+            int newLength = transientGlobalRefsLength * 2;
+            int *newTransientGlobalRefs = realloc(transientGlobalRefs, newLength * sizeof(int));
+            if (newTransientGlobalRefs == NULL) {
+                fatalError("FFI transient global refs expansion failure");
+            }
+            transientGlobalRefs = newTransientGlobalRefs;
+            transientGlobalRefsLength = newLength;
+        }
+        transientGlobalRefs[transientGlobalRefsCount++] = index;
     }
-    gref = (*env)->NewGlobalRef(env, obj);
-    cachedGlobalRefs[cachedGlobalRefsHwm].gref = gref;
-    cachedGlobalRefs[cachedGlobalRefsHwm].permanent = permanent;
+    globalRefsCreated++;
+    globalRefsLive++;
 #if TRACE_REF_CACHE
-            fprintf(traceFile, "gref: add: index %d, ref %p\n", cachedGlobalRefsHwm, gref);
+            fprintf(traceFile, "gref: add: index %d, ref %p\n", index, gref);
 #endif
-    cachedGlobalRefsHwm++;
     return gref;
 }
 
+static void releaseGlobalRefAt(JNIEnv *env, int index) {
+    GlobalRefElem elem = cachedGlobalRefs[index];
+#if TRACE_REF_CACHE
+    fprintf(traceFile, "gref: release: index %d, gref: %p\n", index, elem.gref);
+#endif
+    if (cachedGlobalRefsIndex != NULL) {
+        int *link = &cachedGlobalRefsIndex[hashBucket(elem.hash, cachedGlobalRefsLength)];
+        while (*link != index) {
+            link = &cachedGlobalRefs[*link].next;
+        }
+        *link = elem.next;
+    }
+    (*env)->DeleteGlobalRef(env, elem.gref);
+    cachedGlobalRefs[index].gref = NULL;
+    cachedGlobalRefs[index].next = cachedGlobalRefsFree;
+    cachedGlobalRefsFree = index;
+    globalRefsReleased++;
+    globalRefsLive--;
+}
+
+/*
+ * Returns the global ref of obj, creating one if there is none. A ref that is made permanent or
+ * non-transient stays so.
+ */
+static SEXP globalRef(JNIEnv *env, SEXP obj, int permanent, int generation) {
+    assert(isValidJNIRef(env, obj));
+    jint hash = 0;
+    int index = findCachedGlobalRef(env, obj, &hash);
+    if (index < 0) {
+        return newGlobalRef(env, obj, hash, permanent, generation);
+    }
+    globalRefsReused++;
+    if (permanent) {
+        cachedGlobalRefs[index].permanent = 1;
+    }
+    if (generation == 0) {
+        cachedGlobalRefs[index].generation = 0;
+    }
+    return cachedGlobalRefs[index].gref;
+}
+
+SEXP addGlobalRef(JNIEnv *env, SEXP obj, int permanent) {
+    return globalRef(env, obj, permanent, 0);
+}
+
+SEXP addTransientGlobalRef(JNIEnv *env, SEXP obj) {
+    return globalRef(env, obj, 0, callDepth);
+}
+
 SEXP checkRef(JNIEnv *env, SEXP obj) {
-    SEXP gref = findCachedGlobalRef(env, obj);
+    if (obj == NULL) {
+        return obj;
+    }
+    jint hash;
+    int index = findCachedGlobalRef(env, obj, &hash);
+    SEXP gref = index < 0 ? NULL : cachedGlobalRefs[index].gref;
     TRACE(TARGpp, obj, gref);
     if (gref == NULL) {
         return obj;
     } else {
+        globalRefsReused++;
         return gref;
     }
 }
 
 SEXP createGlobalRef(JNIEnv *env, SEXP obj, int permanent) {
-    SEXP gref = findCachedGlobalRef(env, obj);
-    if (gref == NULL) {
-        gref = addGlobalRef(env, obj, permanent);
-    }
-    return gref;
+    return globalRef(env, obj, permanent, 0);
 }
 
 void releaseGlobalRef(JNIEnv *env, SEXP obj) {
-    for (int i = 0; i < cachedGlobalRefsHwm; i++) {
-        GlobalRefElem elem = cachedGlobalRefs[i];
-        if (elem.gref == NULL || elem.permanent) {
-            continue;
-        }
-        if (fast_IsSameObject(elem.gref, obj)) {
-#if TRACE_REF_CACHE
-            fprintf(traceFile, "gref: release: index %d, gref: %p\n", i, elem.gref);
-#endif
-            (*env)->DeleteGlobalRef(env, elem.gref);
-            cachedGlobalRefs[i].gref = NULL;
+    jint hash;
+    int index = findCachedGlobalRef(env, obj, &hash);
+    if (index >= 0 && !cachedGlobalRefs[index].permanent) {
+        releaseGlobalRefAt(env, index);
+    }
+}
+
+// releases the transient refs created by the down call that is returning
+static void releaseTransientGlobalRefs(JNIEnv *env) {
+    int start = transientGlobalRefsStack[callDepth - 1];
+    for (int k = transientGlobalRefsCount - 1; k >= start; k--) {
+        int index = transientGlobalRefs[k];
+        // unless released or made non-transient since
+        if (cachedGlobalRefs[index].gref != NULL && cachedGlobalRefs[index].generation == callDepth) {
+            releaseGlobalRefAt(env, index);
         }
     }
+    transientGlobalRefsCount = start;
+}
+
+void getGlobalRefStats(jlong *stats) {
+    stats[0] = globalRefsCreated;
+    stats[1] = globalRefsReused;
+    stats[2] = globalRefsReleased;
+    stats[3] = globalRefsLive;
 }
 
 void validateRef(JNIEnv *env, SEXP x, const char *msg) {
@@ -510,6 +934,14 @@ void validateRef(JNIEnv *env, SEXP x, const char *msg) {
 
 JNIEnv *getEnv() {
 //    fprintf(traceFile, "getEnv()=%p\n", curenv);
+    if (pendingEltsCount > 0 || stringEltsLastVector != NULL) {
+        flushEltBuffers(curenv);
+        checkEltsException(curenv);
+    }
+    return curenv;
+}
+
+JNIEnv *getEnvNoFlush() {
     return curenv;
 }
 
@@ -34,6 +34,9 @@
 #define VALIDATE_REFS 0
 
 JNIEnv *getEnv();
+// like getEnv, but does not flush the element buffers, for up calls that neither observe
+// nor change the contents of existing vectors
+JNIEnv *getEnvNoFlush();
 void setEnv(JNIEnv *env);
 
 jclass checkFindClass(JNIEnv *env, const char *name);
@@ -77,9 +80,19 @@ void invalidateNativeArray(JNIEnv *env, SEXP oldObj);
 // to copy back the arrays into their Java counterparts
 void updateNativeArrays(JNIEnv *env);
 
+// Buffered SET_STRING_ELT (type STRSXP) and SET_VECTOR_ELT (type VECSXP)
+void setElt(JNIEnv *env, SEXPTYPE type, SEXP x, R_xlen_t i, SEXP v);
+// Buffered STRING_ELT, returns NULL if the element has to be got by a STRING_ELT up call
+SEXP getStringElt(JNIEnv *env, SEXP x, R_xlen_t i);
+
 SEXP addGlobalRef(JNIEnv *env, SEXP obj, int permanent);
+// creates a JNI global ref from x (if necessary) that is released when the current down call returns
+SEXP addTransientGlobalRef(JNIEnv *env, SEXP obj);
+// stores the number of global refs created, reused, released and live in stats[0..3]
+void getGlobalRefStats(jlong *stats);
 
 void init_utils(JNIEnv *env, jobject upCallsInstance);
+void init_elt_buffers(JNIEnv *env);
 void init_rmath(JNIEnv *env);
 void init_variables(JNIEnv *env, jobjectArray initialValues);
 void init_dynload(JNIEnv *env);
@@ -136,7 +136,8 @@ SEXP FASTR_R_NamespaceRegistry() {
 CTXT FASTR_GlobalContext() {
 	JNIEnv *env = getEnv();
 	CTXT res = (*env)->CallObjectMethod(env, UpCallsRFFIObject, R_GlobalContextMethodID);
-    return addGlobalRef(env, res, 0);
+    // only valid during the current down call
+    return addTransientGlobalRef(env, res);
 }
 
 char *FASTR_R_Home() {
@@ -86,6 +86,8 @@ import com.oracle.truffle.r.nodes.builtin.base.infix.WhileBuiltin;
 import com.oracle.truffle.r.nodes.builtin.base.infix.WhileBuiltinNodeGen;
 import com.oracle.truffle.r.nodes.builtin.base.system.SystemFunction;
 import com.oracle.truffle.r.nodes.builtin.base.system.SystemFunctionNodeGen;
+import com.oracle.truffle.r.nodes.builtin.fastr.FastRCacheStats;
+import com.oracle.truffle.r.nodes.builtin.fastr.FastRCacheStatsNodeGen;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRContext;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRContextFactory;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRDebug;
@@ -120,6 +122,8 @@ import com.oracle.truffle.r.nodes.builtin.fastr.FastRTreeStats;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRTreeStatsNodeGen;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRTry;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastRTryNodeGen;
+import com.oracle.truffle.r.nodes.builtin.fastr.FastrDistKnn;
+import com.oracle.truffle.r.nodes.builtin.fastr.FastrDistKnnNodeGen;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastrDqrls;
 import com.oracle.truffle.r.nodes.builtin.fastr.FastrDqrlsNodeGen;
 import com.oracle.truffle.r.nodes.unary.UnaryNotNode;
@@ -357,11 +361,16 @@ public class BasePackage extends RBuiltinPackage {
         add(FastRContext.GetChannel.class, FastRContextFactory.GetChannelNodeGen::create);
         add(FastRContext.ChannelPoll.class, FastRContextFactory.ChannelPollNodeGen::create);
         add(FastRContext.ChannelReceive.class, FastRContextFactory.ChannelReceiveNodeGen::create);
+        add(FastRContext.ChannelReceiveBatch.class, FastRContextFactory.ChannelReceiveBatchNodeGen::create);
         add(FastRContext.ChannelSelect.class, FastRContextFactory.ChannelSelectNodeGen::create);
         add(FastRContext.ChannelSend.class, FastRContextFactory.ChannelSendNodeGen::create);
+        add(FastRContext.ChannelSendBatch.class, FastRContextFactory.ChannelSendBatchNodeGen::create);
+        add(FastRContext.Pool.class, FastRContextFactory.PoolNodeGen::create);
         add(FastRContext.Spawn.class, FastRContextFactory.SpawnNodeGen::create);
         add(FastRContext.Join.class, FastRContextFactory.JoinNodeGen::create);
         add(FastrDqrls.class, FastrDqrlsNodeGen::create);
+        add(FastrDistKnn.class, FastrDistKnnNodeGen::create);
+        add(FastRCacheStats.class, FastRCacheStatsNodeGen::create);
         add(FastRDebug.class, FastRDebugNodeGen::create);
         add(FastRIdentity.class, FastRIdentityNodeGen::create);
         add(FastRTry.class, FastRTryNodeGen::create);
@@ -642,6 +651,7 @@ public class BasePackage extends RBuiltinPackage {
         add(SysFunctions.SysUnSetEnv.class, SysFunctionsFactory.SysUnSetEnvNodeGen::create);
         add(SystemFunction.class, SystemFunctionNodeGen::create);
         add(Tabulate.class, TabulateNodeGen::create);
+        add(Tcrossprod.class, TcrossprodNodeGen::create);
         add(TempDir.class, TempDirNodeGen::create);
         add(TempFile.class, TempFileNodeGen::create);
         add(ToLowerOrUpper.ToLower.class, ToLowerOrUpperFactory.ToLowerNodeGen::create);
@@ -76,7 +76,7 @@ public abstract class Crossprod extends RBuiltinNode.Arg2 {
         return matMult.doubleMatrixMultiply(x, y, xCols, xRows, yRows, yCols, xRows, 1, 1, yRows, false);
     }
 
-    private static RDoubleVector mirror(RDoubleVector result, GetDimAttributeNode getResultDimsNode) {
+    static RDoubleVector mirror(RDoubleVector result, GetDimAttributeNode getResultDimsNode) {
         /*
          * Mirroring the result is not only good for performance, but it is also required to produce
          * the same result as GNUR.
@@ -23,6 +23,9 @@ import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.INTERNAL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -38,11 +41,13 @@ import com.oracle.truffle.api.nodes.NodeInfo;
 import com.oracle.truffle.r.nodes.attributes.SetFixedAttributeNode;
 import com.oracle.truffle.r.nodes.builtin.NodeWithArgumentCasts.Casts;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
+import com.oracle.truffle.r.runtime.FixedPattern;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
-import com.oracle.truffle.r.runtime.RegExp;
+import com.oracle.truffle.r.runtime.RegExpCache;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
+import com.oracle.truffle.r.runtime.context.RContext;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
 import com.oracle.truffle.r.runtime.data.RIntVector;
 import com.oracle.truffle.r.runtime.data.RList;
@@ -120,6 +125,50 @@ public class GrepFunctions {
         casts.arg("bounds").defaultError(RError.Message.INVALID_ARG, "bounds").mustBe((missingValue().or(nullValue()).not())).asDoubleVector();
     }
 
+    /**
+     * Vectors with at least this many elements are matched in parallel if the pattern is matched
+     * in Java, i.e., if it is fixed or not a perl pattern, in chunks of {@link #PARALLEL_CHUNK}
+     * elements.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int PARALLEL_CHUNK = 1 << 12;
+
+    /**
+     * Returns the Java pattern for the (non-perl) regular expression {@code pattern} from the
+     * context's {@link RegExpCache}.
+     */
+    protected static Pattern compilePattern(String pattern, boolean ignoreCase) {
+        return RContext.getInstance().regExpCache.getPattern(pattern, ignoreCase);
+    }
+
+    /**
+     * Calls {@code action} for the indices of all the elements of {@code vector}, on the common
+     * {@link ForkJoinPool} if the vector is long enough. The action must not access the context.
+     */
+    @TruffleBoundary
+    protected static void forEachElement(RAbstractStringVector vector, IntConsumer action) {
+        int length = vector.getLength();
+        if (length < PARALLEL_THRESHOLD || !(vector instanceof RStringVector)) {
+            for (int i = 0; i < length; i++) {
+                action.accept(i);
+            }
+        } else {
+            ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[(length + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK];
+            for (int t = 0; t < tasks.length; t++) {
+                int from = t * PARALLEL_CHUNK;
+                int to = Math.min(from + PARALLEL_CHUNK, length);
+                tasks[t] = ForkJoinPool.commonPool().submit(() -> {
+                    for (int i = from; i < to; i++) {
+                        action.accept(i);
+                    }
+                });
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+    }
+
     @NodeInfo(cost = NodeCost.NONE)
     public static class CommonCodeNode extends RBaseNode {
         @Child protected PCRERFFI.MaketablesNode maketablesNode = RFFIFactory.getRFFI().getPCRERFFI().createMaketablesNode();
@@ -205,12 +254,28 @@ public class GrepFunctions {
         }
 
         protected PCRERFFI.Result compilePerlPattern(String pattern, boolean ignoreCase) {
-            int cflags = ignoreCase ? PCRERFFI.CASELESS : 0;
-            long tables = maketablesNode.execute();
-            PCRERFFI.Result pcre = compileNode.execute(pattern, cflags, tables);
-            if (pcre.result == 0) {
-                // TODO output warning if pcre.errorMessage not NULL
-                throw error(RError.Message.INVALID_REGEXP, pattern);
+            return compilePerlPattern(pattern, ignoreCase ? PCRERFFI.CASELESS : 0);
+        }
+
+        /**
+         * Returns the compiled PCRE pattern from the context's {@link RegExpCache}, compiling it
+         * (and the character tables, once per context) if it is not there.
+         */
+        protected PCRERFFI.Result compilePerlPattern(String pattern, int cflags) {
+            RegExpCache cache = RContext.getInstance().regExpCache;
+            PCRERFFI.Result pcre = cache.getPerlPattern(pattern, cflags);
+            if (pcre == null) {
+                long tables = cache.getPerlTables();
+                if (tables == 0) {
+                    tables = maketablesNode.execute();
+                    cache.setPerlTables(tables);
+                }
+                pcre = compileNode.execute(pattern, cflags, tables);
+                if (pcre.result == 0) {
+                    // TODO output warning if pcre.errorMessage not NULL
+                    throw error(RError.Message.INVALID_REGEXP, pattern);
+                }
+                cache.putPerlPattern(pattern, cflags, pcre);
             }
             return pcre;
         }
@@ -233,9 +298,6 @@ public class GrepFunctions {
             boolean[] matches = new boolean[len];
             if (!perl) {
                 // TODO case
-                if (!fixed) {
-                    pattern = RegExp.checkPreDefinedClasses(pattern);
-                }
                 findAllMatches(matches, pattern, vector, fixed, ignoreCase);
             } else {
                 PCRERFFI.Result pcre = compilePerlPattern(pattern, ignoreCase);
@@ -300,21 +362,18 @@ public class GrepFunctions {
         }
 
         protected static void findAllMatches(boolean[] result, String pattern, RAbstractStringVector vector, boolean fixed, boolean ignoreCase) {
-            for (int i = 0; i < result.length; i++) {
+            FixedPattern fixedPattern = fixed ? new FixedPattern(pattern) : null;
+            Pattern javaPattern = fixed ? null : compilePattern(pattern, ignoreCase);
+            forEachElement(vector, i -> {
                 String text = vector.getDataAt(i);
                 if (!RRuntime.isNA(text)) {
                     if (fixed) {
-                        result[i] = text.contains(pattern);
+                        result[i] = fixedPattern.containedIn(text);
                     } else {
-                        result[i] = findMatch(pattern, text, ignoreCase);
+                        result[i] = javaPattern.matcher(text).find();
                     }
                 }
-            }
-        }
-
-        protected static boolean findMatch(String pattern, String text, boolean ignoreCase) {
-            Matcher m = Regexpr.getPatternMatcher(pattern, text, ignoreCase);
-            return m.find();
+            });
         }
     }
 
@@ -356,7 +415,7 @@ public class GrepFunctions {
                         @SuppressWarnings("unused") boolean perl,
                         @SuppressWarnings("unused") boolean fixed, @SuppressWarnings("unused") boolean useBytes, boolean invert) {
 
-            String pattern = ignoreCase ? patternPar.toLowerCase() : patternPar;
+            FixedPattern pattern = new FixedPattern(ignoreCase ? patternPar.toLowerCase() : patternPar);
 
             int[] matchIndices = new int[vector.getLength()];
             int matches = 0;
@@ -366,7 +425,7 @@ public class GrepFunctions {
                     s = s.toLowerCase();
                 }
 
-                if (s.contains(pattern) == !invert) {
+                if (pattern.containedIn(s) == !invert) {
                     // don't forget: R indices are 1-based
                     matchIndices[matches++] = i + 1;
                 }
@@ -445,99 +504,31 @@ public class GrepFunctions {
                     perl = false;
                 }
 
-                PCRERFFI.Result pcre = null;
-                if (fixed) {
-                    // TODO case
-                } else if (perl) {
-                    pcre = compilePerlPattern(pattern, ignoreCase);
-                } else {
-                    pattern = RegExp.checkPreDefinedClasses(pattern);
-                }
                 String[] result = new String[len];
-                for (int i = 0; i < len; i++) {
-                    String input = vector.getDataAt(i);
-                    if (RRuntime.isNA(input)) {
-                        result[i] = input;
-                        continue;
+                if (perl) {
+                    PCRERFFI.Result pcre = compilePerlPattern(pattern, ignoreCase);
+                    for (int i = 0; i < len; i++) {
+                        String input = vector.getDataAt(i);
+                        result[i] = RRuntime.isNA(input) ? input : perlSub(pcre, input, replacement, gsub);
                     }
-
-                    String value;
-                    if (fixed) {
-                        if (gsub) {
-                            value = input.replace(pattern, replacement);
-                        } else {
-                            int ix = input.indexOf(pattern);
-                            value = ix < 0 ? input : input.substring(0, ix) + replacement + input.substring(ix + pattern.length());
-                        }
-                    } else if (perl) {
-                        int lastEndOffset = 0;
-                        int lastEndIndex = 0;
-                        int[] ovector = new int[30];
-                        int nmatch = 0;
-                        int eflag = 0;
-                        int lastEnd = -1;
-                        int[] fromByteMapping = getFromByteMapping(input); // non-null if it's
-                                                                           // necessary
-
-                        StringBuffer sb = new StringBuffer();
-                        while (execNode.execute(pcre.result, 0, input, lastEndOffset, eflag, ovector) >= 0) {
-                            nmatch++;
-
-                            // offset == byte position
-                            // index == character position
-                            int startOffset = ovector[0];
-                            int endOffset = ovector[1];
-                            int startIndex = (fromByteMapping != null) ? fromByteMapping[startOffset] : startOffset;
-                            int endIndex = (fromByteMapping != null) ? fromByteMapping[endOffset] : endOffset;
-
-                            for (int j = lastEndIndex; j < startIndex; j++) {
-                                sb.append(input.charAt(j));
-                            }
-                            if (endOffset > lastEnd) {
-                                pcreStringAdj(sb, input, replacement, ovector, fromByteMapping);
-                                lastEnd = endOffset;
-                            }
-                            lastEndIndex = endIndex;
-                            lastEndOffset = endOffset;
-                            if (lastEndIndex >= input.length() || !gsub) {
-                                break;
-                            }
-                            if (startOffset == endOffset) {
-                                sb.append(input.charAt(lastEndIndex));
-                                if (fromByteMapping != null) {
-                                    for (int j = lastEndOffset + 1; j < fromByteMapping.length; j++) {
-                                        if (fromByteMapping[j] > 0) {
-                                            lastEndOffset = j;
-                                            lastEndIndex = fromByteMapping[lastEndOffset];
-                                            break;
-                                        }
-                                    }
-                                } else {
-                                    lastEndOffset++;
-                                    lastEndIndex++;
-                                }
-                            }
-                            eflag |= PCRERFFI.NOTBOL;
-                        }
-                        if (nmatch == 0) {
-                            value = input;
-                        } else {
-                            /* copy the tail */
-                            for (int j = lastEndIndex; j < input.length(); j++) {
-                                sb.append(input.charAt(j));
-                            }
-                            value = sb.toString();
-                        }
-                    } else {
-                        replacement = convertGroups(replacement);
-
-                        if (gsub) {
-                            value = input.replaceAll(pattern, replacement);
+                } else {
+                    // TODO case (fixed)
+                    boolean fixedMatch = fixed;
+                    FixedPattern fixedPattern = fixed ? new FixedPattern(pattern) : null;
+                    Pattern javaPattern = fixed ? null : compilePattern(pattern, ignoreCase);
+                    String javaReplacement = fixed ? replacement : convertGroups(replacement);
+                    forEachElement(vector, i -> {
+                        String input = vector.getDataAt(i);
+                        if (RRuntime.isNA(input)) {
+                            result[i] = input;
+                        } else if (fixedMatch) {
+                            result[i] = fixedPattern.replace(input, javaReplacement, gsub);
+                        } else if (gsub) {
+                            result[i] = javaPattern.matcher(input).replaceAll(javaReplacement);
                         } else {
-                            value = input.replaceFirst(pattern, replacement);
+                            result[i] = javaPattern.matcher(input).replaceFirst(javaReplacement);
                         }
-                    }
-                    result[i] = value;
+                    });
                 }
                 RStringVector ret = RDataFactory.createStringVector(result, vector.isComplete());
                 ret.copyAttributesFrom(vector);
@@ -548,6 +539,66 @@ public class GrepFunctions {
             }
         }
 
+        private String perlSub(PCRERFFI.Result pcre, String input, String replacement, boolean gsub) {
+            int lastEndOffset = 0;
+            int lastEndIndex = 0;
+            int[] ovector = new int[30];
+            int nmatch = 0;
+            int eflag = 0;
+            int lastEnd = -1;
+            int[] fromByteMapping = getFromByteMapping(input); // non-null if it's necessary
+
+            StringBuffer sb = new StringBuffer();
+            while (execNode.execute(pcre.result, 0, input, lastEndOffset, eflag, ovector) >= 0) {
+                nmatch++;
+
+                // offset == byte position
+                // index == character position
+                int startOffset = ovector[0];
+                int endOffset = ovector[1];
+                int startIndex = (fromByteMapping != null) ? fromByteMapping[startOffset] : startOffset;
+                int endIndex = (fromByteMapping != null) ? fromByteMapping[endOffset] : endOffset;
+
+                for (int j = lastEndIndex; j < startIndex; j++) {
+                    sb.append(input.charAt(j));
+                }
+                if (endOffset > lastEnd) {
+                    pcreStringAdj(sb, input, replacement, ovector, fromByteMapping);
+                    lastEnd = endOffset;
+                }
+                lastEndIndex = endIndex;
+                lastEndOffset = endOffset;
+                if (lastEndIndex >= input.length() || !gsub) {
+                    break;
+                }
+                if (startOffset == endOffset) {
+                    sb.append(input.charAt(lastEndIndex));
+                    if (fromByteMapping != null) {
+                        for (int j = lastEndOffset + 1; j < fromByteMapping.length; j++) {
+                            if (fromByteMapping[j] > 0) {
+                                lastEndOffset = j;
+                                lastEndIndex = fromByteMapping[lastEndOffset];
+                                break;
+                            }
+                        }
+                    } else {
+                        lastEndOffset++;
+                        lastEndIndex++;
+                    }
+                }
+                eflag |= PCRERFFI.NOTBOL;
+            }
+            if (nmatch == 0) {
+                return input;
+            } else {
+                /* copy the tail */
+                for (int j = lastEndIndex; j < input.length(); j++) {
+                    sb.append(input.charAt(j));
+                }
+                return sb.toString();
+            }
+        }
+
         private static final int SIMPLE_PATTERN_MAX_LENGTH = 5;
 
         private static boolean isSimpleReplacement(String pattern, @SuppressWarnings("unused") String replacement) {
@@ -789,9 +840,6 @@ public class GrepFunctions {
                 throw RInternalError.unimplemented("multi-element patterns in regexpr not implemented yet");
             }
             String pattern = patternArg.getDataAt(0);
-            if (!perl) {
-                pattern = RegExp.checkPreDefinedClasses(pattern);
-            }
             // TODO: useBytes normally depends on the value of the parameter and (if false) on
             // whether the string is ASCII
             boolean useBytes = true;
@@ -805,8 +853,9 @@ public class GrepFunctions {
                 // emtpy pattern
                 Arrays.fill(result, 1);
             } else {
+                Object compiled = compile(pattern, ignoreCase, perl, fixed);
                 for (int i = 0; i < vector.getLength(); i++) {
-                    Info res = getInfo(common, pattern, vector.getDataAt(i), ignoreCase, perl, fixed).get(0);
+                    Info res = getInfo(common, pattern, compiled, vector.getDataAt(i), ignoreCase, perl, fixed).get(0);
                     result[i] = res.index;
                     matchLength[i] = res.size;
                     if (res.hasCapture) {
@@ -851,16 +900,28 @@ public class GrepFunctions {
             return ret;
         }
 
-        protected List<Info> getInfo(CommonCodeNode common, String pattern, String text, boolean ignoreCase, boolean perl, boolean fixed) {
+        /**
+         * Returns the {@link FixedPattern} or Java {@link Pattern} for {@code pattern} to be passed
+         * to {@link #getInfo}, or {@code null} for perl patterns, which are compiled there.
+         */
+        protected static Object compile(String pattern, boolean ignoreCase, boolean perl, boolean fixed) {
+            if (fixed) {
+                return new FixedPattern(ignoreCase ? pattern.toLowerCase() : pattern);
+            } else if (perl) {
+                return null;
+            } else {
+                return compilePattern(pattern, ignoreCase);
+            }
+        }
+
+        protected List<Info> getInfo(CommonCodeNode common, String pattern, Object compiled, String text, boolean ignoreCase, boolean perl, boolean fixed) {
             List<Info> list = new ArrayList<>();
             if (fixed) {
+                FixedPattern fixedPattern = (FixedPattern) compiled;
+                String searched = ignoreCase ? text.toLowerCase() : text;
                 int index = 0;
                 while (true) {
-                    if (ignoreCase) {
-                        index = text.toLowerCase().indexOf(pattern.toLowerCase(), index);
-                    } else {
-                        index = text.indexOf(pattern, index);
-                    }
+                    index = fixedPattern.indexOf(searched, index);
                     if (index == -1) {
                         break;
                     }
@@ -902,7 +963,7 @@ public class GrepFunctions {
                     }
                 }
             } else {
-                Matcher m = getPatternMatcher(pattern, text, ignoreCase);
+                Matcher m = ((Pattern) compiled).matcher(text);
                 while (m.find()) {
                     // R starts counting at index 1
                     list.add(new Info(m.start() + 1, m.end() - m.start(), null, null, null));
@@ -914,11 +975,6 @@ public class GrepFunctions {
             list.add(new Info(-1, -1, null, null, null));
             return list;
         }
-
-        @TruffleBoundary
-        private static Matcher getPatternMatcher(String pattern, String text, boolean ignoreCase) {
-            return Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE : 0).matcher(text);
-        }
     }
 
     @ImportStatic(GrepFunctions.class)
@@ -966,7 +1022,7 @@ public class GrepFunctions {
             }
             RList ret = RDataFactory.createList(vector.getLength());
             String pattern = patternArg.getDataAt(0);
-            pattern = RegExp.checkPreDefinedClasses(pattern);
+            Object compiled = pattern.length() == 0 ? null : Regexpr.compile(pattern, ignoreCase, false, fixed);
             // TODO: useBytes normally depends on the value of the parameter and (if false) on
             // whether the string is ASCII
             for (int i = 0; i < vector.getLength(); i++) {
@@ -977,7 +1033,7 @@ public class GrepFunctions {
                     matchPos = new int[]{1};
                     matchLength = new int[]{0};
                 } else {
-                    List<Info> res = getInfo(pattern, vector.getDataAt(i), ignoreCase, fixed);
+                    List<Info> res = getInfo(compiled, vector.getDataAt(i), ignoreCase, fixed);
                     matchPos = new int[res.size()];
                     matchLength = new int[res.size()];
                     for (int j = 0; j < res.size(); j++) {
@@ -995,20 +1051,16 @@ public class GrepFunctions {
             return ret;
         }
 
-        protected List<Info> getInfo(String pattern, String text, boolean ignoreCase, boolean fixed) {
+        protected List<Info> getInfo(Object compiled, String text, boolean ignoreCase, boolean fixed) {
             List<Info> list = new ArrayList<>();
             if (fixed) {
-                int index;
-                if (ignoreCase) {
-                    index = text.toLowerCase().indexOf(pattern.toLowerCase());
-                } else {
-                    index = text.indexOf(pattern);
-                }
+                FixedPattern fixedPattern = (FixedPattern) compiled;
+                int index = fixedPattern.indexOf(ignoreCase ? text.toLowerCase() : text);
                 if (index != -1) {
-                    list.add(new Info(index + 1, pattern.length(), null, null, null));
+                    list.add(new Info(index + 1, fixedPattern.length(), null, null, null));
                 }
             } else {
-                Matcher m = getPatternMatcher(pattern, text, ignoreCase);
+                Matcher m = ((Pattern) compiled).matcher(text);
                 if (m.find()) {
                     for (int i = 0; i <= m.groupCount(); i++) {
                         list.add(new Info(m.start(i) + 1, m.end(i) - m.start(i), null, null, null));
@@ -1021,11 +1073,6 @@ public class GrepFunctions {
             list.add(new Info(-1, -1, null, null, null));
             return list;
         }
-
-        @TruffleBoundary
-        private static Matcher getPatternMatcher(String pattern, String text, boolean ignoreCase) {
-            return Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE : 0).matcher(text);
-        }
     }
 
     @ImportStatic(GrepFunctions.class)
@@ -1077,9 +1124,7 @@ public class GrepFunctions {
                 throw RInternalError.unimplemented("multi-element patterns in gregexpr not implemented yet");
             }
             String pattern = patternArg.getDataAt(0);
-            if (!perl) {
-                pattern = RegExp.checkPreDefinedClasses(pattern);
-            }
+            Object compiled = pattern.length() == 0 ? null : compile(pattern, ignoreCase, perl, fixed);
             // TODO: useBytes normally depends on the value of the parameter and (if false) on
             // whether the string is ASCII
             boolean useBytes = true;
@@ -1099,7 +1144,7 @@ public class GrepFunctions {
                         setUseBytesAttrNode.execute(res, RRuntime.LOGICAL_TRUE);
                     }
                 } else {
-                    List<Info> l = getInfo(common, pattern, vector.getDataAt(i), ignoreCase, perl, fixed);
+                    List<Info> l = getInfo(common, pattern, compiled, vector.getDataAt(i), ignoreCase, perl, fixed);
                     res = toIndexOrSizeVector(l, true);
                     setMatchLengthAttrNode.execute(res, toIndexOrSizeVector(l, false));
                     if (useBytes) {
@@ -1348,21 +1393,19 @@ public class GrepFunctions {
             // treat split = NULL as split = ""
             RAbstractStringVector split = splitArg.getLength() == 0 ? RDataFactory.createStringVectorFromScalar("") : splitArg;
             String[] splits = new String[split.getLength()];
-            long pcreTables = perl ? common.maketablesNode.execute() : 0;
             PCRERFFI.Result[] pcreSplits = perl ? new PCRERFFI.Result[splits.length] : null;
+            Object[] compiledSplits = perl ? null : new Object[splits.length];
 
             na.enable(x);
             for (int i = 0; i < splits.length; i++) {
                 String currentSplit = split.getDataAt(i);
-                splits[i] = fixed || perl ? split.getDataAt(i) : RegExp.checkPreDefinedClasses(split.getDataAt(i));
-                if (perl) {
-                    if (!currentSplit.isEmpty()) {
-                        pcreSplits[i] = common.compileNode.execute(currentSplit, 0, pcreTables);
-                        if (pcreSplits[i].result == 0) {
-                            // TODO output warning if pcre.errorMessage not NULL
-                            throw error(RError.Message.INVALID_REGEXP, currentSplit);
-                        }
+                splits[i] = currentSplit;
+                if (!currentSplit.isEmpty() && !RRuntime.isNA(currentSplit)) {
+                    if (perl) {
+                        pcreSplits[i] = common.compilePerlPattern(currentSplit, 0);
                         // TODO pcre_study for vectors > 10 ? (cf GnuR)
+                    } else {
+                        compiledSplits[i] = fixed ? new FixedPattern(currentSplit) : compilePattern(currentSplit, false);
                     }
                 }
             }
@@ -1382,7 +1425,7 @@ public class GrepFunctions {
                         if (perl) {
                             resultItem = splitPerl(data, pcreSplits[i % splits.length]);
                         } else {
-                            resultItem = splitIntl(data, currentSplit, fixed);
+                            resultItem = splitIntl(data, compiledSplits[i % splits.length], fixed);
                         }
                         if (resultItem.getLength() == 0) {
                             if (fixed) {
@@ -1413,12 +1456,13 @@ public class GrepFunctions {
             }
         }
 
-        private static RStringVector splitIntl(String input, String separator, boolean fixed) {
+        private static RStringVector splitIntl(String input, Object compiledSeparator, boolean fixed) {
             assert !RRuntime.isNA(input);
 
             if (fixed) {
+                FixedPattern separator = (FixedPattern) compiledSeparator;
                 ArrayList<String> matches = new ArrayList<>();
-                int idx = input.indexOf(separator);
+                int idx = separator.indexOf(input);
                 if (idx < 0) {
                     return RDataFactory.createStringVector(input);
                 }
@@ -1429,7 +1473,7 @@ public class GrepFunctions {
                     if (lastIdx > input.length()) {
                         break;
                     }
-                    idx = input.indexOf(separator, lastIdx);
+                    idx = separator.indexOf(input, lastIdx);
                 }
                 String m = input.substring(lastIdx);
                 if (!m.isEmpty()) {
@@ -1437,10 +1481,11 @@ public class GrepFunctions {
                 }
                 return RDataFactory.createStringVector(matches.toArray(new String[matches.size()]), false);
             } else {
-                if (input.equals(separator)) {
+                Pattern separator = (Pattern) compiledSeparator;
+                if (input.equals(separator.pattern())) {
                     return RDataFactory.createStringVector("");
                 } else {
-                    return RDataFactory.createStringVector(input.split(separator), true);
+                    return RDataFactory.createStringVector(separator.split(input), true);
                 }
             }
         }
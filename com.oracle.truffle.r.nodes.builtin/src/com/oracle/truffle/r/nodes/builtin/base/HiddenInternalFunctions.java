@@ -42,6 +42,7 @@ import com.oracle.truffle.r.nodes.function.PromiseHelperNode;
 import com.oracle.truffle.r.nodes.function.RCallNode;
 import com.oracle.truffle.r.nodes.function.call.CallRFunctionCachedNode;
 import com.oracle.truffle.r.nodes.function.call.CallRFunctionCachedNodeGen;
+import com.oracle.truffle.r.runtime.LazyDBCache;
 import com.oracle.truffle.r.runtime.RCaller;
 import com.oracle.truffle.r.runtime.RCompression;
 import com.oracle.truffle.r.runtime.RError;
@@ -208,15 +209,43 @@ public class HiddenInternalFunctions {
             }
             String dbPath = datafile.getDataAt(0);
             String packageName = new File(dbPath).getName();
-            byte[] dbData = RContext.getInstance().stateLazyDBCache.getData(dbPath);
             int dotIndex;
             if ((dotIndex = packageName.lastIndexOf('.')) > 0) {
                 packageName = packageName.substring(0, dotIndex);
             }
             int offset = key.getDataAt(0);
             int length = key.getDataAt(1);
-            int outlen = getOutlen(dbData, offset); // length of uncompressed data
-            byte[] udata = null;
+            byte[] udata = LazyDBCache.getEntry(dbPath, offset, length);
+            if (udata == null) {
+                udata = readEntry(dbPath, offset, length, compression);
+                if (udata == null) {
+                    return RNull.instance;
+                }
+                LazyDBCache.putEntry(dbPath, offset, length, udata);
+            }
+            try {
+                RSerialize.CallHook callHook = new RSerialize.CallHook() {
+                    @Override
+                    public Object eval(Object arg) {
+                        return callCache.execute(SubstituteVirtualFrame.create(frame), envhook, RCaller.create(frame, getOriginalCall()), null, new Object[]{arg}, null);
+                    }
+                };
+                String functionName = ReadVariableNode.getSlowPathEvaluationName();
+                Object result = RSerialize.unserialize(udata, callHook, packageName, functionName);
+                return result;
+            } catch (IOException ex) {
+                // unexpected
+                throw RInternalError.shouldNotReachHere(ex);
+            }
+        }
+
+        /**
+         * Reads and uncompresses the entry at {@code offset} in the (shared) database. Returns
+         * {@code null} if the compression type is unknown.
+         */
+        private byte[] readEntry(String dbPath, int offset, int length, int compression) {
+            ByteBuffer dbData = LazyDBCache.getData(dbPath);
+            byte[] udata;
             boolean rc = true;
             /*
              * compression may have value 0, 1, 2 or 3. Value 1 is gzip and the data starts at
@@ -226,50 +255,28 @@ public class HiddenInternalFunctions {
              * compression=2 and compression=3 is that type='Z' is only possible for the latter.
              */
             if (compression == 0) {
-                udata = new byte[length];
-                System.arraycopy(dbData, offset, udata, 0, length);
+                udata = LazyDBCache.getBytes(dbData, offset, length);
             } else {
+                int outlen = dbData.getInt(offset); // length of uncompressed data
                 udata = new byte[outlen];
                 if (compression == 2 || compression == 3) {
-                    RCompression.Type type = RCompression.Type.fromTypeChar(dbData[4]);
+                    RCompression.Type type = RCompression.Type.fromTypeChar(dbData.get(offset + 4));
                     if (type == null) {
                         warning(RError.Message.GENERIC, "unknown compression type");
-                        return RNull.instance;
+                        return null;
                     }
-                    byte[] data = new byte[length - 5];
-                    System.arraycopy(dbData, offset + 5, data, 0, data.length);
+                    byte[] data = LazyDBCache.getBytes(dbData, offset + 5, length - 5);
                     rc = RCompression.uncompress(type, udata, data);
                 } else {
                     // GnuR treats any other value as 1
-                    byte[] data = new byte[length - 4];
-                    System.arraycopy(dbData, offset + 4, data, 0, data.length);
+                    byte[] data = LazyDBCache.getBytes(dbData, offset + 4, length - 4);
                     rc = RCompression.uncompress(RCompression.Type.GZIP, udata, data);
                 }
             }
             if (!rc) {
                 throw error(RError.Message.LAZY_LOAD_DB_CORRUPT, dbPath);
             }
-            try {
-                RSerialize.CallHook callHook = new RSerialize.CallHook() {
-                    @Override
-                    public Object eval(Object arg) {
-                        return callCache.execute(SubstituteVirtualFrame.create(frame), envhook, RCaller.create(frame, getOriginalCall()), null, new Object[]{arg}, null);
-                    }
-                };
-                String functionName = ReadVariableNode.getSlowPathEvaluationName();
-                Object result = RSerialize.unserialize(udata, callHook, packageName, functionName);
-                return result;
-            } catch (IOException ex) {
-                // unexpected
-                throw RInternalError.shouldNotReachHere(ex);
-            }
-        }
-
-        private static int getOutlen(byte[] dbData, int offset) {
-            ByteBuffer dataLengthBuf = ByteBuffer.allocate(4);
-            dataLengthBuf.put(dbData, offset, 4);
-            dataLengthBuf.position(0);
-            return dataLengthBuf.getInt();
+            return udata;
         }
     }
 
@@ -474,7 +481,7 @@ public class HiddenInternalFunctions {
         @Specialization
         @TruffleBoundary
         protected RNull doLazyLoadDBFlush(RAbstractStringVector dbPath) {
-            RContext.getInstance().stateLazyDBCache.remove(dbPath.getDataAt(0));
+            LazyDBCache.remove(dbPath.getDataAt(0));
             return RNull.instance;
         }
     }
@@ -70,7 +70,6 @@ public abstract class MatMult extends RBuiltinNode.Arg2 {
     @Child private BinaryMapArithmeticFunctionNode add = new BinaryMapArithmeticFunctionNode(BinaryArithmetic.ADD.createOperation());
     private final boolean promoteDimNames;
 
-    private final LoopConditionProfile mainLoopProfile = LoopConditionProfile.createCountingProfile();
     private final LoopConditionProfile remainingLoopProfile = LoopConditionProfile.createCountingProfile();
 
     private final ConditionProfile notOneRow = ConditionProfile.createBinaryProfile();
@@ -146,10 +145,15 @@ public abstract class MatMult extends RBuiltinNode.Arg2 {
         }
     }
 
-    private final ConditionProfile bigProfile = ConditionProfile.createBinaryProfile();
     private final BranchProfile incompleteProfile = BranchProfile.create();
     @CompilationFinal private boolean seenLargeMatrix;
 
+    @TruffleBoundary
+    private static void multiplyLarge(double[] dataA, double[] dataB, double[] result, int aRows, int aCols, int bCols, int aRowStride, int aColStride, int bRowStride, int bColStride,
+                    boolean mirrored) {
+        MatMultKernel.multiply(dataA, dataB, result, aRows, aCols, bCols, aRowStride, aColStride, bRowStride, bColStride, mirrored);
+    }
+
     private RDoubleVector doubleMatrixMultiply(RAbstractDoubleVector a, RAbstractDoubleVector b, int aRows, int aCols, int bRows, int bCols) {
         return doubleMatrixMultiply(a, b, aRows, aCols, bRows, bCols, 1, aRows, 1, bRows, false);
     }
@@ -169,6 +173,7 @@ public abstract class MatMult extends RBuiltinNode.Arg2 {
      * @param bRowStride distance between elements in row X and X+1
      * @param bColStride distance between elements in column X and X+1
      * @param mirrored true if only the upper right triangle of the result needs to be calculated
+     *            (for large matrices, the lower one is left incomplete)
      * @return the result vector
      */
     public RDoubleVector doubleMatrixMultiply(RAbstractDoubleVector a, RAbstractDoubleVector b, int aRows, int aCols, int bRows, int bCols, int aRowStride, int aColStride, int bRowStride,
@@ -185,23 +190,7 @@ public abstract class MatMult extends RBuiltinNode.Arg2 {
             seenLargeMatrix = true;
         }
         if (seenLargeMatrix) {
-            for (int row = 0; row < aRows; row += BLOCK_SIZE) {
-                for (int col = mirrored ? row : 0; col < bCols; col += BLOCK_SIZE) {
-                    for (int k = 0; k < aCols; k += BLOCK_SIZE) {
-                        int remainingCols = Math.min(BLOCK_SIZE, bCols - col);
-                        int remainingRows = Math.min(BLOCK_SIZE, aRows - row);
-                        int remainingK = BLOCK_SIZE;
-                        if (k + BLOCK_SIZE > aCols) {
-                            remainingK = aCols - k;
-                        }
-                        if (bigProfile.profile(remainingCols == BLOCK_SIZE && remainingRows == BLOCK_SIZE && remainingK == BLOCK_SIZE)) {
-                            multiplyBlock(dataA, dataB, aRows, result, row, col, k, aRowStride, aColStride, bRowStride, bColStride, BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE, mainLoopProfile);
-                        } else {
-                            multiplyBlock(dataA, dataB, aRows, result, row, col, k, aRowStride, aColStride, bRowStride, bColStride, remainingCols, remainingRows, remainingK, remainingLoopProfile);
-                        }
-                    }
-                }
-            }
+            multiplyLarge(dataA, dataB, result, aRows, aCols, bCols, aRowStride, aColStride, bRowStride, bColStride, mirrored);
         } else {
             multiplyBlock(dataA, dataB, aRows, result, 0, 0, 0, aRowStride, aColStride, bRowStride, bColStride, bCols, aRows, aCols, remainingLoopProfile);
         }
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin.base;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Multiplication of large double matrices. The structure follows the usual GEMM design: the result
+ * is split into column blocks that are computed in parallel on the common {@link ForkJoinPool}, and
+ * each block is computed from panels of the operands that are packed ({@link #packA},
+ * {@link #packB}) into contiguous arrays sized to stay in cache. The innermost
+ * {@link #kernel} computes a {@value #MR}x{@value #NR} tile of the result in local variables.
+ *
+ * The operands are given as arrays with arbitrary row and column strides, so that transposed
+ * operands (as used by {@code crossprod} and {@code tcrossprod}) need not be copied.
+ */
+final class MatMultKernel {
+
+    private static final int MR = 4;
+    private static final int NR = 4;
+    /**
+     * Number of rows of a packed panel of the first operand, must be a multiple of {@link #MR}.
+     */
+    private static final int MC = 128;
+    /**
+     * Length of the packed panels in the shared dimension.
+     */
+    private static final int KC = 256;
+    /**
+     * Minimum number of multiply-adds for using more than one thread.
+     */
+    private static final long PARALLEL_THRESHOLD = 1L << 21;
+
+    private MatMultKernel() {
+        // no instances
+    }
+
+    /**
+     * Adds the product of the {@code m}x{@code k} matrix {@code a} and the {@code k}x{@code n}
+     * matrix {@code b} to the {@code m}x{@code n} matrix {@code c} (stored by column). Element
+     * {@code (i, p)} of {@code a} is {@code a[i * aRowStride + p * aColStride]}, and likewise for
+     * {@code b}.
+     *
+     * @param upper if {@code true}, the result is symmetric and only the upper triangle (including
+     *            the diagonal) needs to be computed, the lower one may be left incomplete
+     */
+    static void multiply(double[] a, double[] b, double[] c, int m, int k, int n, int aRowStride, int aColStride, int bRowStride, int bColStride, boolean upper) {
+        long work = (long) m * n * k;
+        int tasks = work < PARALLEL_THRESHOLD ? 1 : Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, (n + NR - 1) / NR);
+        if (tasks <= 1) {
+            multiplyColumns(a, b, c, m, k, 0, n, aRowStride, aColStride, bRowStride, bColStride, upper);
+        } else {
+            // with more blocks than threads, the uneven work of the upper triangle is balanced
+            int width = ((n + tasks - 1) / tasks + NR - 1) / NR * NR;
+            IntStream.range(0, (n + width - 1) / width).parallel().forEach(t -> {
+                int j0 = t * width;
+                multiplyColumns(a, b, c, m, k, j0, Math.min(n, j0 + width), aRowStride, aColStride, bRowStride, bColStride, upper);
+            });
+        }
+    }
+
+    private static void multiplyColumns(double[] a, double[] b, double[] c, int m, int k, int j0, int j1, int aRowStride, int aColStride, int bRowStride, int bColStride, boolean upper) {
+        int nc = j1 - j0;
+        // rows below the last column are in the lower triangle
+        int rows = upper ? Math.min(m, j1) : m;
+        double[] packedA = new double[Math.min(MC, (rows + MR - 1) / MR * MR) * Math.min(KC, k)];
+        double[] packedB = new double[(nc + NR - 1) / NR * NR * Math.min(KC, k)];
+        for (int p0 = 0; p0 < k; p0 += KC) {
+            int kc = Math.min(KC, k - p0);
+            packB(b, packedB, p0, kc, j0, nc, bRowStride, bColStride);
+            for (int i0 = 0; i0 < rows; i0 += MC) {
+                int mc = Math.min(MC, rows - i0);
+                packA(a, packedA, i0, mc, p0, kc, aRowStride, aColStride);
+                for (int jr = 0; jr < nc; jr += NR) {
+                    int nr = Math.min(NR, nc - jr);
+                    for (int ir = 0; ir < mc; ir += MR) {
+                        if (upper && i0 + ir >= j0 + jr + nr) {
+                            // this and all following tiles are below the diagonal
+                            break;
+                        }
+                        kernel(packedA, ir * kc, packedB, jr * kc, kc, c, (j0 + jr) * m + i0 + ir, m, Math.min(MR, mc - ir), nr);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs rows {@code i0 .. i0 + mc - 1} and columns {@code p0 .. p0 + kc - 1} of {@code a} into
+     * panels of {@link #MR} rows, each stored column by column and padded with zeros.
+     */
+    private static void packA(double[] a, double[] packed, int i0, int mc, int p0, int kc, int aRowStride, int aColStride) {
+        for (int ir = 0; ir < mc; ir += MR) {
+            int mr = Math.min(MR, mc - ir);
+            int dest = ir * kc;
+            for (int p = 0; p < kc; p++) {
+                int src = (i0 + ir) * aRowStride + (p0 + p) * aColStride;
+                for (int r = 0; r < mr; r++) {
+                    packed[dest + r] = a[src];
+                    src += aRowStride;
+                }
+                for (int r = mr; r < MR; r++) {
+                    packed[dest + r] = 0;
+                }
+                dest += MR;
+            }
+        }
+    }
+
+    /**
+     * Packs rows {@code p0 .. p0 + kc - 1} and columns {@code j0 .. j0 + nc - 1} of {@code b} into
+     * panels of {@link #NR} columns, each stored row by row and padded with zeros.
+     */
+    private static void packB(double[] b, double[] packed, int p0, int kc, int j0, int nc, int bRowStride, int bColStride) {
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            int dest = jr * kc;
+            for (int p = 0; p < kc; p++) {
+                int src = (p0 + p) * bRowStride + (j0 + jr) * bColStride;
+                for (int s = 0; s < nr; s++) {
+                    packed[dest + s] = b[src];
+                    src += bColStride;
+                }
+                for (int s = nr; s < NR; s++) {
+                    packed[dest + s] = 0;
+                }
+                dest += NR;
+            }
+        }
+    }
+
+    /**
+     * Adds the product of a packed panel of {@code a} and a packed panel of {@code b} to the
+     * {@code mr}x{@code nr} tile of {@code c} starting at {@code cOffset}.
+     */
+    private static void kernel(double[] a, int aOffset, double[] b, int bOffset, int kc, double[] c, int cOffset, int ldc, int mr, int nr) {
+        double c00 = 0;
+        double c10 = 0;
+        double c20 = 0;
+        double c30 = 0;
+        double c01 = 0;
+        double c11 = 0;
+        double c21 = 0;
+        double c31 = 0;
+        double c02 = 0;
+        double c12 = 0;
+        double c22 = 0;
+        double c32 = 0;
+        double c03 = 0;
+        double c13 = 0;
+        double c23 = 0;
+        double c33 = 0;
+        int ai = aOffset;
+        int bi = bOffset;
+        for (int p = 0; p < kc; p++) {
+            double a0 = a[ai];
+            double a1 = a[ai + 1];
+            double a2 = a[ai + 2];
+            double a3 = a[ai + 3];
+            double b0 = b[bi];
+            c00 += a0 * b0;
+            c10 += a1 * b0;
+            c20 += a2 * b0;
+            c30 += a3 * b0;
+            double b1 = b[bi + 1];
+            c01 += a0 * b1;
+            c11 += a1 * b1;
+            c21 += a2 * b1;
+            c31 += a3 * b1;
+            double b2 = b[bi + 2];
+            c02 += a0 * b2;
+            c12 += a1 * b2;
+            c22 += a2 * b2;
+            c32 += a3 * b2;
+            double b3 = b[bi + 3];
+            c03 += a0 * b3;
+            c13 += a1 * b3;
+            c23 += a2 * b3;
+            c33 += a3 * b3;
+            ai += MR;
+            bi += NR;
+        }
+        if (mr == MR && nr == NR) {
+            int ci = cOffset;
+            c[ci] += c00;
+            c[ci + 1] += c10;
+            c[ci + 2] += c20;
+            c[ci + 3] += c30;
+            ci += ldc;
+            c[ci] += c01;
+            c[ci + 1] += c11;
+            c[ci + 2] += c21;
+            c[ci + 3] += c31;
+            ci += ldc;
+            c[ci] += c02;
+            c[ci + 1] += c12;
+            c[ci + 2] += c22;
+            c[ci + 3] += c32;
+            ci += ldc;
+            c[ci] += c03;
+            c[ci + 1] += c13;
+            c[ci + 2] += c23;
+            c[ci + 3] += c33;
+        } else {
+            double[] tile = {c00, c10, c20, c30, c01, c11, c21, c31, c02, c12, c22, c32, c03, c13, c23, c33};
+            for (int s = 0; s < nr; s++) {
+                for (int r = 0; r < mr; r++) {
+                    c[cOffset + s * ldc + r] += tile[s * MR + r];
+                }
+            }
+        }
+    }
+}
@@ -28,9 +28,15 @@ import static com.oracle.truffle.r.runtime.RError.Message.MATCH_VECTOR_ARGS;
 import static com.oracle.truffle.r.runtime.builtins.RBehavior.PURE;
 import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.INTERNAL;
 
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
@@ -44,14 +50,26 @@ import com.oracle.truffle.r.nodes.helpers.InheritsCheckNode;
 import com.oracle.truffle.r.nodes.helpers.RFactorNodes;
 import com.oracle.truffle.r.nodes.unary.CastStringNode;
 import com.oracle.truffle.r.nodes.unary.CastStringNodeGen;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashMap;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashMapCharacter;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashMapComplex;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashMapDouble;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashMapInt;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSetCharacter;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSetComplex;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSetDouble;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSetInt;
 import com.oracle.truffle.r.runtime.RError.Message;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.RType;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
 import com.oracle.truffle.r.runtime.data.RComplex;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RDoubleVector;
 import com.oracle.truffle.r.runtime.data.RIntVector;
 import com.oracle.truffle.r.runtime.data.RNull;
+import com.oracle.truffle.r.runtime.data.RStringVector;
+import com.oracle.truffle.r.runtime.data.RVector;
 import com.oracle.truffle.r.runtime.data.closures.RClosures;
 import com.oracle.truffle.r.runtime.data.model.RAbstractComplexVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
@@ -190,6 +208,11 @@ public abstract class Match extends RBuiltinNode.Arg4 {
 
         private static final int TABLE_SIZE_FACTOR = 10;
 
+        /**
+         * Tables at least this long are remembered in {@link #lastTableIndex}.
+         */
+        private static final int CACHED_TABLE_LENGTH = 1 << 16;
+
         protected abstract Object execute(RAbstractVector x, RAbstractVector table, int noMatch);
 
         @Child private CastStringNode castString;
@@ -197,6 +220,177 @@ public abstract class Match extends RBuiltinNode.Arg4 {
         @Child private MatchInternalNode matchRecursive;
 
         private final ConditionProfile bigTableProfile = ConditionProfile.createBinaryProfile();
+        private final ConditionProfile largeProfile = ConditionProfile.createBinaryProfile();
+
+        /**
+         * The index of the last large table seen by this node, so that matching against the same
+         * table repeatedly, e.g., {@code x %in% table} in a loop, does not rebuild it every time.
+         * An entry is removed while in use, concurrent callers just build their own index.
+         */
+        private final AtomicReference<SoftReference<TableIndex>> lastTableIndex = new AtomicReference<>();
+
+        /**
+         * The index of a table, valid as long as the table is the same object and its
+         * {@link RVector#getVersion() version} has not changed, i.e., the table has not been updated
+         * in place, e.g., by native code.
+         */
+        private static final class TableIndex {
+            private final WeakReference<RAbstractVector> table;
+            private final int version;
+            /**
+             * Whether the table has been seen before, the index is only built when it is matched
+             * against a second time.
+             */
+            private boolean seen;
+            private NonRecursiveHashMap map;
+
+            TableIndex(RAbstractVector table) {
+                this.table = new WeakReference<>(table);
+                this.version = ((RVector<?>) table).getVersion();
+            }
+
+            boolean isValidFor(RAbstractVector other) {
+                return table.get() == other && version == ((RVector<?>) other).getVersion();
+            }
+        }
+
+        private TableIndex claimIndex(RAbstractVector table) {
+            SoftReference<TableIndex> ref = lastTableIndex.getAndSet(null);
+            TableIndex index = ref == null ? null : ref.get();
+            return index != null && index.isValidFor(table) ? index : new TableIndex(table);
+        }
+
+        private void releaseIndex(TableIndex index) {
+            lastTableIndex.set(new SoftReference<>(index));
+        }
+
+        private boolean isLarge(RAbstractVector x, RAbstractVector table) {
+            return largeProfile.profile(table.getLength() >= CACHED_TABLE_LENGTH || x.getLength() >= NonRecursiveHashMap.PARALLEL_THRESHOLD);
+        }
+
+        /**
+         * Stores the matches of all elements of {@code x} in {@code result}, in parallel chunks for
+         * large {@code x}.
+         *
+         * @param lookup returns the index of the match of the i-th element or -1
+         * @return whether all elements matched
+         */
+        private static boolean lookupAll(int[] result, IntUnaryOperator lookup) {
+            IntStream range = IntStream.range(0, result.length);
+            if (result.length >= NonRecursiveHashMap.PARALLEL_THRESHOLD) {
+                range = range.parallel();
+            }
+            int unmatched = range.map(i -> {
+                int index = lookup.applyAsInt(i);
+                if (index == -1) {
+                    return 1;
+                }
+                result[i] = index + 1;
+                return 0;
+            }).sum();
+            return unmatched == 0;
+        }
+
+        /**
+         * Matches large vectors, reusing the index of {@code table} if it was built by a previous
+         * call, and building and probing the index in parallel. Returns {@code null} if the caller
+         * should rather hash just the elements of {@code x}.
+         */
+        @TruffleBoundary
+        private RIntVector matchLarge(RAbstractIntVector x, RAbstractIntVector table, int nomatch) {
+            TableIndex index = table instanceof RIntVector && table.getLength() >= CACHED_TABLE_LENGTH ? claimIndex(table) : null;
+            try {
+                NonRecursiveHashMapInt hashTable;
+                if (index != null && index.seen) {
+                    if (index.map == null) {
+                        NonRecursiveHashMapInt map = new NonRecursiveHashMapInt(0);
+                        map.putFirstIndices(table);
+                        index.map = map;
+                    }
+                    hashTable = (NonRecursiveHashMapInt) index.map;
+                } else {
+                    if (index != null) {
+                        index.seen = true;
+                    }
+                    if (table.getLength() > (x.getLength() * TABLE_SIZE_FACTOR)) {
+                        return null;
+                    }
+                    hashTable = new NonRecursiveHashMapInt(0);
+                    hashTable.putFirstIndices(table);
+                }
+                int[] result = initResult(x.getLength(), nomatch);
+                boolean matchAll = lookupAll(result, i -> hashTable.get(x.getDataAt(i)));
+                return RDataFactory.createIntVector(result, setCompleteState(matchAll, nomatch));
+            } finally {
+                if (index != null) {
+                    releaseIndex(index);
+                }
+            }
+        }
+
+        @TruffleBoundary
+        private RIntVector matchLarge(RAbstractDoubleVector x, RAbstractDoubleVector table, int nomatch) {
+            TableIndex index = table instanceof RDoubleVector && table.getLength() >= CACHED_TABLE_LENGTH ? claimIndex(table) : null;
+            try {
+                NonRecursiveHashMapDouble hashTable;
+                if (index != null && index.seen) {
+                    if (index.map == null) {
+                        NonRecursiveHashMapDouble map = new NonRecursiveHashMapDouble(0);
+                        map.putFirstIndices(table);
+                        index.map = map;
+                    }
+                    hashTable = (NonRecursiveHashMapDouble) index.map;
+                } else {
+                    if (index != null) {
+                        index.seen = true;
+                    }
+                    if (table.getLength() > (x.getLength() * TABLE_SIZE_FACTOR)) {
+                        return null;
+                    }
+                    hashTable = new NonRecursiveHashMapDouble(0);
+                    hashTable.putFirstIndices(table);
+                }
+                int[] result = initResult(x.getLength(), nomatch);
+                boolean matchAll = lookupAll(result, i -> hashTable.get(x.getDataAt(i)));
+                return RDataFactory.createIntVector(result, setCompleteState(matchAll, nomatch));
+            } finally {
+                if (index != null) {
+                    releaseIndex(index);
+                }
+            }
+        }
+
+        @TruffleBoundary
+        private RIntVector matchLarge(RAbstractStringVector x, RAbstractStringVector table, int nomatch) {
+            TableIndex index = table instanceof RStringVector && table.getLength() >= CACHED_TABLE_LENGTH ? claimIndex(table) : null;
+            try {
+                NonRecursiveHashMapCharacter hashTable;
+                if (index != null && index.seen) {
+                    if (index.map == null) {
+                        NonRecursiveHashMapCharacter map = new NonRecursiveHashMapCharacter(0);
+                        map.putFirstIndices(table);
+                        index.map = map;
+                    }
+                    hashTable = (NonRecursiveHashMapCharacter) index.map;
+                } else {
+                    if (index != null) {
+                        index.seen = true;
+                    }
+                    if (table.getLength() > (x.getLength() * TABLE_SIZE_FACTOR)) {
+                        return null;
+                    }
+                    hashTable = new NonRecursiveHashMapCharacter(0);
+                    hashTable.putFirstIndices(table);
+                }
+                int[] result = initResult(x.getLength(), nomatch);
+                boolean matchAll = lookupAll(result, i -> hashTable.get(x.getDataAt(i)));
+                return RDataFactory.createIntVector(result, setCompleteState(matchAll, nomatch));
+            } finally {
+                if (index != null) {
+                    releaseIndex(index);
+                }
+            }
+        }
 
         private RAbstractStringVector castString(RAbstractVector operand) {
             if (castString == null) {
@@ -208,6 +402,12 @@ public abstract class Match extends RBuiltinNode.Arg4 {
 
         @Specialization
         protected RIntVector match(RAbstractIntVector x, RAbstractIntVector table, int nomatch) {
+            if (isLarge(x, table)) {
+                RIntVector largeResult = matchLarge(x, table, nomatch);
+                if (largeResult != null) {
+                    return largeResult;
+                }
+            }
             int[] result = initResult(x.getLength(), nomatch);
             boolean matchAll = true;
             NonRecursiveHashMapInt hashTable;
@@ -320,6 +520,12 @@ public abstract class Match extends RBuiltinNode.Arg4 {
 
         @Specialization
         protected RIntVector match(RAbstractDoubleVector x, RAbstractDoubleVector table, int nomatch) {
+            if (isLarge(x, table)) {
+                RIntVector largeResult = matchLarge(x, table, nomatch);
+                if (largeResult != null) {
+                    return largeResult;
+                }
+            }
             int[] result = initResult(x.getLength(), nomatch);
             boolean matchAll = true;
             NonRecursiveHashMapDouble hashTable;
@@ -412,6 +618,12 @@ public abstract class Match extends RBuiltinNode.Arg4 {
 
         @Specialization
         protected RIntVector match(RAbstractStringVector x, RAbstractStringVector table, int nomatch) {
+            if (isLarge(x, table)) {
+                RIntVector largeResult = matchLarge(x, table, nomatch);
+                if (largeResult != null) {
+                    return largeResult;
+                }
+            }
             int[] result = initResult(x.getLength(), nomatch);
             boolean matchAll = true;
             NonRecursiveHashMapCharacter hashTable;
@@ -568,329 +780,5 @@ public abstract class Match extends RBuiltinNode.Arg4 {
         private static boolean setCompleteState(boolean matchAll, int nomatch) {
             return nomatch != RRuntime.INT_NA || matchAll ? RDataFactory.COMPLETE_VECTOR : RDataFactory.INCOMPLETE_VECTOR;
         }
-
-        // simple implementations of non-recursive hash-maps to enable compilation
-        // TODO: consider replacing with a more efficient library implementation
-
-        private abstract static class NonRecursiveHashMap {
-
-            protected final int[] values;
-            protected int naValue;
-
-            protected NonRecursiveHashMap(int entryCount) {
-                int capacity = Math.max(entryCount * 3 / 2, 1);
-                values = new int[Integer.highestOneBit(capacity) << 1];
-            }
-
-            protected int index(int hash) {
-                // Multiply by -127
-                return ((hash << 1) - (hash << 8)) & (values.length - 1);
-            }
-        }
-
-        private static final class NonRecursiveHashMapCharacter extends NonRecursiveHashMap {
-
-            private final String[] keys;
-
-            NonRecursiveHashMapCharacter(int approxCapacity) {
-                super(approxCapacity);
-                keys = new String[values.length];
-            }
-
-            public boolean put(String key, int value) {
-                assert value >= 0;
-                if (RRuntime.isNA(key)) {
-                    boolean ret = naValue == 0;
-                    naValue = value + 1;
-                    return ret;
-                } else {
-                    int ind = index(key.hashCode());
-                    while (true) {
-                        if (values[ind] == 0) {
-                            keys[ind] = key;
-                            values[ind] = value + 1;
-                            return false;
-                        } else if (key.equals(keys[ind])) {
-                            values[ind] = value + 1;
-                            return true;
-                        } else {
-                            ind++;
-                            if (ind == values.length) {
-                                ind = 0;
-                            }
-                        }
-                    }
-                }
-            }
-
-            public int get(String key) {
-                if (RRuntime.isNA(key)) {
-                    return naValue - 1;
-                } else {
-                    int ind = index(key.hashCode());
-                    int firstInd = ind;
-                    while (true) {
-                        if (key.equals(keys[ind])) {
-                            return values[ind] - 1;
-                        } else {
-                            ind++;
-                            if (ind == values.length) {
-                                ind = 0;
-                            }
-                            if (ind == firstInd || values[ind] == 0) {
-                                return -1;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        private static final class NonRecursiveHashMapComplex extends NonRecursiveHashMap {
-
-            private final RComplex[] keys;
-
-            NonRecursiveHashMapComplex(int approxCapacity) {
-                super(approxCapacity);
-                keys = new RComplex[values.length];
-            }
-
-            public boolean put(RComplex key, int value) {
-                assert value >= 0;
-                if (RRuntime.isNA(key)) {
-                    boolean ret = naValue == 0;
-                    naValue = value + 1;
-                    return ret;
-                } else {
-                    int ind = index(key.hashCode());
-                    while (true) {
-                        if (values[ind] == 0) {
-                            keys[ind] = key;
-                            values[ind] = value + 1;
-                            return false;
-                        } else if (key.equals(keys[ind])) {
-                            values[ind] = value + 1;
-                            return true;
-                        } else {
-                            ind++;
-                            if (ind == values.length) {
-                                ind = 0;
-                            }
-                        }
-                    }
-                }
-            }
-
-            public int get(RComplex key) {
-                if (RRuntime.isNA(key)) {
-                    return naValue - 1;
-                } else {
-                    int ind = index(key.hashCode());
-                    int firstInd = ind;
-                    while (true) {
-                        if (key.equals(keys[ind])) {
-                            return values[ind] - 1;
-                        } else {
-                            ind++;
-                            if (ind == values.length) {
-                                ind = 0;
-                            }
-                            if (ind == firstInd || values[ind] == 0) {
-                                return -1;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        private static final class NonRecursiveHashMapDouble extends NonRecursiveHashMap {
-
-            private final double[] keys;
-            private int nanValue;
-
-            NonRecursiveHashMapDouble(int approxCapacity) {
-                super(approxCapacity);
-                keys = new double[values.length];
-                Arrays.fill(keys, RRuntime.DOUBLE_NA);
-            }
-
-            public boolean put(double key, int value) {
-                assert value >= 0;
-                if (RRuntime.isNA(key)) {
-                    boolean ret = naValue == 0;
-                    naValue = value + 1;
-                    return ret;
-                } else if (Double.isNaN(key)) {
-                    boolean ret = nanValue == 0;
-                    nanValue = value + 1;
-                    return ret;
-                } else {
-                    int ind = index(Double.hashCode(key));
-                    while (true) {
-                        if (values[ind] == 0) {
-                            keys[ind] = key;
-                            values[ind] = value + 1;
-                            return false;
-                        } else if (key == keys[ind]) {
-                            values[ind] = value + 1;
-                            return true;
-                        } else {
-                            ind++;
-                            if (ind == values.length) {
-                                ind = 0;
-                            }
-                        }
-                    }
-                }
-            }
-
-            public int get(double key) {
-                if (RRuntime.isNA(key)) {
-                    return naValue - 1;
-                } else if (Double.isNaN(key)) {
-                    return nanValue - 1;
-                } else {
-                    int ind = index(Double.hashCode(key));
-                    int firstInd = ind;
-                    while (true) {
-                        if (key == keys[ind]) {
-                            return values[ind] - 1;
-                        } else {
-                            ind++;
-                            if (ind == values.length) {
-                                ind = 0;
-                            }
-                            if (ind == firstInd || values[ind] == 0) {
-                                return -1;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        private static final class NonRecursiveHashMapInt extends NonRecursiveHashMap {
-
-            private final int[] keys;
-
-            NonRecursiveHashMapInt(int approxCapacity) {
-                super(approxCapacity);
-                keys = new int[values.length];
-                Arrays.fill(keys, RRuntime.INT_NA);
-            }
-
-            public boolean put(int key, int value) {
-                assert value >= 0;
-                if (RRuntime.isNA(key)) {
-                    boolean ret = naValue == 0;
-                    naValue = value + 1;
-                    return ret;
-                } else {
-                    int ind = index(Integer.hashCode(key));
-                    while (true) {
-                        if (values[ind] == 0) {
-                            keys[ind] = key;
-                            values[ind] = value + 1;
-                            return false;
-                        } else if (key == keys[ind]) {
-                            values[ind] = value + 1;
-                            return true;
-                        } else {
-                            ind++;
-                            if (ind == values.length) {
-                                ind = 0;
-                            }
-                        }
-                    }
-                }
-            }
-
-            public int get(int key) {
-                if (RRuntime.isNA(key)) {
-                    return naValue - 1;
-                } else {
-                    int ind = index(Integer.hashCode(key));
-                    int firstInd = ind;
-                    while (true) {
-                        if (key == keys[ind]) {
-                            return values[ind] - 1;
-                        } else {
-                            ind++;
-                            if (ind == values.length) {
-                                ind = 0;
-                            }
-                            if (ind == firstInd || values[ind] == 0) {
-                                return -1;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        private static class NonRecursiveHashSetInt {
-            private final NonRecursiveHashMapInt map;
-
-            NonRecursiveHashSetInt(int approxCapacity) {
-                map = new NonRecursiveHashMapInt(approxCapacity);
-            }
-
-            public boolean add(int value) {
-                return map.put(value, 1);
-            }
-
-            public boolean contains(int value) {
-                return map.get(value) == 1 ? true : false;
-            }
-        }
-
-        private static class NonRecursiveHashSetDouble {
-            private final NonRecursiveHashMapDouble map;
-
-            NonRecursiveHashSetDouble(int approxCapacity) {
-                map = new NonRecursiveHashMapDouble(approxCapacity);
-            }
-
-            public boolean add(double value) {
-                return map.put(value, 1);
-            }
-
-            public boolean contains(double value) {
-                return map.get(value) == 1 ? true : false;
-            }
-        }
-
-        private static class NonRecursiveHashSetCharacter {
-            private final NonRecursiveHashMapCharacter map;
-
-            NonRecursiveHashSetCharacter(int approxCapacity) {
-                map = new NonRecursiveHashMapCharacter(approxCapacity);
-            }
-
-            public boolean add(String value) {
-                return map.put(value, 1);
-            }
-
-            public boolean contains(String value) {
-                return map.get(value) == 1 ? true : false;
-            }
-        }
-
-        private static class NonRecursiveHashSetComplex {
-            private final NonRecursiveHashMapComplex map;
-
-            NonRecursiveHashSetComplex(int approxCapacity) {
-                map = new NonRecursiveHashMapComplex(approxCapacity);
-            }
-
-            public boolean add(RComplex value) {
-                return map.put(value, 1);
-            }
-
-            public boolean contains(RComplex value) {
-                return map.get(value) == 1 ? true : false;
-            }
-        }
     }
 }
@@ -21,6 +21,7 @@ import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.INTERNAL;
 import java.text.Collator;
 import java.text.ParseException;
 import java.text.RuleBasedCollator;
+import java.util.Comparator;
 
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
@@ -262,7 +263,13 @@ public abstract class Order extends RPrecedenceBuiltinNode {
         for (int i = 0; i < indx.length; i++) {
             indx[i] = i;
         }
-        orderVector(indx, args.getArguments(), RRuntime.fromLogical(naLast), decreasing);
+        Object[] vectors = args.getArguments();
+        long[][] keys = radixKeys(vectors, RRuntime.fromLogical(naLast), decreasing);
+        if (keys != null) {
+            RadixOrder.sort(indx, keys);
+        } else {
+            orderVector(indx, vectors, RRuntime.fromLogical(naLast), decreasing);
+        }
         for (int i = 0; i < indx.length; i++) {
             indx[i] = indx[i] + 1;
         }
@@ -270,6 +277,23 @@ public abstract class Order extends RPrecedenceBuiltinNode {
         return RDataFactory.createIntVector(indx, RDataFactory.COMPLETE_VECTOR);
     }
 
+    /**
+     * Returns the keys for sorting {@code vectors} with {@link RadixOrder}, or {@code null} if one
+     * of them is of an unsupported type (complex). As in {@link #greaterSub}, {@code decreasing}
+     * also reverses the placement of {@code NA}s.
+     */
+    @TruffleBoundary
+    private static long[][] radixKeys(Object[] vectors, boolean naLast, boolean decreasing) {
+        long[][] keys = new long[vectors.length][];
+        for (int k = 0; k < vectors.length; k++) {
+            keys[k] = RadixOrder.keys((RAbstractVector) vectors[k], decreasing, naLast != decreasing);
+            if (keys[k] == null) {
+                return null;
+            }
+        }
+        return keys;
+    }
+
     private boolean greaterSub(int i, int j, Object[] vectors, boolean naLast, boolean dec) {
         int c = -1;
         for (int k = 0; k < vectors.length; k++) {
@@ -323,118 +347,38 @@ public abstract class Order extends RPrecedenceBuiltinNode {
 
         public abstract Object execute(Object v, Object dv, byte naLast, boolean dec, Object rho);
 
+        /*
+         * The keys of the radix sort place NAs according to naLast; if naLast is NA, the NAs have
+         * already been removed from indxVec. For Rank (rho != null) there are no NAs.
+         */
+
+        @SuppressWarnings("unused")
         @Specialization
         protected Object orderVector1(RIntVector indxVec, RAbstractIntVector dv, byte naLast, boolean decreasing, Object rho) {
             if (indxVec.getLength() < 2) {
                 return indxVec;
             }
-            int[] indx = indxVec.getDataWithoutCopying();
-            int lo = 0;
-            int hi = indx.length - 1;
-            if (rho == null) {
-                int numNa = 0;
-                if (!dv.isComplete() && !RRuntime.isNA(naLast)) {
-                    boolean[] isNa = new boolean[indx.length];
-                    for (int i = 0; i < isNa.length; i++) {
-                        if (RRuntime.isNA(dv.getDataAt(i))) {
-                            isNa[i] = true;
-                            numNa++;
-                        }
-                    }
-
-                    if (numNa > 0) {
-                        if (!RRuntime.fromLogical(naLast)) {
-                            for (int i = 0; i < isNa.length; i++) {
-                                isNa[i] = !isNa[i];
-                            }
-                        }
-                        sortNA(indx, isNa, lo, hi);
-                        if (RRuntime.fromLogical(naLast)) {
-                            hi -= numNa;
-                        } else {
-                            lo += numNa;
-                        }
-                    }
-                }
-            }
-
-            sort(indx, dv, lo, hi, decreasing);
+            RadixOrder.sort(indxVec.getDataWithoutCopying(), RadixOrder.intKeys(dv, decreasing, naLast != RRuntime.LOGICAL_FALSE));
             return indxVec;
         }
 
+        @SuppressWarnings("unused")
         @Specialization
         protected Object orderVector1(RIntVector indxVec, RAbstractDoubleVector dv, byte naLast, boolean decreasing, Object rho) {
             if (indxVec.getLength() < 2) {
                 return indxVec;
             }
-            int[] indx = indxVec.getDataWithoutCopying();
-            int lo = 0;
-            int hi = indx.length - 1;
-            if (rho == null && !RRuntime.isNA(naLast)) {
-                int numNa = 0;
-                boolean[] isNa = new boolean[indx.length];
-                for (int i = 0; i < isNa.length; i++) {
-                    if (RRuntime.isNAorNaN(dv.getDataAt(i))) {
-                        isNa[i] = true;
-                        numNa++;
-                    }
-                }
-
-                if (numNa > 0) {
-                    if (!RRuntime.fromLogical(naLast)) {
-                        for (int i = 0; i < isNa.length; i++) {
-                            isNa[i] = !isNa[i];
-                        }
-                    }
-                    sortNA(indx, isNa, lo, hi);
-                    if (RRuntime.fromLogical(naLast)) {
-                        hi -= numNa;
-                    } else {
-                        lo += numNa;
-                    }
-                }
-            }
-
-            sort(indx, dv, lo, hi, decreasing);
+            RadixOrder.sort(indxVec.getDataWithoutCopying(), RadixOrder.doubleKeys(dv, decreasing, naLast != RRuntime.LOGICAL_FALSE));
             return indxVec;
         }
 
+        @SuppressWarnings("unused")
         @Specialization
         protected Object orderVector1(RIntVector indxVec, RAbstractStringVector dv, byte naLast, boolean decreasing, Object rho) {
             if (indxVec.getLength() < 2) {
                 return indxVec;
             }
-            int[] indx = indxVec.getDataWithoutCopying();
-            int lo = 0;
-            int hi = indx.length - 1;
-            if (rho == null) {
-                int numNa = 0;
-                if (!dv.isComplete() && !RRuntime.isNA(naLast)) {
-                    boolean[] isNa = new boolean[indx.length];
-                    for (int i = 0; i < isNa.length; i++) {
-                        if (RRuntime.isNA(dv.getDataAt(i))) {
-                            isNa[i] = true;
-                            numNa++;
-                        }
-                    }
-
-                    if (numNa > 0) {
-                        if (!RRuntime.fromLogical(naLast)) {
-                            for (int i = 0; i < isNa.length; i++) {
-                                isNa[i] = !isNa[i];
-                            }
-                        }
-                        sortNA(indx, isNa, lo, hi);
-                        if (RRuntime.fromLogical(naLast)) {
-                            hi -= numNa;
-                        } else {
-                            lo += numNa;
-                        }
-                    }
-                }
-            }
-
-            sort(indx, dv, lo, hi, decreasing);
+            RadixOrder.sort(indxVec.getDataWithoutCopying(), RadixOrder.stringKeys(dv, decreasing, naLast != RRuntime.LOGICAL_FALSE, createComparator()));
             return indxVec;
         }
 
@@ -484,105 +428,16 @@ public abstract class Order extends RPrecedenceBuiltinNode {
             return indxVec;
         }
 
-        private void sort(int[] indx, RAbstractDoubleVector dv, int lo, int hi, boolean dec) {
-            int t = 0;
-            for (; SINCS[t] > hi - lo + 1; t++) {
-            }
-            for (int h = SINCS[t]; t < 16; h = SINCS[++t]) {
-                for (int i = lo + h; i <= hi; i++) {
-                    int itmp = indx[i];
-                    int j = i;
-                    while (j >= lo + h) {
-                        int a = indx[j - h];
-                        int b = itmp;
-                        if (decProfile.profile(dec)) {
-                            if (!((dv.getDataAt(a)) < dv.getDataAt(b) || (dv.getDataAt(a) == dv.getDataAt(b) && a > b))) {
-                                break;
-                            }
-                        } else {
-                            if (!((dv.getDataAt(a)) > dv.getDataAt(b) || (dv.getDataAt(a) == dv.getDataAt(b) && a > b))) {
-                                break;
-                            }
-                        }
-                        indx[j] = indx[j - h];
-                        j -= h;
-                    }
-                    indx[j] = itmp;
-                }
-            }
-        }
-
-        private void sort(int[] indx, RAbstractIntVector dv, int lo, int hi, boolean dec) {
-            int t = 0;
-            for (; SINCS[t] > hi - lo + 1; t++) {
-            }
-            for (int h = SINCS[t]; t < 16; h = SINCS[++t]) {
-                for (int i = lo + h; i <= hi; i++) {
-                    int itmp = indx[i];
-                    int j = i;
-                    while (j >= lo + h) {
-                        int a = indx[j - h];
-                        int b = itmp;
-                        if (decProfile.profile(dec)) {
-                            if (!((dv.getDataAt(a)) < dv.getDataAt(b) || (dv.getDataAt(a) == dv.getDataAt(b) && a > b))) {
-                                break;
-                            }
-                        } else {
-                            if (!((dv.getDataAt(a)) > dv.getDataAt(b) || (dv.getDataAt(a) == dv.getDataAt(b) && a > b))) {
-                                break;
-                            }
-                        }
-                        indx[j] = indx[j - h];
-                        j -= h;
-                    }
-                    indx[j] = itmp;
-                }
-            }
-        }
-
-        private void sort(int[] indx, RAbstractStringVector dv, int lo, int hi, boolean dec) {
-            Collator collator = createCollator();
-            int t = 0;
-            for (; SINCS[t] > hi - lo + 1; t++) {
-            }
-            for (int h = SINCS[t]; t < 16; h = SINCS[++t]) {
-                for (int i = lo + h; i <= hi; i++) {
-                    int itmp = indx[i];
-                    int j = i;
-                    while (j >= lo + h) {
-                        int a = indx[j - h];
-                        int b = itmp;
-                        int c = compareString(collator, dv.getDataAt(a), dv.getDataAt(b));
-                        if (decProfile.profile(dec)) {
-                            if (!(c < 0 || (c == 0 && a > b))) {
-                                break;
-                            }
-                        } else {
-                            if (!(c > 0 || (c == 0 && a > b))) {
-                                break;
-                            }
-                        }
-                        indx[j] = indx[j - h];
-                        j -= h;
-                    }
-                    indx[j] = itmp;
-                }
-            }
-        }
-
-        private int compareString(Collator collator, String dataAt, String dataAt2) {
+        @TruffleBoundary
+        private Comparator<String> createComparator() {
             if (needsStringCollation) {
-                return compare(collator, dataAt, dataAt2);
+                Collator collator = createCollator();
+                return collator::compare;
             } else {
-                return dataAt.compareToIgnoreCase(dataAt2);
+                return String::compareToIgnoreCase;
             }
         }
 
-        @TruffleBoundary
-        private static int compare(Collator collator, String dataAt, String dataAt2) {
-            return collator.compare(dataAt, dataAt2);
-        }
-
         @TruffleBoundary
         private Collator createCollator() {
             if (!needsStringCollation) {
@@ -31,6 +31,7 @@ import static com.oracle.truffle.r.runtime.builtins.RBehavior.PURE;
 import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.INTERNAL;
 
 import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.profiles.BranchProfile;
@@ -43,11 +44,13 @@ import com.oracle.truffle.r.nodes.function.ClassHierarchyNode;
 import com.oracle.truffle.r.nodes.function.call.RExplicitBaseEnvCallDispatcher;
 import com.oracle.truffle.r.nodes.unary.CastNode;
 import com.oracle.truffle.r.runtime.RError.Message;
+import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
 import com.oracle.truffle.r.runtime.data.RList;
 import com.oracle.truffle.r.runtime.data.RNull;
 import com.oracle.truffle.r.runtime.data.RStringVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractIntVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractListVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
 
@@ -70,6 +73,7 @@ public abstract class Paste extends RBuiltinNode.Arg3 {
     private final BranchProfile onlyNullElementsProfile = BranchProfile.create();
     private final ConditionProfile isNotStringProfile = ConditionProfile.createBinaryProfile();
     private final ConditionProfile hasNoClassProfile = ConditionProfile.createBinaryProfile();
+    private final ConditionProfile isIntVectorProfile = ConditionProfile.createBinaryProfile();
 
     static {
         Casts casts = new Casts(Paste.class);
@@ -104,7 +108,13 @@ public abstract class Paste extends RBuiltinNode.Arg3 {
     protected RStringVector pasteListNullSep(VirtualFrame frame, RAbstractListVector values, String sep, @SuppressWarnings("unused") RNull collapse) {
         int length = lengthProfile.profile(values.getLength());
         if (hasNonNullElements(values, length)) {
-            String[] result = pasteListElements(frame, values, sep, length);
+            Object[] converted = convertListElements(frame, values, length);
+            String[] result;
+            if (length == 1 && converted[0] instanceof String[]) {
+                result = (String[]) converted[0];
+            } else {
+                result = prepareResult(sep, converted, maxLength(converted));
+            }
             return RDataFactory.createStringVector(result, RDataFactory.COMPLETE_VECTOR);
         } else {
             return RDataFactory.createEmptyStringVector();
@@ -115,8 +125,8 @@ public abstract class Paste extends RBuiltinNode.Arg3 {
     protected String pasteList(VirtualFrame frame, RAbstractListVector values, String sep, String collapse) {
         int length = lengthProfile.profile(values.getLength());
         if (hasNonNullElements(values, length)) {
-            String[] result = pasteListElements(frame, values, sep, length);
-            return collapseString(result, collapse);
+            Object[] converted = convertListElements(frame, values, length);
+            return collapseResult(sep, converted, maxLength(converted), collapse);
         } else {
             return "";
         }
@@ -133,86 +143,132 @@ public abstract class Paste extends RBuiltinNode.Arg3 {
         return false;
     }
 
-    private String[] pasteListElements(VirtualFrame frame, RAbstractListVector values, String sep, int length) {
-        String[][] converted = new String[length][];
-        int maxLength = 1;
+    /**
+     * Converts the elements to character vectors, given as {@code String[]}, except for integer
+     * vectors without a class, which are kept as they are and appended to the result element by
+     * element, so that no strings are created for them.
+     */
+    private Object[] convertListElements(VirtualFrame frame, RAbstractListVector values, int length) {
+        Object[] converted = new Object[length];
         for (int i = 0; i < length; i++) {
             Object element = values.getDataAt(i);
-            String[] array = castCharacterVector(frame, element).materialize().getDataWithoutCopying();
-            maxLength = Math.max(maxLength, array.length);
-            converted[i] = array.length == 0 ? ONE_EMPTY_STRING : array;
+            if (isIntVectorProfile.profile(element instanceof RAbstractIntVector && ((RAbstractIntVector) element).getLength() > 0 && getClassHierarchyNode().execute(element) == null)) {
+                converted[i] = element;
+            } else {
+                String[] array = castCharacterVector(frame, element).materialize().getDataWithoutCopying();
+                converted[i] = array.length == 0 ? ONE_EMPTY_STRING : array;
+            }
         }
-        if (length == 1) {
-            return converted[0];
-        } else {
-            return prepareResult(sep, length, converted, maxLength);
+        return converted;
+    }
+
+    private static int maxLength(Object[] converted) {
+        int maxLength = 1;
+        for (Object element : converted) {
+            maxLength = Math.max(maxLength, elementCount(element));
         }
+        return maxLength;
     }
 
-    private String[] prepareResult(String sep, int length, String[][] converted, int maxLength) {
+    private static int elementCount(Object converted) {
+        return converted instanceof String[] ? ((String[]) converted).length : ((RAbstractIntVector) converted).getLength();
+    }
+
+    @TruffleBoundary
+    private String[] prepareResult(String sep, Object[] converted, int maxLength) {
         String[] result = new String[maxLength];
+        StringBuilder builder = new StringBuilder();
         String lastResult = null;
+        for (int i = 0; i < maxLength; i++) {
+            // check if the next string is composed of the same elements
+            if (i > 0 && reusedResultProfile.profile(sameElements(converted, i))) {
+                result[i] = lastResult;
+                continue;
+            }
+            builder.setLength(0);
+            appendElements(builder, converted, i, sep);
+            result[i] = lastResult = builder.toString();
+        }
+        return result;
+    }
+
+    @TruffleBoundary
+    private static String collapseResult(String sep, Object[] converted, int maxLength, String collapse) {
+        // pre compute the string length for the StringBuilder
+        long stringLength = (long) (maxLength - 1) * collapse.length() + (long) maxLength * (converted.length - 1) * sep.length();
+        for (int j = 0; j < converted.length; j++) {
+            int count = elementCount(converted[j]);
+            long elementsLength = 0;
+            for (int i = 0; i < count; i++) {
+                elementsLength += elementLength(converted[j], i);
+            }
+            // elements are recycled to the length of the result
+            stringLength += elementsLength * (maxLength / count);
+            for (int i = 0; i < maxLength % count; i++) {
+                stringLength += elementLength(converted[j], i);
+            }
+        }
+        StringBuilder builder = new StringBuilder((int) Math.min(stringLength, Integer.MAX_VALUE - 8));
         for (int i = 0; i < maxLength; i++) {
             if (i > 0) {
-                // check if the next string is composed of the same elements
-                int j;
-                for (j = 0; j < length; j++) {
-                    String element = converted[j][i % converted[j].length];
-                    String lastElement = converted[j][(i - 1) % converted[j].length];
-                    if (element != lastElement) {
-                        break;
-                    }
+                builder.append(collapse);
+            }
+            appendElements(builder, converted, i, sep);
+        }
+        return builder.toString();
+    }
+
+    private static boolean sameElements(Object[] converted, int index) {
+        for (Object element : converted) {
+            if (element instanceof String[]) {
+                String[] strings = (String[]) element;
+                if (strings[index % strings.length] != strings[(index - 1) % strings.length]) {
+                    return false;
                 }
-                if (reusedResultProfile.profile(j == length)) {
-                    result[i] = lastResult;
-                    continue;
+            } else {
+                RAbstractIntVector ints = (RAbstractIntVector) element;
+                if (ints.getDataAt(index % ints.getLength()) != ints.getDataAt((index - 1) % ints.getLength())) {
+                    return false;
                 }
             }
-            result[i] = lastResult = concatStrings(converted, i, length, sep);
         }
-        return result;
+        return true;
     }
 
-    private static String concatStrings(String[][] converted, int index, int length, String sep) {
-        // pre compute the string length for the StringBuilder
-        int stringLength = -sep.length();
-        for (int j = 0; j < length; j++) {
-            String element = converted[j][index % converted[j].length];
-            stringLength += element.length() + sep.length();
-        }
-        char[] chars = new char[stringLength];
-        int pos = 0;
-        for (int j = 0; j < length; j++) {
+    private static void appendElements(StringBuilder builder, Object[] converted, int index, String sep) {
+        for (int j = 0; j < converted.length; j++) {
             if (j != 0) {
-                sep.getChars(0, sep.length(), chars, pos);
-                pos += sep.length();
+                builder.append(sep);
+            }
+            Object element = converted[j];
+            if (element instanceof String[]) {
+                String[] strings = (String[]) element;
+                builder.append(strings[index % strings.length]);
+            } else {
+                RAbstractIntVector ints = (RAbstractIntVector) element;
+                int value = ints.getDataAt(index % ints.getLength());
+                if (RRuntime.isNA(value)) {
+                    builder.append(RRuntime.STRING_NA);
+                } else {
+                    builder.append(value);
+                }
             }
-            String element = converted[j][index % converted[j].length];
-            element.getChars(0, element.length(), chars, pos);
-            pos += element.length();
         }
-        assert pos == stringLength;
-        return new String(chars);
     }
 
-    private static String collapseString(String[] value, String collapseString) {
-        int stringLength = -collapseString.length();
-        for (int i = 0; i < value.length; i++) {
-            stringLength += collapseString.length() + value[i].length();
+    private static int elementLength(Object converted, int index) {
+        if (converted instanceof String[]) {
+            return ((String[]) converted)[index].length();
         }
-        char[] chars = new char[stringLength];
-        int pos = 0;
-        for (int i = 0; i < value.length; i++) {
-            if (i > 0) {
-                collapseString.getChars(0, collapseString.length(), chars, pos);
-                pos += collapseString.length();
-            }
-            String element = value[i];
-            element.getChars(0, element.length(), chars, pos);
-            pos += element.length();
+        int value = ((RAbstractIntVector) converted).getDataAt(index);
+        if (RRuntime.isNA(value)) {
+            return RRuntime.STRING_NA.length();
+        }
+        int length = value < 0 ? 2 : 1;
+        for (int rest = Math.abs(value); rest >= 10; rest /= 10) {
+            length++;
         }
-        assert pos == stringLength;
-        return new String(chars);
+        return length;
     }
 
     private void ensureAsCharacterFuncNodes() {
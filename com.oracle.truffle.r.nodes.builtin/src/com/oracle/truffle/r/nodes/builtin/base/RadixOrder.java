@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin.base;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractIntVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractLogicalVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractRawVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
+
+/**
+ * A stable LSD radix sort shared by {@code order}, {@code sort}, {@code rank} and
+ * {@code radixsort}.
+ *
+ * Each sort key is first mapped to an array of {@code long} values (indexed by element position)
+ * that compare as unsigned numbers in the requested order, with {@code decreasing} and the
+ * placement of {@code NA}s already applied: integers are offset by their minimum, doubles use the
+ * usual IEEE bit trick, logicals are 0/1, raw values are unsigned bytes and strings are replaced by the rank of the value among
+ * the distinct values of the vector. The sort then does one counting pass per byte that actually
+ * varies between the keys, from the least significant key to the most significant one. Passes over
+ * large inputs are split between the threads of the common {@link ForkJoinPool}.
+ */
+final class RadixOrder {
+
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    private RadixOrder() {
+        // no instances
+    }
+
+    /**
+     * Whether {@code v} is {@code NA} (or {@code NaN}) at {@code i}, for the vector types supported
+     * by {@link #keys}.
+     */
+    static boolean isNA(RAbstractVector v, int i) {
+        if (v instanceof RAbstractIntVector) {
+            return RRuntime.isNA(((RAbstractIntVector) v).getDataAt(i));
+        } else if (v instanceof RAbstractDoubleVector) {
+            return RRuntime.isNAorNaN(((RAbstractDoubleVector) v).getDataAt(i));
+        } else if (v instanceof RAbstractLogicalVector) {
+            return RRuntime.isNA(((RAbstractLogicalVector) v).getDataAt(i));
+        } else if (v instanceof RAbstractRawVector) {
+            return false;
+        } else {
+            return RRuntime.isNA(((RAbstractStringVector) v).getDataAt(i));
+        }
+    }
+
+    /**
+     * Computes the keys for an integer, double, logical, raw or string vector (strings are compared
+     * with {@link String#compareTo}), or returns {@code null} for any other type.
+     */
+    @TruffleBoundary
+    static long[] keys(RAbstractVector v, boolean decreasing, boolean naLast) {
+        if (v instanceof RAbstractIntVector) {
+            return intKeys((RAbstractIntVector) v, decreasing, naLast);
+        } else if (v instanceof RAbstractDoubleVector) {
+            return doubleKeys((RAbstractDoubleVector) v, decreasing, naLast);
+        } else if (v instanceof RAbstractLogicalVector) {
+            return logicalKeys((RAbstractLogicalVector) v, decreasing, naLast);
+        } else if (v instanceof RAbstractRawVector) {
+            return rawKeys((RAbstractRawVector) v, decreasing, naLast);
+        } else if (v instanceof RAbstractStringVector) {
+            return stringKeys((RAbstractStringVector) v, decreasing, naLast, Comparator.naturalOrder());
+        }
+        return null;
+    }
+
+    @TruffleBoundary
+    static long[] intKeys(RAbstractIntVector v, boolean decreasing, boolean naLast) {
+        int n = v.getLength();
+        long[] keys = new long[n];
+        boolean[] na = null;
+        for (int i = 0; i < n; i++) {
+            int value = v.getDataAt(i);
+            if (RRuntime.isNA(value)) {
+                na = markNA(na, n, i);
+            } else {
+                keys[i] = (long) value - Integer.MIN_VALUE;
+            }
+        }
+        return finish(keys, na, decreasing, naLast);
+    }
+
+    @TruffleBoundary
+    static long[] doubleKeys(RAbstractDoubleVector v, boolean decreasing, boolean naLast) {
+        int n = v.getLength();
+        long[] keys = new long[n];
+        boolean[] na = null;
+        for (int i = 0; i < n; i++) {
+            double value = v.getDataAt(i);
+            if (RRuntime.isNAorNaN(value)) {
+                na = markNA(na, n, i);
+            } else {
+                // -0.0 and 0.0 compare equal
+                keys[i] = doubleKey(value == 0 ? 0d : value);
+            }
+        }
+        return finish(keys, na, decreasing, naLast);
+    }
+
+    @TruffleBoundary
+    static long[] logicalKeys(RAbstractLogicalVector v, boolean decreasing, boolean naLast) {
+        int n = v.getLength();
+        long[] keys = new long[n];
+        boolean[] na = null;
+        for (int i = 0; i < n; i++) {
+            byte value = v.getDataAt(i);
+            if (RRuntime.isNA(value)) {
+                na = markNA(na, n, i);
+            } else {
+                keys[i] = value;
+            }
+        }
+        return finish(keys, na, decreasing, naLast);
+    }
+
+    @TruffleBoundary
+    static long[] rawKeys(RAbstractRawVector v, boolean decreasing, boolean naLast) {
+        int n = v.getLength();
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = v.getRawDataAt(i) & 0xff;
+        }
+        return finish(keys, null, decreasing, naLast);
+    }
+
+    /**
+     * Replaces the strings by their rank among the distinct values (strings equal according to
+     * {@code comparator} get the same rank), so that each distinct value is compared only once.
+     */
+    @TruffleBoundary
+    static long[] stringKeys(RAbstractStringVector v, boolean decreasing, boolean naLast, Comparator<String> comparator) {
+        int n = v.getLength();
+        HashMap<String, Long> ranks = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            String value = v.getDataAt(i);
+            if (!RRuntime.isNA(value)) {
+                ranks.put(value, 0L);
+            }
+        }
+        String[] distinct = ranks.keySet().toArray(new String[ranks.size()]);
+        Arrays.sort(distinct, comparator);
+        long rank = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i > 0 && comparator.compare(distinct[i - 1], distinct[i]) != 0) {
+                rank++;
+            }
+            ranks.put(distinct[i], rank);
+        }
+        long[] keys = new long[n];
+        boolean[] na = null;
+        for (int i = 0; i < n; i++) {
+            String value = v.getDataAt(i);
+            if (RRuntime.isNA(value)) {
+                na = markNA(na, n, i);
+            } else {
+                keys[i] = ranks.get(value);
+            }
+        }
+        return finish(keys, na, decreasing, naLast);
+    }
+
+    private static long doubleKey(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+    }
+
+    private static boolean[] markNA(boolean[] na, int n, int i) {
+        boolean[] result = na == null ? new boolean[n] : na;
+        result[i] = true;
+        return result;
+    }
+
+    /**
+     * Applies {@code decreasing}, moves the keys into the range starting at 1 (to minimize the
+     * number of passes) and assigns the {@code NA} keys, which are either 0 or just above the
+     * largest key.
+     */
+    private static long[] finish(long[] keys, boolean[] na, boolean decreasing, boolean naLast) {
+        long min = -1L;
+        long max = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (na == null || !na[i]) {
+                long key = decreasing ? ~keys[i] : keys[i];
+                keys[i] = key;
+                if (Long.compareUnsigned(key, min) < 0) {
+                    min = key;
+                }
+                if (Long.compareUnsigned(key, max) > 0) {
+                    max = key;
+                }
+            }
+        }
+        long naKey = naLast ? max - min + 2 : 0;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = na != null && na[i] ? naKey : keys[i] - min + 1;
+        }
+        return keys;
+    }
+
+    /**
+     * Stably sorts the element positions in {@code indx} by {@code keys}, the first of which is the
+     * most significant. The keys are indexed by element position, so {@code indx} can be a subset
+     * of the positions.
+     */
+    @TruffleBoundary
+    static void sort(int[] indx, long[]... keys) {
+        int n = indx.length;
+        if (n < 2) {
+            return;
+        }
+        int[] idx = indx;
+        int[] idxTmp = new int[n];
+        long[] cur = new long[n];
+        long[] curTmp = new long[n];
+        for (int k = keys.length - 1; k >= 0; k--) {
+            long[] key = keys[k];
+            long diff = 0;
+            long first = key[idx[0]];
+            for (int i = 0; i < n; i++) {
+                long value = key[idx[i]];
+                cur[i] = value;
+                diff |= value ^ first;
+            }
+            for (int shift = 0; shift < 64; shift += 8) {
+                if (((diff >>> shift) & 0xFF) == 0) {
+                    // this byte is the same in all keys
+                    continue;
+                }
+                if (n >= PARALLEL_THRESHOLD) {
+                    parallelPass(idx, cur, idxTmp, curTmp, shift);
+                } else {
+                    pass(idx, cur, idxTmp, curTmp, shift);
+                }
+                int[] t = idx;
+                idx = idxTmp;
+                idxTmp = t;
+                long[] c = cur;
+                cur = curTmp;
+                curTmp = c;
+            }
+        }
+        if (idx != indx) {
+            System.arraycopy(idx, 0, indx, 0, n);
+        }
+    }
+
+    private static void pass(int[] idx, long[] cur, int[] idxDst, long[] curDst, int shift) {
+        int[] offsets = new int[257];
+        for (int i = 0; i < cur.length; i++) {
+            offsets[(int) ((cur[i] >>> shift) & 0xFF) + 1]++;
+        }
+        for (int d = 0; d < 256; d++) {
+            offsets[d + 1] += offsets[d];
+        }
+        for (int i = 0; i < cur.length; i++) {
+            int pos = offsets[(int) ((cur[i] >>> shift) & 0xFF)]++;
+            idxDst[pos] = idx[i];
+            curDst[pos] = cur[i];
+        }
+    }
+
+    /**
+     * Like {@link #pass}, but with the input split in chunks, each of which is counted and
+     * scattered by a different thread. The chunks are scattered to disjoint, ordered ranges of each
+     * digit's bucket, which keeps the pass stable.
+     */
+    private static void parallelPass(int[] idx, long[] cur, int[] idxDst, long[] curDst, int shift) {
+        int n = cur.length;
+        int chunks = ForkJoinPool.getCommonPoolParallelism() + 1;
+        int chunkSize = (n + chunks - 1) / chunks;
+        int[][] offsets = new int[chunks][256];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] counts = offsets[c];
+            int end = Math.min(n, (c + 1) * chunkSize);
+            for (int i = c * chunkSize; i < end; i++) {
+                counts[(int) ((cur[i] >>> shift) & 0xFF)]++;
+            }
+        });
+        int pos = 0;
+        for (int d = 0; d < 256; d++) {
+            for (int c = 0; c < chunks; c++) {
+                int count = offsets[c][d];
+                offsets[c][d] = pos;
+                pos += count;
+            }
+        }
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] positions = offsets[c];
+            int end = Math.min(n, (c + 1) * chunkSize);
+            for (int i = c * chunkSize; i < end; i++) {
+                int p = positions[(int) ((cur[i] >>> shift) & 0xFF)]++;
+                idxDst[p] = idx[i];
+                curDst[p] = cur[i];
+            }
+        });
+    }
+
+    /**
+     * Sorts the values in {@code data} (which must not contain {@code NA}s).
+     */
+    @TruffleBoundary
+    static void sortValues(int[] data, boolean decreasing) {
+        long[] keys = new long[data.length];
+        for (int i = 0; i < data.length; i++) {
+            keys[i] = (long) data[i] - Integer.MIN_VALUE;
+        }
+        int[] indx = sortIdentity(keys, decreasing);
+        int[] copy = data.clone();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = copy[indx[i]];
+        }
+    }
+
+    /**
+     * Sorts the values in {@code data} (which must not contain {@code NA}s or {@code NaN}s), with
+     * -0.0 before 0.0.
+     */
+    @TruffleBoundary
+    static void sortValues(double[] data, boolean decreasing) {
+        long[] keys = new long[data.length];
+        for (int i = 0; i < data.length; i++) {
+            keys[i] = doubleKey(data[i]);
+        }
+        int[] indx = sortIdentity(keys, decreasing);
+        double[] copy = data.clone();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = copy[indx[i]];
+        }
+    }
+
+    private static int[] sortIdentity(long[] keys, boolean decreasing) {
+        int[] indx = new int[keys.length];
+        for (int i = 0; i < indx.length; i++) {
+            indx[i] = i;
+        }
+        sort(indx, finish(keys, null, decreasing, true));
+        return indx;
+    }
+}
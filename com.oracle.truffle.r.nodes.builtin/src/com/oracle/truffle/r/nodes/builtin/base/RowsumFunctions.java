@@ -29,6 +29,9 @@ import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.profiles.ConditionProfile;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashMapCharacter;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashMapDouble;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashMapInt;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
@@ -74,16 +77,7 @@ public class RowsumFunctions {
             int p = xv.isMatrix() ? xv.getDimensions()[1] : 1;
             int n = g.getLength();
             int ng = uniqueg.getLength();
-            HashMap<Object, Integer> table = new HashMap<>();
-            for (int i = 0; i < ng; i++) {
-                // uniqueg has no duplicates (by definition)
-                table.put(uniqueg.getDataAtAsObject(i), i);
-            }
-            int[] matches = new int[n];
-            for (int i = 0; i < n; i++) {
-                Integer hi = table.get(g.getDataAtAsObject(i));
-                matches[i] = xv == null ? 0 : hi + 1;
-            }
+            int[] matches = matchGroups(g, uniqueg);
             int offset = 0;
             int offsetg = 0;
 
@@ -146,5 +140,56 @@ public class RowsumFunctions {
             result.setDimNames(dimNames);
             return result;
         }
+
+        /**
+         * Returns the (one-based) index in {@code uniqueg} of each element of {@code g}.
+         */
+        private static int[] matchGroups(RAbstractVector g, RAbstractVector uniqueg) {
+            int n = g.getLength();
+            int ng = uniqueg.getLength();
+            int[] matches = new int[n];
+            // uniqueg has no duplicates (by definition)
+            if (g instanceof RAbstractIntVector && uniqueg instanceof RAbstractIntVector) {
+                RAbstractIntVector gi = (RAbstractIntVector) g;
+                RAbstractIntVector ugi = (RAbstractIntVector) uniqueg;
+                NonRecursiveHashMapInt table = new NonRecursiveHashMapInt(ng);
+                for (int i = 0; i < ng; i++) {
+                    table.put(ugi.getDataAt(i), i);
+                }
+                for (int i = 0; i < n; i++) {
+                    matches[i] = table.get(gi.getDataAt(i)) + 1;
+                }
+            } else if (g instanceof RAbstractDoubleVector && uniqueg instanceof RAbstractDoubleVector) {
+                RAbstractDoubleVector gd = (RAbstractDoubleVector) g;
+                RAbstractDoubleVector ugd = (RAbstractDoubleVector) uniqueg;
+                NonRecursiveHashMapDouble table = new NonRecursiveHashMapDouble(ng);
+                for (int i = 0; i < ng; i++) {
+                    table.put(ugd.getDataAt(i), i);
+                }
+                for (int i = 0; i < n; i++) {
+                    matches[i] = table.get(gd.getDataAt(i)) + 1;
+                }
+            } else if (g instanceof RAbstractStringVector && uniqueg instanceof RAbstractStringVector) {
+                RAbstractStringVector gs = (RAbstractStringVector) g;
+                RAbstractStringVector ugs = (RAbstractStringVector) uniqueg;
+                NonRecursiveHashMapCharacter table = new NonRecursiveHashMapCharacter(ng);
+                for (int i = 0; i < ng; i++) {
+                    table.put(ugs.getDataAt(i), i);
+                }
+                for (int i = 0; i < n; i++) {
+                    matches[i] = table.get(gs.getDataAt(i)) + 1;
+                }
+            } else {
+                // other (or mixed) group types are rare
+                HashMap<Object, Integer> table = new HashMap<>();
+                for (int i = 0; i < ng; i++) {
+                    table.put(uniqueg.getDataAtAsObject(i), i);
+                }
+                for (int i = 0; i < n; i++) {
+                    matches[i] = table.get(g.getDataAtAsObject(i)) + 1;
+                }
+            }
+            return matches;
+        }
     }
 }
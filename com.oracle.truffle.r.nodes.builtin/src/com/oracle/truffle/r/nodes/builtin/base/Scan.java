@@ -28,8 +28,6 @@ import static com.oracle.truffle.r.runtime.builtins.RBehavior.IO;
 import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.INTERNAL;
 
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.regex.Pattern;
 
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
@@ -42,28 +40,27 @@ import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RError.Message;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.RType;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
+import com.oracle.truffle.r.runtime.conn.DelimitedTextReader;
 import com.oracle.truffle.r.runtime.conn.RConnection;
 import com.oracle.truffle.r.runtime.conn.StdConnections;
-import com.oracle.truffle.r.runtime.data.RComplex;
+import com.oracle.truffle.r.runtime.conn.TextColumn;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
 import com.oracle.truffle.r.runtime.data.RFunction;
 import com.oracle.truffle.r.runtime.data.RList;
 import com.oracle.truffle.r.runtime.data.RNull;
-import com.oracle.truffle.r.runtime.data.RVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractLogicalVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
-import com.oracle.truffle.r.runtime.ops.na.NACheck;
 
 @RBuiltin(name = "scan", kind = INTERNAL, parameterNames = {"file", "what", "nmax", "sep", "dec", "quote", "skip", "nlines", "na.strings", "flush", "fill", "strip.white", "quiet", "blank.lines.skip",
                 "multi.line", "comment.char", "allowEscapes", "encoding", "skipNull"}, behavior = IO)
 public abstract class Scan extends RBuiltinNode.Arg19 {
 
     private static final int SCAN_BLOCKSIZE = 1000;
-    private static final int NO_COMCHAR = 100000; /* won't occur even in Unicode */
+    private static final int NO_COMCHAR = DelimitedTextReader.NO_COMMENT_CHAR; /* won't occur even in Unicode */
 
-    private final NACheck naCheck = NACheck.create();
     @Child private GetNamesAttributeNode getNames = GetNamesAttributeNode.create();
 
     @Child private CastToVectorNode castVector;
@@ -81,7 +78,6 @@ public abstract class Scan extends RBuiltinNode.Arg19 {
         RAbstractStringVector naStrings = null;
         boolean quiet = false;
         String sepchar = null;
-        String sepregex = null;
         char decchar = '.';
         String quoteset = null;
         int comchar = NO_COMCHAR;
@@ -153,7 +149,6 @@ public abstract class Scan extends RBuiltinNode.Arg19 {
 
         // TODO: some sort of character translation happens here?
         data.sepchar = sep.isEmpty() ? null : sep.substring(0, 1);
-        data.sepregex = sep.isEmpty() ? null : Pattern.quote(sep.substring(0, 1));
 
         // TODO: some sort of character translation happens here?
         data.decchar = dec.charAt(0);
@@ -202,121 +197,12 @@ public abstract class Scan extends RBuiltinNode.Arg19 {
         }
     }
 
-    private static int getFirstQuoteInd(String str, char sepChar) {
-        int quoteInd = str.indexOf(sepChar);
-        if (quoteInd >= 0) {
-            if (quoteInd == 0 || str.charAt(quoteInd - 1) == ' ' || str.charAt(quoteInd - 1) == '\t') {
-                // it's a quote character if it starts the string or is preceded by a blank space
-                return quoteInd;
-            }
-        }
-        return -1;
+    private static DelimitedTextReader createReader(LocalData data, boolean readAll, boolean stripWhite) {
+        char sep = data.sepchar == null ? 0 : data.sepchar.charAt(0);
+        return new DelimitedTextReader(data.con, readAll, data.skipNull, sep, data.quoteset, data.comchar, stripWhite);
     }
 
-    private static String[] getQuotedItems(LocalData data, String s) {
-        LinkedList<String> items = new LinkedList<>();
-
-        String str = s;
-        StringBuilder sb = null;
-
-        while (true) {
-            int sepInd;
-            if (data.sepchar == null) {
-                int blInd = str.indexOf(' ');
-                int tabInd = str.indexOf('\t');
-                if (blInd == -1) {
-                    sepInd = tabInd;
-                } else if (tabInd == -1) {
-                    sepInd = blInd;
-                } else {
-                    sepInd = Math.min(blInd, tabInd);
-                }
-            } else {
-                assert data.sepchar.length() == 1;
-                sepInd = str.indexOf(data.sepchar.charAt(0));
-            }
-
-            int quoteInd = getFirstQuoteInd(str, data.quoteset.charAt(0));
-            char quoteChar = data.quoteset.charAt(0);
-            for (int i = 1; i < data.quoteset.length(); i++) {
-                int ind = getFirstQuoteInd(str, data.quoteset.charAt(i));
-                if (ind >= 0 && (quoteInd == -1 || (quoteInd >= 0 && ind < quoteInd))) {
-                    // update quoteInd if either the new index is smaller or the previous one (for
-                    // another separator) was not found
-                    quoteInd = ind;
-                    quoteChar = data.quoteset.charAt(i);
-                }
-            }
-
-            if (sb == null) {
-                // first iteration
-                if (quoteInd == -1) {
-                    // no quotes at all
-                    return data.sepregex == null ? s.split("\\s+") : s.split(data.sepregex);
-                } else {
-                    sb = new StringBuilder();
-                }
-            }
-
-            if (sepInd == -1 && quoteInd == -1) {
-                // no more separators and no more quotes - add the last item and return
-                sb.append(str);
-                items.add(sb.toString());
-                break;
-            }
-
-            if (quoteInd >= 0 && (sepInd == -1 || (sepInd >= 0 && quoteInd < sepInd))) {
-                // quote character was found before the separator character - everything from the
-                // beginning of str up to the end of quote becomes part of this item
-                sb.append(str.substring(0, quoteInd));
-                int nextQuoteInd = str.indexOf(quoteChar, quoteInd + 1);
-                sb.append(str.substring(quoteInd + 1, nextQuoteInd));
-                str = str.substring(nextQuoteInd + 1, str.length());
-            } else {
-                assert sepInd >= 0;
-                // everything from the beginning of str becomes part of this time and item
-                // processing is completed (also eat up separators)
-                String[] tuple = data.sepregex == null ? str.split("\\s+", 2) : str.split(data.sepregex, 2);
-                assert tuple.length == 2;
-                sb.append(tuple[0]);
-                str = tuple[1];
-                items.add(sb.toString());
-                sb = new StringBuilder();
-            }
-        }
-
-        return items.toArray(new String[items.size()]);
-    }
-
-    private static String[] getItems(LocalData data, boolean blSkip) throws IOException {
-        while (true) {
-            String[] str = data.con.readLines(1, true, false);
-            if (str == null || str.length == 0) {
-                return null;
-            } else {
-                String s = str[0].trim();
-                if (blSkip && s.length() == 0) {
-                    continue;
-                } else {
-                    if (data.quoteset.length() == 0) {
-                        return data.sepregex == null ? s.split("\\s+") : s.split(data.sepregex);
-                    } else {
-                        return getQuotedItems(data, s);
-                    }
-                }
-            }
-        }
-    }
-
-    private void fillEmpty(int from, int to, int records, RList list, LocalData data) {
-        for (int i = from; i < to; i++) {
-            RVector<?> vec = (RVector<?>) list.getDataAt(i);
-            vec.updateDataAtAsObject(records, extractItem(vec, "", data), naCheck);
-        }
-    }
-
-    private RVector<?> scanFrame(RList what, int maxRecords, int maxLines, boolean flush, boolean fill, @SuppressWarnings("unused") boolean stripWhite, boolean blSkip, boolean multiLine,
-                    LocalData data)
+    private RList scanFrame(RList what, int maxRecords, int maxLines, boolean flush, boolean fill, boolean stripWhite, boolean blSkip, boolean multiLine, LocalData data)
                     throws IOException {
 
         int nc = what.getLength();
@@ -325,72 +211,61 @@ public abstract class Scan extends RBuiltinNode.Arg19 {
         }
         int blockSize = maxRecords > 0 ? maxRecords : (maxLines > 0 ? maxLines : SCAN_BLOCKSIZE);
 
-        RList list = RDataFactory.createList(nc);
+        TextColumn[] columns = new TextColumn[nc];
         for (int i = 0; i < nc; i++) {
             if (what.getDataAt(i) == RNull.instance) {
                 throw error(RError.Message.INVALID_ARGUMENT, "what");
             } else {
                 RAbstractVector vec = castVector(what.getDataAt(i));
-                list.updateDataAt(i, vec.createEmptySameType(blockSize, RDataFactory.COMPLETE_VECTOR), null);
+                columns[i] = createColumn(vec, blockSize, data);
             }
         }
-        list.setNames(getNames.getNames(what));
 
-        naCheck.enable(true);
+        DelimitedTextReader reader = createReader(data, maxRecords == 0 && maxLines == 0, stripWhite);
+        int records = scanFrameInternal(reader, maxRecords, maxLines, flush, fill, blSkip, multiLine, columns);
+
+        if (!data.quiet) {
+            String s = String.format("Read %d record%s", records, (records == 1) ? "" : "s");
+            StdConnections.getStdout().writeString(s, true);
+        }
+        Object[] vectors = new Object[nc];
+        for (int i = 0; i < nc; i++) {
+            vectors[i] = columns[i].toVector();
+        }
+        return RDataFactory.createList(vectors, getNames.getNames(what));
+    }
 
-        return scanFrameInternal(maxRecords, maxLines, flush, fill, blSkip, multiLine, data, nc, blockSize, list);
+    private static TextColumn createColumn(RAbstractVector what, int blockSize, LocalData data) {
+        RType type = what.getRType();
+        switch (type) {
+            case Logical:
+            case Integer:
+            case Double:
+            case Complex:
+            case Character:
+            case Raw:
+                return new TextColumn(type, data.naStrings, blockSize);
+            default:
+                throw RInternalError.shouldNotReachHere();
+        }
     }
 
     @TruffleBoundary
-    private RVector<?> scanFrameInternal(int maxRecords, int maxLines, boolean flush, boolean fill, boolean blSkip, boolean multiLine, LocalData data, int nc, int initialBlockSize, RList list)
+    private int scanFrameInternal(DelimitedTextReader reader, int maxRecords, int maxLines, boolean flush, boolean fill, boolean blSkip, boolean multiLine, TextColumn[] columns)
                     throws IOException {
-        int blockSize = initialBlockSize;
+        int nc = columns.length;
         int n = 0;
         int lines = 0;
         int records = 0;
         while (true) {
-            // TODO: does not do any fancy stuff, like handling comments
-            String[] strItems = getItems(data, blSkip);
+            String[] strItems = reader.readRecord(blSkip);
             if (strItems == null) {
                 break;
             }
 
             boolean done = false;
-            for (int i = 0; i < Math.max(nc, strItems.length); i++) {
-
-                if (n == strItems.length) {
-                    if (fill) {
-                        fillEmpty(n, nc, records, list, data);
-                        records++;
-                        n = 0;
-                        break;
-                    } else if (!multiLine) {
-                        throw error(RError.Message.LINE_ELEMENTS, lines + 1, nc);
-                    } else {
-                        strItems = getItems(data, blSkip);
-                        // Checkstyle: stop modified control variable check
-                        i = 0;
-                        // Checkstyle: resume modified control variable check
-                        if (strItems == null) {
-                            done = true;
-                            break;
-                        }
-                    }
-                }
-                Object item = extractItem((RAbstractVector) list.getDataAt(n), strItems[i], data);
-
-                if (records == blockSize) {
-                    // enlarge the vector
-                    blockSize = blockSize * 2;
-                    for (int j = 0; j < nc; j++) {
-                        RVector<?> vec = (RVector<?>) list.getDataAt(j);
-                        vec = vec.copyResized(blockSize, false);
-                        list.updateDataAt(j, vec, null);
-                    }
-                }
-
-                RVector<?> vec = (RVector<?>) list.getDataAt(n);
-                vec.updateDataAtAsObject(records, item, naCheck);
+            for (int i = 0; i < strItems.length; i++) {
+                columns[n].add(strItems[i]);
                 n++;
                 if (n == nc) {
                     records++;
@@ -408,64 +283,56 @@ public abstract class Scan extends RBuiltinNode.Arg19 {
                 break;
             }
             lines++;
+            if (n > 0) {
+                if (fill) {
+                    fillEmpty(n, columns);
+                    records++;
+                    n = 0;
+                    if (records == maxRecords) {
+                        break;
+                    }
+                } else if (!multiLine) {
+                    throw error(RError.Message.LINE_ELEMENTS, lines, nc);
+                }
+            }
             if (lines == maxLines) {
                 break;
             }
         }
 
-        if (n > 0 && n < nc) {
+        if (n > 0) {
             if (!fill) {
                 warning(RError.Message.ITEMS_NOT_MULTIPLE);
             }
-            fillEmpty(n, nc, records, list, data);
+            fillEmpty(n, columns);
             records++;
         }
+        return records;
+    }
 
-        if (!data.quiet) {
-            String s = String.format("Read %d record%s", records, (records == 1) ? "" : "s");
-            StdConnections.getStdout().writeString(s, true);
+    private static void fillEmpty(int from, TextColumn[] columns) {
+        for (int i = from; i < columns.length; i++) {
+            columns[i].add("");
         }
-        // trim vectors if necessary
-        for (int i = 0; i < nc; i++) {
-            RVector<?> vec = (RVector<?>) list.getDataAt(i);
-            if (vec.getLength() > records) {
-                list.updateDataAt(i, vec.copyResized(records, false), null);
-            }
-        }
-
-        return list;
     }
 
     @TruffleBoundary
-    private RVector<?> scanVector(RAbstractVector what, int maxItems, int maxLines, @SuppressWarnings("unused") boolean flush, @SuppressWarnings("unused") boolean stripWhite, boolean blSkip,
-                    LocalData data) throws IOException {
-        int blockSize = maxItems > 0 ? maxItems : SCAN_BLOCKSIZE;
-        RVector<?> vec = what.createEmptySameType(blockSize, RDataFactory.COMPLETE_VECTOR);
-        naCheck.enable(true);
+    private RAbstractVector scanVector(RAbstractVector what, int maxItems, int maxLines, @SuppressWarnings("unused") boolean flush, boolean stripWhite, boolean blSkip, LocalData data)
+                    throws IOException {
+        TextColumn column = createColumn(what, maxItems > 0 ? maxItems : SCAN_BLOCKSIZE, data);
+        DelimitedTextReader reader = createReader(data, maxItems == 0 && maxLines == 0, stripWhite);
 
-        int n = 0;
         int lines = 0;
         while (true) {
-            // TODO: does not do any fancy stuff, like handling comments
-            String[] strItems = getItems(data, blSkip);
+            String[] strItems = reader.readRecord(blSkip);
             if (strItems == null) {
                 break;
             }
 
             boolean done = false;
             for (int i = 0; i < strItems.length; i++) {
-
-                Object item = extractItem(what, strItems[i], data);
-
-                if (n == blockSize) {
-                    // enlarge the vector
-                    blockSize = blockSize * 2;
-                    vec = vec.copyResized(blockSize, false);
-                }
-
-                vec.updateDataAtAsObject(n, item, naCheck);
-                n++;
-                if (n == maxItems) {
+                column.add(strItems[i]);
+                if (column.getLength() == maxItems) {
                     done = true;
                     break;
                 }
@@ -478,71 +345,11 @@ public abstract class Scan extends RBuiltinNode.Arg19 {
                 break;
             }
         }
+        int n = column.getLength();
         if (!data.quiet) {
             String s = String.format("Read %d item%s", n, (n == 1) ? "" : "s");
             StdConnections.getStdout().writeString(s, true);
         }
-        // trim vector if necessary
-        return vec.getLength() > n ? vec.copyResized(n, false) : vec;
-    }
-
-    // If mode = 0 use for numeric fields where "" is NA
-    // If mode = 1 use for character fields where "" is verbatim unless
-    // na.strings includes ""
-    private static boolean isNaString(String buffer, int mode, LocalData data) {
-        int i;
-
-        if (mode == 0 && buffer.length() == 0) {
-            return true;
-        }
-        for (i = 0; i < data.naStrings.getLength(); i++) {
-            if (data.naStrings.getDataAt(i).equals(buffer)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static Object extractItem(RAbstractVector what, String buffer, LocalData data) {
-        switch (what.getRType()) {
-            case Logical:
-                if (isNaString(buffer, 0, data)) {
-                    return RRuntime.LOGICAL_NA;
-                } else {
-                    return RRuntime.string2logicalNoCheck(buffer);
-                }
-            case Integer:
-                if (isNaString(buffer, 0, data)) {
-                    return RRuntime.INT_NA;
-                } else {
-                    return RRuntime.string2intNoCheck(buffer);
-                }
-            case Double:
-                if (isNaString(buffer, 0, data)) {
-                    return RRuntime.DOUBLE_NA;
-                } else {
-                    return RRuntime.string2doubleNoCheck(buffer);
-                }
-            case Complex:
-                if (isNaString(buffer, 0, data)) {
-                    return RComplex.createNA();
-                } else {
-                    return RRuntime.string2complexNoCheck(buffer);
-                }
-            case Character:
-                if (isNaString(buffer, 1, data)) {
-                    return RRuntime.STRING_NA;
-                } else {
-                    return buffer;
-                }
-            case Raw:
-                if (isNaString(buffer, 0, data)) {
-                    return RDataFactory.createRaw((byte) 0);
-                } else {
-                    return RRuntime.string2raw(buffer);
-                }
-            default:
-                throw RInternalError.shouldNotReachHere();
-        }
+        return column.toVector();
     }
 }
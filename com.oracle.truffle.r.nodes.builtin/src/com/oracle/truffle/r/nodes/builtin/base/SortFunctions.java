@@ -60,10 +60,12 @@ import com.oracle.truffle.r.runtime.data.model.RAbstractIntVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractListVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractLogicalVector;
 import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
 
 /**
- * The internal functions mandated by {@code base/sort.R}. N.B. We use the standard JDK sorting
- * algorithms and not the specific algorithms specified in the R manual entry.
+ * The internal functions mandated by {@code base/sort.R}. N.B. We use {@link RadixOrder} for
+ * numeric values and the standard JDK sorting algorithms otherwise, and not the specific algorithms
+ * specified in the R manual entry.
  */
 public class SortFunctions {
 
@@ -78,30 +80,13 @@ public class SortFunctions {
 
     @TruffleBoundary
     private static double[] sort(double[] data, boolean decreasing) {
-        // no reverse comparator for primitives
-        Arrays.parallelSort(data);
-        if (decreasing) {
-            int len = data.length;
-            for (int i = len / 2 - 1; i >= 0; i--) {
-                double temp = data[i];
-                data[i] = data[len - i - 1];
-                data[len - i - 1] = temp;
-            }
-        }
+        RadixOrder.sortValues(data, decreasing);
         return data;
     }
 
     @TruffleBoundary
     private static int[] sort(int[] data, boolean decreasing) {
-        Arrays.parallelSort(data);
-        if (decreasing) {
-            int len = data.length;
-            for (int i = len / 2 - 1; i >= 0; i--) {
-                int temp = data[i];
-                data[i] = data[len - i - 1];
-                data[len - i - 1] = temp;
-            }
-        }
+        RadixOrder.sortValues(data, decreasing);
         return data;
     }
 
@@ -152,7 +137,7 @@ public class SortFunctions {
     /**
      * In GnuR this is a shell sort variant, see
      * <a href = "https://stat.ethz.ch/R-manual/R-devel/library/base/html/sort.html>here">here</a>.
-     * The JDK does not have a shell sort so for now we just use the default JDK sort (quicksort).
+     * We use a radix sort for numbers and the default JDK sort otherwise.
      *
      * N.B. The R code strips out {@code NA} and {@code NaN} values before calling the builtin.
      */
@@ -265,8 +250,10 @@ public class SortFunctions {
     /**
      * This a helper function for the code in sort.R. It does NOT return the input vectors sorted,
      * but returns an {@link RIntVector} of indices (positions) indicating the sort order (Or
-     * {@link RNull#instance} if no vectors). In short it is a special variant of {@code order}. For
-     * now we delegate to {@code order} and do not implement the {@code retgrp} argument.
+     * {@link RNull#instance} if no vectors). In short it is a special variant of {@code order}
+     * where each key has its own {@code decreasing} value, {@code NA}s are placed independently of
+     * {@code decreasing}, and strings are compared as in the C locale. We do not implement the
+     * {@code retgrp} argument.
      */
     @RBuiltin(name = "radixsort", kind = INTERNAL, parameterNames = {"na.last", "decreasing", "retgrp", "sortstr", "..."}, behavior = PURE)
     public abstract static class RadixSort extends RBuiltinNode.Arg5 {
@@ -295,26 +282,81 @@ public class SortFunctions {
             if (nargs != decreasingVec.getLength()) {
                 throw error(RError.Message.RADIX_SORT_DEC_MATCH);
             }
-            /*
-             * Order takes a single decreasing argument that applies to all the vectors. We
-             * potentially have a different value for each vector, so we have to process one by one.
-             * However, OrderNode can't yet handle that, so we abort if nargs > 1 and the decreasing
-             * values don't match.
-             */
-            byte lastdb = RRuntime.LOGICAL_NA;
+            boolean[] decreasing = new boolean[nargs];
             for (int i = 0; i < nargs; i++) {
                 byte db = decreasingVec.getDataAt(i);
                 if (RRuntime.isNA(db)) {
                     throw error(RError.Message.RADIX_SORT_DEC_NOT_LOGICAL);
                 }
-                if (lastdb != RRuntime.LOGICAL_NA && db != lastdb) {
+                decreasing[i] = RRuntime.fromLogical(db);
+            }
+            Object[] vectors = zz.getArguments();
+            int n = -1;
+            for (int i = 0; i < nargs; i++) {
+                if (!(vectors[i] instanceof RAbstractVector) || vectors[i] instanceof RAbstractComplexVector || vectors[i] instanceof RAbstractListVector) {
+                    return fallback(naLast, decreasing, zz);
+                }
+                int length = ((RAbstractVector) vectors[i]).getLength();
+                if (n != -1 && length != n) {
+                    throw error(RError.Message.ARGUMENT_LENGTHS_DIFFER);
+                }
+                n = length;
+            }
+            RIntVector result = radixOrder(vectors, n, naLast, decreasing);
+            return result != null ? result : fallback(naLast, decreasing, zz);
+        }
+
+        /**
+         * Orders {@code vectors} with {@link RadixOrder}, or returns {@code null} if one of them is
+         * of a type it does not support.
+         */
+        @TruffleBoundary
+        private static RIntVector radixOrder(Object[] vectors, int n, byte naLast, boolean[] decreasing) {
+            long[][] keys = new long[vectors.length][];
+            for (int i = 0; i < vectors.length; i++) {
+                keys[i] = RadixOrder.keys((RAbstractVector) vectors[i], decreasing[i], naLast != RRuntime.LOGICAL_FALSE);
+                if (keys[i] == null) {
+                    return null;
+                }
+            }
+            int[] indx;
+            if (RRuntime.isNA(naLast)) {
+                // remove the elements that are NA in any of the keys
+                int count = 0;
+                indx = new int[n];
+                outer: for (int j = 0; j < n; j++) {
+                    for (Object v : vectors) {
+                        if (RadixOrder.isNA((RAbstractVector) v, j)) {
+                            continue outer;
+                        }
+                    }
+                    indx[count++] = j;
+                }
+                indx = Arrays.copyOf(indx, count);
+            } else {
+                indx = new int[n];
+                for (int j = 0; j < n; j++) {
+                    indx[j] = j;
+                }
+            }
+            RadixOrder.sort(indx, keys);
+            for (int j = 0; j < indx.length; j++) {
+                indx[j]++;
+            }
+            return RDataFactory.createIntVector(indx, RDataFactory.COMPLETE_VECTOR);
+        }
+
+        private Object fallback(byte naLast, boolean[] decreasing, RArgsValuesAndNames zz) {
+            /*
+             * Order takes a single decreasing argument that applies to all the vectors, so we
+             * abort if the decreasing values don't match.
+             */
+            for (int i = 1; i < decreasing.length; i++) {
+                if (decreasing[i] != decreasing[0]) {
                     throw RError.nyi(this, "radixsort: args > 1 with differing 'decreasing' values not implemented");
                 }
-                lastdb = db;
             }
-            boolean decreasing = RRuntime.fromLogical(decreasingVec.getDataAt(0));
-            Object result = orderNode.execute(naLast, decreasing, zz);
-            return result;
+            return orderNode.execute(naLast, decreasing[0], zz);
         }
     }
 }
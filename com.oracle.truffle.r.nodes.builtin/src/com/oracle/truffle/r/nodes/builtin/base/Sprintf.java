@@ -25,6 +25,7 @@ package com.oracle.truffle.r.nodes.builtin.base;
 import static com.oracle.truffle.r.runtime.builtins.RBehavior.PURE;
 import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.INTERNAL;
 
+import java.util.ArrayList;
 import java.util.Locale;
 
 import com.oracle.truffle.api.CompilerDirectives;
@@ -56,6 +57,12 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
 
     @Child private Sprintf sprintfRecursive;
 
+    /**
+     * The format string this node saw last, parsed, so that formatting the elements of vectors or
+     * calling {@code sprintf} repeatedly with the same format does not parse it again.
+     */
+    private ParsedFormat lastFormat;
+
     @Specialization
     protected RStringVector sprintf(@SuppressWarnings("unused") RAbstractStringVector fmt, @SuppressWarnings("unused") RNull x) {
         return RDataFactory.createEmptyStringVector();
@@ -93,9 +100,13 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
     @Specialization
     @TruffleBoundary
     protected RStringVector sprintf(String fmt, RAbstractIntVector x) {
+        ParsedFormat format = parse(fmt);
+        StringBuilder builder = new StringBuilder();
+        Object[] args = new Object[1];
         String[] r = new String[x.getLength()];
         for (int k = 0; k < r.length; k++) {
-            r[k] = format(fmt, x.getDataAt(k));
+            args[0] = x.getDataAt(k);
+            r[k] = format.format(builder, args);
         }
         return RDataFactory.createStringVector(r, RDataFactory.COMPLETE_VECTOR);
     }
@@ -109,14 +120,20 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
     @Specialization
     @TruffleBoundary
     protected String sprintf(String fmt, double x) {
-        char f = Character.toLowerCase(firstFormatChar(fmt));
+        return formatDouble(parse(fmt), new StringBuilder(), new Object[1], x);
+    }
+
+    private String formatDouble(ParsedFormat format, StringBuilder builder, Object[] args, double x) {
+        char f = format.getFirstFormatChar();
         if (f == 'x' || f == 'd') {
             if (Math.floor(x) == x) {
-                return format(fmt, (long) x);
+                args[0] = (long) x;
+                return format.format(builder, args);
             }
-            throw error(RError.Message.INVALID_FORMAT_DOUBLE, fmt);
+            throw error(RError.Message.INVALID_FORMAT_DOUBLE, format.fmt);
         }
-        return format(fmt, x);
+        args[0] = x;
+        return format.format(builder, args);
     }
 
     @Specialization(guards = "fmtLengthOne(fmt)")
@@ -128,9 +145,12 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
     @Specialization
     @TruffleBoundary
     protected RStringVector sprintf(String fmt, RAbstractDoubleVector x) {
+        ParsedFormat format = parse(fmt);
+        StringBuilder builder = new StringBuilder();
+        Object[] args = new Object[1];
         String[] r = new String[x.getLength()];
         for (int k = 0; k < r.length; k++) {
-            r[k] = sprintf(fmt, x.getDataAt(k));
+            r[k] = formatDouble(format, builder, args, x.getDataAt(k));
         }
         return RDataFactory.createStringVector(r, RDataFactory.COMPLETE_VECTOR);
     }
@@ -156,9 +176,13 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
     @Specialization
     @TruffleBoundary
     protected RStringVector sprintf(String fmt, RAbstractStringVector x) {
+        ParsedFormat format = parse(fmt);
+        StringBuilder builder = new StringBuilder();
+        Object[] args = new Object[1];
         String[] r = new String[x.getLength()];
         for (int k = 0; k < r.length; k++) {
-            r[k] = format(fmt, x.getDataAt(k));
+            args[0] = x.getDataAt(k);
+            r[k] = format.format(builder, args);
         }
         return RDataFactory.createStringVector(r, RDataFactory.COMPLETE_VECTOR);
     }
@@ -191,16 +215,15 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
         return length;
     }
 
-    private static Object[] createSprintfArgs(Object[] values, int index, int maxLength) {
-        Object[] sprintfArgs = new Object[values.length];
+    private static void setSprintfArgs(Object[] sprintfArgs, Object[] values, int index) {
         for (int i = 0; i < sprintfArgs.length; i++) {
             if (values[i] instanceof RAbstractVector) {
-                sprintfArgs[i] = ((RAbstractVector) values[i]).getDataAtAsObject(index % maxLength);
+                RAbstractVector vector = (RAbstractVector) values[i];
+                sprintfArgs[i] = vector.getDataAtAsObject(index % vector.getLength());
             } else {
                 sprintfArgs[i] = values[i];
             }
         }
-        return sprintfArgs;
     }
 
     @Specialization(guards = {"!oneElement(args)", "hasNull(args)"})
@@ -220,10 +243,13 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
                 return RDataFactory.createStringVector(fmt);
             }
         } else {
+            ParsedFormat format = parse(fmt);
+            StringBuilder builder = new StringBuilder();
+            Object[] sprintfArgs = new Object[values.length];
             String[] r = new String[maxLength];
             for (int k = 0; k < r.length; k++) {
-                Object[] sprintfArgs = createSprintfArgs(values, k, maxLength);
-                r[k] = format(fmt, sprintfArgs);
+                setSprintfArgs(sprintfArgs, values, k);
+                r[k] = format.format(builder, sprintfArgs);
             }
             return RDataFactory.createStringVector(r, RDataFactory.COMPLETE_VECTOR);
 
@@ -280,77 +306,202 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
         }
     }
 
-    private static String format(String fmt, Object... args) {
-        char[] conversions = new char[args.length];
-        String format = processFormat(fmt, args, conversions);
-        adjustValues(args, conversions);
-        return stringFormat(format, args);
+    private String format(String fmt, Object... args) {
+        return parse(fmt).format(new StringBuilder(), args);
     }
 
-    private static String processFormat(String fmt, Object[] args, char[] conversions) {
-        int i = 0;
-        char[] cs = fmt.toCharArray();
-        StringBuilder sb = new StringBuilder();
-        int argc = 1;
+    private ParsedFormat parse(String fmt) {
+        ParsedFormat format = lastFormat;
+        if (format == null || !format.fmt.equals(fmt)) {
+            format = new ParsedFormat(fmt);
+            lastFormat = format;
+        }
+        return format;
+    }
 
-        while (i < cs.length) {
-            // skip up to and including next %
-            while (i < cs.length && cs[i] != '%') {
-                sb.append(cs[i++]);
+    /**
+     * A format string split into its literal parts and its conversions. The conversions that are
+     * used the most, i.e., {@code %s} of strings and {@code %d} of integers with the flags that
+     * apply to them, are appended to the result directly, the others are formatted one by one by
+     * {@link String#format}.
+     */
+    private static final class ParsedFormat {
+        private final String fmt;
+        /**
+         * {@code literals[i]} precedes {@code conversions[i]}, the last literal follows the last
+         * conversion.
+         */
+        private final String[] literals;
+        private final FormatInfo[] conversions;
+        /**
+         * The Java format specifiers of the conversions, without the conversion character, or
+         * {@code null} if width or precision are given by arguments.
+         */
+        private final String[] specifiers;
+        private char firstFormatChar = NOT_COMPUTED;
+
+        private static final char NOT_COMPUTED = '\uffff';
+
+        ParsedFormat(String fmt) {
+            this.fmt = fmt;
+            ArrayList<String> literalList = new ArrayList<>();
+            ArrayList<FormatInfo> conversionList = new ArrayList<>();
+            int i = 0;
+            char[] cs = fmt.toCharArray();
+            StringBuilder sb = new StringBuilder();
+            int argc = 1;
+
+            while (i < cs.length) {
+                // skip up to and including next %
+                while (i < cs.length && cs[i] != '%') {
+                    sb.append(cs[i++]);
+                }
+                if (i == cs.length) {
+                    break;
+                }
+                i++;
+
+                FormatInfo fi = extractFormatInfo(cs, i, argc);
+                argc = fi.argc;
+                if (fi.conversion == '%') {
+                    sb.append('%');
+                } else {
+                    literalList.add(sb.toString());
+                    sb.setLength(0);
+                    conversionList.add(fi);
+                }
+                i = fi.nextChar;
             }
-            if (i == cs.length) {
-                break;
+            literalList.add(sb.toString());
+            literals = literalList.toArray(new String[literalList.size()]);
+            conversions = conversionList.toArray(new FormatInfo[conversionList.size()]);
+            specifiers = new String[conversions.length];
+            for (int k = 0; k < conversions.length; k++) {
+                FormatInfo fi = conversions[k];
+                if (!fi.widthIsArg && !fi.precisionIsArg) {
+                    specifiers[k] = specifier(fi, fi.width, fi.precision);
+                }
+            }
+        }
+
+        char getFirstFormatChar() {
+            if (firstFormatChar == NOT_COMPUTED) {
+                firstFormatChar = Character.toLowerCase(Sprintf.firstFormatChar(fmt));
+            }
+            return firstFormatChar;
+        }
+
+        String format(StringBuilder sb, Object[] args) {
+            sb.setLength(0);
+            for (int k = 0; k < conversions.length; k++) {
+                sb.append(literals[k]);
+                appendConversion(sb, k, args);
             }
-            sb.append(cs[i++]);
+            sb.append(literals[conversions.length]);
+            return sb.toString();
+        }
 
-            FormatInfo fi = extractFormatInfo(cs, i, argc);
-            argc = fi.argc;
-            if (fi.conversion != '%') {
-                // take care of width/precision being defined by args
-                int w = 0;
-                int p = 0;
-                if (fi.width != 0 || fi.widthIsArg) {
-                    w = fi.widthIsArg ? intValue(args[fi.width - 1]) : fi.width;
+        private void appendConversion(StringBuilder sb, int k, Object[] args) {
+            FormatInfo fi = conversions[k];
+            Object arg = args[fi.numArg - 1];
+            // take care of width/precision being defined by args
+            boolean hasWidth = fi.width != 0 || fi.widthIsArg;
+            boolean hasPrecision = fi.precision != 0 || fi.precisionIsArg;
+            int w = fi.widthIsArg ? intValue(args[fi.width - 1]) : fi.width;
+            int p = fi.precisionIsArg ? intValue(args[fi.precision - 1]) : fi.precision;
+            char conversion = fi.conversion;
+            if (conversion == 'g' && arg instanceof Integer) {
+                conversion = 'd';
+            }
+            if (fi.conversion == 'd' && arg instanceof Double) {
+                arg = ((Double) arg).intValue();
+            } else if (fi.conversion == 's' && arg instanceof Byte) {
+                arg = RRuntime.logicalToString((Byte) arg);
+            }
+            // the cases in which the Java formatter would complain are left to it
+            boolean validWidth = hasWidth ? w > 0 : !(fi.adjustLeft || fi.padZero);
+            if (conversion == 's' && arg instanceof String && validWidth && !(fi.alwaysSign || fi.spacePrefix || fi.padZero || fi.alternate) && p >= 0) {
+                String value = (String) arg;
+                if (hasPrecision && p < value.length()) {
+                    value = value.substring(0, p);
                 }
-                if (fi.precision != 0 || fi.precisionIsArg) {
-                    p = fi.precisionIsArg ? intValue(args[fi.precision - 1]) : fi.precision;
+                int padding = hasWidth ? w - value.length() : 0;
+                if (!fi.adjustLeft) {
+                    appendPadding(sb, ' ', padding);
                 }
-                // which argument to print
-                sb.append(intString(fi.numArg)).append('$');
-                // flags
+                sb.append(value);
                 if (fi.adjustLeft) {
-                    sb.append('-');
+                    appendPadding(sb, ' ', padding);
                 }
-                if (fi.alwaysSign) {
-                    sb.append('+');
+            } else if (conversion == 'd' && (arg instanceof Integer || arg instanceof Long) && validWidth && !(hasPrecision || fi.alternate || (fi.alwaysSign && fi.spacePrefix) ||
+                            (fi.adjustLeft && fi.padZero)) && ((Number) arg).longValue() != Long.MIN_VALUE) {
+                long value = ((Number) arg).longValue();
+                char sign = value < 0 ? '-' : fi.alwaysSign ? '+' : fi.spacePrefix ? ' ' : 0;
+                long abs = Math.abs(value);
+                int padding = hasWidth ? w - digitCount(abs) - (sign == 0 ? 0 : 1) : 0;
+                if (!fi.adjustLeft && !fi.padZero) {
+                    appendPadding(sb, ' ', padding);
                 }
-                if (fi.alternate) {
-                    sb.append('#');
+                if (sign != 0) {
+                    sb.append(sign);
                 }
                 if (fi.padZero) {
-                    sb.append('0');
-                }
-                if (fi.spacePrefix) {
-                    sb.append(' ');
+                    appendPadding(sb, '0', padding);
                 }
-                // width and precision
-                if (fi.width != 0 || fi.widthIsArg) {
-                    sb.append(intString(w));
+                sb.append(abs);
+                if (fi.adjustLeft) {
+                    appendPadding(sb, ' ', padding);
                 }
-                if (fi.precision != 0 || fi.precisionIsArg) {
-                    sb.append('.').append(intString(p));
+            } else {
+                String specifier = specifiers[k];
+                if (specifier == null) {
+                    specifier = specifier(fi, w, p);
                 }
-                conversions[fi.numArg - 1] = fi.conversion;
+                sb.append(stringFormat(specifier + conversion, arg));
             }
-            char conversion = fi.conversion;
-            if (conversion == 'g' && args[fi.numArg - 1] instanceof Integer) {
-                conversion = 'd';
+        }
+
+        private static String specifier(FormatInfo fi, int w, int p) {
+            StringBuilder sb = new StringBuilder("%");
+            // flags
+            if (fi.adjustLeft) {
+                sb.append('-');
+            }
+            if (fi.alwaysSign) {
+                sb.append('+');
+            }
+            if (fi.alternate) {
+                sb.append('#');
+            }
+            if (fi.padZero) {
+                sb.append('0');
+            }
+            if (fi.spacePrefix) {
+                sb.append(' ');
+            }
+            // width and precision
+            if (fi.width != 0 || fi.widthIsArg) {
+                sb.append(w);
+            }
+            if (fi.precision != 0 || fi.precisionIsArg) {
+                sb.append('.').append(p);
+            }
+            return sb.toString();
+        }
+
+        private static void appendPadding(StringBuilder sb, char c, int count) {
+            for (int i = 0; i < count; i++) {
+                sb.append(c);
             }
-            sb.append(conversion);
-            i = fi.nextChar;
         }
 
-        return sb.toString();
+        private static int digitCount(long value) {
+            int count = 1;
+            for (long rest = value; rest >= 10; rest /= 10) {
+                count++;
+            }
+            return count;
+        }
     }
 
     private static int intValue(Object o) {
@@ -363,11 +514,6 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
         }
     }
 
-    @TruffleBoundary
-    private static String intString(int x) {
-        return Integer.toString(x);
-    }
-
     private static char firstFormatChar(String fmt) {
         int pos = 0;
         char f;
@@ -387,26 +533,8 @@ public abstract class Sprintf extends RBuiltinNode.Arg2 {
     }
 
     @TruffleBoundary
-    private static String stringFormat(String format, Object[] args) {
-        return String.format((Locale) null, format, args);
-    }
-
-    private static void adjustValues(Object[] args, char[] conversions) {
-        for (int i = 0; i < args.length; i++) {
-            if (conversions[i] == 0) {
-                continue;
-            }
-            if (conversions[i] == 'd') {
-                if (args[i] instanceof Double) {
-                    args[i] = ((Double) args[i]).intValue();
-                }
-            }
-            if (conversions[i] == 's') {
-                if (args[i] instanceof Byte) {
-                    args[i] = RRuntime.logicalToString((Byte) args[i]);
-                }
-            }
-        }
+    private static String stringFormat(String format, Object arg) {
+        return String.format((Locale) null, format, arg);
     }
 
     //
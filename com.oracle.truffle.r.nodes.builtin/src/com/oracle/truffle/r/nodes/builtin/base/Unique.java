@@ -39,6 +39,7 @@ import com.oracle.truffle.api.profiles.ConditionProfile;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
 import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSet;
 import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSetDouble;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSetInt;
 import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RError.Message;
 import com.oracle.truffle.r.runtime.RRuntime;
@@ -255,7 +256,7 @@ public abstract class Unique extends RBuiltinNode.Arg4 {
         RAbstractIntVector vec = vecClass.cast(vecIn);
         reportWork(vec.getLength());
         if (bigProfile.profile(vec.getLength() * (long) vec.getLength() > BIG_THRESHOLD)) {
-            NonRecursiveHashSetInt set = new NonRecursiveHashSetInt();
+            NonRecursiveHashSetInt set = new NonRecursiveHashSetInt(32);
             int[] data = new int[16];
             int ind = 0;
             for (int i = 0; i < vec.getLength(); i++) {
@@ -333,55 +334,6 @@ public abstract class Unique extends RBuiltinNode.Arg4 {
         return list.getLength() == 1;
     }
 
-    private static final class NonRecursiveHashSetInt {
-
-        private int[] keys;
-        private int size;
-        private boolean containsZero;
-
-        NonRecursiveHashSetInt() {
-            keys = new int[64];
-        }
-
-        public boolean add(int key) {
-            if (key == 0) {
-                if (containsZero) {
-                    return true;
-                } else {
-                    containsZero = true;
-                    return false;
-                }
-            }
-            int ind = Math.abs(Integer.hashCode(key)) & (keys.length - 1);
-            while (true) {
-                if (keys[ind] == 0) {
-                    keys[ind] = key;
-                    size++;
-                    if (size << 1 == keys.length) {
-                        int[] newKeys = new int[keys.length << 1];
-                        for (int rehashKey : keys) {
-                            if (rehashKey != 0) {
-                                int tmpInd = Math.abs(Integer.hashCode(rehashKey)) & (newKeys.length - 1);
-                                while (newKeys[tmpInd] != 0) {
-                                    assert newKeys[tmpInd] != rehashKey;
-                                    tmpInd = (tmpInd + 1) & (newKeys.length - 1);
-                                }
-                                newKeys[tmpInd] = rehashKey;
-                            }
-                        }
-
-                        keys = newKeys;
-                    }
-                    return false;
-                } else if (key == keys[ind]) {
-                    return true;
-                } else {
-                    ind = (ind + 1) & (keys.length - 1);
-                }
-            }
-        }
-    }
-
     @SuppressWarnings("unused")
     @Specialization
     protected RDoubleVector doUnique(RAbstractDoubleVector vec, byte incomparables, byte fromLast, int nmax) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016, 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin.fastr;
+
+import static com.oracle.truffle.r.runtime.builtins.RBehavior.READS_STATE;
+import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.PRIMITIVE;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
+import com.oracle.truffle.r.runtime.EvalCallTargetCache;
+import com.oracle.truffle.r.runtime.LazyDBCache;
+import com.oracle.truffle.r.runtime.builtins.RBuiltin;
+import com.oracle.truffle.r.runtime.context.RContext;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RDoubleVector;
+import com.oracle.truffle.r.runtime.data.RList;
+import com.oracle.truffle.r.runtime.ffi.CharSXPTable;
+import com.oracle.truffle.r.runtime.ffi.RFFIFactory;
+
+/**
+ * Returns the counters of the caches of the current context (and of the global ones), i.e., a list
+ * with a named numeric vector for each cache.
+ */
+@RBuiltin(name = ".fastr.cache.stats", kind = PRIMITIVE, parameterNames = {}, behavior = READS_STATE)
+public abstract class FastRCacheStats extends RBuiltinNode.Arg0 {
+
+    private static final String[] CACHE_NAMES = {"eval", "s3dispatch", "s4dispatch", "regexp", "lazydb", "charsxp", "globalrefs"};
+    private static final String[] EVAL_NAMES = {"hits", "structuralHits", "misses", "evictions", "size"};
+    private static final String[] HIT_NAMES = {"hits", "misses"};
+    private static final String[] TABLE_NAMES = {"hits", "misses", "size"};
+    private static final String[] REF_NAMES = {"created", "reused", "released", "live"};
+
+    @Specialization
+    @TruffleBoundary
+    protected RList cacheStats() {
+        RContext context = RContext.getInstance();
+        EvalCallTargetCache eval = context.evalCallTargetCache;
+        long[] refs = RFFIFactory.getRFFI().getCallRFFI().getGlobalRefStats();
+        if (refs == null) {
+            refs = new long[REF_NAMES.length];
+        }
+        Object[] data = new Object[]{
+                        counters(EVAL_NAMES, eval.getHits(), eval.getStructuralHits(), eval.getMisses(), eval.getEvictions(), eval.getSize()),
+                        counters(HIT_NAMES, context.s3DispatchTable.getHits(), context.s3DispatchTable.getMisses()),
+                        counters(HIT_NAMES, context.s4DispatchTable.getHits(), context.s4DispatchTable.getMisses()),
+                        counters(HIT_NAMES, context.regExpCache.getHits(), context.regExpCache.getMisses()),
+                        counters(HIT_NAMES, LazyDBCache.getHits(), LazyDBCache.getMisses()),
+                        counters(TABLE_NAMES, CharSXPTable.getHits(), CharSXPTable.getMisses(), CharSXPTable.getSize()),
+                        counters(REF_NAMES, refs)};
+        return RDataFactory.createList(data, RDataFactory.createStringVector(CACHE_NAMES, RDataFactory.COMPLETE_VECTOR));
+    }
+
+    private static RDoubleVector counters(String[] names, long... values) {
+        double[] data = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = values[i];
+        }
+        return RDataFactory.createDoubleVector(data, RDataFactory.COMPLETE_VECTOR, RDataFactory.createStringVector(names, RDataFactory.COMPLETE_VECTOR));
+    }
+}
@@ -23,6 +23,8 @@
 package com.oracle.truffle.r.nodes.builtin.fastr;
 
 import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.equalTo;
+import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.gte0;
+import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.gte1;
 import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.instanceOf;
 import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.notEmpty;
 import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.singleElement;
@@ -38,6 +40,7 @@ import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.interop.java.JavaInterop;
+import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.api.vm.PolyglotEngine;
 import com.oracle.truffle.r.nodes.builtin.NodeWithArgumentCasts.Casts;
 import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
@@ -49,6 +52,7 @@ import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.RSource;
 import com.oracle.truffle.r.runtime.builtins.RBuiltin;
 import com.oracle.truffle.r.runtime.context.ContextInfo;
+import com.oracle.truffle.r.runtime.context.ContextPool;
 import com.oracle.truffle.r.runtime.context.RContext;
 import com.oracle.truffle.r.runtime.context.RContext.ContextKind;
 import com.oracle.truffle.r.runtime.context.RContext.EvalThread;
@@ -138,18 +142,28 @@ public class FastRContext {
             RContext.EvalThread[] threads = new RContext.EvalThread[length];
             int[] data = new int[length];
             for (int i = 0; i < length; i++) {
-                ContextInfo info = createContextInfo(contextKind);
-                threads[i] = new RContext.EvalThread(info, RSource.fromTextInternalInvisible(exprs.getDataAt(i % exprs.getLength()), RSource.Internal.CONTEXT_EVAL));
-                data[i] = info.getId();
+                Source source = RSource.fromTextInternalInvisible(exprs.getDataAt(i % exprs.getLength()), RSource.Internal.CONTEXT_EVAL);
+                int handle = ContextPool.spawn(RContext.getInstance(), contextKind, source);
+                if (handle != 0) {
+                    data[i] = handle;
+                } else {
+                    ContextInfo info = createContextInfo(contextKind);
+                    threads[i] = new RContext.EvalThread(info, source);
+                    data[i] = info.getId();
+                }
             }
             if (contextKind == ContextKind.SHARE_ALL) {
                 REnvironment.convertSearchpathToMultiSlot();
             }
             for (int i = 0; i < length; i++) {
-                threads[i].start();
+                if (threads[i] != null) {
+                    threads[i].start();
+                }
             }
             for (int i = 0; i < length; i++) {
-                threads[i].waitForInit();
+                if (threads[i] != null) {
+                    threads[i].waitForInit();
+                }
             }
             return RDataFactory.createIntVector(data, RDataFactory.COMPLETE_VECTOR);
         }
@@ -168,6 +182,10 @@ public class FastRContext {
         protected RNull eval(RAbstractIntVector handle) {
             try {
                 for (int i = 0; i < handle.getLength(); i++) {
+                    if (ContextPool.isPooledHandle(handle.getDataAt(i))) {
+                        ContextPool.join(handle.getDataAt(i));
+                        continue;
+                    }
                     Thread thread = RContext.EvalThread.threads.get(handle.getDataAt(i));
                     if (thread == null) {
                         // already done
@@ -184,6 +202,26 @@ public class FastRContext {
         }
     }
 
+    /**
+     * Sets the number of pre-initialized contexts kept for {@code .fastr.context.eval} and
+     * {@code .fastr.context.spawn}, {@code 0} disables the pool.
+     */
+    @RBuiltin(name = ".fastr.context.pool", visibility = OFF, kind = PRIMITIVE, parameterNames = {"size"}, behavior = COMPLEX)
+    public abstract static class Pool extends RBuiltinNode.Arg1 {
+
+        static {
+            Casts casts = new Casts(Pool.class);
+            casts.arg("size").asIntegerVector().mustBe(notEmpty()).findFirst().mustBe(gte0());
+        }
+
+        @Specialization
+        @TruffleBoundary
+        protected RNull pool(int size) {
+            ContextPool.setSize(RContext.getInstance(), size);
+            return RNull.instance;
+        }
+    }
+
     /**
      * Evaluate expressions in {@code pc} new contexts of type {@code kind}, with the expression
      * taken from the expression in the usual R repeating mode. The invoking context (thread) waits
@@ -220,10 +258,16 @@ public class FastRContext {
             int length = exprs.getLength();
             Object[] results = new Object[length];
             if (length == 1) {
+                Source source = RSource.fromTextInternalInvisible(exprs.getDataAt(0), RSource.Internal.CONTEXT_EVAL);
+                RList pooledResult = ContextPool.eval(RContext.getInstance(), contextKind, source);
+                if (pooledResult != null) {
+                    results[0] = pooledResult;
+                    return RDataFactory.createList(results);
+                }
                 ContextInfo info = createContextInfo(contextKind);
                 PolyglotEngine vm = info.createVM();
                 try {
-                    results[0] = RContext.EvalThread.run(vm, info, RSource.fromTextInternalInvisible(exprs.getDataAt(0), RSource.Internal.CONTEXT_EVAL));
+                    results[0] = RContext.EvalThread.run(vm, info, source);
                 } finally {
                     vm.dispose();
                 }
@@ -325,18 +369,23 @@ public class FastRContext {
         return ContextInfo.createNoRestore(Client.RSCRIPT, null, contextKind, RContext.getInstance(), RContext.getInstance().getConsoleHandler());
     }
 
-    @RBuiltin(name = ".fastr.channel.create", kind = PRIMITIVE, parameterNames = {"key"}, behavior = COMPLEX)
-    public abstract static class CreateChannel extends RBuiltinNode.Arg1 {
+    @RBuiltin(name = ".fastr.channel.create", kind = PRIMITIVE, parameterNames = {"key", "capacity"}, behavior = COMPLEX)
+    public abstract static class CreateChannel extends RBuiltinNode.Arg2 {
+        @Override
+        public Object[] getDefaultParameterValues() {
+            return new Object[]{RMissing.instance, RChannel.DEFAULT_QUEUE_CAPACITY};
+        }
 
         static {
             Casts casts = new Casts(CreateChannel.class);
             CastsHelper.key(casts);
+            casts.arg("capacity").asIntegerVector().mustBe(notEmpty()).findFirst().mustBe(gte1());
         }
 
         @Specialization
         @TruffleBoundary
-        protected int createChannel(int key) {
-            return RChannel.createChannel(key);
+        protected int createChannel(int key, int capacity) {
+            return RChannel.createChannel(key, capacity);
         }
     }
 
@@ -387,6 +436,39 @@ public class FastRContext {
         }
     }
 
+    @RBuiltin(name = ".fastr.channel.send.batch", visibility = OFF, kind = PRIMITIVE, parameterNames = {"id", "data"}, behavior = COMPLEX)
+    public abstract static class ChannelSendBatch extends RBuiltinNode.Arg2 {
+
+        static {
+            Casts casts = new Casts(ChannelSendBatch.class);
+            CastsHelper.id(casts);
+            casts.arg("data").mustBe(instanceOf(RList.class));
+        }
+
+        @Specialization
+        @TruffleBoundary
+        protected RNull sendBatch(int id, RList data) {
+            RChannel.sendBatch(id, data);
+            return RNull.instance;
+        }
+    }
+
+    @RBuiltin(name = ".fastr.channel.receive.batch", kind = PRIMITIVE, parameterNames = {"id", "max"}, behavior = COMPLEX)
+    public abstract static class ChannelReceiveBatch extends RBuiltinNode.Arg2 {
+
+        static {
+            Casts casts = new Casts(ChannelReceiveBatch.class);
+            CastsHelper.id(casts);
+            casts.arg("max").asIntegerVector().mustBe(notEmpty()).findFirst().mustBe(gte1());
+        }
+
+        @Specialization
+        @TruffleBoundary
+        protected RList receiveBatch(int id, int max) {
+            return RDataFactory.createList(RChannel.receiveBatch(id, max));
+        }
+    }
+
     @RBuiltin(name = ".fastr.channel.receive", kind = PRIMITIVE, parameterNames = {"id"}, behavior = COMPLEX)
     public abstract static class ChannelReceive extends RBuiltinNode.Arg1 {
 
@@ -413,37 +495,46 @@ public class FastRContext {
         @Specialization
         @TruffleBoundary
         protected Object poll(int id) {
-            return RChannel.poll(id);
+            Object res = RChannel.poll(id);
+            return res == null ? RNull.instance : res;
         }
     }
 
-    @RBuiltin(name = ".fastr.channel.select", kind = PRIMITIVE, parameterNames = {"ids"}, behavior = COMPLEX)
-    public abstract static class ChannelSelect extends RBuiltinNode.Arg1 {
+    @RBuiltin(name = ".fastr.channel.select", kind = PRIMITIVE, parameterNames = {"ids", "timeout"}, behavior = COMPLEX)
+    public abstract static class ChannelSelect extends RBuiltinNode.Arg2 {
+        @Override
+        public Object[] getDefaultParameterValues() {
+            return new Object[]{RMissing.instance, -1.0};
+        }
 
         static {
             Casts casts = new Casts(ChannelSelect.class);
             casts.arg("ids").mustBe(instanceOf(RList.class));
+            casts.arg("timeout").asDoubleVector().mustBe(notEmpty()).findFirst();
         }
 
+        /**
+         * Returns {@code NULL} if no message arrived within {@code timeout} seconds, unless it is
+         * negative.
+         */
         @Specialization
         @TruffleBoundary
-        protected RList select(RList nodes) {
-            int ind = 0;
-            int length = nodes.getLength();
-            while (true) {
-                Object o = nodes.getDataAt(ind);
-                ind = (ind + 1) % length;
-                int id;
+        protected Object select(RList nodes, double timeout) {
+            int[] ids = new int[nodes.getLength()];
+            for (int i = 0; i < ids.length; i++) {
+                Object o = nodes.getDataAt(i);
                 if (o instanceof Integer) {
-                    id = (int) o;
+                    ids[i] = (int) o;
                 } else {
-                    id = ((RIntVector) o).getDataAt(0);
-                }
-                Object res = RChannel.poll(id);
-                if (res != null) {
-                    return RDataFactory.createList(new Object[]{id, res});
+                    ids[i] = ((RIntVector) o).getDataAt(0);
                 }
             }
+            Object[] res = new Object[1];
+            int ind = RChannel.select(ids, res, timeout < 0 ? -1 : (long) Math.ceil(timeout * 1000));
+            if (ind < 0) {
+                return RNull.instance;
+            }
+            return RDataFactory.createList(new Object[]{ids[ind], res[0]});
         }
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.nodes.builtin.fastr;
+
+import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.gte1;
+import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.numericValue;
+import static com.oracle.truffle.r.nodes.builtin.CastBuilder.Predef.stringValue;
+import static com.oracle.truffle.r.runtime.builtins.RBehavior.PURE;
+import static com.oracle.truffle.r.runtime.builtins.RBuiltinKind.PRIMITIVE;
+
+import java.util.Locale;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.r.library.stats.Cdist;
+import com.oracle.truffle.r.nodes.attributes.SpecialAttributesFunctions.GetDimAttributeNode;
+import com.oracle.truffle.r.nodes.builtin.RBuiltinNode;
+import com.oracle.truffle.r.runtime.RError;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.builtins.RBuiltin;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RList;
+import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
+
+/**
+ * FastR specific builtin that returns the {@code k} nearest neighbours of each row of a matrix
+ * according to one of the methods of {@code dist}, without materializing the distance matrix. The
+ * result is a list of two {@code nrow(x)} times {@code k} matrices: the row indices of the
+ * neighbours and the distances to them.
+ */
+@RBuiltin(name = ".fastr.dist.knn", kind = PRIMITIVE, parameterNames = {"x", "k", "method", "p"}, behavior = PURE)
+public abstract class FastrDistKnn extends RBuiltinNode.Arg4 {
+
+    private static final String[] NAMES = new String[]{"index", "distance"};
+
+    static {
+        Casts casts = new Casts(FastrDistKnn.class);
+        casts.arg("x").mustBe(numericValue(), RError.Message.MUST_BE_NUMERIC_MATRIX, "x").asDoubleVector(true, true, true);
+        casts.arg("k").asIntegerVector().findFirst().mustNotBeNA().mustBe(gte1(), RError.Message.INVALID_ARGUMENT, "k");
+        casts.arg("method").mustBe(stringValue(), RError.Message.INVALID_ARGUMENT, "method").asStringVector().findFirst();
+        casts.arg("p").asDoubleVector().findFirst();
+    }
+
+    @Override
+    public Object[] getDefaultParameterValues() {
+        return new Object[]{RRuntime.MISSING, RRuntime.MISSING, "euclidean", 2d};
+    }
+
+    @Specialization
+    protected RList knn(RAbstractDoubleVector x, int k, String method, double p,
+                    @Cached("create()") GetDimAttributeNode getDimNode) {
+        int[] dims = getDimNode.getDimensions(x);
+        if (dims == null || dims.length != 2) {
+            throw error(RError.Message.MUST_BE_NUMERIC_MATRIX, "x");
+        }
+        int nr = dims[0];
+        Cdist.Method methodObj = getMethod(method);
+        if (methodObj == Cdist.Method.MINKOWSKI && (!RRuntime.isFinite(p) || p <= 0)) {
+            throw error(RError.Message.GENERIC, "distance(): invalid p");
+        }
+        int neighbours = Math.min(k, Math.max(nr - 1, 0));
+        int[] index = new int[nr * neighbours];
+        double[] distance = new double[nr * neighbours];
+        Cdist.Kernel kernel = new Cdist.Kernel(x.materialize().getDataWithoutCopying(), nr, dims[1], methodObj, p);
+        kernel.nearestNeighbours(neighbours, index, distance);
+        boolean complete = true;
+        for (int i = 0; i < index.length && complete; i++) {
+            complete = !RRuntime.isNA(index[i]);
+        }
+        int[] resultDims = new int[]{nr, neighbours};
+        Object[] data = new Object[]{
+                        RDataFactory.createIntVector(index, complete, resultDims),
+                        RDataFactory.createDoubleVector(distance, complete, resultDims)
+        };
+        return RDataFactory.createList(data, RDataFactory.createStringVector(NAMES, RDataFactory.COMPLETE_VECTOR));
+    }
+
+    @TruffleBoundary
+    private Cdist.Method getMethod(String method) {
+        for (Cdist.Method m : Cdist.Method.values()) {
+            if (m.name().toLowerCase(Locale.ROOT).equals(method)) {
+                return m;
+            }
+        }
+        throw error(RError.Message.INVALID_ARGUMENT, "method");
+    }
+}
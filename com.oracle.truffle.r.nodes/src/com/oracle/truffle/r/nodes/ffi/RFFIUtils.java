@@ -160,13 +160,28 @@ public class RFFIUtils {
             sb.append('(');
             printArgs(sb, args);
             sb.append(')');
-            try {
-                traceStream.write(sb.toString().getBytes());
-                traceStream.write('\n');
-                traceStream.flush();
-            } catch (IOException ex) {
-                // ignore
-            }
+            writeTrace(sb.toString());
+        }
+    }
+
+    /**
+     * Traces the counters of the global references the native side of the JNI implementation
+     * created for the objects it was handed: the number of references created, of lookups that
+     * found an existing one, of references released and of references still live.
+     */
+    public static void traceGlobalRefs(long created, long reused, long released, long live) {
+        if (traceEnabled) {
+            writeTrace("GlobalRefs[created=" + created + ", reused=" + reused + ", released=" + released + ", live=" + live + "]");
+        }
+    }
+
+    private static void writeTrace(String line) {
+        try {
+            traceStream.write(line.getBytes());
+            traceStream.write('\n');
+            traceStream.flush();
+        } catch (IOException ex) {
+            // ignore
         }
     }
 
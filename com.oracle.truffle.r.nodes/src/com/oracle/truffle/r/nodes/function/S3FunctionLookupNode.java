@@ -24,6 +24,7 @@ import com.oracle.truffle.api.frame.FrameSlotTypeException;
 import com.oracle.truffle.api.frame.MaterializedFrame;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.nodes.ExplodeLoop;
+import com.oracle.truffle.api.nodes.InvalidAssumptionException;
 import com.oracle.truffle.api.nodes.NodeCost;
 import com.oracle.truffle.api.nodes.NodeInfo;
 import com.oracle.truffle.api.profiles.BranchProfile;
@@ -38,6 +39,7 @@ import com.oracle.truffle.r.runtime.RError;
 import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.RType;
+import com.oracle.truffle.r.runtime.S3DispatchTable;
 import com.oracle.truffle.r.runtime.context.RContext;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
 import com.oracle.truffle.r.runtime.data.RFunction;
@@ -46,6 +48,8 @@ import com.oracle.truffle.r.runtime.data.RPromise;
 import com.oracle.truffle.r.runtime.data.RStringVector;
 import com.oracle.truffle.r.runtime.env.REnvironment;
 import com.oracle.truffle.r.runtime.env.frame.FrameSlotChangeMonitor;
+import com.oracle.truffle.r.runtime.env.frame.FrameSlotChangeMonitor.FrameAndSlotLookupResult;
+import com.oracle.truffle.r.runtime.env.frame.FrameSlotChangeMonitor.LookupResult;
 import com.oracle.truffle.r.runtime.nodes.RBaseNode;
 
 public abstract class S3FunctionLookupNode extends RBaseNode {
@@ -428,36 +432,106 @@ public abstract class S3FunctionLookupNode extends RBaseNode {
 
         @TruffleBoundary
         private Result executeInternal(String genericName, RStringVector type, String group, MaterializedFrame callerFrame, MaterializedFrame genericDefFrame) {
+            S3DispatchTable table = RContext.getInstance().s3DispatchTable;
+            S3DispatchTable.Key key = new S3DispatchTable.Key(genericName, group, type, nextMethod, callerFrame, genericDefFrame);
+            Object cached = table.get(key);
+            Result result;
+            if (cached != null) {
+                result = cached == S3DispatchTable.NO_METHOD ? null : (Result) cached;
+            } else {
+                result = lookupAndRecord(table, key, genericName, type, group, callerFrame, genericDefFrame);
+            }
+
+            if (result == null) {
+                if (throwsError) {
+                    RFunction function = RContext.lookupBuiltin(genericName);
+                    if (function != null) {
+                        return new Result(genericName, function, RNull.instance, genericName, false);
+                    }
+                    throw RError.error(this, RError.Message.UNKNOWN_FUNCTION_USE_METHOD, genericName, RRuntime.toString(type));
+                } else {
+                    return null;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Performs the lookup and, if all names involved in it resolve to stable bindings (or to
+         * no binding at all), records the result in the context's {@link S3DispatchTable}.
+         */
+        private Result lookupAndRecord(S3DispatchTable table, S3DispatchTable.Key key, String genericName, RStringVector type, String group, MaterializedFrame callerFrame,
+                        MaterializedFrame genericDefFrame) {
+            ArrayList<LookupResult> validity = new ArrayList<>();
+            boolean[] cacheable = {true};
+
             LookupOperation op = (lookupFrame, name, inMethodsTable) -> {
-                return ReadVariableNode.lookupFunction(name, lookupFrame, inMethodsTable, true);
+                RFunction function = ReadVariableNode.lookupFunction(name, lookupFrame, inMethodsTable, true);
+                if (cacheable[0]) {
+                    // a local read only depends on the value if there is a local binding
+                    cacheable[0] = recordLookup(validity, FrameSlotChangeMonitor.lookup(lookupFrame, name), function, inMethodsTable && function == null);
+                }
+                return function;
             };
 
             GetMethodsTable getTable = () -> {
                 FrameSlot slot = genericDefFrame == null ? null : genericDefFrame.getFrameDescriptor().findFrameSlot(RRuntime.RS3MethodsTable);
                 if (slot == null) {
+                    if (genericDefFrame != null) {
+                        cacheable[0] &= recordLookup(validity, FrameSlotChangeMonitor.lookup(genericDefFrame, RRuntime.RS3MethodsTable), null, true);
+                    }
                     return null;
                 }
+                Object methodsTable;
                 try {
-                    return FrameSlotChangeMonitor.getObject(slot, genericDefFrame);
+                    methodsTable = FrameSlotChangeMonitor.getObject(slot, genericDefFrame);
                 } catch (FrameSlotTypeException e) {
                     throw RInternalError.shouldNotReachHere();
                 }
+                Object value = methodsTable instanceof RPromise && ((RPromise) methodsTable).isEvaluated() ? ((RPromise) methodsTable).getValue() : methodsTable;
+                cacheable[0] &= recordLookup(validity, FrameSlotChangeMonitor.lookup(genericDefFrame, RRuntime.RS3MethodsTable), value, false);
+                return methodsTable;
             };
 
             Result result = performLookup(callerFrame, genericName, group, type, nextMethod, op, getTable);
+            if (cacheable[0]) {
+                table.put(key, result == null ? S3DispatchTable.NO_METHOD : result, validity.toArray(new LookupResult[validity.size()]));
+            }
+            return result;
+        }
 
-            if (result == null) {
-                if (throwsError) {
-                    RFunction function = RContext.lookupBuiltin(genericName);
-                    if (function != null) {
-                        return new Result(genericName, function, RNull.instance, genericName, false);
-                    }
-                    throw RError.error(this, RError.Message.UNKNOWN_FUNCTION_USE_METHOD, genericName, RRuntime.toString(type));
-                } else {
-                    return null;
+        private static boolean recordLookup(ArrayList<LookupResult> validity, LookupResult lookup, Object value, boolean anyValue) {
+            if (isStableLookup(lookup, value, anyValue)) {
+                validity.add(lookup);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Checks that {@code lookup} is guaranteed to be invalidated as soon as the name no longer
+         * resolves to {@code value}. Lookups of bindings without a stable value cannot be cached.
+         * If {@code anyValue} is {@code true}, the binding found by the lookup is irrelevant, e.g.,
+         * because it is in an enclosing environment and the lookup only cares about the absence of
+         * a local binding. Evaluated promises in the binding are compared by their value, since
+         * {@code value} is the already forced function or methods table.
+         */
+        private static boolean isStableLookup(LookupResult lookup, Object value, boolean anyValue) {
+            if (lookup == null || lookup instanceof FrameAndSlotLookupResult) {
+                return false;
+            }
+            if (anyValue) {
+                return true;
+            }
+            try {
+                Object bound = lookup.getValue();
+                if (bound instanceof RPromise && ((RPromise) bound).isEvaluated()) {
+                    bound = ((RPromise) bound).getValue();
                 }
+                return bound == value;
+            } catch (InvalidAssumptionException e) {
+                return false;
             }
-            return result;
         }
     }
 }
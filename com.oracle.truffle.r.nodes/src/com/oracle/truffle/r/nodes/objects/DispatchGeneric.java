@@ -24,6 +24,7 @@ import com.oracle.truffle.r.nodes.RASTUtils;
 import com.oracle.truffle.r.nodes.access.variables.LocalReadVariableNode;
 import com.oracle.truffle.r.nodes.access.variables.ReadVariableNode;
 import com.oracle.truffle.r.runtime.RCaller;
+import com.oracle.truffle.r.runtime.S4DispatchTable;
 import com.oracle.truffle.r.runtime.context.RContext;
 import com.oracle.truffle.r.runtime.data.RFunction;
 import com.oracle.truffle.r.runtime.data.RStringVector;
@@ -71,13 +72,20 @@ public abstract class DispatchGeneric extends RBaseNode {
             // and installed in the methods table so that the slow path does not have to be executed
             // again
             CompilerDirectives.transferToInterpreterAndInvalidate();
-            REnvironment methodsEnv = REnvironment.getRegisteredNamespace("methods");
-            RFunction currentFunction = ReadVariableNode.lookupFunction(".InheritForDispatch", methodsEnv.getFrame(), true, true);
-            method = (RFunction) RContext.getEngine().evalFunction(currentFunction, frame.materialize(), RCaller.create(frame, RASTUtils.getOriginalCall(this)), null, classes, fdef, mtable);
+            method = inheritForDispatch(frame, mtable, classes, fdef);
         }
-        method = loadMethod.executeRFunction(frame, method, fname);
-        Object ret = executeMethod.executeObject(frame, method, fname);
-        return ret;
+        return executeMethod(frame, method, fname);
+    }
+
+    private RFunction inheritForDispatch(VirtualFrame frame, REnvironment mtable, RStringVector classes, RFunction fdef) {
+        REnvironment methodsEnv = REnvironment.getRegisteredNamespace("methods");
+        RFunction currentFunction = ReadVariableNode.lookupFunction(".InheritForDispatch", methodsEnv.getFrame(), true, true);
+        return (RFunction) RContext.getEngine().evalFunction(currentFunction, frame.materialize(), RCaller.create(frame, RASTUtils.getOriginalCall(this)), null, classes, fdef, mtable);
+    }
+
+    private Object executeMethod(VirtualFrame frame, RFunction method, String fname) {
+        RFunction loadedMethod = loadMethod.executeRFunction(frame, method, fname);
+        return executeMethod.executeObject(frame, loadedMethod, fname);
     }
 
     @SuppressWarnings("unused")
@@ -93,9 +101,17 @@ public abstract class DispatchGeneric extends RBaseNode {
 
     @Specialization(replaces = "dispatchCached")
     protected Object dispatch(VirtualFrame frame, REnvironment mtable, RStringVector classes, RFunction fdef, String fname) {
-        String dispatchString = createDispatchString(classes);
-        RFunction method = (RFunction) mtable.get(dispatchString);
-        return dispatchInternal(frame, mtable, classes, fdef, fname, method);
+        S4DispatchTable table = RContext.getInstance().s4DispatchTable;
+        RFunction method = table.get(mtable, classes);
+        if (method == null) {
+            String dispatchString = createDispatchString(classes);
+            method = (RFunction) mtable.get(dispatchString);
+            if (method == null) {
+                method = inheritForDispatch(frame, mtable, classes, fdef);
+            }
+            table.put(mtable, classes, dispatchString, method);
+        }
+        return executeMethod(frame, method, fname);
     }
 
     protected boolean equalClasses(RStringVector classes, RStringVector cachedClasses) {
@@ -105,9 +121,7 @@ public abstract class DispatchGeneric extends RBaseNode {
                 // anwyay
                 if (cachedClasses.getDataAt(i) != classes.getDataAt(i)) {
                     equalsMethodRequired.enter();
-                    if (cachedClasses.getDataAt(i).equals(classes.getDataAt(i))) {
-                        return true;
-                    } else {
+                    if (!cachedClasses.getDataAt(i).equals(classes.getDataAt(i))) {
                         return false;
                     }
                 }
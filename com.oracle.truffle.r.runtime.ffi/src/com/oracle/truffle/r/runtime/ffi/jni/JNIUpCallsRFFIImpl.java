@@ -27,8 +27,11 @@ import static com.oracle.truffle.r.nodes.ffi.RFFIUtils.guaranteeInstanceOf;
 import com.oracle.truffle.r.nodes.ffi.JavaUpCallsRFFIImpl;
 import com.oracle.truffle.r.runtime.RErrorHandling;
 import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.data.RVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
 import com.oracle.truffle.r.runtime.ffi.CharSXPWrapper;
+import com.oracle.truffle.r.runtime.ffi.UpCallsRFFI;
 
 /**
  * Some additional methods to support the native JNI side.
@@ -46,13 +49,17 @@ public class JNIUpCallsRFFIImpl extends JavaUpCallsRFFIImpl {
     }
 
     /**
-     * Called to possibly update the "complete" status on {@code x}. N.B. {@code x} may not be an
-     * object with a concrete {@code setComplete} method, e.g. see {@link #INTEGER(Object)}.
+     * Called to possibly update the "complete" status on {@code x} after native code has written
+     * back its copy of the data, which also changes the {@link RVector#getVersion() version}. N.B.
+     * {@code x} may not be an object with a concrete {@code setComplete} method, e.g. see
+     * {@link #INTEGER(Object)}.
      */
     public static void setComplete(Object x, boolean complete) {
         // only care about concrete vectors
         if (x instanceof RVector) {
-            ((RVector<?>) x).setComplete(complete);
+            RVector<?> vector = (RVector<?>) x;
+            vector.incrementVersion();
+            vector.setComplete(complete);
         }
     }
 
@@ -64,6 +71,47 @@ public class JNIUpCallsRFFIImpl extends JavaUpCallsRFFIImpl {
         System.out.println("class " + x.getClass());
     }
 
+    /**
+     * Performs the {@code count} {@code SET_STRING_ELT} calls buffered on the native side for
+     * {@code x}, clearing {@code values} as it goes. The calls go through {@code upCalls}, i.e.,
+     * the instance handed to the native side, so that they are traced like unbuffered ones.
+     */
+    public static void setStringElts(UpCallsRFFI upCalls, Object x, int[] indexes, Object[] values, int count) {
+        for (int k = 0; k < count; k++) {
+            Object element = values[k];
+            values[k] = null;
+            upCalls.SET_STRING_ELT(x, indexes[k], element);
+        }
+    }
+
+    /**
+     * Performs the {@code count} {@code SET_VECTOR_ELT} calls buffered on the native side for
+     * {@code x}, see {@link #setStringElts}.
+     */
+    public static void setVectorElts(UpCallsRFFI upCalls, Object x, int[] indexes, Object[] values, int count) {
+        for (int k = 0; k < count; k++) {
+            Object element = values[k];
+            values[k] = null;
+            upCalls.SET_VECTOR_ELT(x, indexes[k], element);
+        }
+    }
+
+    /**
+     * Stores up to {@code blockSize} {@code STRING_ELT} results of {@code x}, starting at
+     * {@code start}, in {@code result} for the native side to read ahead, see
+     * {@link #setStringElts}.
+     *
+     * @return the number of elements stored
+     */
+    public static int getStringElts(UpCallsRFFI upCalls, Object x, int start, Object[] result, int blockSize) {
+        RAbstractStringVector vector = guaranteeInstanceOf(RRuntime.asAbstractVector(x), RAbstractStringVector.class);
+        int count = Math.max(1, Math.min(blockSize, vector.getLength() - start));
+        for (int k = 0; k < count; k++) {
+            result[k] = upCalls.STRING_ELT(x, start + k);
+        }
+        return count;
+    }
+
     @Override
     public Object R_CHAR(Object x) {
         throw RInternalError.shouldNotReachHere();
@@ -97,6 +97,7 @@ public class JNI_Call implements CallRFFI {
                 } finally {
                     if (traceEnabled()) {
                         traceDownCallReturn(nativeCallInfo.name, result);
+                        traceGlobalRefs();
                     }
                 }
             }
@@ -127,6 +128,7 @@ public class JNI_Call implements CallRFFI {
                 } finally {
                     if (traceEnabled()) {
                         traceDownCallReturn(nativeCallInfo.name, null);
+                        traceGlobalRefs();
                     }
                 }
             }
@@ -154,8 +156,24 @@ public class JNI_Call implements CallRFFI {
         }
     }
 
+    @Override
+    @TruffleBoundary
+    public long[] getGlobalRefStats() {
+        long[] stats = new long[4];
+        nativeGetGlobalRefStats(stats);
+        return stats;
+    }
+
+    private static void traceGlobalRefs() {
+        long[] stats = new long[4];
+        nativeGetGlobalRefStats(stats);
+        RFFIUtils.traceGlobalRefs(stats[0], stats[1], stats[2], stats[3]);
+    }
+
     private static native void initialize(UpCallsRFFI upCallRFFI, RFFIVariables[] variables);
 
+    private static native void nativeGetGlobalRefStats(long[] stats);
+
     private static native void nativeSetTempDir(String tempDir);
 
     private static native void nativeSetInteractive(boolean interactive);
@@ -23,8 +23,14 @@
 package com.oracle.truffle.r.runtime;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 import com.oracle.truffle.r.runtime.data.RComplex;
+import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractIntVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
 
 public final class Collections {
 
@@ -32,51 +38,74 @@ public final class Collections {
         // private
     }
 
-    // simple implementations of non-recursive hash-maps to enable compilation
-    // TODO: consider replacing with a more efficient library implementation
+    /*
+     * Simple implementations of non-recursive hash-maps and hash-sets to enable compilation. They
+     * all use open addressing with linear probing in power-of-two sized arrays, the slot of a key is
+     * given by the top bits of its hash multiplied by the golden ratio (so that hashes that only
+     * differ in their high bits, e.g., those of integral doubles, are spread evenly).
+     */
+
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+    private static int tableLength(int entryCount) {
+        int capacity = (int) Math.min(Math.max(entryCount * 3L / 2, 1), 1 << 29);
+        return Integer.highestOneBit(capacity) << 1;
+    }
+
+    private static int tableShift(int length) {
+        return Integer.numberOfLeadingZeros(length) + 1;
+    }
 
     public static class NonRecursiveHashSet<KEY> {
 
         private Object[] keys;
+        private int[] hashes;
+        private int shift;
+        private int size;
 
         public NonRecursiveHashSet(int approxCapacity) {
-            keys = new Object[Math.max(approxCapacity, 1)];
+            allocate(tableLength(approxCapacity));
+        }
+
+        private void allocate(int length) {
+            keys = new Object[length];
+            hashes = new int[length];
+            shift = tableShift(length);
         }
 
         public boolean add(KEY key) {
-            int ind = Math.abs(key.hashCode()) % keys.length;
-            int firstInd = ind;
+            int hash = key.hashCode();
+            int mask = keys.length - 1;
+            int ind = (hash * GOLDEN_RATIO) >>> shift;
             while (true) {
-                if (keys[ind] == null) {
+                Object existing = keys[ind];
+                if (existing == null) {
                     keys[ind] = key;
+                    hashes[ind] = hash;
+                    if (++size > (keys.length >> 2) * 3) {
+                        rehash();
+                    }
                     return false;
-                } else if (key.equals(keys[ind])) {
+                } else if (hashes[ind] == hash && key.equals(existing)) {
                     return true;
-                } else {
-                    ind = (ind + 1) % keys.length;
-                    if (ind == firstInd) {
-                        // resize
-                        Object[] newKeys = new Object[keys.length + keys.length / 2];
-                        for (int i = 0; i < keys.length; i++) {
-                            if (keys[i] != null) {
-                                int tmpInd = Math.abs(keys[i].hashCode()) % newKeys.length;
-                                while (true) {
-                                    if (newKeys[tmpInd] == null) {
-                                        newKeys[tmpInd] = keys[i];
-                                        break;
-                                    } else {
-                                        assert !keys[i].equals(newKeys[tmpInd]);
-                                        tmpInd = (tmpInd + 1) % newKeys.length;
-                                    }
-                                }
-                            }
-                        }
-
-                        keys = newKeys;
+                }
+                ind = (ind + 1) & mask;
+            }
+        }
 
-                        // start hashing from the beginning
-                        ind = Math.abs(key.hashCode()) % keys.length;
+        private void rehash() {
+            Object[] oldKeys = keys;
+            int[] oldHashes = hashes;
+            allocate(oldKeys.length << 1);
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int ind = (oldHashes[i] * GOLDEN_RATIO) >>> shift;
+                    while (keys[ind] != null) {
+                        ind = (ind + 1) & mask;
                     }
+                    keys[ind] = oldKeys[i];
+                    hashes[ind] = oldHashes[i];
                 }
             }
         }
@@ -84,172 +113,372 @@ public final class Collections {
 
     public static class NonRecursiveHashSetDouble {
 
-        private double[] keys;
+        private final NonRecursiveHashMapDouble map;
 
         public NonRecursiveHashSetDouble(int approxCapacity) {
-            keys = new double[Math.max(approxCapacity, 1)];
-            Arrays.fill(keys, RRuntime.DOUBLE_NA);
+            map = new NonRecursiveHashMapDouble(approxCapacity);
         }
 
+        /**
+         * Adds {@code key} to the set, NA and NaN are distinct values.
+         *
+         * @return {@code true} if {@code key} was already in the set
+         */
         public boolean add(double key) {
-            int ind = Math.abs(Double.hashCode(key)) % keys.length;
-            int firstInd = ind;
-            while (true) {
-                if (RRuntime.isNAorNaN(keys[ind])) {
-                    keys[ind] = key;
-                    return false;
-                } else if (key == keys[ind]) {
-                    return true;
-                } else {
-                    ind = (ind + 1) % keys.length;
-                    if (ind == firstInd) {
-                        // resize
-                        double[] newKeys = new double[keys.length + keys.length / 2];
-                        Arrays.fill(newKeys, RRuntime.DOUBLE_NA);
-                        for (int i = 0; i < keys.length; i++) {
-                            if (!RRuntime.isNAorNaN(keys[i])) {
-                                int tmpInd = Math.abs(Double.hashCode(keys[i])) % newKeys.length;
-                                while (true) {
-                                    if (RRuntime.isNAorNaN(newKeys[tmpInd])) {
-                                        newKeys[tmpInd] = keys[i];
-                                        break;
-                                    } else {
-                                        assert keys[i] != newKeys[tmpInd];
-                                        tmpInd = (tmpInd + 1) % newKeys.length;
-                                    }
-                                }
-                            }
-                        }
-
-                        keys = newKeys;
+            return map.putIfAbsent(key, 0);
+        }
 
-                        // start hashing from the beginning
-                        ind = Math.abs(Double.hashCode(key)) % keys.length;
-                    }
-                }
-            }
+        public boolean contains(double key) {
+            return map.get(key) != -1;
         }
     }
 
     public static class NonRecursiveHashSetInt {
 
-        private int[] keys;
+        private final NonRecursiveHashMapInt map;
 
         public NonRecursiveHashSetInt(int approxCapacity) {
-            keys = new int[Math.max(approxCapacity, 1)];
-            Arrays.fill(keys, RRuntime.INT_NA);
+            map = new NonRecursiveHashMapInt(approxCapacity);
         }
 
+        /**
+         * Adds {@code key} to the set.
+         *
+         * @return {@code true} if {@code key} was already in the set
+         */
         public boolean add(int key) {
-            int ind = Math.abs(Integer.hashCode(key)) % keys.length;
-            int firstInd = ind;
-            while (true) {
-                if (RRuntime.isNA(keys[ind])) {
-                    keys[ind] = key;
-                    return false;
-                } else if (key == keys[ind]) {
-                    return true;
-                } else {
-                    ind = (ind + 1) % keys.length;
-                    if (ind == firstInd) {
-                        // resize
-                        int[] newKeys = new int[keys.length + keys.length / 2];
-                        Arrays.fill(newKeys, RRuntime.INT_NA);
-                        for (int i = 0; i < keys.length; i++) {
-                            if (!RRuntime.isNA(keys[i])) {
-                                int tmpInd = Math.abs(Integer.hashCode(keys[i])) % newKeys.length;
-                                while (true) {
-                                    if (RRuntime.isNA(newKeys[tmpInd])) {
-                                        newKeys[tmpInd] = keys[i];
-                                        break;
-                                    } else {
-                                        assert keys[i] != newKeys[tmpInd];
-                                        tmpInd = (tmpInd + 1) % newKeys.length;
-                                    }
-                                }
-                            }
-                        }
+            return map.putIfAbsent(key, 0);
+        }
 
-                        keys = newKeys;
+        public boolean contains(int key) {
+            return map.get(key) != -1;
+        }
+    }
 
-                        // start hashing from the beginning
-                        ind = Math.abs(Integer.hashCode(key)) % keys.length;
-                    }
-                }
-            }
+    public static class NonRecursiveHashSetCharacter {
+
+        private final NonRecursiveHashMapCharacter map;
+
+        public NonRecursiveHashSetCharacter(int approxCapacity) {
+            map = new NonRecursiveHashMapCharacter(approxCapacity);
+        }
+
+        /**
+         * Adds {@code key} to the set.
+         *
+         * @return {@code true} if {@code key} was already in the set
+         */
+        public boolean add(String key) {
+            return map.putIfAbsent(key, 0);
+        }
+
+        public boolean contains(String key) {
+            return map.get(key) != -1;
         }
     }
 
-    private abstract static class NonRecursiveHashMap {
+    public static class NonRecursiveHashSetComplex {
+
+        private final NonRecursiveHashMapComplex map;
+
+        public NonRecursiveHashSetComplex(int approxCapacity) {
+            map = new NonRecursiveHashMapComplex(approxCapacity);
+        }
+
+        /**
+         * Adds {@code key} to the set.
+         *
+         * @return {@code true} if {@code key} was already in the set
+         */
+        public boolean add(RComplex key) {
+            return map.putIfAbsent(key, 0);
+        }
+
+        public boolean contains(RComplex key) {
+            return map.get(key) != -1;
+        }
+    }
 
-        protected final int[] values;
+    /**
+     * Base class of the maps from keys to non-negative {@code int} values. The value of a slot is
+     * stored incremented by one, so that zero denotes an empty slot, the NA key (and the NaN key for
+     * doubles) is kept outside of the slots. The maps grow as needed, but the arrays can also be
+     * sized and reused with {@link #reset(int)}.
+     *
+     * Large maps can be built from a vector with {@code putFirstIndices}, which for at least
+     * {@link #PARALLEL_THRESHOLD} elements splits the slots into one partition per thread of the
+     * common {@link ForkJoinPool}. The partition of a key is given by the top bits of its slot, and
+     * probing wraps around within the partition, so each thread can insert the keys of its partition
+     * without synchronization.
+     */
+    public abstract static class NonRecursiveHashMap {
+
+        public static final int PARALLEL_THRESHOLD = 1 << 18;
+
+        /**
+         * Minimum number of slots in a partition.
+         */
+        private static final int MIN_PARTITION_LENGTH = 1 << 12;
+
+        protected int[] values;
         protected int naValue;
+        protected int size;
+        private int shift;
+        /**
+         * Selects the bits of a slot index that change while probing, i.e., all of them unless the
+         * map was built in partitions.
+         */
+        private int probeMask;
 
         protected NonRecursiveHashMap(int entryCount) {
-            int capacity = Math.max(entryCount * 3 / 2, 1);
-            values = new int[Integer.highestOneBit(capacity) << 1];
+            allocate(tableLength(entryCount));
         }
 
-        protected int index(int hash) {
-            // Multiply by -127
-            return ((hash << 1) - (hash << 8)) & (values.length - 1);
+        protected void allocate(int length) {
+            values = new int[length];
+            shift = tableShift(length);
+            probeMask = length - 1;
+        }
+
+        protected final int index(int hash) {
+            return (hash * GOLDEN_RATIO) >>> shift;
+        }
+
+        protected final int next(int ind) {
+            return ((ind + 1) & probeMask) | (ind & ~probeMask);
+        }
+
+        /**
+         * Must be called before a new key is inserted.
+         */
+        protected final void beforeInsert() {
+            if (probeMask != values.length - 1) {
+                // partitions could overflow
+                rehash(values.length);
+            } else if (size >= (values.length >> 2) * 3) {
+                rehash(values.length << 1);
+            }
+        }
+
+        /**
+         * Reinserts all keys into arrays of the given length.
+         */
+        protected abstract void rehash(int length);
+
+        /**
+         * Removes all keys, keeping the arrays if they are large enough for {@code entryCount} keys.
+         */
+        public void reset(int entryCount) {
+            int length = tableLength(entryCount);
+            if (length > values.length || length < values.length >> 2) {
+                allocate(length);
+            } else {
+                clearSlots();
+                probeMask = values.length - 1;
+            }
+            naValue = 0;
+            size = 0;
+        }
+
+        protected void clearSlots() {
+            Arrays.fill(values, 0);
+        }
+
+        public int size() {
+            return size + (naValue != 0 ? 1 : 0);
+        }
+
+        protected interface SlotInserter {
+            /**
+             * Inserts element {@code i}, whose slot is {@code ind}, unless its key is already there.
+             *
+             * @return {@code true} if a key was inserted into the slots
+             */
+            boolean insert(int i, int ind);
+        }
+
+        /**
+         * Inserts the elements {@code 0 .. length - 1}, keeping the smallest index for each key.
+         * All NA (and NaN) keys must have the same hash, so that they are handled by a single task.
+         */
+        protected final void insertAll(int length, IntUnaryOperator hash, SlotInserter inserter) {
+            reset(length);
+            // at least one partition per thread
+            int partitionBits = Integer.SIZE - Integer.numberOfLeadingZeros(ForkJoinPool.getCommonPoolParallelism() - 1);
+            while (partitionBits > 0 && values.length >> partitionBits < MIN_PARTITION_LENGTH) {
+                partitionBits--;
+            }
+            if (length >= PARALLEL_THRESHOLD && partitionBits > 0 && insertPartitioned(length, hash, inserter, partitionBits)) {
+                return;
+            }
+            for (int i = 0; i < length; i++) {
+                if (inserter.insert(i, index(hash.applyAsInt(i)))) {
+                    size++;
+                }
+            }
+        }
+
+        private boolean insertPartitioned(int length, IntUnaryOperator hash, SlotInserter inserter, int partitionBits) {
+            int[] hashes = new int[length];
+            Arrays.parallelSetAll(hashes, hash);
+            int partitionShift = Integer.numberOfTrailingZeros(values.length) - partitionBits;
+            int partitionLimit = ((values.length >> partitionBits) >> 3) * 7;
+            int[] sizes = new int[1 << partitionBits];
+            probeMask = (values.length >> partitionBits) - 1;
+            boolean success = IntStream.range(0, sizes.length).parallel().allMatch(p -> {
+                int count = 0;
+                for (int i = 0; i < length; i++) {
+                    int ind = index(hashes[i]);
+                    if (ind >>> partitionShift == p && inserter.insert(i, ind)) {
+                        if (++count > partitionLimit) {
+                            // very uneven distribution of the keys
+                            return false;
+                        }
+                    }
+                }
+                sizes[p] = count;
+                return true;
+            });
+            if (!success) {
+                reset(length);
+                return false;
+            }
+            for (int count : sizes) {
+                size += count;
+            }
+            return true;
         }
     }
 
     public static final class NonRecursiveHashMapCharacter extends NonRecursiveHashMap {
 
-        private final String[] keys;
+        private String[] keys;
+        /**
+         * The hash of the key in each slot, compared before calling {@link String#equals}.
+         */
+        private int[] hashes;
 
         public NonRecursiveHashMapCharacter(int approxCapacity) {
             super(approxCapacity);
-            keys = new String[values.length];
+        }
+
+        @Override
+        protected void allocate(int length) {
+            super.allocate(length);
+            keys = new String[length];
+            hashes = new int[length];
+        }
+
+        @Override
+        protected void clearSlots() {
+            super.clearSlots();
+            Arrays.fill(keys, null);
         }
 
         public boolean put(String key, int value) {
+            return put(key, value, true);
+        }
+
+        /**
+         * Like {@link #put}, but does not replace the value if {@code key} is already present.
+         */
+        public boolean putIfAbsent(String key, int value) {
+            return put(key, value, false);
+        }
+
+        private boolean put(String key, int value, boolean replace) {
             assert value >= 0;
             if (RRuntime.isNA(key)) {
-                boolean ret = naValue == 0;
-                naValue = value + 1;
+                boolean ret = naValue != 0;
+                if (!ret || replace) {
+                    naValue = value + 1;
+                }
                 return ret;
             } else {
                 int keyHash = key.hashCode();
                 int ind = index(keyHash);
                 while (true) {
                     if (values[ind] == 0) {
-                        keys[ind] = key;
-                        values[ind] = value + 1;
+                        beforeInsert();
+                        insertAt(key, keyHash, value, index(keyHash));
+                        size++;
                         return false;
-                    } else if (keys[ind].hashCode() == keyHash && key.equals(keys[ind])) {
-                        values[ind] = value + 1;
-                        return true;
-                    } else {
-                        ind++;
-                        if (ind == values.length) {
-                            ind = 0;
+                    } else if (hashes[ind] == keyHash && key.equals(keys[ind])) {
+                        if (replace) {
+                            values[ind] = value + 1;
                         }
+                        return true;
                     }
+                    ind = next(ind);
                 }
             }
         }
 
+        private void insertAt(String key, int keyHash, int value, int start) {
+            int ind = start;
+            while (values[ind] != 0) {
+                ind = next(ind);
+            }
+            keys[ind] = key;
+            hashes[ind] = keyHash;
+            values[ind] = value + 1;
+        }
+
         public int get(String key) {
             if (RRuntime.isNA(key)) {
                 return naValue - 1;
             } else {
-                int ind = index(key.hashCode());
-                int firstInd = ind;
+                int keyHash = key.hashCode();
+                int ind = index(keyHash);
                 while (true) {
-                    if (key.equals(keys[ind])) {
-                        return values[ind] - 1;
-                    } else {
-                        ind++;
-                        if (ind == values.length) {
-                            ind = 0;
-                        }
-                        if (ind == firstInd || values[ind] == 0) {
-                            return -1;
-                        }
+                    int value = values[ind];
+                    if (value == 0) {
+                        return -1;
+                    } else if (hashes[ind] == keyHash && key.equals(keys[ind])) {
+                        return value - 1;
                     }
+                    ind = next(ind);
+                }
+            }
+        }
+
+        /**
+         * Replaces the contents of this map with the index of the first occurrence of each element
+         * of {@code vector}.
+         */
+        public void putFirstIndices(RAbstractStringVector vector) {
+            insertAll(vector.getLength(), i -> vector.getDataAt(i).hashCode(), (i, start) -> {
+                String key = vector.getDataAt(i);
+                if (RRuntime.isNA(key)) {
+                    if (naValue == 0) {
+                        naValue = i + 1;
+                    }
+                    return false;
+                }
+                int keyHash = key.hashCode();
+                int ind = start;
+                while (values[ind] != 0) {
+                    if (hashes[ind] == keyHash && key.equals(keys[ind])) {
+                        return false;
+                    }
+                    ind = next(ind);
+                }
+                keys[ind] = key;
+                hashes[ind] = keyHash;
+                values[ind] = i + 1;
+                return true;
+            });
+        }
+
+        @Override
+        protected void rehash(int length) {
+            String[] oldKeys = keys;
+            int[] oldHashes = hashes;
+            int[] oldValues = values;
+            allocate(length);
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != 0) {
+                    insertAt(oldKeys[i], oldHashes[i], oldValues[i] - 1, index(oldHashes[i]));
                 }
             }
         }
@@ -257,57 +486,96 @@ public final class Collections {
 
     public static final class NonRecursiveHashMapComplex extends NonRecursiveHashMap {
 
-        private final RComplex[] keys;
+        private RComplex[] keys;
 
         public NonRecursiveHashMapComplex(int approxCapacity) {
             super(approxCapacity);
-            keys = new RComplex[values.length];
+        }
+
+        @Override
+        protected void allocate(int length) {
+            super.allocate(length);
+            keys = new RComplex[length];
+        }
+
+        @Override
+        protected void clearSlots() {
+            super.clearSlots();
+            Arrays.fill(keys, null);
         }
 
         public boolean put(RComplex key, int value) {
+            return put(key, value, true);
+        }
+
+        /**
+         * Like {@link #put}, but does not replace the value if {@code key} is already present.
+         */
+        public boolean putIfAbsent(RComplex key, int value) {
+            return put(key, value, false);
+        }
+
+        private boolean put(RComplex key, int value, boolean replace) {
             assert value >= 0;
             if (RRuntime.isNA(key)) {
-                boolean ret = naValue == 0;
-                naValue = value + 1;
+                boolean ret = naValue != 0;
+                if (!ret || replace) {
+                    naValue = value + 1;
+                }
                 return ret;
             } else {
                 int ind = index(key.hashCode());
                 while (true) {
                     if (values[ind] == 0) {
-                        keys[ind] = key;
-                        values[ind] = value + 1;
+                        beforeInsert();
+                        insertAt(key, value);
+                        size++;
                         return false;
                     } else if (key.equals(keys[ind])) {
-                        values[ind] = value + 1;
-                        return true;
-                    } else {
-                        ind++;
-                        if (ind == values.length) {
-                            ind = 0;
+                        if (replace) {
+                            values[ind] = value + 1;
                         }
+                        return true;
                     }
+                    ind = next(ind);
                 }
             }
         }
 
+        private void insertAt(RComplex key, int value) {
+            int ind = index(key.hashCode());
+            while (values[ind] != 0) {
+                ind = next(ind);
+            }
+            keys[ind] = key;
+            values[ind] = value + 1;
+        }
+
         public int get(RComplex key) {
             if (RRuntime.isNA(key)) {
                 return naValue - 1;
             } else {
                 int ind = index(key.hashCode());
-                int firstInd = ind;
                 while (true) {
-                    if (key.equals(keys[ind])) {
-                        return values[ind] - 1;
-                    } else {
-                        ind++;
-                        if (ind == values.length) {
-                            ind = 0;
-                        }
-                        if (ind == firstInd || values[ind] == 0) {
-                            return -1;
-                        }
+                    int value = values[ind];
+                    if (value == 0) {
+                        return -1;
+                    } else if (key.equals(keys[ind])) {
+                        return value - 1;
                     }
+                    ind = next(ind);
+                }
+            }
+        }
+
+        @Override
+        protected void rehash(int length) {
+            RComplex[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(length);
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != 0) {
+                    insertAt(oldKeys[i], oldValues[i] - 1);
                 }
             }
         }
@@ -315,65 +583,147 @@ public final class Collections {
 
     public static final class NonRecursiveHashMapDouble extends NonRecursiveHashMap {
 
-        private final double[] keys;
+        private double[] keys;
         private int nanValue;
 
         public NonRecursiveHashMapDouble(int approxCapacity) {
             super(approxCapacity);
-            keys = new double[values.length];
-            Arrays.fill(keys, RRuntime.DOUBLE_NA);
+        }
+
+        @Override
+        protected void allocate(int length) {
+            super.allocate(length);
+            keys = new double[length];
+        }
+
+        @Override
+        public void reset(int entryCount) {
+            super.reset(entryCount);
+            nanValue = 0;
+        }
+
+        @Override
+        public int size() {
+            return super.size() + (nanValue != 0 ? 1 : 0);
+        }
+
+        /**
+         * All NaNs (including NA) have the same hash and {@code -0} hashes like {@code 0}.
+         */
+        private static int hash(double key) {
+            return Double.hashCode(key + 0.0);
         }
 
         public boolean put(double key, int value) {
+            return put(key, value, true);
+        }
+
+        /**
+         * Like {@link #put}, but does not replace the value if {@code key} is already present.
+         */
+        public boolean putIfAbsent(double key, int value) {
+            return put(key, value, false);
+        }
+
+        private boolean put(double key, int value, boolean replace) {
             assert value >= 0;
             if (RRuntime.isNA(key)) {
-                boolean ret = naValue == 0;
-                naValue = value + 1;
+                boolean ret = naValue != 0;
+                if (!ret || replace) {
+                    naValue = value + 1;
+                }
                 return ret;
             } else if (Double.isNaN(key)) {
-                boolean ret = nanValue == 0;
-                nanValue = value + 1;
+                boolean ret = nanValue != 0;
+                if (!ret || replace) {
+                    nanValue = value + 1;
+                }
                 return ret;
             } else {
-                int ind = index(Double.hashCode(key));
+                int ind = index(hash(key));
                 while (true) {
                     if (values[ind] == 0) {
-                        keys[ind] = key;
-                        values[ind] = value + 1;
+                        beforeInsert();
+                        insertAt(key, value);
+                        size++;
                         return false;
                     } else if (key == keys[ind]) {
-                        values[ind] = value + 1;
-                        return true;
-                    } else {
-                        ind++;
-                        if (ind == values.length) {
-                            ind = 0;
+                        if (replace) {
+                            values[ind] = value + 1;
                         }
+                        return true;
                     }
+                    ind = next(ind);
                 }
             }
         }
 
+        private void insertAt(double key, int value) {
+            int ind = index(hash(key));
+            while (values[ind] != 0) {
+                ind = next(ind);
+            }
+            keys[ind] = key;
+            values[ind] = value + 1;
+        }
+
         public int get(double key) {
             if (RRuntime.isNA(key)) {
                 return naValue - 1;
             } else if (Double.isNaN(key)) {
                 return nanValue - 1;
             } else {
-                int ind = index(Double.hashCode(key));
-                int firstInd = ind;
+                int ind = index(hash(key));
                 while (true) {
-                    if (key == keys[ind]) {
-                        return values[ind] - 1;
-                    } else {
-                        ind++;
-                        if (ind == values.length) {
-                            ind = 0;
-                        }
-                        if (ind == firstInd || values[ind] == 0) {
-                            return -1;
+                    int value = values[ind];
+                    if (value == 0) {
+                        return -1;
+                    } else if (key == keys[ind]) {
+                        return value - 1;
+                    }
+                    ind = next(ind);
+                }
+            }
+        }
+
+        /**
+         * Replaces the contents of this map with the index of the first occurrence of each element
+         * of {@code vector}.
+         */
+        public void putFirstIndices(RAbstractDoubleVector vector) {
+            insertAll(vector.getLength(), i -> hash(vector.getDataAt(i)), (i, start) -> {
+                double key = vector.getDataAt(i);
+                if (Double.isNaN(key)) {
+                    if (RRuntime.isNA(key)) {
+                        if (naValue == 0) {
+                            naValue = i + 1;
                         }
+                    } else if (nanValue == 0) {
+                        nanValue = i + 1;
                     }
+                    return false;
+                }
+                int ind = start;
+                while (values[ind] != 0) {
+                    if (key == keys[ind]) {
+                        return false;
+                    }
+                    ind = next(ind);
+                }
+                keys[ind] = key;
+                values[ind] = i + 1;
+                return true;
+            });
+        }
+
+        @Override
+        protected void rehash(int length) {
+            double[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(length);
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != 0) {
+                    insertAt(oldKeys[i], oldValues[i] - 1);
                 }
             }
         }
@@ -381,58 +731,116 @@ public final class Collections {
 
     public static final class NonRecursiveHashMapInt extends NonRecursiveHashMap {
 
-        private final int[] keys;
+        private int[] keys;
 
         public NonRecursiveHashMapInt(int approxCapacity) {
             super(approxCapacity);
-            keys = new int[values.length];
-            Arrays.fill(keys, RRuntime.INT_NA);
+        }
+
+        @Override
+        protected void allocate(int length) {
+            super.allocate(length);
+            keys = new int[length];
         }
 
         public boolean put(int key, int value) {
+            return put(key, value, true);
+        }
+
+        /**
+         * Like {@link #put}, but does not replace the value if {@code key} is already present.
+         */
+        public boolean putIfAbsent(int key, int value) {
+            return put(key, value, false);
+        }
+
+        private boolean put(int key, int value, boolean replace) {
             assert value >= 0;
             if (RRuntime.isNA(key)) {
-                boolean ret = naValue == 0;
-                naValue = value + 1;
+                boolean ret = naValue != 0;
+                if (!ret || replace) {
+                    naValue = value + 1;
+                }
                 return ret;
             } else {
-                int ind = index(Integer.hashCode(key));
+                int ind = index(key);
                 while (true) {
                     if (values[ind] == 0) {
-                        keys[ind] = key;
-                        values[ind] = value + 1;
+                        beforeInsert();
+                        insertAt(key, value);
+                        size++;
                         return false;
                     } else if (key == keys[ind]) {
-                        values[ind] = value + 1;
-                        return true;
-                    } else {
-                        ind++;
-                        if (ind == values.length) {
-                            ind = 0;
+                        if (replace) {
+                            values[ind] = value + 1;
                         }
+                        return true;
                     }
+                    ind = next(ind);
                 }
             }
         }
 
+        private void insertAt(int key, int value) {
+            int ind = index(key);
+            while (values[ind] != 0) {
+                ind = next(ind);
+            }
+            keys[ind] = key;
+            values[ind] = value + 1;
+        }
+
         public int get(int key) {
             if (RRuntime.isNA(key)) {
                 return naValue - 1;
             } else {
-                int ind = index(Integer.hashCode(key));
-                int firstInd = ind;
+                int ind = index(key);
                 while (true) {
+                    int value = values[ind];
+                    if (value == 0) {
+                        return -1;
+                    } else if (key == keys[ind]) {
+                        return value - 1;
+                    }
+                    ind = next(ind);
+                }
+            }
+        }
+
+        /**
+         * Replaces the contents of this map with the index of the first occurrence of each element
+         * of {@code vector}.
+         */
+        public void putFirstIndices(RAbstractIntVector vector) {
+            insertAll(vector.getLength(), i -> vector.getDataAt(i), (i, start) -> {
+                int key = vector.getDataAt(i);
+                if (RRuntime.isNA(key)) {
+                    if (naValue == 0) {
+                        naValue = i + 1;
+                    }
+                    return false;
+                }
+                int ind = start;
+                while (values[ind] != 0) {
                     if (key == keys[ind]) {
-                        return values[ind] - 1;
-                    } else {
-                        ind++;
-                        if (ind == values.length) {
-                            ind = 0;
-                        }
-                        if (ind == firstInd || values[ind] == 0) {
-                            return -1;
-                        }
+                        return false;
                     }
+                    ind = next(ind);
+                }
+                keys[ind] = key;
+                values[ind] = i + 1;
+                return true;
+            });
+        }
+
+        @Override
+        protected void rehash(int length) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(length);
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != 0) {
+                    insertAt(oldKeys[i], oldValues[i] - 1);
                 }
             }
         }
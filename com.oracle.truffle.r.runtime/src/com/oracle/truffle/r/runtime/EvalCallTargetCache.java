@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.RootCallTarget;
+import com.oracle.truffle.api.frame.FrameDescriptor;
+import com.oracle.truffle.r.runtime.data.REmpty;
+import com.oracle.truffle.r.runtime.data.RMissing;
+import com.oracle.truffle.r.runtime.data.RNull;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxCall;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxConstant;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxElement;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxFunction;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxLookup;
+import com.oracle.truffle.r.runtime.nodes.RSyntaxVisitor;
+
+/**
+ * Per-context cache of the call targets used by {@code eval} of language objects, so that
+ * evaluating the same expression repeatedly does not create a new root every time (and the root
+ * can eventually be compiled). As the nodes of a call target specialize to the frame descriptor
+ * they are executed with, a call target is only reused for frames with the same descriptor, as is
+ * done for promise closures.
+ *
+ * Call targets are looked up by the identity of the (weakly referenced) expression first, and then
+ * by its structure, so that expressions that are created anew for every evaluation, e.g., by
+ * {@code parse(text = ...)}, can share a call target. Only expressions consisting of calls,
+ * lookups and scalar constants are looked up by structure, as function definitions keep their
+ * source. The structural entries are bounded and the least recently used ones are evicted. The
+ * identity entries are kept apart, they do not count towards the bound and disappear with their
+ * expression.
+ *
+ * Frames that are created for a single evaluation, e.g., by {@code eval(e, list(...))}, have a new
+ * descriptor every time. Nothing is cached for a descriptor until it is seen a second time, so
+ * that such evaluations do not evict the entries that can be reused.
+ */
+public final class EvalCallTargetCache {
+
+    private static final int MAX_ENTRIES = 4096;
+
+    private final ReferenceQueue<RSyntaxElement> queue = new ReferenceQueue<>();
+    private final HashMap<IdentityKey, RootCallTarget> aliases = new HashMap<>();
+    private final WeakHashMap<FrameDescriptor, Boolean> seenDescriptors = new WeakHashMap<>();
+    private final LinkedHashMap<StructuralKey, RootCallTarget> targets = new LinkedHashMap<StructuralKey, RootCallTarget>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<StructuralKey, RootCallTarget> eldest) {
+            if (size() > MAX_ENTRIES) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private long hits;
+    private long structuralHits;
+    private long misses;
+    private long evictions;
+
+    private static final class IdentityKey extends WeakReference<RSyntaxElement> {
+        private final FrameDescriptor descriptor;
+        private final int hash;
+
+        IdentityKey(RSyntaxElement expr, FrameDescriptor descriptor, ReferenceQueue<RSyntaxElement> queue) {
+            super(expr, queue);
+            this.descriptor = descriptor;
+            this.hash = System.identityHashCode(expr) * 31 + System.identityHashCode(descriptor);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IdentityKey)) {
+                return false;
+            }
+            IdentityKey other = (IdentityKey) obj;
+            RSyntaxElement expr = get();
+            return hash == other.hash && descriptor == other.descriptor && expr != null && expr == other.get();
+        }
+    }
+
+    private static final class StructuralKey {
+        private final String structure;
+        private final FrameDescriptor descriptor;
+
+        StructuralKey(String structure, FrameDescriptor descriptor) {
+            this.structure = structure;
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public int hashCode() {
+            return structure.hashCode() * 31 + System.identityHashCode(descriptor);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof StructuralKey)) {
+                return false;
+            }
+            StructuralKey other = (StructuralKey) obj;
+            return descriptor == other.descriptor && structure.equals(other.structure);
+        }
+    }
+
+    /**
+     * Returns the call target for evaluating {@code expr} in frames with the given descriptor,
+     * creating it with {@code factory} if there is none. The call target created by the factory
+     * must not refer to {@code expr} itself, but to a copy of it.
+     */
+    @TruffleBoundary
+    public synchronized RootCallTarget get(RSyntaxElement expr, FrameDescriptor descriptor, Supplier<RootCallTarget> factory) {
+        expungeStaleEntries();
+        IdentityKey identityKey = new IdentityKey(expr, descriptor, queue);
+        RootCallTarget result = aliases.get(identityKey);
+        if (result != null) {
+            hits++;
+            return result;
+        }
+        if (seenDescriptors.put(descriptor, Boolean.TRUE) == null) {
+            misses++;
+            return factory.get();
+        }
+        String structure = StructureVisitor.structure(expr);
+        StructuralKey structuralKey = structure == null ? null : new StructuralKey(structure, descriptor);
+        if (structuralKey != null) {
+            result = targets.get(structuralKey);
+        }
+        if (result != null) {
+            structuralHits++;
+        } else {
+            misses++;
+            result = factory.get();
+            if (structuralKey != null) {
+                targets.put(structuralKey, result);
+            }
+        }
+        aliases.put(identityKey, result);
+        return result;
+    }
+
+    private void expungeStaleEntries() {
+        Object stale;
+        while ((stale = queue.poll()) != null) {
+            aliases.remove(stale);
+        }
+    }
+
+    public synchronized void clear() {
+        aliases.clear();
+        seenDescriptors.clear();
+        targets.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getStructuralHits() {
+        return structuralHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of structural entries, which is bounded.
+     */
+    public synchronized int getSize() {
+        return targets.size();
+    }
+
+    /**
+     * Encodes the structure of an expression as a string, or returns {@code null} if the
+     * expression contains anything but calls, lookups and scalar constants. Double constants are
+     * encoded by their bits, so that only identical constants match.
+     */
+    private static final class StructureVisitor extends RSyntaxVisitor<Boolean> {
+        private final StringBuilder sb = new StringBuilder();
+
+        static String structure(RSyntaxElement expr) {
+            StructureVisitor visitor = new StructureVisitor();
+            return visitor.accept(expr) ? visitor.sb.toString() : null;
+        }
+
+        @Override
+        protected Boolean visit(RSyntaxCall element) {
+            sb.append('(');
+            if (!accept(element.getSyntaxLHS())) {
+                return false;
+            }
+            RSyntaxElement[] arguments = element.getSyntaxArguments();
+            ArgumentsSignature signature = element.getSyntaxSignature();
+            for (int i = 0; i < arguments.length; i++) {
+                String name = signature.getName(i);
+                sb.append(',');
+                if (name != null) {
+                    appendString(name);
+                    sb.append('=');
+                }
+                if (arguments[i] == null) {
+                    sb.append('_');
+                } else if (!accept(arguments[i])) {
+                    return false;
+                }
+            }
+            sb.append(')');
+            return true;
+        }
+
+        @Override
+        protected Boolean visit(RSyntaxConstant element) {
+            Object value = element.getValue();
+            if (value instanceof String) {
+                sb.append('s');
+                appendString((String) value);
+            } else if (value instanceof Double) {
+                sb.append('d').append(Long.toHexString(Double.doubleToRawLongBits((Double) value)));
+            } else if (value instanceof Integer) {
+                sb.append('i').append((int) value);
+            } else if (value instanceof Byte) {
+                sb.append('b').append((byte) value);
+            } else if (value == RNull.instance) {
+                sb.append('N');
+            } else if (value == RMissing.instance) {
+                sb.append('M');
+            } else if (value == REmpty.instance) {
+                sb.append('E');
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        protected Boolean visit(RSyntaxLookup element) {
+            sb.append(element.isFunctionLookup() ? 'F' : 'L');
+            appendString(element.getIdentifier());
+            return true;
+        }
+
+        @Override
+        protected Boolean visit(RSyntaxFunction element) {
+            return false;
+        }
+
+        private void appendString(String value) {
+            sb.append(value.length()).append(':').append(value);
+        }
+    }
+}
@@ -57,6 +57,8 @@ public enum FastROptions {
     SharedContexts("Whether all child contexts are to be shared contexts", true),
     SearchPathForcePromises("Whether all promises for frames on shared path are forced in presence of shared contexts", false),
     LoadPackagesNativeCode("Load native code of packages, including builtin packages.", !FastRConfig.ManagedMode),
+    ContextPoolSize("Number of pre-initialized SHARE_NOTHING contexts kept for .fastr.context.eval/spawn", "0", true),
+    ContextPoolPackages("ContextPoolPackages=pkg1,pkg2,...; packages attached in the pooled contexts", null, true),
 
     // Promises optimizations
     EagerEval("If enabled, overrides all other EagerEval switches (see EagerEvalHelper)", false),
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime;
+
+import java.util.Arrays;
+
+/**
+ * A literal pattern, as used by the {@code grep} family of builtins with {@code fixed = TRUE}.
+ * Patterns of at least {@link #MIN_SKIP_LENGTH} characters are searched for with the
+ * Boyer-Moore-Horspool algorithm, which skips ahead by up to the length of the pattern after a
+ * mismatch. The skip table is indexed by the low byte of a character, which is safe as the
+ * smallest skip of all characters sharing an entry is recorded. Shorter patterns are searched for
+ * with {@link String#indexOf(String, int)}.
+ */
+public final class FixedPattern {
+
+    private static final int MIN_SKIP_LENGTH = 4;
+
+    private final String pattern;
+    private final int[] skip;
+
+    public FixedPattern(String pattern) {
+        this.pattern = pattern;
+        int length = pattern.length();
+        if (length >= MIN_SKIP_LENGTH) {
+            skip = new int[256];
+            Arrays.fill(skip, length);
+            for (int i = 0; i < length - 1; i++) {
+                // later occurrences have smaller skips and override earlier ones
+                skip[pattern.charAt(i) & 0xFF] = length - 1 - i;
+            }
+        } else {
+            skip = null;
+        }
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public int length() {
+        return pattern.length();
+    }
+
+    /**
+     * Returns the index of the first occurrence of the pattern in {@code text} starting at or
+     * after {@code from}, or {@code -1}.
+     */
+    public int indexOf(String text, int from) {
+        if (skip == null) {
+            return text.indexOf(pattern, from);
+        }
+        int length = pattern.length();
+        int lastIndex = length - 1;
+        char last = pattern.charAt(lastIndex);
+        int end = text.length() - length;
+        int i = Math.max(from, 0);
+        while (i <= end) {
+            char c = text.charAt(i + lastIndex);
+            if (c == last && text.regionMatches(i, pattern, 0, lastIndex)) {
+                return i;
+            }
+            i += skip[c & 0xFF];
+        }
+        return -1;
+    }
+
+    public int indexOf(String text) {
+        return indexOf(text, 0);
+    }
+
+    public boolean containedIn(String text) {
+        return indexOf(text, 0) >= 0;
+    }
+
+    /**
+     * Replaces the first or, if {@code all}, every non-overlapping occurrence of the pattern in
+     * {@code text} with {@code replacement}.
+     */
+    public String replace(String text, String replacement, boolean all) {
+        int length = pattern.length();
+        if (length == 0 && all) {
+            return text.replace(pattern, replacement);
+        }
+        int index = indexOf(text, 0);
+        if (index < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length() + Math.max(0, replacement.length() - length));
+        int last = 0;
+        do {
+            result.append(text, last, index).append(replacement);
+            last = index + length;
+            if (!all) {
+                break;
+            }
+            index = indexOf(text, last);
+        } while (index >= 0);
+        result.append(text, last, text.length());
+        return result.toString();
+    }
+}
@@ -23,39 +23,176 @@
 package com.oracle.truffle.r.runtime;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.util.HashMap;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-import com.oracle.truffle.r.runtime.context.RContext;
+/**
+ * Process-wide cache of lazy-load databases ({@code .rdb} files). The databases are read-only once
+ * written, so each file is memory-mapped once and shared by all contexts. Individual entries are
+ * decompressed on demand by {@code lazyLoadDBfetch} and the uncompressed bytes are kept in a
+ * size-bounded LRU cache, so that child contexts loading the same packages do not repeat the work.
+ */
+public final class LazyDBCache {
 
-public class LazyDBCache {
+    /**
+     * Upper bound on the total size of uncompressed entries kept in {@link #entries}.
+     */
+    private static final long MAX_CACHED_BYTES = 64L * 1024 * 1024;
 
-    public static final class ContextStateImpl implements RContext.ContextState {
-        private final Map<String, byte[]> dbCache = new HashMap<>();
+    private static final ConcurrentHashMap<String, ByteBuffer> dbCache = new ConcurrentHashMap<>();
 
-        public byte[] getData(String dbPath) {
-            byte[] dbData = dbCache.get(dbPath);
-            if (dbData == null) {
-                try {
-                    dbData = Files.readAllBytes(FileSystems.getDefault().getPath(dbPath));
-                } catch (IOException ex) {
-                    // unexpected
-                    throw RInternalError.shouldNotReachHere(ex);
-                }
-                dbCache.put(dbPath, dbData);
+    /**
+     * LRU cache of uncompressed entries, guarded by its own monitor.
+     */
+    private static final LinkedHashMap<EntryKey, byte[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private static long cachedBytes;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private LazyDBCache() {
+        // no instances
+    }
+
+    private static final class EntryKey {
+        private final String dbPath;
+        private final int offset;
+        private final int length;
+
+        EntryKey(String dbPath, int offset, int length) {
+            this.dbPath = dbPath;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int hashCode() {
+            return (dbPath.hashCode() * 31 + offset) * 31 + length;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof EntryKey)) {
+                return false;
+            }
+            EntryKey other = (EntryKey) obj;
+            return offset == other.offset && length == other.length && dbPath.equals(other.dbPath);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the (memory-mapped) database at {@code dbPath}. The result must
+     * only be accessed with absolute get operations or through a {@link ByteBuffer#duplicate()}, as
+     * it is shared between threads.
+     */
+    public static ByteBuffer getData(String dbPath) {
+        ByteBuffer dbData = dbCache.get(dbPath);
+        if (dbData == null) {
+            dbData = mapFile(dbPath);
+            ByteBuffer existing = dbCache.putIfAbsent(dbPath, dbData);
+            if (existing != null) {
+                dbData = existing;
+            }
+        }
+        return dbData;
+    }
+
+    private static ByteBuffer mapFile(String dbPath) {
+        try (FileChannel channel = FileChannel.open(FileSystems.getDefault().getPath(dbPath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw RInternalError.unimplemented("lazy-load database larger than 2GB");
             }
-            return dbData;
+            // the mapping remains valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer();
+        } catch (IOException ex) {
+            // unexpected
+            throw RInternalError.shouldNotReachHere(ex);
         }
+    }
 
-        public void remove(String dbPath) {
-            // no an error if missing
-            dbCache.remove(dbPath);
+    /**
+     * Copies {@code length} bytes starting at {@code offset} out of the database.
+     */
+    public static byte[] getBytes(ByteBuffer dbData, int offset, int length) {
+        byte[] result = new byte[length];
+        ByteBuffer view = dbData.duplicate();
+        view.position(offset);
+        view.get(result);
+        return result;
+    }
+
+    /**
+     * Returns the uncompressed entry at {@code offset}/{@code length} in {@code dbPath}, or
+     * {@code null} if it is not cached. The result is shared and must not be modified.
+     */
+    public static byte[] getEntry(String dbPath, int offset, int length) {
+        byte[] result;
+        synchronized (entries) {
+            result = entries.get(new EntryKey(dbPath, offset, length));
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Records the uncompressed entry {@code udata} for {@code offset}/{@code length} in
+     * {@code dbPath}, evicting the least recently used entries if the cache grows too big.
+     */
+    public static void putEntry(String dbPath, int offset, int length, byte[] udata) {
+        if (udata.length > MAX_CACHED_BYTES / 4) {
+            // not worth evicting everything else
+            return;
+        }
+        synchronized (entries) {
+            byte[] old = entries.put(new EntryKey(dbPath, offset, length), udata);
+            if (old != null) {
+                cachedBytes -= old.length;
+            }
+            cachedBytes += udata.length;
+            Iterator<byte[]> iter = entries.values().iterator();
+            while (cachedBytes > MAX_CACHED_BYTES && iter.hasNext()) {
+                cachedBytes -= iter.next().length;
+                iter.remove();
+            }
         }
+    }
 
-        public static ContextStateImpl newContextState() {
-            return new ContextStateImpl();
+    /**
+     * Drops the mapping of {@code dbPath} and all its cached entries, e.g., because it has been
+     * rewritten.
+     */
+    public static void remove(String dbPath) {
+        // no an error if missing
+        dbCache.remove(dbPath);
+        synchronized (entries) {
+            Iterator<Map.Entry<EntryKey, byte[]>> iter = entries.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<EntryKey, byte[]> entry = iter.next();
+                if (entry.getKey().dbPath.equals(dbPath)) {
+                    cachedBytes -= entry.getValue().length;
+                    iter.remove();
+                }
+            }
         }
     }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
 }
@@ -23,8 +23,11 @@
 package com.oracle.truffle.r.runtime;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.RootCallTarget;
@@ -47,6 +50,7 @@ import com.oracle.truffle.r.runtime.data.RPromise.Closure;
 import com.oracle.truffle.r.runtime.data.RPromise.PromiseState;
 import com.oracle.truffle.r.runtime.data.RShareable;
 import com.oracle.truffle.r.runtime.data.RUnboundValue;
+import com.oracle.truffle.r.runtime.data.model.RAbstractAtomicVector;
 import com.oracle.truffle.r.runtime.env.REnvironment;
 import com.oracle.truffle.r.runtime.env.frame.FrameSlotChangeMonitor;
 import com.oracle.truffle.r.runtime.env.frame.REnvTruffleFrameAccess;
@@ -58,123 +62,154 @@ import com.oracle.truffle.r.runtime.nodes.RSyntaxElement;
  */
 public class RChannel {
 
-    // TODO: cheaper way of serializing data (re-usable buffer?)
+    public static final int DEFAULT_QUEUE_CAPACITY = 1;
 
-    private static final int INITIAL_CHANNEL_NUM = 4;
-    private static final int CHANNEL_NUM_GROW_FACTOR = 2;
-    private static final int QUEUE_CAPACITY = 1;
-
-    private static int[] keys = new int[INITIAL_CHANNEL_NUM];
-    private static RChannel[] channels = new RChannel[INITIAL_CHANNEL_NUM];
+    /*
+     * Channel ids are never reused so that closing an already closed channel can be told apart from
+     * closing one that never existed. Positive ids are used by the creator (master) and the same
+     * negated ids by the clients; zero is not a valid id.
+     */
+    private static final AtomicInteger lastId = new AtomicInteger();
 
-    private static final int CLOSED_CHANNEL_KEY = -1;
+    private static final ConcurrentHashMap<Integer, RChannel> channelsByKey = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, RChannel> channelsById = new ConcurrentHashMap<>();
 
     /*
-     * Used to mediate access to the semaphore instances
+     * Used by select() to wait for a message on any channel without polling: every sent message
+     * bumps the counter and, if there are threads waiting in select(), wakes them up.
      */
-    private static final Semaphore create = new Semaphore(1, true);
-
-    private final ArrayBlockingQueue<Object> masterToClient = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
-    private final ArrayBlockingQueue<Object> clientToMaster = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final Object selectLock = new Object();
+    private static final AtomicLong sentMessages = new AtomicLong();
+    private static final AtomicInteger selectWaiters = new AtomicInteger();
+
+    private final int key;
+    private final int id;
+    private final ArrayBlockingQueue<Object> masterToClient;
+    private final ArrayBlockingQueue<Object> clientToMaster;
+
+    private RChannel(int key, int id, int capacity) {
+        this.key = key;
+        this.id = id;
+        masterToClient = new ArrayBlockingQueue<>(capacity);
+        clientToMaster = new ArrayBlockingQueue<>(capacity);
+    }
 
     public static int createChannel(int key) {
+        return createChannel(key, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a channel whose queues (in each direction) can hold up to {@code capacity} messages
+     * before {@link #send} blocks.
+     */
+    public static int createChannel(int key, int capacity) {
         if (key <= 0) {
             throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel's key must be positive");
         }
-        try {
-            create.acquire();
-            while (true) {
-                int freeSlot = -1;
-                // start from one as we need slots that have distinguishable positive and negative
-                // value
-                for (int i = 1; i < keys.length; i++) {
-                    if (keys[i] == key) {
-                        throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel with specified key already exists");
-                    }
-                    if (keys[i] == 0 && freeSlot == -1) {
-                        freeSlot = i;
-                    }
-                }
-                if (freeSlot != -1) {
-                    keys[freeSlot] = key;
-                    channels[freeSlot] = new RChannel();
-                    return freeSlot;
-                } else {
-                    int[] keysTmp = new int[keys.length * CHANNEL_NUM_GROW_FACTOR];
-                    RChannel[] channelsTmp = new RChannel[channels.length * CHANNEL_NUM_GROW_FACTOR];
-                    for (int i = 1; i < keys.length; i++) {
-                        keysTmp[i] = keys[i];
-                        channelsTmp[i] = channels[i];
-                    }
-                    keys = keysTmp;
-                    channels = channelsTmp;
-                }
-            }
-        } catch (InterruptedException x) {
-            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error creating a channel");
-        } finally {
-            create.release();
+        if (capacity <= 0) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel's capacity must be positive");
+        }
+        if (channelsByKey.containsKey(key)) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel with specified key already exists");
         }
+        RChannel channel = new RChannel(key, lastId.incrementAndGet(), capacity);
+        // registered by id first, so that a client finding the key can always use the id
+        channelsById.put(channel.id, channel);
+        if (channelsByKey.putIfAbsent(key, channel) != null) {
+            channelsById.remove(channel.id);
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel with specified key already exists");
+        }
+        return channel.id;
     }
 
     public static int getChannel(int key) {
-        try {
-            create.acquire();
-            for (int i = 1; i < keys.length; i++) {
-                if (keys[i] == key) {
-                    return -i;
-                }
-            }
-        } catch (InterruptedException x) {
-            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error accessing channel");
-        } finally {
-            create.release();
+        RChannel channel = channelsByKey.get(key);
+        if (channel == null) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel does not exist");
         }
-        throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel does not exist");
+        return -channel.id;
     }
 
     public static void closeChannel(int id) {
         int actualId = Math.abs(id);
-        try {
-            create.acquire();
-            if (actualId == 0 || actualId >= channels.length || channels[actualId] == null) {
-                // closing an already closed channel does not necessarily have to be an error (and
-                // makes parallell package's worker script work unchanged)
-                if (keys[actualId] != CLOSED_CHANNEL_KEY) {
-                    throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel with specified id does not exist");
-                }
+        RChannel channel = channelsById.remove(actualId);
+        if (channel == null) {
+            // closing an already closed channel does not necessarily have to be an error (and
+            // makes parallell package's worker script work unchanged)
+            if (actualId == 0 || actualId > lastId.get()) {
+                throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel with specified id does not exist");
             }
-            keys[actualId] = CLOSED_CHANNEL_KEY;
-            channels[actualId] = null;
-        } catch (InterruptedException x) {
-            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error closing channel");
-        } finally {
-            create.release();
+        } else {
+            channelsByKey.remove(channel.key, channel);
         }
     }
 
     private static RChannel getChannelFromId(int id) {
-        int actualId = Math.abs(id);
-        try {
-            create.acquire();
-            if (actualId == 0 || actualId >= channels.length || channels[actualId] == null) {
-                throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel with specified id does not exist");
-            }
-            RChannel channel = channels[actualId];
-            return channel;
-        } catch (InterruptedException x) {
-            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error transmitting through channel");
-        } finally {
-            create.release();
+        RChannel channel = channelsById.get(Math.abs(id));
+        if (channel == null) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "channel with specified id does not exist");
+        }
+        return channel;
+    }
+
+    /**
+     * Atomic vectors without attributes cannot contain references to other (private) objects, so
+     * once they are made permanently shared (and thus immutable for both sides) they can be passed
+     * by reference without any conversion.
+     */
+    private static boolean isPlainVector(Object o) {
+        return o instanceof RAbstractAtomicVector && o instanceof RShareable && ((RAbstractAtomicVector) o).getAttributes() == null;
+    }
+
+    private static Object processOutgoingMessage(Object data) {
+        if (isPlainVector(data)) {
+            return Output.makeShared(data);
+        } else {
+            return new Output().processOutgoingMessage(data);
         }
     }
 
+    private static Object processReceivedMessage(Object msg) {
+        if (isPlainVector(msg)) {
+            return msg;
+        } else {
+            return new Input().processedReceivedMessage(msg);
+        }
+    }
+
+    private ArrayBlockingQueue<Object> getSendQueue(int id) {
+        return id > 0 ? masterToClient : clientToMaster;
+    }
+
+    private ArrayBlockingQueue<Object> getReceiveQueue(int id) {
+        return id < 0 ? masterToClient : clientToMaster;
+    }
+
     public static void send(int id, Object data) {
-        Output out = new Output();
-        Object msg = out.processOutgoingMessage(data);
+        Object msg = processOutgoingMessage(data);
         RChannel channel = getChannelFromId(id);
         try {
-            (id > 0 ? channel.masterToClient : channel.clientToMaster).put(msg);
+            channel.getSendQueue(id).put(msg);
+        } catch (InterruptedException x) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error sending through the channel");
+        }
+        notifySelectors();
+    }
+
+    /**
+     * Sends each element of {@code data} as a separate message, in order.
+     */
+    public static void sendBatch(int id, RList data) {
+        Object[] msgs = new Object[data.getLength()];
+        for (int i = 0; i < msgs.length; i++) {
+            msgs[i] = processOutgoingMessage(data.getDataAt(i));
+        }
+        ArrayBlockingQueue<Object> queue = getChannelFromId(id).getSendQueue(id);
+        try {
+            for (Object msg : msgs) {
+                queue.put(msg);
+                notifySelectors();
+            }
         } catch (InterruptedException x) {
             throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error sending through the channel");
         }
@@ -183,24 +218,112 @@ public class RChannel {
     public static Object receive(int id) {
         RChannel channel = getChannelFromId(id);
         try {
-            Object msg = (id < 0 ? channel.masterToClient : channel.clientToMaster).take();
-            Input in = new Input();
-            return in.processedReceivedMessage(msg);
+            Object msg = channel.getReceiveQueue(id).take();
+            return processReceivedMessage(msg);
         } catch (InterruptedException x) {
             throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error receiving from the channel");
         }
     }
 
+    /**
+     * Waits for at least one message and then receives all the messages that are already available,
+     * but at most {@code max} of them.
+     */
+    public static Object[] receiveBatch(int id, int max) {
+        ArrayBlockingQueue<Object> queue = getChannelFromId(id).getReceiveQueue(id);
+        ArrayList<Object> msgs = new ArrayList<>();
+        try {
+            msgs.add(queue.take());
+        } catch (InterruptedException x) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error receiving from the channel");
+        }
+        queue.drainTo(msgs, max - 1);
+        Object[] result = new Object[msgs.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = processReceivedMessage(msgs.get(i));
+        }
+        return result;
+    }
+
     public static Object poll(int id) {
         RChannel channel = getChannelFromId(id);
-        Object msg = (id < 0 ? channel.masterToClient : channel.clientToMaster).poll();
+        Object msg = channel.getReceiveQueue(id).poll();
         if (msg != null) {
-            Input in = new Input();
-            return in.processedReceivedMessage(msg);
+            return processReceivedMessage(msg);
         }
         return null;
     }
 
+    private static void notifySelectors() {
+        sentMessages.incrementAndGet();
+        if (selectWaiters.get() > 0) {
+            synchronized (selectLock) {
+                selectLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until a message is available on any of the channels in {@code ids} and receives it.
+     *
+     * @return the index into {@code ids} of the channel the message was received from
+     */
+    public static int select(int[] ids, Object[] result) {
+        return select(ids, result, -1);
+    }
+
+    /**
+     * Like {@link #select(int[], Object[])}, but gives up after {@code timeoutMillis}
+     * milliseconds, unless it is negative.
+     *
+     * @return the index into {@code ids} of the channel the message was received from, or
+     *         {@code -1} if no message arrived in time
+     */
+    public static int select(int[] ids, Object[] result, long timeoutMillis) {
+        if (ids.length == 0) {
+            throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "no channels to select from");
+        }
+        RChannel[] selected = new RChannel[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            selected[i] = getChannelFromId(ids[i]);
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        int start = 0;
+        while (true) {
+            long seen = sentMessages.get();
+            for (int j = 0; j < ids.length; j++) {
+                // rotate the starting point so that no channel is starved
+                int i = (start + j) % ids.length;
+                Object msg = selected[i].getReceiveQueue(ids[i]).poll();
+                if (msg != null) {
+                    result[0] = processReceivedMessage(msg);
+                    return i;
+                }
+            }
+            start = (start + 1) % ids.length;
+            selectWaiters.incrementAndGet();
+            try {
+                synchronized (selectLock) {
+                    while (sentMessages.get() == seen) {
+                        if (timeoutMillis < 0) {
+                            selectLock.wait();
+                        } else {
+                            long remaining = deadline - System.currentTimeMillis();
+                            if (remaining <= 0) {
+                                return -1;
+                            }
+                            selectLock.wait(remaining);
+                        }
+                    }
+                }
+            } catch (InterruptedException x) {
+                throw RError.error(RError.SHOW_CALLER2, RError.Message.GENERIC, "error receiving from the channel");
+            } finally {
+                selectWaiters.decrementAndGet();
+            }
+        }
+    }
+
     private static class TransmitterCommon extends RSerialize.RefCounter {
 
         protected static class SerializedRef {
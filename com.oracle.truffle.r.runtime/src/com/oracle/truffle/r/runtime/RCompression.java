@@ -23,7 +23,9 @@
 package com.oracle.truffle.r.runtime;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -199,26 +201,82 @@ public class RCompression {
         }
     }
 
-    public static byte[] bzipUncompressFromFile(String path) throws IOException {
-        String[] command = new String[]{"bzip2", "-dc", path};
-        ProcessBuilder pb = new ProcessBuilder(command);
+    /**
+     * The parallel bzip2 implementations that can be used instead of {@code bzip2} to decompress.
+     */
+    private static final String[] PARALLEL_BZIP2 = {"lbzip2", "pbzip2"};
+    private static String bzipDecompressCommand;
+
+    private static synchronized String getBzipDecompressCommand() {
+        if (bzipDecompressCommand == null) {
+            bzipDecompressCommand = "bzip2";
+            for (String command : PARALLEL_BZIP2) {
+                if (isOnPath(command)) {
+                    bzipDecompressCommand = command;
+                    break;
+                }
+            }
+        }
+        return bzipDecompressCommand;
+    }
+
+    private static boolean isOnPath(String command) {
+        String pathEnv = System.getenv("PATH");
+        if (pathEnv != null) {
+            for (String dir : pathEnv.split(File.pathSeparator)) {
+                if (!dir.isEmpty() && Files.isExecutable(Paths.get(dir, command))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a stream of the decompressed contents of the bzip2 file at {@code path}, which is
+     * decompressed by a sub-process while the stream is being read, so that the data never has to
+     * be held in memory as a whole. A parallel bzip2 implementation is used if one is installed.
+     */
+    public static InputStream bzipUncompressStreamFromFile(String path) throws IOException {
+        String command = getBzipDecompressCommand();
+        ProcessBuilder pb = new ProcessBuilder(command, "-dc", path);
         pb.redirectError(Redirect.INHERIT);
         Process p = pb.start();
-        InputStream is = p.getInputStream();
-        ProcessOutputManager.OutputThreadVariable readThread = new ProcessOutputManager.OutputThreadVariable(command[0], is);
-        readThread.start();
-        try {
-            int rc = p.waitFor();
-            if (rc == 0) {
-                readThread.join();
-                return Arrays.copyOf(readThread.getData(), readThread.getTotalRead());
-            } else {
-                throw new IOException("bzip2 error code: " + rc);
+        return new FilterInputStream(p.getInputStream()) {
+            @Override
+            public int read() throws IOException {
+                return checkEOF(super.read());
             }
-        } catch (InterruptedException ex) {
-            // fall through
-        }
-        throw new IOException();
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return checkEOF(super.read(b, off, len));
+            }
+
+            private int checkEOF(int result) throws IOException {
+                if (result == -1) {
+                    try {
+                        int rc = p.waitFor();
+                        if (rc != 0) {
+                            throw new IOException(command + " error code: " + rc);
+                        }
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex);
+                    }
+                }
+                return result;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // the connection may be closed before everything was read
+                    p.destroy();
+                }
+            }
+        };
     }
 
     public static void bzipCompressToFile(byte[] data, String path, boolean append) throws IOException {
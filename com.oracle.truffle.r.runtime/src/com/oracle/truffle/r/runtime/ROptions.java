@@ -96,6 +96,24 @@ public class ROptions {
             return previous;
         }
 
+        /**
+         * Returns a copy of the current values, for {@link #restore}.
+         */
+        @TruffleBoundary
+        public HashMap<String, Object> snapshot() {
+            return new HashMap<>(map);
+        }
+
+        /**
+         * Replaces the current values with ones returned by {@link #snapshot}.
+         */
+        @TruffleBoundary
+        public void restore(HashMap<String, Object> values) {
+            map.clear();
+            map.putAll(values);
+            updateDotOptions();
+        }
+
         @TruffleBoundary
         public static ContextStateImpl newContextState(REnvVars envVars) {
             HashMap<String, Object> map = new HashMap<>();
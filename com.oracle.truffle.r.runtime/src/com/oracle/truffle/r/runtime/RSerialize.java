@@ -18,6 +18,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -46,10 +49,12 @@ import com.oracle.truffle.r.runtime.data.RAttributable;
 import com.oracle.truffle.r.runtime.data.RAttributesLayout;
 import com.oracle.truffle.r.runtime.data.RComplex;
 import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.RDoubleVector;
 import com.oracle.truffle.r.runtime.data.REmpty;
 import com.oracle.truffle.r.runtime.data.RExpression;
 import com.oracle.truffle.r.runtime.data.RExternalPtr;
 import com.oracle.truffle.r.runtime.data.RFunction;
+import com.oracle.truffle.r.runtime.data.RIntVector;
 import com.oracle.truffle.r.runtime.data.RLanguage;
 import com.oracle.truffle.r.runtime.data.RList;
 import com.oracle.truffle.r.runtime.data.RMissing;
@@ -312,7 +317,7 @@ public class RSerialize {
     public static Object unserialize(RAbstractRawVector data) {
         byte[] buffer = data.materialize().getDataWithoutCopying();
         try {
-            return new Input(new ByteArrayInputStream(buffer)).unserialize();
+            return new Input(new PByteArrayInputStream(buffer)).unserialize();
         } catch (IOException e) {
             throw RInternalError.shouldNotReachHere("ByteArrayInputStream should not throw IOExceptiopn");
         }
@@ -356,7 +361,27 @@ public class RSerialize {
         private int langDepth;
 
         private Input(RConnection conn) throws IOException {
-            this(conn.getInputStream(), null, null, null);
+            this(conn.getChannel());
+        }
+
+        /**
+         * Reads directly from {@code channel}, bypassing the {@link InputStream} wrapper.
+         */
+        protected Input(ReadableByteChannel channel) throws IOException {
+            super(null);
+            this.packageName = null;
+            this.functionName = null;
+            ByteBuffer buf = XdrInputFormat.allocateChannelBuffer();
+            buf.clear();
+            while (buf.position() < 2) {
+                if (channel.read(buf) <= 0) {
+                    throw RInternalError.unimplemented("handle unexpected eof");
+                }
+            }
+            buf.flip();
+            checkFormat(buf.get());
+            buf.get();
+            stream = new XdrInputFormat(channel, buf);
         }
 
         private Input(InputStream input) throws IOException {
@@ -369,18 +394,22 @@ public class RSerialize {
             this.functionName = functionName;
             byte[] buf = new byte[2];
             is.read(buf);
-            switch (buf[0]) {
+            checkFormat(buf[0]);
+            stream = new XdrInputFormat(is);
+        }
+
+        private static void checkFormat(byte format) throws IOException {
+            switch (format) {
                 case 'A':
                 case 'B':
-                    throw formatError(buf[0], true);
+                    throw formatError(format, true);
                 case 'X':
-                    stream = new XdrInputFormat(is);
                     break;
                 case '\n':
                     // special case in 'A'
                     throw formatError((byte) 'A', true);
                 default:
-                    throw formatError(buf[0], false);
+                    throw formatError(format, false);
             }
         }
 
@@ -696,13 +725,13 @@ public class RSerialize {
                 case INTSXP: {
                     int len = stream.readInt();
                     int[] data = new int[len];
+                    stream.readInts(data);
                     boolean complete = RDataFactory.COMPLETE_VECTOR;
                     for (int i = 0; i < len; i++) {
-                        int intVal = stream.readInt();
-                        if (intVal == RRuntime.INT_NA) {
+                        if (data[i] == RRuntime.INT_NA) {
                             complete = false;
+                            break;
                         }
-                        data[i] = intVal;
                     }
                     result = RDataFactory.createIntVector(data, complete);
                     break;
@@ -728,13 +757,13 @@ public class RSerialize {
                 case REALSXP: {
                     int len = stream.readInt();
                     double[] data = new double[len];
+                    stream.readDoubles(data);
                     boolean complete = RDataFactory.COMPLETE_VECTOR;
                     for (int i = 0; i < len; i++) {
-                        double doubleVal = stream.readDouble();
-                        if (RRuntime.isNA(doubleVal)) {
+                        if (RRuntime.isNA(data[i])) {
                             complete = false;
+                            break;
                         }
-                        data[i] = doubleVal;
                     }
                     result = RDataFactory.createDoubleVector(data, complete);
                     break;
@@ -743,23 +772,18 @@ public class RSerialize {
                 case CPLXSXP: {
                     int len = stream.readInt();
                     double[] data = new double[2 * len];
+                    stream.readDoubles(data);
                     boolean complete = RDataFactory.COMPLETE_VECTOR;
                     for (int i = 0; i < len; i++) {
                         int ix = 2 * i;
-                        double reVal = stream.readDouble();
-                        if (RRuntime.isNA(reVal)) {
-                            complete = false;
-                        }
-                        double imVal = stream.readDouble();
-                        if (RRuntime.isNA(imVal)) {
+                        double reVal = data[ix];
+                        double imVal = data[ix + 1];
+                        if (RRuntime.isNA(reVal) || RRuntime.isNA(imVal)) {
                             complete = false;
                         }
                         if (RRuntime.isNA(reVal) && RRuntime.isNA(imVal)) {
                             data[ix] = RRuntime.COMPLEX_NA_REAL_PART;
                             data[ix + 1] = RRuntime.COMPLEX_NA_IMAGINARY_PART;
-                        } else {
-                            data[ix] = reVal;
-                            data[ix + 1] = imVal;
                         }
                     }
                     result = RDataFactory.createComplexVector(data, complete);
@@ -1033,6 +1057,18 @@ public class RSerialize {
 
         abstract void readRaw(byte[] data) throws IOException;
 
+        void readInts(int[] data) throws IOException {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = readInt();
+            }
+        }
+
+        void readDoubles(double[] data) throws IOException {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = readDouble();
+            }
+        }
+
     }
 
     @SuppressWarnings("unused")
@@ -1049,56 +1085,119 @@ public class RSerialize {
         }
     }
 
+    /**
+     * Decodes XDR data read either from an {@link InputStream} or, for connections, directly from a
+     * {@link ReadableByteChannel} into a reusable buffer. Vectors of ints and doubles are converted
+     * in bulk.
+     */
     private static final class XdrInputFormat extends PInputStream {
 
         private static final int READ_BUFFER_SIZE = 32 * 1024;
 
-        private final byte[] buf;
-        private int size;
-        private int offset;
+        /**
+         * The bytes between position and limit have been read but not consumed yet.
+         */
+        private final ByteBuffer buf;
+        private final ReadableByteChannel channel;
+        /**
+         * {@code true} if {@link #buf} wraps all the data, which must then not be modified.
+         */
+        private final boolean complete;
 
         private final WeakHashMap<String, WeakReference<String>> strings = RContext.getInstance().stringMap;
 
         XdrInputFormat(InputStream is) {
             super(is);
+            this.channel = null;
             if (is instanceof PByteArrayInputStream) {
                 // we already have the data and we have read the beginning
                 PByteArrayInputStream pbis = (PByteArrayInputStream) is;
-                buf = pbis.getData();
-                size = pbis.getData().length;
-                offset = pbis.pos();
+                buf = ByteBuffer.wrap(pbis.getData());
+                buf.position(pbis.pos());
+                complete = true;
             } else {
-                buf = new byte[READ_BUFFER_SIZE];
-                size = 0;
-                offset = 0;
+                buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+                buf.limit(0);
+                complete = false;
             }
         }
 
+        /**
+         * @param header a buffer of size {@link #READ_BUFFER_SIZE} containing the data already read
+         *            from {@code channel}
+         */
+        XdrInputFormat(ReadableByteChannel channel, ByteBuffer header) {
+            super(null);
+            this.channel = channel;
+            this.buf = header;
+            this.complete = false;
+        }
+
+        static ByteBuffer allocateChannelBuffer() {
+            // a heap buffer, as some connections access the array of the buffer
+            ByteBuffer result = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            result.limit(0);
+            return result;
+        }
+
         @Override
         int readInt() throws IOException {
             ensureData(4);
-            return ((buf[offset++] & 0xff) << 24 | (buf[offset++] & 0xff) << 16 | (buf[offset++] & 0xff) << 8 | (buf[offset++] & 0xff));
+            return buf.getInt();
         }
 
         @Override
         double readDouble() throws IOException {
             ensureData(8);
-            long val = ((long) (buf[offset++] & 0xff) << 56 | (long) (buf[offset++] & 0xff) << 48 | (long) (buf[offset++] & 0xff) << 40 | (long) (buf[offset++] & 0xff) << 32 |
-                            (long) (buf[offset++] & 0xff) << 24 | (long) (buf[offset++] & 0xff) << 16 | (long) (buf[offset++] & 0xff) << 8 | buf[offset++] & 0xff);
-            return Double.longBitsToDouble(val);
+            return buf.getDouble();
+        }
+
+        @Override
+        void readInts(int[] data) throws IOException {
+            int i = 0;
+            while (i < data.length) {
+                ensureData(4);
+                int n = Math.min(data.length - i, buf.remaining() >> 2);
+                buf.asIntBuffer().get(data, i, n);
+                buf.position(buf.position() + (n << 2));
+                i += n;
+            }
+        }
+
+        @Override
+        void readDoubles(double[] data) throws IOException {
+            int i = 0;
+            while (i < data.length) {
+                ensureData(8);
+                int n = Math.min(data.length - i, buf.remaining() >> 3);
+                buf.asDoubleBuffer().get(data, i, n);
+                buf.position(buf.position() + (n << 3));
+                i += n;
+            }
         }
 
         @SuppressWarnings("deprecation")
         @Override
         String readString(int len) throws IOException {
-            ensureData(len);
+            byte[] bytes;
+            int start;
+            if (buf.hasArray() && len <= buf.capacity()) {
+                ensureData(len);
+                bytes = buf.array();
+                start = buf.arrayOffset() + buf.position();
+                buf.position(buf.position() + len);
+            } else {
+                bytes = new byte[len];
+                start = 0;
+                readRaw(bytes);
+            }
             /*
              * This fast path uses a cheaper String constructor if all incoming bytes are in the
              * 0-127 range.
              */
             boolean fastEncode = true;
             for (int i = 0; i < len; i++) {
-                byte b = buf[offset + i];
+                byte b = bytes[start + i];
                 if (b < 0) {
                     fastEncode = false;
                     break;
@@ -1106,11 +1205,10 @@ public class RSerialize {
             }
             String result;
             if (fastEncode) {
-                result = new String(buf, 0, offset, len);
+                result = new String(bytes, 0, start, len);
             } else {
-                result = new String(buf, offset, len, StandardCharsets.UTF_8);
+                result = new String(bytes, start, len, StandardCharsets.UTF_8);
             }
-            offset += len;
             WeakReference<String> entry;
             if ((entry = strings.get(result)) != null) {
                 String string = entry.get();
@@ -1122,33 +1220,55 @@ public class RSerialize {
             return result;
         }
 
+        /**
+         * Makes sure that at least {@code n} (at most the buffer's capacity) unconsumed bytes are
+         * available in {@link #buf}.
+         */
         private void ensureData(int n) throws IOException {
-            if (n > buf.length) {
-                throw RInternalError.unimplemented("dynamically enlarge buffer");
+            if (buf.remaining() >= n) {
+                return;
+            }
+            assert n <= buf.capacity();
+            if (complete) {
+                throw RInternalError.unimplemented("handle unexpected eof");
             }
-            if (offset + n > size) {
-                if (offset != size) {
-                    // copy end piece to beginning
-                    System.arraycopy(buf, offset, buf, 0, size - offset);
+            buf.compact();
+            while (buf.position() < n) {
+                if (fill(buf) <= 0) {
+                    throw RInternalError.unimplemented("handle unexpected eof");
                 }
-                size -= offset;
-                offset = 0;
-                while (size < n) {
-                    // read some more data
-                    int nread = is.read(buf, size, buf.length - size);
-                    if (nread <= 0) {
-                        throw RInternalError.unimplemented("handle unexpected eof");
-                    }
-                    size += nread;
+            }
+            buf.flip();
+        }
+
+        private int fill(ByteBuffer dst) throws IOException {
+            if (channel != null) {
+                return channel.read(dst);
+            } else {
+                int nread = is.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                if (nread > 0) {
+                    dst.position(dst.position() + nread);
                 }
+                return nread;
             }
         }
 
         @Override
         void readRaw(byte[] data) throws IOException {
-            ensureData(data.length);
-            System.arraycopy(buf, offset, data, 0, data.length);
-            offset += data.length;
+            if (data.length <= buf.capacity()) {
+                ensureData(data.length);
+                buf.get(data);
+            } else {
+                // too large for the buffer, read the rest directly into the result
+                int buffered = buf.remaining();
+                buf.get(data, 0, buffered);
+                ByteBuffer dst = ByteBuffer.wrap(data, buffered, data.length - buffered);
+                while (dst.hasRemaining()) {
+                    if (complete || fill(dst) <= 0) {
+                        throw RInternalError.unimplemented("handle unexpected eof");
+                    }
+                }
+            }
         }
     }
 
@@ -1159,7 +1279,7 @@ public class RSerialize {
         private int nesting;
 
         private TracingInput(RConnection conn) throws IOException {
-            this(conn.getInputStream(), null, null, null);
+            super(conn.getChannel());
         }
 
         private TracingInput(InputStream is, CallHook hook, String packageName, String functionName) throws IOException {
@@ -1209,26 +1329,54 @@ public class RSerialize {
 
         abstract void flush() throws IOException;
 
+        void writeInts(int[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                writeInt(values[i]);
+            }
+        }
+
+        void writeDoubles(double[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                writeDouble(values[i]);
+            }
+        }
+
     }
 
+    /**
+     * Encodes XDR data into a reusable buffer that is written either to an {@link OutputStream} or,
+     * for connections, directly to a {@link WritableByteChannel}, so that the serialized form of an
+     * object is never materialized as a whole. Vectors of ints and doubles are converted in bulk.
+     */
     private static class XdrOutputFormat extends POutputStream {
-        private final byte[] buf;
-        private int offset;
+        private static final int WRITE_BUFFER_SIZE = 32 * 1024;
+
+        private final ByteBuffer buf;
+        private final WritableByteChannel channel;
 
         XdrOutputFormat(OutputStream os) {
             super(os);
-            buf = new byte[8192];
-            buf[offset++] = 'X';
-            buf[offset++] = '\n';
+            this.channel = null;
+            this.buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            writeHeader();
+        }
+
+        XdrOutputFormat(WritableByteChannel channel) {
+            super(null);
+            this.channel = channel;
+            this.buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            writeHeader();
+        }
+
+        private void writeHeader() {
+            buf.put((byte) 'X');
+            buf.put((byte) '\n');
         }
 
         @Override
         void writeInt(int value) throws IOException {
             ensureSpace(4);
-            buf[offset++] = (byte) (value >>> 24);
-            buf[offset++] = (byte) (value >> 16);
-            buf[offset++] = (byte) (value >> 8);
-            buf[offset++] = (byte) value;
+            buf.putInt(value);
         }
 
         @Override
@@ -1240,27 +1388,25 @@ public class RSerialize {
                     break;
                 }
             }
-            if (simple && value.length() <= buf.length) {
+            if (simple && value.length() <= buf.capacity()) {
                 writeInt(value.length());
                 ensureSpace(value.length());
                 for (int i = 0; i < value.length(); i++) {
-                    buf[offset++] = (byte) value.charAt(i);
+                    buf.put((byte) value.charAt(i));
                 }
             } else {
                 byte[] bytes = value.getBytes();
                 int bytesLen = bytes.length;
                 int totalLen = bytesLen + 4;
-                if (totalLen > buf.length) {
+                if (totalLen > buf.capacity()) {
                     // too large to fit buffer
-                    ensureSpace(4);
                     writeInt(bytesLen);
                     flushBuffer();
-                    os.write(bytes);
+                    writeDirect(bytes);
                 } else {
                     ensureSpace(totalLen);
-                    writeInt(bytesLen);
-                    System.arraycopy(bytes, 0, buf, offset, bytesLen);
-                    offset += bytesLen;
+                    buf.putInt(bytesLen);
+                    buf.put(bytes);
                 }
             }
         }
@@ -1268,47 +1414,82 @@ public class RSerialize {
         @Override
         void writeRaw(byte[] value) throws IOException {
             int valueLen = value.length;
-            if (valueLen > buf.length) {
+            if (valueLen > buf.capacity()) {
                 flushBuffer();
-                os.write(value);
+                writeDirect(value);
             } else {
                 ensureSpace(valueLen);
-                System.arraycopy(value, 0, buf, offset, valueLen);
-                offset += valueLen;
+                buf.put(value);
             }
         }
 
         @Override
         void writeDouble(double value) throws IOException {
             ensureSpace(8);
-            long valueBits = Double.doubleToRawLongBits(value);
-            buf[offset++] = (byte) (valueBits >>> 56);
-            buf[offset++] = (byte) ((valueBits >> 48) & 0xff);
-            buf[offset++] = (byte) ((valueBits >> 40) & 0xff);
-            buf[offset++] = (byte) ((valueBits >> 32) & 0xff);
-            buf[offset++] = (byte) ((valueBits >> 24) & 0xff);
-            buf[offset++] = (byte) ((valueBits >> 16) & 0xff);
-            buf[offset++] = (byte) ((valueBits >> 8) & 0xff);
-            buf[offset++] = (byte) (valueBits & 0xff);
+            buf.putDouble(value);
+        }
+
+        @Override
+        void writeInts(int[] values) throws IOException {
+            int i = 0;
+            while (i < values.length) {
+                ensureSpace(4);
+                int n = Math.min(values.length - i, buf.remaining() >> 2);
+                buf.asIntBuffer().put(values, i, n);
+                buf.position(buf.position() + (n << 2));
+                i += n;
+            }
+        }
+
+        @Override
+        void writeDoubles(double[] values) throws IOException {
+            int i = 0;
+            while (i < values.length) {
+                ensureSpace(8);
+                int n = Math.min(values.length - i, buf.remaining() >> 3);
+                buf.asDoubleBuffer().put(values, i, n);
+                buf.position(buf.position() + (n << 3));
+                i += n;
+            }
         }
 
         private void ensureSpace(int n) throws IOException {
-            if (offset + n > buf.length) {
+            if (buf.remaining() < n) {
                 flushBuffer();
             }
         }
 
+        private void writeDirect(byte[] bytes) throws IOException {
+            if (channel != null) {
+                ByteBuffer src = ByteBuffer.wrap(bytes);
+                while (src.hasRemaining()) {
+                    channel.write(src);
+                }
+            } else {
+                os.write(bytes);
+            }
+        }
+
         void flushBuffer() throws IOException {
-            if (offset > 0) {
-                os.write(buf, 0, offset);
-                offset = 0;
+            if (buf.position() > 0) {
+                if (channel != null) {
+                    buf.flip();
+                    while (buf.hasRemaining()) {
+                        channel.write(buf);
+                    }
+                } else {
+                    os.write(buf.array(), buf.arrayOffset(), buf.position());
+                }
+                buf.clear();
             }
         }
 
         @Override
         void flush() throws IOException {
             flushBuffer();
-            os.flush();
+            if (os != null) {
+                os.flush();
+            }
         }
     }
 
@@ -1324,6 +1505,17 @@ public class RSerialize {
         private final int version;
 
         private Output(OutputStream os, int format, int version, CallHook hook) throws IOException {
+            this(format, version, hook, os, null);
+        }
+
+        /**
+         * Writes directly to {@code channel}, bypassing the {@link OutputStream} wrapper.
+         */
+        private Output(WritableByteChannel channel, int format, int version, CallHook hook) throws IOException {
+            this(format, version, hook, null, channel);
+        }
+
+        private Output(int format, int version, CallHook hook, OutputStream os, WritableByteChannel channel) throws IOException {
             super(hook);
             this.state = new PLState();
             this.version = version;
@@ -1333,7 +1525,7 @@ public class RSerialize {
                 case BINARY:
                     throw formatError((byte) format, true);
                 default:
-                    stream = new XdrOutputFormat(os);
+                    stream = os != null ? new XdrOutputFormat(os) : new XdrOutputFormat(channel);
                     break;
             }
         }
@@ -1497,8 +1689,12 @@ public class RSerialize {
                             } else {
                                 RAbstractIntVector vec = (RAbstractIntVector) obj;
                                 stream.writeInt(vec.getLength());
-                                for (int i = 0; i < vec.getLength(); i++) {
-                                    stream.writeInt(vec.getDataAt(i));
+                                if (vec instanceof RIntVector) {
+                                    stream.writeInts(((RIntVector) vec).getDataWithoutCopying());
+                                } else {
+                                    for (int i = 0; i < vec.getLength(); i++) {
+                                        stream.writeInt(vec.getDataAt(i));
+                                    }
                                 }
                             }
                             break;
@@ -1511,8 +1707,12 @@ public class RSerialize {
                             } else {
                                 RAbstractDoubleVector vec = (RAbstractDoubleVector) obj;
                                 stream.writeInt(vec.getLength());
-                                for (int i = 0; i < vec.getLength(); i++) {
-                                    stream.writeDouble(vec.getDataAt(i));
+                                if (vec instanceof RDoubleVector) {
+                                    stream.writeDoubles(((RDoubleVector) vec).getDataWithoutCopying());
+                                } else {
+                                    for (int i = 0; i < vec.getLength(); i++) {
+                                        stream.writeDouble(vec.getDataAt(i));
+                                    }
                                 }
                             }
                             break;
@@ -2088,7 +2288,7 @@ public class RSerialize {
 
     @TruffleBoundary
     public static void serialize(RConnection conn, Object obj, int type, int version, Object refhook) throws IOException {
-        Output output = new Output(conn.getOutputStream(), type, version, (CallHook) refhook);
+        Output output = new Output(conn.getChannel(), type, version, (CallHook) refhook);
         output.serialize(obj);
     }
 
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.ffi.PCRERFFI;
+
+/**
+ * Per-context cache of compiled regular expressions, used by the {@code grep} family of builtins,
+ * which would otherwise translate and compile their pattern on every call. Patterns are keyed by
+ * their R source, their kind and the compilation flags. Java patterns are compiled from the
+ * pattern as translated by {@link RegExp#checkPreDefinedClasses(String)}, PCRE patterns are
+ * compiled by the caller (as this needs the PCRE nodes) and only recorded here, together with the
+ * character tables they are compiled with.
+ */
+public final class RegExpCache {
+
+    /**
+     * The cache is simply cleared when it reaches this size. Compiled PCRE patterns are never
+     * freed, so that patterns in use by a running builtin remain valid.
+     */
+    private static final int MAX_ENTRIES = 256;
+
+    private final ConcurrentHashMap<Key, Object> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile long perlTables;
+
+    private static final class Key {
+        private final String pattern;
+        private final boolean perl;
+        private final int flags;
+
+        Key(String pattern, boolean perl, int flags) {
+            this.pattern = pattern;
+            this.perl = perl;
+            this.flags = flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return (pattern.hashCode() * 31 + flags) * 2 + (perl ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return perl == other.perl && flags == other.flags && pattern.equals(other.pattern);
+        }
+    }
+
+    private Object get(Key key) {
+        Object result = entries.get(key);
+        if (result != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    private void put(Key key, Object value) {
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        entries.put(key, value);
+    }
+
+    /**
+     * Returns the Java pattern for the (non-perl) R regular expression {@code pattern}.
+     *
+     * @throws java.util.regex.PatternSyntaxException if the translated pattern is invalid
+     */
+    @TruffleBoundary
+    public Pattern getPattern(String pattern, boolean ignoreCase) {
+        int flags = ignoreCase ? Pattern.CASE_INSENSITIVE : 0;
+        Key key = new Key(pattern, false, flags);
+        Pattern result = (Pattern) get(key);
+        if (result == null) {
+            result = Pattern.compile(RegExp.checkPreDefinedClasses(pattern), flags);
+            put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the PCRE pattern recorded for {@code pattern} and {@code options}, or {@code null}.
+     */
+    @TruffleBoundary
+    public PCRERFFI.Result getPerlPattern(String pattern, int options) {
+        return (PCRERFFI.Result) get(new Key(pattern, true, options));
+    }
+
+    /**
+     * Records a successfully compiled PCRE pattern.
+     */
+    @TruffleBoundary
+    public void putPerlPattern(String pattern, int options, PCRERFFI.Result compiled) {
+        assert compiled.result != 0;
+        put(new Key(pattern, true, options), compiled);
+    }
+
+    /**
+     * Returns the PCRE character tables recorded by {@link #setPerlTables(long)}, or {@code 0}.
+     */
+    public long getPerlTables() {
+        return perlTables;
+    }
+
+    public void setPerlTables(long tables) {
+        perlTables = tables;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
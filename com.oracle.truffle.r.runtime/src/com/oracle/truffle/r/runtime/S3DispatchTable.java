@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oracle.truffle.api.frame.FrameDescriptor;
+import com.oracle.truffle.api.frame.MaterializedFrame;
+import com.oracle.truffle.r.runtime.data.RStringVector;
+import com.oracle.truffle.r.runtime.env.frame.FrameSlotChangeMonitor;
+import com.oracle.truffle.r.runtime.env.frame.FrameSlotChangeMonitor.LookupResult;
+
+/**
+ * Per-context table of S3 method lookups, used by the S3 dispatch call sites that have seen too
+ * many different generics or classes to cache the lookups inline. An entry maps the generic, the
+ * class vector and the environments the lookup started from to the result of the lookup, and
+ * remains valid as long as the {@link LookupResult}s of all the names that were looked up (as
+ * maintained by {@link FrameSlotChangeMonitor}) are valid.
+ */
+public final class S3DispatchTable {
+
+    /**
+     * The table is simply cleared when it reaches this size, as it holds on to frames.
+     */
+    private static final int MAX_ENTRIES = 1 << 12;
+
+    /**
+     * Stands for lookups that did not find any method.
+     */
+    public static final Object NO_METHOD = new Object();
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static final class Key {
+        private final String generic;
+        private final String group;
+        private final String[] classes;
+        private final boolean nextMethod;
+        private final FrameDescriptor callerDescriptor;
+        private final MaterializedFrame genericDefFrame;
+        private final int hash;
+
+        public Key(String generic, String group, RStringVector classes, boolean nextMethod, MaterializedFrame callerFrame, MaterializedFrame genericDefFrame) {
+            this.generic = generic;
+            this.group = group;
+            this.classes = classes == null ? null : classes.getDataCopy();
+            this.nextMethod = nextMethod;
+            // lookups starting from different frames with the same descriptor are cached together
+            this.callerDescriptor = callerFrame.getFrameDescriptor();
+            this.genericDefFrame = genericDefFrame;
+            this.hash = ((generic.hashCode() * 31 + Arrays.hashCode(this.classes)) * 31 + System.identityHashCode(callerDescriptor)) * 31 + System.identityHashCode(genericDefFrame);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && callerDescriptor == other.callerDescriptor && genericDefFrame == other.genericDefFrame && nextMethod == other.nextMethod && generic.equals(other.generic) &&
+                            Objects.equals(group, other.group) && Arrays.equals(classes, other.classes);
+        }
+    }
+
+    private static final class Entry {
+        private final Object result;
+        private final LookupResult[] validity;
+
+        Entry(Object result, LookupResult[] validity) {
+            this.result = result;
+            this.validity = validity;
+        }
+
+        boolean isValid() {
+            for (LookupResult lookup : validity) {
+                if (!lookup.isValid()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the result recorded for {@code key}, {@link #NO_METHOD} if the lookup did not find a
+     * method, or {@code null} if there is no valid entry.
+     */
+    public Object get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.isValid()) {
+                hits.incrementAndGet();
+                return entry.result;
+            }
+            entries.remove(key, entry);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Records the result of a lookup, which is valid as long as all of {@code validity} are.
+     */
+    public void put(Key key, Object result, LookupResult[] validity) {
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        entries.put(key, new Entry(result, validity));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.frame.MaterializedFrame;
+import com.oracle.truffle.api.nodes.InvalidAssumptionException;
+import com.oracle.truffle.r.runtime.data.RFunction;
+import com.oracle.truffle.r.runtime.data.RStringVector;
+import com.oracle.truffle.r.runtime.env.REnvironment;
+import com.oracle.truffle.r.runtime.env.frame.FrameSlotChangeMonitor;
+import com.oracle.truffle.r.runtime.env.frame.FrameSlotChangeMonitor.FrameAndSlotLookupResult;
+import com.oracle.truffle.r.runtime.env.frame.FrameSlotChangeMonitor.LookupResult;
+
+/**
+ * Per-context table of S4 methods selected by the {@code DispatchGeneric} call sites that have seen
+ * too many signatures to cache them inline. It maps the methods table of a generic and the classes of
+ * the dispatched arguments to the method, which saves building the dispatch string and looking it
+ * up in the methods table environment.
+ *
+ * Inherited methods are selected by {@code .InheritForDispatch}, which stores them in the methods
+ * table, so they can be recorded like directly defined methods. {@code setMethod},
+ * {@code removeMethod} and {@code setClass} update or reset the methods tables, and an entry is
+ * only valid as long as the {@link LookupResult} of its binding in the methods table is.
+ */
+public final class S4DispatchTable {
+
+    /**
+     * The table is simply cleared when it reaches this size, as it holds on to methods tables.
+     */
+    private static final int MAX_ENTRIES = 1 << 12;
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class Key {
+        private final MaterializedFrame mtable;
+        private final String[] classes;
+        private final int hash;
+
+        Key(MaterializedFrame mtable, String[] classes) {
+            this.mtable = mtable;
+            this.classes = classes;
+            this.hash = System.identityHashCode(mtable) * 31 + Arrays.hashCode(classes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && mtable == other.mtable && Arrays.equals(classes, other.classes);
+        }
+    }
+
+    private static final class Entry {
+        private final RFunction method;
+        private final LookupResult validity;
+
+        Entry(RFunction method, LookupResult validity) {
+            this.method = method;
+            this.validity = validity;
+        }
+    }
+
+    /**
+     * Returns the method recorded for the given signature or {@code null}.
+     */
+    @TruffleBoundary
+    public RFunction get(REnvironment mtable, RStringVector classes) {
+        Key key = new Key(mtable.getFrame(), classes.getDataWithoutCopying());
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.validity.isValid()) {
+                hits.incrementAndGet();
+                return entry.method;
+            }
+            entries.remove(key, entry);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Records {@code method} for the given signature, if it is bound to {@code dispatchString} in
+     * {@code mtable} in a way that {@link FrameSlotChangeMonitor} can track.
+     */
+    @TruffleBoundary
+    public void put(REnvironment mtable, RStringVector classes, String dispatchString, RFunction method) {
+        MaterializedFrame frame = mtable.getFrame();
+        LookupResult lookup = FrameSlotChangeMonitor.lookup(frame, dispatchString);
+        if (lookup == null || lookup instanceof FrameAndSlotLookupResult) {
+            return;
+        }
+        try {
+            if (lookup.getValue() != method) {
+                // e.g., an inherited method that was not stored in the table
+                return;
+            }
+        } catch (InvalidAssumptionException e) {
+            return;
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        entries.put(new Key(frame, classes.getDataCopy()), new Entry(method, lookup));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.conn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.GZIPOutputStream;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.UnsupportedOptionsException;
+import org.tukaani.xz.XZ;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * An output stream that splits the data into fixed-size blocks and compresses them in parallel on
+ * the common {@link ForkJoinPool}, writing the results in order. Each block becomes a complete gzip
+ * member or xz stream. Both formats allow concatenation, so the output can be read by GNU R (and
+ * by {@link java.util.zip.GZIPInputStream} and {@link org.tukaani.xz.XZInputStream}) like a file
+ * compressed in one piece.
+ */
+abstract class BlockCompressedOutputStream extends OutputStream {
+
+    private static final int GZIP_BLOCK_SIZE = 1 << 20;
+    /**
+     * The size of the dictionary at the default preset, larger blocks would not compress better.
+     */
+    private static final int XZ_BLOCK_SIZE = 8 << 20;
+
+    private final OutputStream out;
+    private final int blockSize;
+    /**
+     * Bounds the memory used for blocks waiting to be compressed or written.
+     */
+    private final int maxPending;
+    private final ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int count;
+    private boolean closed;
+
+    protected BlockCompressedOutputStream(OutputStream out, int blockSize) {
+        this.out = out;
+        this.blockSize = blockSize;
+        this.maxPending = ForkJoinPool.getCommonPoolParallelism() + 1;
+        this.block = new byte[blockSize];
+    }
+
+    /**
+     * Creates a stream writing gzip members compressed at {@code level} to {@code out}. There are
+     * no 'extreme' gzip levels, so the sign of {@code level} is ignored.
+     */
+    static BlockCompressedOutputStream createGZIP(OutputStream out, int requestedLevel) {
+        int level = Math.abs(requestedLevel);
+        return new BlockCompressedOutputStream(out, GZIP_BLOCK_SIZE) {
+            @Override
+            protected void compressBlock(byte[] data, int length, OutputStream dest) throws IOException {
+                try (GZIPOutputStream gzip = new GZIPOutputStream(dest, GZIP_BLOCK_SIZE / 16) {
+                    {
+                        def.setLevel(level);
+                    }
+                }) {
+                    gzip.write(data, 0, length);
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates a stream writing xz streams compressed with preset {@code level} to {@code out}. A
+     * negative {@code level} requests the 'extreme' variant of preset {@code -level}.
+     */
+    static BlockCompressedOutputStream createXZ(OutputStream out, int level) throws IOException {
+        LZMA2Options options;
+        try {
+            options = new LZMA2Options(Math.abs(level));
+            // a block never needs a larger dictionary, the higher presets would otherwise need
+            // hundreds of MB of encoder memory per block in flight
+            options.setDictSize(Math.min(options.getDictSize(), XZ_BLOCK_SIZE));
+            if (level < 0) {
+                // as liblzma does for LZMA_PRESET_EXTREME
+                options.setMode(LZMA2Options.MODE_NORMAL);
+                options.setMatchFinder(LZMA2Options.MF_BT4);
+                if (level == -3 || level == -5) {
+                    options.setNiceLen(192);
+                    options.setDepthLimit(0);
+                } else {
+                    options.setNiceLen(LZMA2Options.NICE_LEN_MAX);
+                    options.setDepthLimit(512);
+                }
+            }
+        } catch (UnsupportedOptionsException ex) {
+            throw new IOException(ex);
+        }
+        return new BlockCompressedOutputStream(out, XZ_BLOCK_SIZE) {
+            @Override
+            protected void compressBlock(byte[] data, int length, OutputStream dest) throws IOException {
+                try (XZOutputStream xz = new XZOutputStream(dest, options, XZ.CHECK_CRC32)) {
+                    xz.write(data, 0, length);
+                }
+            }
+        };
+    }
+
+    /**
+     * Compresses {@code length} bytes of {@code data} as a self-contained unit and writes them to
+     * {@code dest}, which must be closed afterwards. Called concurrently from pool threads.
+     */
+    protected abstract void compressBlock(byte[] data, int length, OutputStream dest) throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == blockSize) {
+            submitBlock();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (count == blockSize) {
+                submitBlock();
+            }
+            int n = Math.min(remaining, blockSize - count);
+            System.arraycopy(b, offset, block, count, n);
+            count += n;
+            offset += n;
+            remaining -= n;
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = count;
+        pending.add(ForkJoinPool.commonPool().submit(() -> {
+            ByteArrayOutputStream dest = new ByteArrayOutputStream(length / 2);
+            try {
+                compressBlock(data, length, dest);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return dest.toByteArray();
+        }));
+        block = new byte[blockSize];
+        count = 0;
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        byte[] compressed;
+        try {
+            compressed = pending.poll().join();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        out.write(compressed);
+    }
+
+    /**
+     * Compresses and writes everything written so far. Note that this ends the current block, so
+     * frequent flushing makes the compression less effective.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                flush();
+            } finally {
+                pending.clear();
+                out.close();
+            }
+        }
+    }
+}
@@ -474,8 +474,15 @@ abstract class DelegateRConnection implements RConnection, ByteChannel {
             do {
                 eof = ensureDataAvailable(dst.remaining());
                 bytesToRead = Math.min(cache.remaining(), dst.remaining());
-                cache.get(dst.array(), dst.position(), bytesToRead);
-                dst.position(dst.position() + bytesToRead);
+                if (dst.hasArray()) {
+                    cache.get(dst.array(), dst.arrayOffset() + dst.position(), bytesToRead);
+                    dst.position(dst.position() + bytesToRead);
+                } else {
+                    ByteBuffer chunk = cache.duplicate();
+                    chunk.limit(chunk.position() + bytesToRead);
+                    dst.put(chunk);
+                    cache.position(chunk.position());
+                }
                 totalBytesRead += bytesToRead;
             } while (totalBytesRead < bytesRequested && bytesToRead > 0 && !eof);
             return totalBytesRead == 0 && eof ? -1 : totalBytesRead;
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.conn;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+
+/**
+ * Splits the lines of a connection into fields, as done by {@code scan} and {@code count.fields}.
+ * Fields are either separated by a single separator character or, if there is none, by white
+ * space. A field may contain quoted parts, which can span several lines. In white space mode, a
+ * quote is only recognized at the start of a field and {@code \"} stands for a quote in a quoted
+ * part, otherwise, a quote is recognized anywhere in a field and a doubled quote stands for a
+ * quote. The rest of a line following the comment character is ignored, unless it is quoted.
+ *
+ * The lines are split with a simple scan over their characters. If the whole connection is going
+ * to be read, the lines are read from the connection in blocks, otherwise one by one, so that no
+ * lines are consumed that are not split.
+ */
+public final class DelimitedTextReader {
+
+    /**
+     * Stands for no comment character.
+     */
+    public static final int NO_COMMENT_CHAR = 100000;
+
+    private static final int LINE_BLOCK_SIZE = 1000;
+
+    private final RConnection conn;
+    private final int lineBlockSize;
+    private final boolean skipNul;
+    /**
+     * The separator character, or {@code 0} for white space.
+     */
+    private final char sep;
+    private final String quoteSet;
+    private final int commentChar;
+    private final boolean stripWhite;
+
+    private String[] lines;
+    private int lineIndex;
+
+    /**
+     * The fields of the current record.
+     */
+    private final ArrayList<String> fields = new ArrayList<>();
+    /**
+     * The part of a field that was split so far, if the field has a quoted part.
+     */
+    private final StringBuilder field = new StringBuilder();
+    /**
+     * The quote that opened the quoted part the last line ended in, or {@code 0}.
+     */
+    private char openQuote;
+
+    /**
+     * @param readAll whether the connection is going to be read until its end
+     * @param sep the separator character, or {@code 0} for white space
+     * @param stripWhite whether to strip white space from unquoted fields if there is a separator
+     */
+    public DelimitedTextReader(RConnection conn, boolean readAll, boolean skipNul, char sep, String quoteSet, int commentChar, boolean stripWhite) {
+        this.conn = conn;
+        this.lineBlockSize = readAll ? LINE_BLOCK_SIZE : 1;
+        this.skipNul = skipNul;
+        this.sep = sep;
+        this.quoteSet = quoteSet;
+        this.commentChar = commentChar;
+        this.stripWhite = stripWhite;
+    }
+
+    /**
+     * Returns the next line of the connection, or {@code null} at its end.
+     */
+    @TruffleBoundary
+    public String readLine() throws IOException {
+        if (lines == null || lineIndex == lines.length) {
+            lines = conn.readLines(lineBlockSize, true, skipNul);
+            lineIndex = 0;
+            if (lines.length == 0) {
+                return null;
+            }
+        }
+        return lines[lineIndex++];
+    }
+
+    /**
+     * Returns the fields of the next line that is not blank, or of the next line if
+     * {@code blankLinesSkip} is {@code false}, or {@code null} at the end of the connection. A
+     * blank line consists of a single empty field. If a quoted part spans several lines, all of
+     * them make up the record.
+     */
+    @TruffleBoundary
+    public String[] readRecord(boolean blankLinesSkip) throws IOException {
+        while (true) {
+            String line = readLine();
+            if (line == null) {
+                if (openQuote != 0) {
+                    // the quoted part ends with the connection
+                    endField();
+                    openQuote = 0;
+                    break;
+                }
+                return null;
+            }
+            if (!splitLine(line)) {
+                if (fields.isEmpty()) {
+                    if (blankLinesSkip) {
+                        continue;
+                    }
+                    fields.add("");
+                }
+                break;
+            }
+        }
+        String[] result = fields.toArray(new String[fields.size()]);
+        fields.clear();
+        return result;
+    }
+
+    /**
+     * Splits {@code line}, adding its fields to the current record. A line ending in a quoted part
+     * continues the record.
+     *
+     * @return whether the line ends in a quoted part
+     */
+    @TruffleBoundary
+    public boolean splitLine(String line) {
+        if (sep == 0) {
+            splitWhiteSpace(line);
+        } else {
+            splitSeparated(line);
+        }
+        if (openQuote != 0) {
+            field.append('\n');
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of fields of the current record and starts a new one.
+     */
+    public int endRecord() {
+        int result = fields.size();
+        fields.clear();
+        return result;
+    }
+
+    private static boolean isWhiteSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\f' || c == '\u000b' || c == '\r' || c == '\n';
+    }
+
+    private boolean isQuote(char c) {
+        return quoteSet.indexOf(c) >= 0;
+    }
+
+    /**
+     * Ends a field with a quoted part, which is not stripped of white space.
+     */
+    private void endField() {
+        fields.add(field.toString());
+        field.setLength(0);
+    }
+
+    private static String strip(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && (value.charAt(start) == ' ' || value.charAt(start) == '\t')) {
+            start++;
+        }
+        while (end > start && (value.charAt(end - 1) == ' ' || value.charAt(end - 1) == '\t')) {
+            end--;
+        }
+        return value.substring(start, end);
+    }
+
+    private void splitWhiteSpace(String line) {
+        int length = line.length();
+        int i = 0;
+        boolean continued = openQuote != 0;
+        while (true) {
+            if (continued) {
+                continued = false;
+                i = endQuotedWhiteSpace(line, i);
+                if (openQuote != 0) {
+                    return;
+                }
+            } else {
+                while (i < length && isWhiteSpace(line.charAt(i))) {
+                    i++;
+                }
+                if (i == length || line.charAt(i) == commentChar) {
+                    return;
+                }
+                char c = line.charAt(i);
+                if (isQuote(c)) {
+                    openQuote = c;
+                    i = endQuotedWhiteSpace(line, i + 1);
+                    if (openQuote != 0) {
+                        return;
+                    }
+                } else {
+                    int start = i;
+                    while (i < length && !isWhiteSpace(line.charAt(i)) && line.charAt(i) != commentChar) {
+                        i++;
+                    }
+                    fields.add(line.substring(start, i));
+                    continue;
+                }
+            }
+            // the rest of a field with a quoted part
+            int start = i;
+            while (i < length && !isWhiteSpace(line.charAt(i)) && line.charAt(i) != commentChar) {
+                i++;
+            }
+            field.append(line, start, i);
+            endField();
+        }
+    }
+
+    /**
+     * Appends the quoted part starting at {@code start} to {@link #field} and returns the index
+     * after its closing quote.
+     */
+    private int endQuotedWhiteSpace(String line, int start) {
+        int length = line.length();
+        int i = start;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == openQuote) {
+                openQuote = 0;
+                return i + 1;
+            } else if (c == '\\' && i + 1 < length && line.charAt(i + 1) == openQuote) {
+                field.append(openQuote);
+                i += 2;
+            } else {
+                field.append(c);
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private void splitSeparated(String line) {
+        int length = line.length();
+        int i = 0;
+        if (openQuote == 0 && (length == 0 || line.charAt(0) == commentChar)) {
+            // a blank line
+            return;
+        }
+        boolean quoted = openQuote != 0;
+        while (true) {
+            if (openQuote == 0 && !quoted) {
+                // fast path for fields without quotes
+                int start = i;
+                while (i < length) {
+                    char c = line.charAt(i);
+                    if (c == sep || c == commentChar || isQuote(c)) {
+                        break;
+                    }
+                    i++;
+                }
+                if (i == length || line.charAt(i) == sep || line.charAt(i) == commentChar) {
+                    String value = line.substring(start, i);
+                    fields.add(stripWhite ? strip(value) : value);
+                    if (i < length && line.charAt(i) == sep) {
+                        i++;
+                        continue;
+                    }
+                    return;
+                }
+                field.append(line, start, i);
+            }
+            // a field with a quoted part
+            quoted = true;
+            while (i < length) {
+                char c = line.charAt(i);
+                if (openQuote != 0) {
+                    if (c == openQuote) {
+                        if (i + 1 < length && line.charAt(i + 1) == openQuote) {
+                            // a doubled quote
+                            field.append(c);
+                            i++;
+                        } else {
+                            openQuote = 0;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == sep || c == commentChar) {
+                    break;
+                } else if (isQuote(c)) {
+                    openQuote = c;
+                } else {
+                    field.append(c);
+                }
+                i++;
+            }
+            if (openQuote != 0) {
+                return;
+            }
+            endField();
+            quoted = false;
+            if (i == length || line.charAt(i) == commentChar) {
+                return;
+            }
+            // skip the separator
+            i++;
+        }
+    }
+}
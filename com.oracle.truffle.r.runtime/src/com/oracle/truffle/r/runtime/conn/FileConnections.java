@@ -22,7 +22,6 @@
  */
 package com.oracle.truffle.r.runtime.conn;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -39,12 +38,6 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
-
-import org.tukaani.xz.LZMA2Options;
-import org.tukaani.xz.XZ;
-import org.tukaani.xz.XZInputStream;
-import org.tukaani.xz.XZOutputStream;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.r.runtime.RCompression;
@@ -103,7 +96,7 @@ public class FileConnections {
      */
     public static class CompressedRConnection extends BasePathRConnection {
         private final RCompression.Type cType;
-        @SuppressWarnings("unused") private final int compression; // TODO
+        private final int compression;
 
         public CompressedRConnection(String path, String modeString, Type cType, String encoding, int compression) throws IOException {
             super(path, path, mapConnectionClass(cType), modeString, AbstractOpenMode.ReadBinary, encoding);
@@ -166,6 +159,14 @@ public class FileConnections {
         return delegate;
     }
 
+    /**
+     * The compression level requested for {@code base}, GNU R's default if there is none. Negative
+     * values request the 'extreme' xz presets.
+     */
+    private static int getCompressionLevel(BasePathRConnection base) {
+        return base instanceof CompressedRConnection ? ((CompressedRConnection) base).compression : 6;
+    }
+
     private static DelegateRConnection createGZIPDelegateConnection(BasePathRConnection base) throws IOException {
 
         switch (base.getOpenMode().abstractOpenMode) {
@@ -174,10 +175,10 @@ public class FileConnections {
                 return new CompressedInputRConnection(base, new GZIPInputStream(new FileInputStream(base.path), GZIP_BUFFER_SIZE));
             case Append:
             case AppendBinary:
-                return new CompressedOutputRConnection(base, new GZIPOutputStream(new FileOutputStream(base.path, true), GZIP_BUFFER_SIZE), true);
+                return new CompressedOutputRConnection(base, BlockCompressedOutputStream.createGZIP(new FileOutputStream(base.path, true), getCompressionLevel(base)), true);
             case Write:
             case WriteBinary:
-                return new CompressedOutputRConnection(base, new GZIPOutputStream(new FileOutputStream(base.path, false), GZIP_BUFFER_SIZE), true);
+                return new CompressedOutputRConnection(base, BlockCompressedOutputStream.createGZIP(new FileOutputStream(base.path, false), getCompressionLevel(base)), true);
             default:
                 throw RError.nyi(RError.SHOW_CALLER2, "open mode: " + base.getOpenMode());
         }
@@ -188,13 +189,13 @@ public class FileConnections {
         switch (base.getOpenMode().abstractOpenMode) {
             case Read:
             case ReadBinary:
-                return new CompressedInputRConnection(base, new XZInputStream(new FileInputStream(base.path)));
+                return new XZInputRConnection(base);
             case Append:
             case AppendBinary:
-                return new CompressedOutputRConnection(base, new XZOutputStream(new FileOutputStream(base.path, true), new LZMA2Options(), XZ.CHECK_CRC32), false);
+                return new CompressedOutputRConnection(base, BlockCompressedOutputStream.createXZ(new FileOutputStream(base.path, true), getCompressionLevel(base)), false);
             case Write:
             case WriteBinary:
-                return new CompressedOutputRConnection(base, new XZOutputStream(new FileOutputStream(base.path, false), new LZMA2Options(), XZ.CHECK_CRC32), false);
+                return new CompressedOutputRConnection(base, BlockCompressedOutputStream.createXZ(new FileOutputStream(base.path, false), getCompressionLevel(base)), false);
             default:
                 throw RError.nyi(RError.SHOW_CALLER2, "open mode: " + base.getOpenMode());
         }
@@ -205,8 +206,7 @@ public class FileConnections {
         switch (base.getOpenMode().abstractOpenMode) {
             case Read:
             case ReadBinary:
-                byte[] bzipUdata = RCompression.bzipUncompressFromFile(base.path);
-                return new ByteStreamCompressedInputRConnection(base, new ByteArrayInputStream(bzipUdata));
+                return new CompressedInputRConnection(base, RCompression.bzipUncompressStreamFromFile(base.path));
             case Append:
             case AppendBinary:
                 return new BZip2OutputRConnection(base, new ByteArrayOutputStream(), true);
@@ -705,9 +705,27 @@ public class FileConnections {
         }
     }
 
-    private static class ByteStreamCompressedInputRConnection extends CompressedInputRConnection {
-        ByteStreamCompressedInputRConnection(BasePathRConnection base, ByteArrayInputStream is) {
-            super(base, is);
+    private static class XZInputRConnection extends DelegateReadRConnection {
+        private final XZBlockChannel channel;
+
+        protected XZInputRConnection(BasePathRConnection base) throws IOException {
+            super(base);
+            channel = new XZBlockChannel(base.path);
+        }
+
+        @Override
+        public ByteChannel getChannel() {
+            return channel;
+        }
+
+        @Override
+        public boolean isSeekable() {
+            return true;
+        }
+
+        @Override
+        public long seekInternal(long offset, SeekMode seekMode, SeekRWMode seekRWMode) throws IOException {
+            return DelegateRConnection.seek(channel, offset, seekMode, seekRWMode);
         }
     }
 
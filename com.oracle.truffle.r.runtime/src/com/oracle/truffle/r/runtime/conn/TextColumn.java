@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.conn;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.RType;
+import com.oracle.truffle.r.runtime.data.RComplex;
+import com.oracle.truffle.r.runtime.data.RDataFactory;
+import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractVector;
+
+/**
+ * Converts the fields read by {@link DelimitedTextReader} into a vector. The values are parsed as
+ * they are added and stored in a primitive array of the vector's type, and repeated strings are
+ * shared.
+ *
+ * {@link #convert} determines the type of a column of fields in the same pass as it parses them,
+ * widening the values parsed so far if needed. Long columns are converted in parallel chunks on the
+ * common {@link ForkJoinPool}, and the chunks are combined afterwards.
+ */
+public final class TextColumn {
+
+    private static final int INITIAL_SIZE = 1000;
+    /**
+     * Strings are no longer shared once there are this many different ones.
+     */
+    private static final int MAX_INTERNED = 1 << 16;
+    private static final int PARALLEL_CHUNK_SIZE = 1 << 16;
+    private static final long NOT_PARSED = Long.MIN_VALUE;
+
+    private final RType type;
+    private final String[] naStrings;
+    private int length;
+    private boolean complete = true;
+
+    private byte[] bytes;
+    private int[] ints;
+    private double[] doubles;
+    private String[] strings;
+    private HashMap<String, String> interned;
+
+    /**
+     * @param type the type of the vector, which has to be an atomic vector type
+     * @param naStrings the fields that stand for {@code NA}, in addition to empty fields of
+     *            non-character types
+     */
+    public TextColumn(RType type, RAbstractStringVector naStrings, int initialSize) {
+        this.type = type;
+        this.naStrings = toArray(naStrings);
+        int size = initialSize > 0 ? initialSize : INITIAL_SIZE;
+        switch (type) {
+            case Logical:
+            case Raw:
+                bytes = new byte[size];
+                break;
+            case Integer:
+                ints = new int[size];
+                break;
+            case Double:
+                doubles = new double[size];
+                break;
+            case Complex:
+                doubles = new double[size << 1];
+                break;
+            case Character:
+                strings = new String[size];
+                interned = new HashMap<>();
+                break;
+            default:
+                throw RInternalError.shouldNotReachHere();
+        }
+    }
+
+    private static String[] toArray(RAbstractStringVector vector) {
+        String[] result = new String[vector.getLength()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = vector.getDataAt(i);
+        }
+        return result;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    private boolean isNA(String field, boolean numeric) {
+        if (numeric && field.isEmpty()) {
+            return true;
+        }
+        for (String naString : naStrings) {
+            if (naString.equals(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @TruffleBoundary
+    public void add(String field) {
+        int index = length++;
+        switch (type) {
+            case Logical: {
+                growBytes(index);
+                String s = field.trim();
+                byte value = isNA(s, true) ? RRuntime.LOGICAL_NA : RRuntime.string2logicalNoCheck(s);
+                complete &= value != RRuntime.LOGICAL_NA;
+                bytes[index] = value;
+                break;
+            }
+            case Integer: {
+                if (index == ints.length) {
+                    ints = Arrays.copyOf(ints, index << 1);
+                }
+                String s = field.trim();
+                int value = isNA(s, true) ? RRuntime.INT_NA : parseInt(s);
+                complete &= value != RRuntime.INT_NA;
+                ints[index] = value;
+                break;
+            }
+            case Double: {
+                if (index == doubles.length) {
+                    doubles = Arrays.copyOf(doubles, index << 1);
+                }
+                String s = field.trim();
+                double value = isNA(s, true) ? RRuntime.DOUBLE_NA : RRuntime.string2doubleNoCheck(s);
+                complete &= !RRuntime.isNA(value);
+                doubles[index] = value;
+                break;
+            }
+            case Complex: {
+                if (index << 1 == doubles.length) {
+                    doubles = Arrays.copyOf(doubles, index << 2);
+                }
+                String s = field.trim();
+                RComplex value = isNA(s, true) ? RComplex.createNA() : RRuntime.string2complexNoCheck(s);
+                complete &= !value.isNA();
+                doubles[index << 1] = value.getRealPart();
+                doubles[(index << 1) + 1] = value.getImaginaryPart();
+                break;
+            }
+            case Character: {
+                if (index == strings.length) {
+                    strings = Arrays.copyOf(strings, index << 1);
+                }
+                if (isNA(field, false)) {
+                    complete = false;
+                    strings[index] = RRuntime.STRING_NA;
+                } else {
+                    strings[index] = intern(field);
+                }
+                break;
+            }
+            case Raw: {
+                growBytes(index);
+                String s = field.trim();
+                bytes[index] = isNA(s, true) ? 0 : RRuntime.string2raw(s).getValue();
+                break;
+            }
+            default:
+                throw RInternalError.shouldNotReachHere();
+        }
+    }
+
+    private void growBytes(int index) {
+        if (index == bytes.length) {
+            bytes = Arrays.copyOf(bytes, index << 1);
+        }
+    }
+
+    private String intern(String s) {
+        String result = interned.get(s);
+        if (result == null) {
+            result = s;
+            if (interned.size() < MAX_INTERNED) {
+                interned.put(s, s);
+            }
+        }
+        return result;
+    }
+
+    @TruffleBoundary
+    public RAbstractVector toVector() {
+        switch (type) {
+            case Logical:
+                return RDataFactory.createLogicalVector(Arrays.copyOf(bytes, length), complete);
+            case Integer:
+                return RDataFactory.createIntVector(Arrays.copyOf(ints, length), complete);
+            case Double:
+                return RDataFactory.createDoubleVector(Arrays.copyOf(doubles, length), complete);
+            case Complex:
+                return RDataFactory.createComplexVector(Arrays.copyOf(doubles, length << 1), complete);
+            case Character:
+                return RDataFactory.createStringVector(Arrays.copyOf(strings, length), complete);
+            case Raw:
+                return RDataFactory.createRawVector(Arrays.copyOf(bytes, length));
+            default:
+                throw RInternalError.shouldNotReachHere();
+        }
+    }
+
+    /**
+     * Parses an integer like {@link RRuntime#string2intNoCheck(String)}, without creating
+     * intermediate strings for plain decimal numbers.
+     */
+    private static int parseInt(String s) {
+        long value = parseDecimalInt(s);
+        return value == NOT_PARSED ? RRuntime.string2intNoCheck(s) : (int) value;
+    }
+
+    private static int parseIntOrFail(String s) throws NumberFormatException {
+        long value = parseDecimalInt(s);
+        return value == NOT_PARSED ? RRuntime.string2intNoCheck(s, true) : (int) value;
+    }
+
+    /**
+     * Returns the value of a decimal number in the range of non-{@code NA} integers, or
+     * {@link #NOT_PARSED} for anything else, including numbers that {@link Integer#decode} would
+     * interpret as octal.
+     */
+    private static long parseDecimalInt(String s) {
+        int length = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            negative = s.charAt(0) == '-';
+            i++;
+            if (length > i + 1 && s.charAt(i) == '0') {
+                return NOT_PARSED;
+            }
+        }
+        if (i == length || length - i > 10) {
+            return NOT_PARSED;
+        }
+        long value = 0;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_PARSED;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (negative) {
+            value = -value;
+        }
+        return value > Integer.MAX_VALUE || value <= Integer.MIN_VALUE ? NOT_PARSED : value;
+    }
+
+    /**
+     * The values of a chunk of a column converted by {@link TextColumn#convert}, of type
+     * {@code null} as long as there were only {@code NA} values.
+     */
+    private static final class Chunk {
+        private final int length;
+        private RType type;
+        private boolean complete = true;
+        private byte[] logicals;
+        private int[] ints;
+        private double[] doubles;
+
+        Chunk(int length) {
+            this.length = length;
+        }
+
+        void setNA(int index) {
+            complete = false;
+            if (type == RType.Logical) {
+                logicals[index] = RRuntime.LOGICAL_NA;
+            } else if (type == RType.Integer) {
+                ints[index] = RRuntime.INT_NA;
+            } else if (type == RType.Double) {
+                doubles[index] = RRuntime.DOUBLE_NA;
+            }
+        }
+
+        /**
+         * Sets the value at {@code index}, which is preceded by {@code NA} values if this is the
+         * first one, and returns whether it has a logical or numeric type.
+         */
+        boolean set(int index, String s) {
+            if (type == null) {
+                return setFirst(index, s);
+            }
+            try {
+                switch (type) {
+                    case Logical:
+                        logicals[index] = RRuntime.string2logicalNoCheck(s, true);
+                        return true;
+                    case Integer:
+                        try {
+                            ints[index] = parseIntOrFail(s);
+                            return true;
+                        } catch (NumberFormatException e) {
+                            double value = RRuntime.string2doubleNoCheck(s, true);
+                            widenToDouble(index);
+                            setDouble(index, value);
+                            return true;
+                        }
+                    case Double:
+                        setDouble(index, RRuntime.string2doubleNoCheck(s, true));
+                        return true;
+                    default:
+                        throw RInternalError.shouldNotReachHere();
+                }
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private boolean setFirst(int index, String s) {
+            if (RRuntime.hasHexPrefix(s)) {
+                // double takes precedence even if s is a hexadecimal integer
+                try {
+                    double value = RRuntime.string2doubleNoCheck(s, true);
+                    initialize(RType.Double, index);
+                    setDouble(index, value);
+                    return true;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+            try {
+                int value = parseIntOrFail(s);
+                initialize(RType.Integer, index);
+                ints[index] = value;
+                return true;
+            } catch (NumberFormatException ie) {
+                try {
+                    double value = RRuntime.string2doubleNoCheck(s, true);
+                    initialize(RType.Double, index);
+                    setDouble(index, value);
+                    return true;
+                } catch (NumberFormatException de) {
+                    try {
+                        byte value = RRuntime.string2logicalNoCheck(s, true);
+                        initialize(RType.Logical, index);
+                        logicals[index] = value;
+                        return true;
+                    } catch (NumberFormatException le) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        private void initialize(RType newType, int naCount) {
+            type = newType;
+            switch (newType) {
+                case Logical:
+                    logicals = new byte[length];
+                    Arrays.fill(logicals, 0, naCount, RRuntime.LOGICAL_NA);
+                    break;
+                case Integer:
+                    ints = new int[length];
+                    Arrays.fill(ints, 0, naCount, RRuntime.INT_NA);
+                    break;
+                case Double:
+                    doubles = new double[length];
+                    Arrays.fill(doubles, 0, naCount, RRuntime.DOUBLE_NA);
+                    break;
+                default:
+                    throw RInternalError.shouldNotReachHere();
+            }
+        }
+
+        private void setDouble(int index, double value) {
+            complete &= !RRuntime.isNA(value);
+            doubles[index] = value;
+        }
+
+        private void widenToDouble(int count) {
+            doubles = new double[length];
+            for (int i = 0; i < count; i++) {
+                doubles[i] = RRuntime.isNA(ints[i]) ? RRuntime.DOUBLE_NA : ints[i];
+            }
+            ints = null;
+            type = RType.Double;
+        }
+    }
+
+    private static Chunk convertChunk(String[] data, int from, int to, String[] naStrings) {
+        Chunk chunk = new Chunk(to - from);
+        for (int i = from; i < to; i++) {
+            String s = data[i];
+            if (isNAOrBlank(s, naStrings)) {
+                chunk.setNA(i - from);
+            } else if (!chunk.set(i - from, s.trim())) {
+                chunk.type = RType.Character;
+                break;
+            }
+        }
+        return chunk;
+    }
+
+    private static boolean isNAOrBlank(String s, String[] naStrings) {
+        if (RRuntime.isNA(s)) {
+            return true;
+        }
+        for (String naString : naStrings) {
+            if (s.equals(naString)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static RType join(RType a, RType b) {
+        if (a == null || a == b) {
+            return b;
+        } else if (b == null) {
+            return a;
+        } else if ((a == RType.Integer || a == RType.Double) && (b == RType.Integer || b == RType.Double)) {
+            return RType.Double;
+        } else {
+            return RType.Character;
+        }
+    }
+
+    /**
+     * Converts {@code x} to a logical, integer or double vector as done by {@code type.convert}.
+     * Empty and blank fields, and those in {@code naStrings}, are {@code NA}. Returns {@code null}
+     * if not all of the fields can be converted to the same type.
+     */
+    @TruffleBoundary
+    public static RAbstractVector convert(RAbstractStringVector x, RAbstractStringVector naStringsVector) {
+        String[] data = toArray(x);
+        String[] naStrings = toArray(naStringsVector);
+        Chunk[] chunks;
+        if (data.length < 2 * PARALLEL_CHUNK_SIZE) {
+            chunks = new Chunk[]{convertChunk(data, 0, data.length, naStrings)};
+        } else {
+            int count = (data.length + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+            @SuppressWarnings("unchecked")
+            ForkJoinTask<Chunk>[] tasks = new ForkJoinTask[count];
+            for (int i = 0; i < count; i++) {
+                int from = i * PARALLEL_CHUNK_SIZE;
+                int to = Math.min(from + PARALLEL_CHUNK_SIZE, data.length);
+                tasks[i] = ForkJoinPool.commonPool().submit(() -> convertChunk(data, from, to, naStrings));
+            }
+            chunks = new Chunk[count];
+            for (int i = 0; i < count; i++) {
+                chunks[i] = tasks[i].join();
+            }
+        }
+        RType type = null;
+        boolean complete = true;
+        for (Chunk chunk : chunks) {
+            type = join(type, chunk.type);
+            complete &= chunk.complete;
+        }
+        if (type == RType.Character) {
+            return null;
+        }
+        int offset = 0;
+        if (type == null) {
+            // all NA
+            byte[] result = new byte[data.length];
+            Arrays.fill(result, RRuntime.LOGICAL_NA);
+            return RDataFactory.createLogicalVector(result, RDataFactory.INCOMPLETE_VECTOR);
+        } else if (type == RType.Logical) {
+            byte[] result = new byte[data.length];
+            for (Chunk chunk : chunks) {
+                if (chunk.type == null) {
+                    Arrays.fill(result, offset, offset + chunk.length, RRuntime.LOGICAL_NA);
+                } else {
+                    System.arraycopy(chunk.logicals, 0, result, offset, chunk.length);
+                }
+                offset += chunk.length;
+            }
+            return RDataFactory.createLogicalVector(result, complete);
+        } else if (type == RType.Integer) {
+            int[] result = new int[data.length];
+            for (Chunk chunk : chunks) {
+                if (chunk.type == null) {
+                    Arrays.fill(result, offset, offset + chunk.length, RRuntime.INT_NA);
+                } else {
+                    System.arraycopy(chunk.ints, 0, result, offset, chunk.length);
+                }
+                offset += chunk.length;
+            }
+            return RDataFactory.createIntVector(result, complete);
+        } else {
+            assert type == RType.Double;
+            double[] result = new double[data.length];
+            for (Chunk chunk : chunks) {
+                if (chunk.type == null) {
+                    Arrays.fill(result, offset, offset + chunk.length, RRuntime.DOUBLE_NA);
+                } else if (chunk.type == RType.Integer) {
+                    chunk.widenToDouble(chunk.length);
+                    System.arraycopy(chunk.doubles, 0, result, offset, chunk.length);
+                } else {
+                    System.arraycopy(chunk.doubles, 0, result, offset, chunk.length);
+                }
+                offset += chunk.length;
+            }
+            return RDataFactory.createDoubleVector(result, complete);
+        }
+    }
+}
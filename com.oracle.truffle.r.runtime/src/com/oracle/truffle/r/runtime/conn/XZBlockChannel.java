@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.conn;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+/**
+ * A read-only, seekable channel of the decompressed contents of an xz file. The blocks of an xz
+ * file are independent and their positions are recorded in the index at the end of each stream.
+ * If there is more than one block, as written by {@code xz -T} or by
+ * {@link BlockCompressedOutputStream}, the blocks following the current one are decompressed in
+ * parallel on the common {@link ForkJoinPool} ahead of being read. Files consisting of a single
+ * (or a huge) block are decompressed sequentially. In either case, only a bounded amount of
+ * decompressed data is held in memory.
+ */
+final class XZBlockChannel implements SeekableByteChannel {
+
+    /**
+     * Blocks larger than this are not decompressed into memory as a whole.
+     */
+    private static final long MAX_PARALLEL_BLOCK_SIZE = 64 << 20;
+    /**
+     * Bounds the decompressed size of the blocks read ahead of the current one, apart from the
+     * first of them.
+     */
+    private static final long MAX_READ_AHEAD = 2 * MAX_PARALLEL_BLOCK_SIZE;
+
+    private final String path;
+    /**
+     * Used for sequential decompression and to read the index.
+     */
+    private final SeekableXZInputStream in;
+    private final long length;
+    private final boolean parallel;
+    /**
+     * Uncompressed positions and sizes of the blocks, copied from the index as it cannot be
+     * queried concurrently.
+     */
+    private final long[] blockPos;
+    private final int[] blockSize;
+    private final int maxPending;
+    /**
+     * The decompression tasks of the blocks preceding {@link #nextBlock}.
+     */
+    private final ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+    private long pendingBytes;
+    /**
+     * Decoders of the file that are not in use by a decompression task. Guarded by itself, as is
+     * closing the channel, so that no decoder is returned after {@link #close} has closed them.
+     */
+    private final ArrayDeque<SeekableXZInputStream> decoders = new ArrayDeque<>();
+
+    private int nextBlock;
+    private byte[] current;
+    private int currentOffset;
+    private long position;
+    private volatile boolean open = true;
+
+    XZBlockChannel(String path) throws IOException {
+        this.path = path;
+        this.in = new SeekableXZInputStream(new SeekableFileInputStream(path));
+        this.length = in.length();
+        int blockCount = in.getBlockCount();
+        boolean smallBlocks = blockCount > 1;
+        blockPos = new long[blockCount];
+        blockSize = new int[blockCount];
+        for (int i = 0; i < blockCount && smallBlocks; i++) {
+            long size = in.getBlockSize(i);
+            smallBlocks = size <= MAX_PARALLEL_BLOCK_SIZE;
+            blockPos[i] = in.getBlockPos(i);
+            blockSize[i] = (int) size;
+        }
+        this.parallel = smallBlocks;
+        this.maxPending = ForkJoinPool.getCommonPoolParallelism() + 1;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        checkOpen();
+        if (!parallel) {
+            int n;
+            if (dst.hasArray()) {
+                n = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+            } else {
+                byte[] buffer = new byte[Math.min(dst.remaining(), 8192)];
+                n = in.read(buffer, 0, buffer.length);
+                if (n > 0) {
+                    dst.put(buffer, 0, n);
+                }
+            }
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+        int total = 0;
+        while (dst.hasRemaining()) {
+            if (current == null || currentOffset == current.length) {
+                if (!nextBlock()) {
+                    break;
+                }
+            }
+            int n = Math.min(dst.remaining(), current.length - currentOffset);
+            dst.put(current, currentOffset, n);
+            currentOffset += n;
+            total += n;
+        }
+        position += total;
+        return total == 0 && dst.remaining() > 0 ? -1 : total;
+    }
+
+    /**
+     * Makes the next block the current one, submitting the decompression of the following blocks.
+     */
+    private boolean nextBlock() throws IOException {
+        while (pending.size() < maxPending && nextBlock < blockPos.length && (pending.isEmpty() || pendingBytes + blockSize[nextBlock] <= MAX_READ_AHEAD)) {
+            int block = nextBlock++;
+            pendingBytes += blockSize[block];
+            pending.add(ForkJoinPool.commonPool().submit(() -> decompressBlock(block)));
+        }
+        if (pending.isEmpty()) {
+            current = null;
+            return false;
+        }
+        pendingBytes -= blockSize[nextBlock - pending.size()];
+        ForkJoinTask<byte[]> task = pending.poll();
+        try {
+            current = task.join();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        currentOffset = 0;
+        return true;
+    }
+
+    private byte[] decompressBlock(int block) {
+        try {
+            SeekableXZInputStream decoder;
+            synchronized (decoders) {
+                decoder = decoders.poll();
+            }
+            if (decoder == null) {
+                decoder = new SeekableXZInputStream(new SeekableFileInputStream(path));
+            }
+            try {
+                decoder.seekToBlock(block);
+                byte[] data = new byte[blockSize[block]];
+                int offset = 0;
+                while (offset < data.length) {
+                    int n = decoder.read(data, offset, data.length - offset);
+                    if (n < 0) {
+                        throw new IOException("unexpected end of xz block");
+                    }
+                    offset += n;
+                }
+                return data;
+            } finally {
+                releaseDecoder(decoder);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void releaseDecoder(SeekableXZInputStream decoder) throws IOException {
+        synchronized (decoders) {
+            if (open) {
+                decoders.add(decoder);
+                return;
+            }
+        }
+        decoder.close();
+    }
+
+    @Override
+    public long position() throws IOException {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        checkOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (!parallel) {
+            in.seek(newPosition);
+        } else if (current == null || newPosition < position - currentOffset || newPosition >= position - currentOffset + current.length) {
+            // the read-ahead is of no use unless the new position is in the current block
+            cancelPending();
+            if (newPosition >= length) {
+                nextBlock = blockPos.length;
+                current = null;
+            } else {
+                int block = findBlock(newPosition);
+                nextBlock = block;
+                nextBlock();
+                currentOffset = (int) (newPosition - blockPos[block]);
+            }
+        } else {
+            currentOffset += (int) (newPosition - position);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    private int findBlock(long pos) {
+        int low = 0;
+        int high = blockPos.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blockPos[mid] <= pos) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public long size() throws IOException {
+        checkOpen();
+        return length;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void cancelPending() {
+        for (ForkJoinTask<byte[]> task : pending) {
+            task.cancel(false);
+        }
+        pending.clear();
+        pendingBytes = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            SeekableXZInputStream[] idle;
+            synchronized (decoders) {
+                open = false;
+                idle = decoders.toArray(new SeekableXZInputStream[decoders.size()]);
+                decoders.clear();
+            }
+            cancelPending();
+            in.close();
+            for (SeekableXZInputStream decoder : idle) {
+                decoder.close();
+            }
+        }
+    }
+}
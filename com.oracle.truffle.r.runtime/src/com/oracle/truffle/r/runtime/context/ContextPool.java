@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.context;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.vm.PolyglotEngine;
+import com.oracle.truffle.r.runtime.FastROptions;
+import com.oracle.truffle.r.runtime.RCmdOptions.Client;
+import com.oracle.truffle.r.runtime.RInternalError;
+import com.oracle.truffle.r.runtime.RRuntime;
+import com.oracle.truffle.r.runtime.RSource;
+import com.oracle.truffle.r.runtime.context.RContext.ContextKind;
+import com.oracle.truffle.r.runtime.context.RContext.ContextThread;
+import com.oracle.truffle.r.runtime.context.RContext.EvalThread;
+import com.oracle.truffle.r.runtime.data.RList;
+import com.oracle.truffle.r.runtime.data.RStringVector;
+import com.oracle.truffle.r.runtime.env.REnvironment;
+import com.oracle.truffle.r.runtime.env.REnvironment.DetachException;
+import com.oracle.truffle.r.runtime.env.REnvironment.PutException;
+import com.oracle.truffle.r.runtime.ffi.BaseRFFI;
+import com.oracle.truffle.r.runtime.rng.RRNG;
+
+/**
+ * A pool of pre-initialized, idle {@link ContextKind#SHARE_NOTHING} contexts used by the
+ * {@code .fastr.context} builtins instead of creating a new context for every evaluation. The
+ * number of pooled contexts is given by {@link FastROptions#ContextPoolSize} and the packages
+ * attached in each of them by {@link FastROptions#ContextPoolPackages}.
+ *
+ * Each pooled context lives in its own {@link PooledThread} (a {@link PolyglotEngine} can only be
+ * used from the thread that created it), which evaluates the sources handed to it one at a time.
+ * After each evaluation the global environment is emptied, anything attached to the search path
+ * since the context was warmed up is detached and the options, the environment variables, the
+ * working directory and the random number generator are reset, before the context is returned to
+ * the pool. Namespaces cannot be reliably unloaded, so a context in which the evaluation loaded a
+ * namespace is not reused but replaced by a new one.
+ */
+public final class ContextPool {
+
+    private static final Object SHUTDOWN = new Object();
+
+    /**
+     * Handles of pooled {@code .fastr.context.spawn} evaluations are negative, so that they never
+     * clash with the ids of {@link EvalThread}s. A job is removed from {@link #spawned} when it is
+     * done, so that jobs that are never joined do not accumulate.
+     */
+    private static final AtomicInteger lastHandle = new AtomicInteger();
+    private static final ConcurrentHashMap<Integer, Job> spawned = new ConcurrentHashMap<>();
+
+    /**
+     * The pool size set by {@code .fastr.context.pool}, or {@code -1} to use
+     * {@link FastROptions#ContextPoolSize}.
+     */
+    private static volatile int size = -1;
+
+    private static volatile ContextPool pool;
+
+    private final RContext parent;
+    private final String[] packages;
+    private final LinkedBlockingQueue<PooledThread> idle = new LinkedBlockingQueue<>();
+    /**
+     * Set by {@link #shutdown}, after which no thread is added to {@link #idle}. Guarded by
+     * {@code this}.
+     */
+    private boolean isShutdown;
+
+    private static final class Job {
+        private final Source source;
+        /**
+         * The handle returned by {@link ContextPool#spawn}, or {@code 0}.
+         */
+        private final int handle;
+        private final Semaphore done = new Semaphore(0);
+        private RList result;
+
+        Job(Source source, int handle) {
+            this.source = source;
+            this.handle = handle;
+        }
+
+        RList waitForResult() {
+            try {
+                done.acquire();
+            } catch (InterruptedException x) {
+                throw new RInternalError(x, "error waiting for pooled context");
+            }
+            // allow repeated joins
+            done.release();
+            return result;
+        }
+    }
+
+    private final class PooledThread extends ContextThread {
+        private final ContextInfo info;
+        private final ArrayBlockingQueue<Object> jobs = new ArrayBlockingQueue<>(1);
+        private final Semaphore init = new Semaphore(0);
+        private HashSet<String> initialSearchPath;
+        private HashMap<String, Object> initialOptions;
+        private HashMap<String, String> initialEnvVars;
+        private HashSet<String> initialNamespaces;
+        private String initialWorkingDirectory;
+
+        PooledThread(ContextInfo info) {
+            super(null);
+            this.info = info;
+        }
+
+        @Override
+        public void run() {
+            PolyglotEngine vm = info.createVM(PolyglotEngine.newBuilder());
+            try {
+                try {
+                    setContext(vm.eval(Engine.GET_CONTEXT).as(RContext.class));
+                    for (String pkg : packages) {
+                        vm.eval(RSource.fromTextInternalInvisible("library(" + pkg + ")", RSource.Internal.CONTEXT_EVAL));
+                    }
+                    initialSearchPath = new HashSet<>(Arrays.asList(REnvironment.searchPath()));
+                    initialOptions = RContext.getInstance().stateROptions.snapshot();
+                    initialEnvVars = new HashMap<>(RContext.getInstance().stateREnvVars.getMap());
+                    initialNamespaces = getNamespaces();
+                    initialWorkingDirectory = (String) BaseRFFI.GetwdRootNode.create().getCallTarget().call();
+                } catch (Throwable t) {
+                    throw new RInternalError(t, "error while initializing pooled context");
+                } finally {
+                    init.release();
+                }
+                boolean reusable = addIdle(this);
+                while (reusable) {
+                    Object next = jobs.take();
+                    if (next == SHUTDOWN) {
+                        break;
+                    }
+                    Job job = (Job) next;
+                    reusable = false;
+                    boolean clean = false;
+                    try {
+                        job.result = EvalThread.run(vm, info, job.source);
+                        clean = reset(vm);
+                        // unless the pool has been shut down, the context is idle again before
+                        // the result is handed out
+                        reusable = clean && addIdle(this);
+                    } finally {
+                        if (job.handle != 0) {
+                            spawned.remove(job.handle);
+                        }
+                        job.done.release();
+                    }
+                    if (!clean) {
+                        replaceThread();
+                    }
+                }
+            } catch (InterruptedException x) {
+                // terminate
+            } finally {
+                idle.remove(this);
+                vm.dispose();
+            }
+        }
+
+        private void waitForInit() {
+            try {
+                init.acquire();
+            } catch (InterruptedException x) {
+                throw new RInternalError(x, "error waiting to initialize pooled context");
+            }
+        }
+
+        /**
+         * Cheap reset of the state an evaluation is most likely to leave behind.
+         *
+         * @return {@code false} if the evaluation loaded namespaces, in which case the context
+         *         must not be reused
+         */
+        private boolean reset(PolyglotEngine vm) {
+            REnvironment global = REnvironment.globalEnv();
+            RStringVector names = global.ls(true, null, false);
+            for (int i = 0; i < names.getLength(); i++) {
+                try {
+                    global.rm(names.getDataAt(i));
+                } catch (PutException ex) {
+                    // locked binding, leave it
+                }
+            }
+            String[] searchPath = REnvironment.searchPath();
+            // never detach .GlobalEnv (first) or base (last)
+            for (int i = searchPath.length - 2; i > 0; i--) {
+                if (!initialSearchPath.contains(searchPath[i])) {
+                    try {
+                        REnvironment.detach(i + 1);
+                    } catch (DetachException ex) {
+                        // leave it
+                    }
+                }
+            }
+            RContext context = RContext.getInstance();
+            context.stateROptions.restore(initialOptions);
+            Map<String, String> envVars = context.stateREnvVars.getMap();
+            envVars.clear();
+            envVars.putAll(initialEnvVars);
+            // .Random.seed has been removed with the rest of the global environment
+            RRNG.reset();
+            // the working directory is shared by all contexts, setwd keeps track of it
+            if (!initialWorkingDirectory.equals(BaseRFFI.GetwdRootNode.create().getCallTarget().call())) {
+                vm.eval(RSource.fromTextInternalInvisible("setwd(" + RRuntime.escapeString(initialWorkingDirectory, false, true) + ")", RSource.Internal.CONTEXT_EVAL));
+            }
+            return getNamespaces().equals(initialNamespaces);
+        }
+    }
+
+    private static HashSet<String> getNamespaces() {
+        RStringVector names = REnvironment.getNamespaceRegistry().ls(true, null, false);
+        return new HashSet<>(Arrays.asList(names.getDataWithoutCopying()));
+    }
+
+    private ContextPool(RContext parent) {
+        this.parent = parent;
+        String packagesOption = FastROptions.ContextPoolPackages.getStringValue();
+        this.packages = packagesOption == null || packagesOption.isEmpty() ? new String[0] : packagesOption.split(",");
+    }
+
+    /**
+     * Makes {@code thread} available for new jobs, unless the pool has been shut down.
+     */
+    private synchronized boolean addIdle(PooledThread thread) {
+        if (isShutdown) {
+            return false;
+        }
+        idle.add(thread);
+        return true;
+    }
+
+    private PooledThread createThread() {
+        ContextInfo info = ContextInfo.createNoRestore(Client.RSCRIPT, null, ContextKind.SHARE_NOTHING, parent, parent.getConsoleHandler());
+        PooledThread thread = new PooledThread(info);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Starts a new pooled context in place of one that cannot be reused, unless the pool has been
+     * shut down. The new context becomes idle once it is warmed up.
+     */
+    private synchronized void replaceThread() {
+        if (!isShutdown) {
+            createThread().start();
+        }
+    }
+
+    /**
+     * Returns the pool for contexts created by {@code parent}, creating (and warming up) the
+     * pooled contexts on first use, or {@code null} if pooling is disabled or {@code parent} is not
+     * the context the pool was created for.
+     */
+    private static ContextPool getPool(RContext parent) {
+        int poolSize = size >= 0 ? size : FastROptions.ContextPoolSize.getNonNegativeIntValue();
+        if (poolSize == 0) {
+            return null;
+        }
+        ContextPool result = pool;
+        if (result == null) {
+            synchronized (ContextPool.class) {
+                result = pool;
+                if (result == null) {
+                    result = new ContextPool(parent);
+                    result.start(poolSize);
+                    pool = result;
+                }
+            }
+        }
+        return result.parent == parent ? result : null;
+    }
+
+    private void start(int poolSize) {
+        PooledThread[] threads = new PooledThread[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            threads[i] = createThread();
+        }
+        for (PooledThread thread : threads) {
+            thread.start();
+        }
+        // as for EvalThread, do not let the initialization interfere with the parent's execution
+        for (PooledThread thread : threads) {
+            thread.waitForInit();
+        }
+    }
+
+    private Job submit(Source source, int handle) {
+        PooledThread thread = idle.poll();
+        if (thread == null) {
+            return null;
+        }
+        Job job = new Job(source, handle);
+        if (handle != 0) {
+            // registered before it can complete
+            spawned.put(handle, job);
+        }
+        thread.jobs.add(job);
+        return job;
+    }
+
+    /**
+     * Evaluates {@code source} in an idle pooled context and waits for the result.
+     *
+     * @return the result as produced by {@link EvalThread#run} or {@code null} if there is no idle
+     *         pooled context, in which case the caller should create a new context.
+     */
+    public static RList eval(RContext parent, ContextKind kind, Source source) {
+        Job job = submit(parent, kind, source, 0);
+        return job == null ? null : job.waitForResult();
+    }
+
+    /**
+     * Starts evaluating {@code source} in an idle pooled context.
+     *
+     * @return a (negative) handle to be passed to {@link #join}, or {@code 0} if there is no idle
+     *         pooled context, in which case the caller should create a new context.
+     */
+    public static int spawn(RContext parent, ContextKind kind, Source source) {
+        int handle = -lastHandle.incrementAndGet();
+        Job job = submit(parent, kind, source, handle);
+        return job == null ? 0 : handle;
+    }
+
+    private static Job submit(RContext parent, ContextKind kind, Source source, int handle) {
+        if (kind != ContextKind.SHARE_NOTHING) {
+            return null;
+        }
+        ContextPool p = getPool(parent);
+        return p == null ? null : p.submit(source, handle);
+    }
+
+    public static boolean isPooledHandle(int handle) {
+        return handle < 0;
+    }
+
+    /**
+     * Waits for the pooled evaluation started by {@link #spawn}, unless it is already done.
+     */
+    public static void join(int handle) {
+        Job job = spawned.remove(handle);
+        if (job != null) {
+            job.waitForResult();
+        }
+    }
+
+    /**
+     * Sets the number of pooled contexts, overriding {@link FastROptions#ContextPoolSize}. The
+     * current pool, if any, is shut down and a new one is created on next use.
+     */
+    public static void setSize(RContext parent, int newSize) {
+        shutdown(parent);
+        size = newSize;
+    }
+
+    /**
+     * Terminates all idle pooled contexts created by {@code parent}; busy ones terminate when they
+     * become idle again.
+     */
+    public static void shutdown(RContext parent) {
+        ContextPool p;
+        synchronized (ContextPool.class) {
+            p = pool;
+            if (p == null || p.parent != parent) {
+                return;
+            }
+            pool = null;
+        }
+        synchronized (p) {
+            p.isShutdown = true;
+        }
+        PooledThread thread;
+        while ((thread = p.idle.poll()) != null) {
+            thread.jobs.add(SHUTDOWN);
+        }
+    }
+}
@@ -42,8 +42,8 @@ import com.oracle.truffle.api.instrumentation.Instrumenter;
 import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.api.vm.PolyglotEngine;
+import com.oracle.truffle.r.runtime.EvalCallTargetCache;
 import com.oracle.truffle.r.runtime.ExitException;
-import com.oracle.truffle.r.runtime.LazyDBCache;
 import com.oracle.truffle.r.runtime.PrimitiveMethodsInfo;
 import com.oracle.truffle.r.runtime.RCmdOptions;
 import com.oracle.truffle.r.runtime.RCmdOptions.Client;
@@ -58,6 +58,9 @@ import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.RRuntimeASTAccess;
 import com.oracle.truffle.r.runtime.RSerialize;
 import com.oracle.truffle.r.runtime.RStartParams;
+import com.oracle.truffle.r.runtime.RegExpCache;
+import com.oracle.truffle.r.runtime.S3DispatchTable;
+import com.oracle.truffle.r.runtime.S4DispatchTable;
 import com.oracle.truffle.r.runtime.TempPathName;
 import com.oracle.truffle.r.runtime.Utils;
 import com.oracle.truffle.r.runtime.builtins.RBuiltinDescriptor;
@@ -435,7 +438,6 @@ public final class RContext extends com.oracle.truffle.api.ExecutionContext {
     public final ConnectionSupport.ContextStateImpl stateRConnection;
     public final RRNG.ContextStateImpl stateRNG;
     public final RSerialize.ContextStateImpl stateRSerialize;
-    public final LazyDBCache.ContextStateImpl stateLazyDBCache;
     public final InstrumentationState stateInstrumentation;
     public final ContextStateImpl stateInternalCode;
     public final DLL.ContextStateImpl stateDLL;
@@ -447,11 +449,26 @@ public final class RContext extends com.oracle.truffle.api.ExecutionContext {
 
     public final WeakHashMap<String, WeakReference<String>> stringMap = new WeakHashMap<>();
     public final WeakHashMap<Source, REnvironment> sourceRefEnvironments = new WeakHashMap<>();
+    /**
+     * S3 method lookups shared by all megamorphic dispatch call sites.
+     */
+    public final S3DispatchTable s3DispatchTable = new S3DispatchTable();
+    /**
+     * S4 methods shared by all megamorphic {@code standardGeneric} dispatch call sites.
+     */
+    public final S4DispatchTable s4DispatchTable = new S4DispatchTable();
+    /**
+     * Compiled regular expressions of the {@code grep} family of builtins.
+     */
+    public final RegExpCache regExpCache = new RegExpCache();
+    /**
+     * Call targets of the language objects evaluated by {@code eval}.
+     */
+    public final EvalCallTargetCache evalCallTargetCache = new EvalCallTargetCache();
 
     private ContextState[] contextStates() {
         return new ContextState[]{stateREnvVars, stateRProfile, stateTempPath, stateROptions, stateREnvironment, stateRErrorHandling, stateRConnection, stateStdConnections, stateRNG, stateRFFI,
-                        stateRSerialize,
-                        stateLazyDBCache, stateInstrumentation, stateDLL};
+                        stateRSerialize, stateInstrumentation, stateDLL};
     }
 
     public static void setEmbedded() {
@@ -495,7 +512,6 @@ public final class RContext extends com.oracle.truffle.api.ExecutionContext {
         this.stateRConnection = ConnectionSupport.ContextStateImpl.newContextState();
         this.stateRNG = RRNG.ContextStateImpl.newContextState();
         this.stateRSerialize = RSerialize.ContextStateImpl.newContextState();
-        this.stateLazyDBCache = LazyDBCache.ContextStateImpl.newContextState();
         this.stateInstrumentation = InstrumentationState.newContextState(instrumenter);
         this.stateInternalCode = ContextStateImpl.newContextState();
         this.stateDLL = DLL.ContextStateImpl.newContextState();
@@ -562,7 +578,6 @@ public final class RContext extends com.oracle.truffle.api.ExecutionContext {
         stateStdConnections.initialize(this);
         stateRNG.initialize(this);
         stateRSerialize.initialize(this);
-        stateLazyDBCache.initialize(this);
         stateInstrumentation.initialize(this);
         stateInternalCode.initialize(this);
         state.add(State.INITIALIZED);
@@ -628,6 +643,7 @@ public final class RContext extends com.oracle.truffle.api.ExecutionContext {
      */
     public synchronized void destroy() {
         if (!state.contains(State.DESTROYED)) {
+            ContextPool.shutdown(this);
             if (state.contains(State.INITIALIZED)) {
                 for (ContextState contextState : contextStates()) {
                     contextState.beforeDestroy(this);
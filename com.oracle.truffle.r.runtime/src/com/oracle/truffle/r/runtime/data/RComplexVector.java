@@ -55,6 +55,7 @@ public final class RComplexVector extends RVector<double[]> implements RAbstract
 
     @Override
     public double[] getInternalStore() {
+        incrementVersion();
         return data;
     }
 
@@ -126,6 +127,7 @@ public final class RComplexVector extends RVector<double[]> implements RAbstract
      */
     @Override
     public double[] getDataWithoutCopying() {
+        incrementVersion();
         return data;
     }
 
@@ -137,6 +139,7 @@ public final class RComplexVector extends RVector<double[]> implements RAbstract
     private RComplexVector updateDataAt(int i, RComplex right, NACheck rightNACheck) {
         assert !this.isShared();
         int index = i << 1;
+        incrementVersion();
         data[index] = right.getRealPart();
         data[index + 1] = right.getImaginaryPart();
         if (rightNACheck.check(right)) {
@@ -190,6 +193,7 @@ public final class RComplexVector extends RVector<double[]> implements RAbstract
         RAbstractComplexVector other = (RAbstractComplexVector) fromVector;
         int toIndex2 = toIndex << 1;
         RComplex value = other.getDataAt(fromIndex);
+        incrementVersion();
         data[toIndex2] = value.getRealPart();
         data[toIndex2 + 1] = value.getImaginaryPart();
     }
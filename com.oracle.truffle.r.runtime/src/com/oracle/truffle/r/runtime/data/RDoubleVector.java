@@ -72,6 +72,7 @@ public final class RDoubleVector extends RVector<double[]> implements RAbstractD
 
     @Override
     public double[] getInternalStore() {
+        incrementVersion();
         return data;
     }
 
@@ -138,6 +139,7 @@ public final class RDoubleVector extends RVector<double[]> implements RAbstractD
      */
     @Override
     public double[] getDataWithoutCopying() {
+        incrementVersion();
         return data;
     }
 
@@ -148,6 +150,7 @@ public final class RDoubleVector extends RVector<double[]> implements RAbstractD
 
     public RDoubleVector updateDataAt(int i, double right, NACheck valueNACheck) {
         assert !this.isShared();
+        incrementVersion();
         data[i] = right;
         if (valueNACheck.check(right)) {
             complete = false;
@@ -201,6 +204,7 @@ public final class RDoubleVector extends RVector<double[]> implements RAbstractD
     @Override
     public void transferElementSameType(int toIndex, RAbstractVector fromVector, int fromIndex) {
         RAbstractDoubleVector other = (RAbstractDoubleVector) fromVector;
+        incrementVersion();
         data[toIndex] = other.getDataAt(fromIndex);
     }
 
@@ -67,6 +67,7 @@ public final class RIntVector extends RVector<int[]> implements RAbstractIntVect
 
     @Override
     public int[] getInternalStore() {
+        incrementVersion();
         return data;
     }
 
@@ -138,6 +139,7 @@ public final class RIntVector extends RVector<int[]> implements RAbstractIntVect
      */
     @Override
     public int[] getDataWithoutCopying() {
+        incrementVersion();
         return data;
     }
 
@@ -148,6 +150,7 @@ public final class RIntVector extends RVector<int[]> implements RAbstractIntVect
 
     public RIntVector updateDataAt(int i, int right, NACheck valueNACheck) {
         assert !this.isShared();
+        incrementVersion();
         data[i] = right;
         if (valueNACheck.check(right)) {
             setComplete(false);
@@ -200,6 +203,7 @@ public final class RIntVector extends RVector<int[]> implements RAbstractIntVect
     @Override
     public void transferElementSameType(int toIndex, RAbstractVector fromVector, int fromIndex) {
         RAbstractIntVector other = (RAbstractIntVector) fromVector;
+        incrementVersion();
         data[toIndex] = other.getDataAt(fromIndex);
     }
 
@@ -210,6 +214,7 @@ public final class RIntVector extends RVector<int[]> implements RAbstractIntVect
 
     @Override
     public void setElement(int i, Object value) {
+        incrementVersion();
         data[i] = (int) value;
     }
 }
@@ -63,6 +63,7 @@ public abstract class RListBase extends RVector<Object[]> implements RAbstractLi
 
     @Override
     public Object[] getInternalStore() {
+        incrementVersion();
         return data;
     }
 
@@ -106,6 +107,7 @@ public abstract class RListBase extends RVector<Object[]> implements RAbstractLi
      */
     @Override
     public final Object[] getDataWithoutCopying() {
+        incrementVersion();
         return data;
     }
 
@@ -129,6 +131,7 @@ public abstract class RListBase extends RVector<Object[]> implements RAbstractLi
     public final RListBase updateDataAt(int i, Object right, @SuppressWarnings("unused") NACheck rightNACheck) {
         assert !this.isShared() : "data in shared list must not be updated, make a copy";
         assert right != null : "lists must not contain nulls";
+        incrementVersion();
         data[i] = right;
         return this;
     }
@@ -142,6 +145,7 @@ public abstract class RListBase extends RVector<Object[]> implements RAbstractLi
     @Override
     public final void transferElementSameType(int toIndex, RAbstractVector fromVector, int fromIndex) {
         RAbstractListVector other = (RAbstractListVector) fromVector;
+        incrementVersion();
         data[toIndex] = other.getDataAtAsObject(fromIndex);
     }
 
@@ -182,6 +186,7 @@ public abstract class RListBase extends RVector<Object[]> implements RAbstractLi
 
     @Override
     public final void setElement(int i, Object value) {
+        incrementVersion();
         data[i] = value;
     }
 }
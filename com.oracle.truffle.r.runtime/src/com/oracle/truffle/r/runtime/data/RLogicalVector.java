@@ -69,6 +69,7 @@ public final class RLogicalVector extends RVector<byte[]> implements RAbstractLo
 
     @Override
     public byte[] getInternalStore() {
+        incrementVersion();
         return data;
     }
 
@@ -131,6 +132,7 @@ public final class RLogicalVector extends RVector<byte[]> implements RAbstractLo
 
     private RLogicalVector updateDataAt(int index, byte right, NACheck valueNACheck) {
         assert !this.isShared();
+        incrementVersion();
         data[index] = right;
         if (valueNACheck.check(right)) {
             setComplete(false);
@@ -175,6 +177,7 @@ public final class RLogicalVector extends RVector<byte[]> implements RAbstractLo
     @Override
     public void transferElementSameType(int toIndex, RAbstractVector fromVector, int fromIndex) {
         RAbstractLogicalVector other = (RAbstractLogicalVector) fromVector;
+        incrementVersion();
         data[toIndex] = other.getDataAt(fromIndex);
     }
 
@@ -189,6 +192,7 @@ public final class RLogicalVector extends RVector<byte[]> implements RAbstractLo
      */
     @Override
     public byte[] getDataWithoutCopying() {
+        incrementVersion();
         return data;
     }
 
@@ -78,6 +78,7 @@ public final class RRawVector extends RVector<byte[]> implements RAbstractRawVec
 
     @Override
     public byte[] getInternalStore() {
+        incrementVersion();
         return data;
     }
 
@@ -123,6 +124,7 @@ public final class RRawVector extends RVector<byte[]> implements RAbstractRawVec
      */
     @Override
     public byte[] getDataWithoutCopying() {
+        incrementVersion();
         return data;
     }
 
@@ -138,6 +140,7 @@ public final class RRawVector extends RVector<byte[]> implements RAbstractRawVec
 
     public RRawVector updateDataAt(int i, RRaw right) {
         assert !this.isShared();
+        incrementVersion();
         data[i] = right.getValue();
         return this;
     }
@@ -172,6 +175,7 @@ public final class RRawVector extends RVector<byte[]> implements RAbstractRawVec
     @Override
     public void transferElementSameType(int toIndex, RAbstractVector fromVector, int fromIndex) {
         RAbstractRawVector other = (RAbstractRawVector) fromVector;
+        incrementVersion();
         data[toIndex] = other.getRawDataAt(fromIndex);
     }
 
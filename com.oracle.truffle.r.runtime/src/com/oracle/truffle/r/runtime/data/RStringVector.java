@@ -62,6 +62,7 @@ public final class RStringVector extends RVector<String[]> implements RAbstractS
 
     @Override
     public String[] getInternalStore() {
+        incrementVersion();
         return data;
     }
 
@@ -100,6 +101,7 @@ public final class RStringVector extends RVector<String[]> implements RAbstractS
      */
     @Override
     public String[] getDataWithoutCopying() {
+        incrementVersion();
         return data;
     }
 
@@ -129,6 +131,7 @@ public final class RStringVector extends RVector<String[]> implements RAbstractS
         if (this.isShared()) {
             throw RInternalError.shouldNotReachHere("update shared vector");
         }
+        incrementVersion();
         data[i] = right;
         if (rightNACheck.check(right)) {
             setComplete(false);
@@ -181,6 +184,7 @@ public final class RStringVector extends RVector<String[]> implements RAbstractS
     @Override
     public void transferElementSameType(int toIndex, RAbstractVector fromVector, int fromIndex) {
         RAbstractStringVector other = (RAbstractStringVector) fromVector;
+        incrementVersion();
         data[toIndex] = other.getDataAt(fromIndex);
     }
 
@@ -201,6 +205,7 @@ public final class RStringVector extends RVector<String[]> implements RAbstractS
 
     @Override
     public void setElement(int i, Object value) {
+        incrementVersion();
         data[i] = (String) value;
     }
 }
@@ -62,6 +62,11 @@ public abstract class RVector<ArrayT> extends RSharingAttributeStorage implement
 
     protected boolean complete; // "complete" means: does not contain NAs
 
+    /**
+     * Incremented whenever the data may be updated in place, see {@link #getVersion()}.
+     */
+    private int version;
+
     protected RVector(boolean complete, int length, int[] dimensions, RStringVector names) {
         this.complete = complete;
         assert names != this;
@@ -135,6 +140,23 @@ public abstract class RVector<ArrayT> extends RSharingAttributeStorage implement
         return isTemporary() ? getDataWithoutCopying() : getDataCopy();
     }
 
+    /**
+     * Returns a number that changes whenever the data may have been updated in place, i.e., when an
+     * element is set or the data array is handed out by {@link #getInternalStore()} or
+     * {@link #getDataWithoutCopying()}, and when native code has written back its copy of the data.
+     * Anything derived from the data, e.g., a hash index, stays valid while the version is the same.
+     */
+    public final int getVersion() {
+        return version;
+    }
+
+    /**
+     * Records that the data may have been updated in place, see {@link #getVersion()}.
+     */
+    public final void incrementVersion() {
+        version++;
+    }
+
     @Override
     public final void setComplete(boolean complete) {
         this.complete = complete;
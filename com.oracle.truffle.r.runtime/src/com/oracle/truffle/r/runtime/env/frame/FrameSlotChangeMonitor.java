@@ -22,14 +22,19 @@
  */
 package com.oracle.truffle.r.runtime.env.frame;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerAsserts;
@@ -170,26 +175,34 @@ public final class FrameSlotChangeMonitor {
      * object. For function environments, one frame descriptor corresponds to many actual
      * environments, while for manually created environment, there is always one frame descriptor
      * for one environment.
+     *
+     * The metadata is read without locking, e.g., to answer cached lookups. All changes to the
+     * hierarchy of frame descriptors happen while holding the write lock of {@link #hierarchyLock}.
      */
     private static final class FrameDescriptorMetaData {
         private final String name; // name for debug purposes
         private final WeakReference<MaterializedFrame> singletonFrame;
-        private final Set<FrameDescriptor> subDescriptors = Collections.newSetFromMap(new WeakHashMap<>(2));
+        /**
+         * The frame descriptors that have this one as their enclosing frame descriptor. The list is
+         * never modified, but replaced by a copy on every change, so that it can be traversed
+         * without holding a lock.
+         */
+        private volatile List<WeakReference<FrameDescriptor>> subDescriptors = Collections.emptyList();
 
         /**
          * This set contains all lookups that have been performed "across" this frame descriptor. If
          * a binding with one of these names is modified, then the lookups in this frame descriptor
          * and all child frame descriptors need to be checked.
          */
-        private final Set<Object> previousLookups = new HashSet<>();
+        private final Set<Object> previousLookups = ConcurrentHashMap.newKeySet();
         /**
          * A set of all lookups that started in this frame descriptor.
          */
-        private final WeakHashMap<Object, WeakReference<LookupResult>> lookupResults = new WeakHashMap<>(2);
+        private final ConcurrentHashMap<Object, WeakReference<LookupResult>> lookupResults = new ConcurrentHashMap<>(2);
 
-        private WeakReference<FrameDescriptor> enclosingFrameDescriptor = new WeakReference<>(null);
-        private Assumption enclosingFrameDescriptorAssumption = Truffle.getRuntime().createAssumption("enclosing frame descriptor");
-        private Assumption containsNoActiveBindingAssumption = Truffle.getRuntime().createAssumption("contains no active binding");
+        private volatile WeakReference<FrameDescriptor> enclosingFrameDescriptor = new WeakReference<>(null);
+        private volatile Assumption enclosingFrameDescriptorAssumption = Truffle.getRuntime().createAssumption("enclosing frame descriptor");
+        private final Assumption containsNoActiveBindingAssumption = Truffle.getRuntime().createAssumption("contains no active binding");
 
         private FrameDescriptorMetaData(String name, MaterializedFrame singletonFrame) {
             this.name = name;
@@ -198,16 +211,18 @@ public final class FrameSlotChangeMonitor {
 
         public void updateEnclosingFrameDescriptor(FrameDescriptor newEnclosingDescriptor) {
             CompilerAsserts.neverPartOfCompilation();
-            if (enclosingFrameDescriptorAssumption != null) {
-                enclosingFrameDescriptorAssumption.invalidate();
-            }
+            assert hierarchyLock.isWriteLockedByCurrentThread();
+            Assumption oldAssumption = enclosingFrameDescriptorAssumption;
+            // publish the new descriptor before its assumption, readers check the assumption first
             enclosingFrameDescriptor = new WeakReference<>(newEnclosingDescriptor);
             enclosingFrameDescriptorAssumption = Truffle.getRuntime().createAssumption("enclosing frame descriptor");
+            if (oldAssumption != null) {
+                oldAssumption.invalidate();
+            }
         }
 
         public FrameDescriptor getEnclosingFrameDescriptor() {
             CompilerAsserts.neverPartOfCompilation();
-            assert enclosingFrameDescriptorAssumption.isValid();
             return enclosingFrameDescriptor.get();
         }
 
@@ -218,16 +233,84 @@ public final class FrameSlotChangeMonitor {
         public Assumption getContainsNoActiveBindingAssumption() {
             return containsNoActiveBindingAssumption;
         }
+
+        private void addSubDescriptor(FrameDescriptor descriptor) {
+            assert hierarchyLock.isWriteLockedByCurrentThread();
+            List<WeakReference<FrameDescriptor>> current = subDescriptors;
+            ArrayList<WeakReference<FrameDescriptor>> copy = new ArrayList<>(current.size() + 1);
+            for (WeakReference<FrameDescriptor> ref : current) {
+                FrameDescriptor sub = ref.get();
+                if (sub == descriptor) {
+                    return;
+                } else if (sub != null) {
+                    copy.add(ref);
+                }
+            }
+            copy.add(new WeakReference<>(descriptor));
+            subDescriptors = copy;
+        }
+
+        private void removeSubDescriptor(FrameDescriptor descriptor) {
+            assert hierarchyLock.isWriteLockedByCurrentThread();
+            List<WeakReference<FrameDescriptor>> current = subDescriptors;
+            ArrayList<WeakReference<FrameDescriptor>> copy = new ArrayList<>(current.size());
+            for (WeakReference<FrameDescriptor> ref : current) {
+                FrameDescriptor sub = ref.get();
+                if (sub != null && sub != descriptor) {
+                    copy.add(ref);
+                }
+            }
+            subDescriptors = copy;
+        }
     }
 
-    private static final WeakHashMap<FrameDescriptor, FrameDescriptorMetaData> frameDescriptors = new WeakHashMap<>();
+    /**
+     * Key of {@link #frameDescriptors}, which compares frame descriptors by identity and does not
+     * keep them alive. Keys whose descriptor has been collected are only equal to themselves and
+     * are removed via {@link #collectedDescriptors}.
+     */
+    private static final class DescriptorKey extends WeakReference<FrameDescriptor> {
+        private final int hash;
+
+        DescriptorKey(FrameDescriptor descriptor, ReferenceQueue<FrameDescriptor> queue) {
+            super(descriptor, queue);
+            this.hash = System.identityHashCode(descriptor);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof DescriptorKey)) {
+                return false;
+            }
+            FrameDescriptor descriptor = get();
+            return descriptor != null && descriptor == ((DescriptorKey) obj).get();
+        }
+    }
+
+    private static final ConcurrentHashMap<DescriptorKey, FrameDescriptorMetaData> frameDescriptors = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<FrameDescriptor> collectedDescriptors = new ReferenceQueue<>();
+
+    /**
+     * Serializes changes to the hierarchy of frame descriptors (write lock) with the uncached part
+     * of {@link #lookup}, which walks the hierarchy and records the identifiers it looked up (read
+     * lock). Cached lookups and queries for assumptions do not take the lock.
+     */
+    private static final ReentrantReadWriteLock hierarchyLock = new ReentrantReadWriteLock();
 
     /**
      * This function tries to fulfill the lookup for the given name in the given frame based only on
      * the static knowledge about the frame descriptor hierarchy and stable bindings. Returns
      * {@code null} in case this was not possible.
      */
-    public static synchronized LookupResult lookup(Frame frame, Object identifier) {
+    public static LookupResult lookup(Frame frame, Object identifier) {
         CompilerAsserts.neverPartOfCompilation();
         FrameDescriptorMetaData metaData = getMetaData(frame);
         WeakReference<LookupResult> weakResult = metaData.lookupResults.get(identifier);
@@ -235,6 +318,16 @@ public final class FrameSlotChangeMonitor {
         if (result != null && result.isValid()) {
             return result;
         }
+        // the walk must not interleave with an invalidation, which might miss the new result
+        hierarchyLock.readLock().lock();
+        try {
+            return lookupUncached(frame, identifier, metaData);
+        } finally {
+            hierarchyLock.readLock().unlock();
+        }
+    }
+
+    private static LookupResult lookupUncached(Frame frame, Object identifier, FrameDescriptorMetaData metaData) {
         Frame current = frame;
         while (true) {
             FrameSlot slot = current.getFrameDescriptor().findFrameSlot(identifier);
@@ -254,8 +347,7 @@ public final class FrameSlotChangeMonitor {
                     }
                 }
                 addPreviousLookups(frame, current, identifier);
-                metaData.lookupResults.put(identifier, new WeakReference<>(lookupResult));
-                return lookupResult;
+                return publishLookupResult(metaData, identifier, lookupResult);
             }
             Frame next = RArguments.getEnclosingFrame(current);
             assert isEnclosingFrameDescriptor(current, next) : "the enclosing frame descriptor assumptions do not match the actual enclosing frame descriptor: " + getMetaData(current).name + " -> " +
@@ -269,8 +361,24 @@ public final class FrameSlotChangeMonitor {
         // not frame slot found: missing value
         addPreviousLookups(frame, current, identifier);
         LookupResult lookupResult = new MissingLookupResult(identifier.toString());
-        metaData.lookupResults.put(identifier, new WeakReference<>(lookupResult));
-        return lookupResult;
+        return publishLookupResult(metaData, identifier, lookupResult);
+    }
+
+    /**
+     * Records {@code lookupResult} unless another thread recorded a valid result for the same
+     * identifier in the meantime, which is returned instead: a result that is not recorded would
+     * never be invalidated.
+     */
+    private static LookupResult publishLookupResult(FrameDescriptorMetaData metaData, Object identifier, LookupResult lookupResult) {
+        synchronized (metaData) {
+            WeakReference<LookupResult> weakResult = metaData.lookupResults.get(identifier);
+            LookupResult existing = weakResult == null ? null : weakResult.get();
+            if (existing != null && existing.isValid()) {
+                return existing;
+            }
+            metaData.lookupResults.put(identifier, new WeakReference<>(lookupResult));
+            return lookupResult;
+        }
     }
 
     private static void addPreviousLookups(Frame from, Frame to, Object identifier) {
@@ -292,7 +400,8 @@ public final class FrameSlotChangeMonitor {
         return metaData.getEnclosingFrameDescriptor() == nextDesc;
     }
 
-    private static synchronized void invalidateNames(FrameDescriptorMetaData metaData, Collection<Object> identifiers) {
+    private static void invalidateNames(FrameDescriptorMetaData metaData, Collection<Object> identifiers) {
+        assert hierarchyLock.isWriteLockedByCurrentThread();
         if (metaData.previousLookups.removeAll(identifiers)) {
             for (Object identifier : identifiers) {
                 WeakReference<LookupResult> result = metaData.lookupResults.remove(identifier);
@@ -303,9 +412,11 @@ public final class FrameSlotChangeMonitor {
                     }
                 }
             }
-            for (FrameDescriptor descriptor : metaData.subDescriptors) {
-                FrameDescriptorMetaData sub = getMetaData(descriptor);
-                invalidateNames(sub, identifiers);
+            for (WeakReference<FrameDescriptor> ref : metaData.subDescriptors) {
+                FrameDescriptor descriptor = ref.get();
+                if (descriptor != null) {
+                    invalidateNames(getMetaData(descriptor), identifiers);
+                }
             }
         }
     }
@@ -317,9 +428,9 @@ public final class FrameSlotChangeMonitor {
         return frame == null ? null : frame instanceof NSBaseMaterializedFrame ? ((NSBaseMaterializedFrame) frame).getMarkerFrameDescriptor() : frame.getFrameDescriptor();
     }
 
-    private static synchronized FrameDescriptorMetaData getMetaData(FrameDescriptor descriptor) {
+    private static FrameDescriptorMetaData getMetaData(FrameDescriptor descriptor) {
         CompilerAsserts.neverPartOfCompilation();
-        FrameDescriptorMetaData result = frameDescriptors.get(descriptor);
+        FrameDescriptorMetaData result = frameDescriptors.get(new DescriptorKey(descriptor, null));
         assert result != null : "null metadata for " + descriptor;
         return result;
     }
@@ -328,6 +439,14 @@ public final class FrameSlotChangeMonitor {
         return getMetaData(handleBaseNamespaceEnv(frame));
     }
 
+    private static void putMetaData(FrameDescriptor descriptor, FrameDescriptorMetaData metaData) {
+        Reference<? extends FrameDescriptor> collected;
+        while ((collected = collectedDescriptors.poll()) != null) {
+            frameDescriptors.remove(collected);
+        }
+        frameDescriptors.put(new DescriptorKey(descriptor, collectedDescriptors), metaData);
+    }
+
     private static FrameDescriptorMetaData getDescriptorMetaData(FrameDescriptor descriptor) {
         assert descriptor != null : "initializing enclosing of null descriptor";
         FrameDescriptorMetaData target = getMetaData(descriptor);
@@ -335,14 +454,14 @@ public final class FrameSlotChangeMonitor {
         return target;
     }
 
-    public static synchronized boolean isEnclosingFrameDescriptor(FrameDescriptor descriptor, Frame newEnclosingFrame) {
+    public static boolean isEnclosingFrameDescriptor(FrameDescriptor descriptor, Frame newEnclosingFrame) {
         CompilerAsserts.neverPartOfCompilation();
         FrameDescriptorMetaData target = getDescriptorMetaData(descriptor);
         FrameDescriptor newEnclosingDescriptor = handleBaseNamespaceEnv(newEnclosingFrame);
         return target.getEnclosingFrameDescriptor() == newEnclosingDescriptor;
     }
 
-    public static synchronized void initializeEnclosingFrame(FrameDescriptor descriptor, Frame newEnclosingFrame) {
+    public static void initializeEnclosingFrame(FrameDescriptor descriptor, Frame newEnclosingFrame) {
         CompilerAsserts.neverPartOfCompilation();
         FrameDescriptorMetaData target = getDescriptorMetaData(descriptor);
 
@@ -350,52 +469,65 @@ public final class FrameSlotChangeMonitor {
 
         // this function can be called multiple times with the same enclosing descriptor
         if (target.getEnclosingFrameDescriptor() != newEnclosingDescriptor) {
-            assert target.getEnclosingFrameDescriptor() == null : "existing enclosing descriptor while initializing " + target.name;
-            assert target.lookupResults.isEmpty() : "existing lookup results while initializing " + target.name;
-
-            target.updateEnclosingFrameDescriptor(newEnclosingDescriptor);
-            if (newEnclosingDescriptor != null) {
-                FrameDescriptorMetaData newEnclosing = getMetaData(newEnclosingDescriptor);
-                newEnclosing.subDescriptors.add(descriptor);
+            hierarchyLock.writeLock().lock();
+            try {
+                if (target.getEnclosingFrameDescriptor() != newEnclosingDescriptor) {
+                    assert target.getEnclosingFrameDescriptor() == null : "existing enclosing descriptor while initializing " + target.name;
+                    assert target.lookupResults.isEmpty() : "existing lookup results while initializing " + target.name;
+
+                    target.updateEnclosingFrameDescriptor(newEnclosingDescriptor);
+                    if (newEnclosingDescriptor != null) {
+                        FrameDescriptorMetaData newEnclosing = getMetaData(newEnclosingDescriptor);
+                        newEnclosing.addSubDescriptor(descriptor);
+                    }
+                }
+            } finally {
+                hierarchyLock.writeLock().unlock();
             }
         }
     }
 
-    public static synchronized void initializeEnclosingFrame(Frame frame, Frame newEnclosingFrame) {
+    public static void initializeEnclosingFrame(Frame frame, Frame newEnclosingFrame) {
         initializeEnclosingFrame(handleBaseNamespaceEnv(frame), newEnclosingFrame);
     }
 
-    private static synchronized void setEnclosingFrame(FrameDescriptor descriptor, MaterializedFrame newEnclosingFrame, MaterializedFrame oldEnclosingFrame) {
+    private static void setEnclosingFrame(FrameDescriptor descriptor, MaterializedFrame newEnclosingFrame, MaterializedFrame oldEnclosingFrame) {
         CompilerAsserts.neverPartOfCompilation();
         FrameDescriptorMetaData target = getMetaData(descriptor);
         assert target != null : "frame descriptor wasn't registered properly for " + descriptor;
 
-        // invalidate existing lookups
-        invalidateAllNames(target);
+        hierarchyLock.writeLock().lock();
+        try {
+            // invalidate existing lookups
+            invalidateAllNames(target);
 
-        FrameDescriptor oldEnclosingDescriptor = target.getEnclosingFrameDescriptor();
-        assert (oldEnclosingDescriptor == null) == (oldEnclosingFrame == null) : "mismatch " + oldEnclosingDescriptor + " / " + oldEnclosingFrame;
+            FrameDescriptor oldEnclosingDescriptor = target.getEnclosingFrameDescriptor();
+            assert (oldEnclosingDescriptor == null) == (oldEnclosingFrame == null) : "mismatch " + oldEnclosingDescriptor + " / " + oldEnclosingFrame;
 
-        if (oldEnclosingDescriptor != null) {
-            assert oldEnclosingDescriptor == oldEnclosingFrame.getFrameDescriptor() : "mismatch " + oldEnclosingDescriptor + " / " + oldEnclosingFrame.getFrameDescriptor();
-            FrameDescriptorMetaData oldEnclosing = getMetaData(oldEnclosingDescriptor);
-            oldEnclosing.subDescriptors.remove(descriptor);
-        }
-        FrameDescriptor newEnclosingDescriptor = handleBaseNamespaceEnv(newEnclosingFrame);
-        target.updateEnclosingFrameDescriptor(newEnclosingDescriptor);
+            if (oldEnclosingDescriptor != null) {
+                assert oldEnclosingDescriptor == oldEnclosingFrame.getFrameDescriptor() : "mismatch " + oldEnclosingDescriptor + " / " + oldEnclosingFrame.getFrameDescriptor();
+                FrameDescriptorMetaData oldEnclosing = getMetaData(oldEnclosingDescriptor);
+                oldEnclosing.removeSubDescriptor(descriptor);
+            }
+            FrameDescriptor newEnclosingDescriptor = handleBaseNamespaceEnv(newEnclosingFrame);
+            target.updateEnclosingFrameDescriptor(newEnclosingDescriptor);
 
-        if (newEnclosingDescriptor != null) {
-            FrameDescriptorMetaData newEnclosing = getMetaData(newEnclosingDescriptor);
-            assert !newEnclosing.name.equals("global") || !target.name.equals("base");
-            newEnclosing.subDescriptors.add(descriptor);
+            if (newEnclosingDescriptor != null) {
+                FrameDescriptorMetaData newEnclosing = getMetaData(newEnclosingDescriptor);
+                assert !newEnclosing.name.equals("global") || !target.name.equals("base");
+                newEnclosing.addSubDescriptor(descriptor);
+            }
+        } finally {
+            hierarchyLock.writeLock().unlock();
         }
     }
 
-    public static synchronized void setEnclosingFrame(Frame frame, MaterializedFrame newEnclosingFrame, MaterializedFrame oldEnclosingFrame) {
+    public static void setEnclosingFrame(Frame frame, MaterializedFrame newEnclosingFrame, MaterializedFrame oldEnclosingFrame) {
         setEnclosingFrame(handleBaseNamespaceEnv(frame), newEnclosingFrame, oldEnclosingFrame);
     }
 
     private static void invalidateAllNames(FrameDescriptorMetaData target) {
+        assert hierarchyLock.isWriteLockedByCurrentThread();
         for (Map.Entry<Object, WeakReference<LookupResult>> entry : target.lookupResults.entrySet()) {
             LookupResult lookup = entry.getValue().get();
             if (lookup != null) {
@@ -405,49 +537,62 @@ public final class FrameSlotChangeMonitor {
         target.lookupResults.clear();
         if (!target.previousLookups.isEmpty()) {
             target.previousLookups.clear();
-            for (FrameDescriptor sub : target.subDescriptors) {
-                invalidateAllNames(getMetaData(sub));
+            for (WeakReference<FrameDescriptor> ref : target.subDescriptors) {
+                FrameDescriptor sub = ref.get();
+                if (sub != null) {
+                    invalidateAllNames(getMetaData(sub));
+                }
             }
         }
     }
 
-    public static synchronized void detach(Frame frame) {
+    public static void detach(Frame frame) {
         CompilerAsserts.neverPartOfCompilation();
-        FrameDescriptorMetaData position = getMetaData(frame);
-        FrameDescriptor oldEnclosingDescriptor = position.getEnclosingFrameDescriptor();
-        FrameDescriptorMetaData oldEnclosing = getMetaData(oldEnclosingDescriptor);
-        FrameDescriptor newEnclosingDescriptor = oldEnclosing.getEnclosingFrameDescriptor();
-        FrameDescriptorMetaData newEnclosing = getMetaData(newEnclosingDescriptor);
+        hierarchyLock.writeLock().lock();
+        try {
+            FrameDescriptorMetaData position = getMetaData(frame);
+            FrameDescriptor oldEnclosingDescriptor = position.getEnclosingFrameDescriptor();
+            FrameDescriptorMetaData oldEnclosing = getMetaData(oldEnclosingDescriptor);
+            FrameDescriptor newEnclosingDescriptor = oldEnclosing.getEnclosingFrameDescriptor();
+            FrameDescriptorMetaData newEnclosing = getMetaData(newEnclosingDescriptor);
 
-        invalidateNames(oldEnclosing, oldEnclosingDescriptor.getIdentifiers());
+            invalidateNames(oldEnclosing, oldEnclosingDescriptor.getIdentifiers());
 
-        position.updateEnclosingFrameDescriptor(newEnclosingDescriptor);
-        oldEnclosing.updateEnclosingFrameDescriptor(null);
-        oldEnclosing.subDescriptors.remove(frame.getFrameDescriptor());
-        newEnclosing.subDescriptors.remove(oldEnclosingDescriptor);
-        newEnclosing.subDescriptors.add(frame.getFrameDescriptor());
+            position.updateEnclosingFrameDescriptor(newEnclosingDescriptor);
+            oldEnclosing.updateEnclosingFrameDescriptor(null);
+            oldEnclosing.removeSubDescriptor(frame.getFrameDescriptor());
+            newEnclosing.removeSubDescriptor(oldEnclosingDescriptor);
+            newEnclosing.addSubDescriptor(frame.getFrameDescriptor());
+        } finally {
+            hierarchyLock.writeLock().unlock();
+        }
     }
 
-    public static synchronized void attach(Frame frame, Frame newEnclosingFrame) {
+    public static void attach(Frame frame, Frame newEnclosingFrame) {
         CompilerAsserts.neverPartOfCompilation();
-        FrameDescriptorMetaData position = getMetaData(frame);
-        FrameDescriptorMetaData newEnclosing = getMetaData(newEnclosingFrame);
-        FrameDescriptor oldEnclosingDescriptor = position.getEnclosingFrameDescriptor();
-        FrameDescriptorMetaData oldEnclosing = getMetaData(oldEnclosingDescriptor);
-
-        invalidateAllNames(newEnclosing);
-        invalidateNames(position, newEnclosingFrame.getFrameDescriptor().getIdentifiers());
-
-        newEnclosing.previousLookups.clear();
-        newEnclosing.previousLookups.addAll(oldEnclosing.previousLookups);
+        hierarchyLock.writeLock().lock();
+        try {
+            FrameDescriptorMetaData position = getMetaData(frame);
+            FrameDescriptorMetaData newEnclosing = getMetaData(newEnclosingFrame);
+            FrameDescriptor oldEnclosingDescriptor = position.getEnclosingFrameDescriptor();
+            FrameDescriptorMetaData oldEnclosing = getMetaData(oldEnclosingDescriptor);
 
-        position.updateEnclosingFrameDescriptor(newEnclosingFrame.getFrameDescriptor());
-        newEnclosing.updateEnclosingFrameDescriptor(oldEnclosingDescriptor);
-        assert frame.getFrameDescriptor() == handleBaseNamespaceEnv(frame);
-        assert !newEnclosing.name.equals("global") || !position.name.equals("base");
-        newEnclosing.subDescriptors.add(frame.getFrameDescriptor());
-        oldEnclosing.subDescriptors.remove(frame.getFrameDescriptor());
-        oldEnclosing.subDescriptors.add(newEnclosingFrame.getFrameDescriptor());
+            invalidateAllNames(newEnclosing);
+            invalidateNames(position, newEnclosingFrame.getFrameDescriptor().getIdentifiers());
+
+            newEnclosing.previousLookups.clear();
+            newEnclosing.previousLookups.addAll(oldEnclosing.previousLookups);
+
+            position.updateEnclosingFrameDescriptor(newEnclosingFrame.getFrameDescriptor());
+            newEnclosing.updateEnclosingFrameDescriptor(oldEnclosingDescriptor);
+            assert frame.getFrameDescriptor() == handleBaseNamespaceEnv(frame);
+            assert !newEnclosing.name.equals("global") || !position.name.equals("base");
+            newEnclosing.addSubDescriptor(frame.getFrameDescriptor());
+            oldEnclosing.removeSubDescriptor(frame.getFrameDescriptor());
+            oldEnclosing.addSubDescriptor(newEnclosingFrame.getFrameDescriptor());
+        } finally {
+            hierarchyLock.writeLock().unlock();
+        }
     }
 
     private static final int MAX_INVALIDATION_COUNT = 2;
@@ -490,8 +635,12 @@ public final class FrameSlotChangeMonitor {
         private final Assumption nonLocalModifiedAssumption = Truffle.getRuntime().createAssumption();
         private final Assumption noMultiSlot = Truffle.getRuntime().createAssumption();
 
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<FrameSlotInfoImpl, StableValue> STABLE_VALUE_UPDATER = AtomicReferenceFieldUpdater.newUpdater(FrameSlotInfoImpl.class, StableValue.class,
+                        "stableValue");
+
         @CompilationFinal private volatile StableValue<Object> stableValue;
-        private int invalidationCount;
+        private volatile int invalidationCount;
         private final boolean possibleMultiSlot;
 
         FrameSlotInfoImpl(boolean isSingletonFrame, boolean isGlobalEnv, Object identifier, boolean isNewEnv) {
@@ -554,13 +703,29 @@ public final class FrameSlotChangeMonitor {
         private void invalidateStableValue(StableValue<Object> sv, Object value, FrameSlot slot) {
             CompilerDirectives.transferToInterpreterAndInvalidate();
             sv.getAssumption().invalidate();
-            if (invalidationCount > 0) {
-                invalidationCount--;
+            StableValue<Object> newValue;
+            int count = invalidationCount;
+            if (count > 0) {
+                invalidationCount = count - 1;
                 out("setting singleton value %s = %s", slot.getIdentifier(), value == null ? "null" : value.getClass());
-                stableValue = new StableValue<>(value, String.valueOf(slot.getIdentifier()));
+                newValue = new StableValue<>(value, String.valueOf(slot.getIdentifier()));
             } else {
                 out("setting non-singleton value %s", slot.getIdentifier());
-                stableValue = null;
+                newValue = null;
+            }
+            if (!STABLE_VALUE_UPDATER.compareAndSet(this, sv, newValue)) {
+                /*
+                 * Another thread updated the slot concurrently, so there is no telling which value
+                 * ends up in the frame: give up on keeping the value stable.
+                 */
+                StableValue<Object> current;
+                while ((current = stableValue) != null) {
+                    current.getAssumption().invalidate();
+                    if (STABLE_VALUE_UPDATER.compareAndSet(this, current, null)) {
+                        break;
+                    }
+                }
+                invalidationCount = 0;
             }
         }
 
@@ -701,17 +866,29 @@ public final class FrameSlotChangeMonitor {
         return findOrAddFrameSlot(fd, (Object) identifier, initialKind);
     }
 
-    private static synchronized FrameSlot findOrAddFrameSlot(FrameDescriptor fd, Object identifier, FrameSlotKind initialKind) {
+    private static FrameSlot findOrAddFrameSlot(FrameDescriptor fd, Object identifier, FrameSlotKind initialKind) {
         CompilerAsserts.neverPartOfCompilation();
         assert identifier instanceof String || identifier instanceof RFrameSlot;
+        /*
+         * Slots are only ever added while holding the write lock, so a slot found here is final,
+         * and a slot missed because of a concurrent addition is found again below.
+         */
         FrameSlot frameSlot = fd.findFrameSlot(identifier);
         if (frameSlot != null) {
             return frameSlot;
-        } else {
+        }
+        hierarchyLock.writeLock().lock();
+        try {
+            frameSlot = fd.findFrameSlot(identifier);
+            if (frameSlot != null) {
+                return frameSlot;
+            }
             FrameDescriptorMetaData metaData = getMetaData(fd);
             invalidateNames(metaData, Arrays.asList(identifier));
             return fd.addFrameSlot(identifier, new FrameSlotInfoImpl(metaData.singletonFrame != null, "global".equals(metaData.name), identifier, metaData.name.startsWith("<new-env-")),
                             initialKind);
+        } finally {
+            hierarchyLock.writeLock().unlock();
         }
     }
 
@@ -876,28 +1053,28 @@ public final class FrameSlotChangeMonitor {
      * Initializes the internal data structures for a newly created frame descriptor that is
      * intended to be used for a non-function frame (and thus will only ever be used for one frame).
      */
-    public static synchronized void initializeNonFunctionFrameDescriptor(String name, MaterializedFrame frame) {
+    public static void initializeNonFunctionFrameDescriptor(String name, MaterializedFrame frame) {
         CompilerAsserts.neverPartOfCompilation();
-        frameDescriptors.put(handleBaseNamespaceEnv(frame), new FrameDescriptorMetaData(name, frame));
+        putMetaData(handleBaseNamespaceEnv(frame), new FrameDescriptorMetaData(name, frame));
     }
 
-    public static synchronized FrameDescriptor initializeFunctionFrameDescriptor(String name, FrameDescriptor frameDescriptor) {
+    public static FrameDescriptor initializeFunctionFrameDescriptor(String name, FrameDescriptor frameDescriptor) {
         CompilerAsserts.neverPartOfCompilation();
-        frameDescriptors.put(frameDescriptor, new FrameDescriptorMetaData(name, null));
+        putMetaData(frameDescriptor, new FrameDescriptorMetaData(name, null));
         return frameDescriptor;
     }
 
-    public static synchronized Assumption getEnclosingFrameDescriptorAssumption(FrameDescriptor descriptor) {
+    public static Assumption getEnclosingFrameDescriptorAssumption(FrameDescriptor descriptor) {
         CompilerAsserts.neverPartOfCompilation();
-        return frameDescriptors.get(descriptor).getEnclosingFrameDescriptorAssumption();
+        return getMetaData(descriptor).getEnclosingFrameDescriptorAssumption();
     }
 
-    public static synchronized Assumption getContainsNoActiveBindingAssumption(FrameDescriptor descriptor) {
+    public static Assumption getContainsNoActiveBindingAssumption(FrameDescriptor descriptor) {
         CompilerAsserts.neverPartOfCompilation();
-        return frameDescriptors.get(descriptor).getContainsNoActiveBindingAssumption();
+        return getMetaData(descriptor).getContainsNoActiveBindingAssumption();
     }
 
-    public static synchronized StableValue<Object> getStableValueAssumption(FrameDescriptor descriptor, FrameSlot frameSlot, Object value) {
+    public static StableValue<Object> getStableValueAssumption(FrameDescriptor descriptor, FrameSlot frameSlot, Object value) {
         CompilerAsserts.neverPartOfCompilation();
         StableValue<Object> stableValue = getFrameSlotInfo(frameSlot).getStableValue();
         if (stableValue != null) {
@@ -908,7 +1085,7 @@ public final class FrameSlotChangeMonitor {
         return stableValue;
     }
 
-    public static synchronized MaterializedFrame getSingletonFrame(FrameDescriptor descriptor) {
+    public static MaterializedFrame getSingletonFrame(FrameDescriptor descriptor) {
         WeakReference<MaterializedFrame> singleton = getMetaData(descriptor).singletonFrame;
         return singleton == null ? null : singleton.get();
     }
@@ -51,6 +51,15 @@ public interface CallRFFI {
 
     InvokeVoidCallNode createInvokeVoidCallNode();
 
+    /**
+     * Returns the number of references to R objects held by native code that were created, reused
+     * and released, and the number of live ones, or {@code null} if the implementation does not
+     * manage such references.
+     */
+    default long[] getGlobalRefStats() {
+        return null;
+    }
+
     final class InvokeCallRootNode extends RFFIRootNode<InvokeCallNode> {
         private static InvokeCallRootNode invokeCallRootNode;
 
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.runtime.ffi;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.RRuntime;
+
+/**
+ * Process-wide intern table of {@link CharSXPWrapper}s, the counterpart of the global
+ * {@code CHARSXP} cache of GnuR. There is one canonical wrapper per string, shared by all contexts,
+ * so that native code can compare {@code CHARSXP}s by pointer and repeated {@code mkChar} calls do
+ * not keep duplicate strings alive. FastR strings are Java strings, so the encoding passed to
+ * {@code mkCharCE} does not take part in the key.
+ *
+ * The table is split into segments, each guarded by its own monitor. The entries refer weakly to
+ * the canonical string and its wrapper: an entry is removed once its string has been collected, and
+ * a new wrapper for the canonical string is created if only the wrapper has been collected.
+ */
+public final class CharSXPTable {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_SEGMENT_LENGTH = 64;
+
+    /**
+     * {@code NA_character_} is compared by identity and must not be mixed up with {@code "NA"}.
+     */
+    private static final CharSXPWrapper NA = new CharSXPWrapper(RRuntime.STRING_NA);
+
+    private static final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    static {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private CharSXPTable() {
+        // no instances
+    }
+
+    private static final class Entry extends WeakReference<String> {
+        private final int hash;
+        private WeakReference<CharSXPWrapper> wrapper;
+        private Entry next;
+
+        Entry(String contents, int hash, CharSXPWrapper wrapper, Entry next, ReferenceQueue<String> queue) {
+            super(contents, queue);
+            this.hash = hash;
+            this.wrapper = new WeakReference<>(wrapper);
+            this.next = next;
+        }
+    }
+
+    private static final class Segment {
+        private final ReferenceQueue<String> queue = new ReferenceQueue<>();
+        private Entry[] table = new Entry[INITIAL_SEGMENT_LENGTH];
+        private int count;
+
+        synchronized CharSXPWrapper intern(String contents, int hash) {
+            expunge();
+            int index = hash & (table.length - 1);
+            for (Entry e = table[index]; e != null; e = e.next) {
+                if (e.hash == hash) {
+                    String canonical = e.get();
+                    if (canonical != null && canonical.equals(contents)) {
+                        hits.incrementAndGet();
+                        CharSXPWrapper result = e.wrapper.get();
+                        if (result == null) {
+                            result = new CharSXPWrapper(canonical);
+                            e.wrapper = new WeakReference<>(result);
+                        }
+                        return result;
+                    }
+                }
+            }
+            misses.incrementAndGet();
+            CharSXPWrapper result = new CharSXPWrapper(contents);
+            table[index] = new Entry(contents, hash, result, table[index], queue);
+            if (++count > (table.length >> 2) * 3) {
+                rehash();
+            }
+            return result;
+        }
+
+        private void expunge() {
+            Reference<? extends String> ref;
+            while ((ref = queue.poll()) != null) {
+                Entry entry = (Entry) ref;
+                int index = entry.hash & (table.length - 1);
+                Entry prev = null;
+                for (Entry e = table[index]; e != null; prev = e, e = e.next) {
+                    if (e == entry) {
+                        if (prev == null) {
+                            table[index] = e.next;
+                        } else {
+                            prev.next = e.next;
+                        }
+                        count--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void rehash() {
+            Entry[] newTable = new Entry[table.length * 2];
+            for (Entry head : table) {
+                Entry e = head;
+                while (e != null) {
+                    Entry next = e.next;
+                    int index = e.hash & (newTable.length - 1);
+                    e.next = newTable[index];
+                    newTable[index] = e;
+                    e = next;
+                }
+            }
+            table = newTable;
+        }
+
+        synchronized int size() {
+            expunge();
+            return count;
+        }
+    }
+
+    /**
+     * Returns the canonical wrapper of {@code contents}.
+     */
+    @TruffleBoundary
+    public static CharSXPWrapper intern(String contents) {
+        if (RRuntime.isNA(contents)) {
+            return NA;
+        }
+        int hash = contents.hashCode();
+        // the high bits of the spread hash pick the segment, the low bits of the hash the slot
+        int spread = (hash ^ (hash >>> 16)) * 0x9E3779B9;
+        return segments[spread >>> (32 - SEGMENT_BITS)].intern(contents, hash);
+    }
+
+    /**
+     * Returns the number of strings in the table.
+     */
+    public static long getSize() {
+        long result = 0;
+        for (Segment segment : segments) {
+            result += segment.size();
+        }
+        return result;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+}
@@ -31,13 +31,15 @@ import com.oracle.truffle.r.runtime.data.RTruffleObject;
  * FastR already uses {@code String} to denote a length-1 string vector, it cannot be used to
  * represent a {@code CHARSXP}, so this class exists to do so.
  *
+ * Instances are canonical, see {@link CharSXPTable}, so they can be compared by identity.
+ *
  * N.B. Use limited to RFFI implementations.
  *
  */
 public final class CharSXPWrapper implements RTruffleObject {
     private final String contents;
 
-    private CharSXPWrapper(String contents) {
+    CharSXPWrapper(String contents) {
         this.contents = contents;
     }
 
@@ -51,6 +53,6 @@ public final class CharSXPWrapper implements RTruffleObject {
     }
 
     public static CharSXPWrapper create(String contents) {
-        return new CharSXPWrapper(contents);
+        return CharSXPTable.intern(contents);
     }
 }
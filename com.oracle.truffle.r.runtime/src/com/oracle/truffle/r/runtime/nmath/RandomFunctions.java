@@ -36,6 +36,17 @@ import com.oracle.truffle.r.runtime.rng.RandomNumberGenerator;
 public class RandomFunctions {
     public abstract static class RandFunction3_Double extends RBaseNode {
         public abstract double execute(double a, double b, double c, RandomNumberProvider rand);
+
+        /**
+         * Returns the number of uniform random numbers that each call of {@code execute} with the
+         * given parameters consumes, or {@code -1} if it is not always the same. If it is, the
+         * uniform random numbers can be generated in bulk, or in parallel if the generator can
+         * skip values.
+         */
+        @SuppressWarnings("unused")
+        public int getUniformsPerValue(double a, double b, double c, RandomNumberProvider rand) {
+            return -1;
+        }
     }
 
     public abstract static class RandFunction2_Double extends RandFunction3_Double {
@@ -45,6 +56,16 @@ public class RandomFunctions {
         public final double execute(double a, double b, double c, RandomNumberProvider rand) {
             return execute(a, b, rand);
         }
+
+        @SuppressWarnings("unused")
+        public int getUniformsPerValue(double a, double b, RandomNumberProvider rand) {
+            return -1;
+        }
+
+        @Override
+        public final int getUniformsPerValue(double a, double b, double c, RandomNumberProvider rand) {
+            return getUniformsPerValue(a, b, rand);
+        }
     }
 
     public abstract static class RandFunction1_Double extends RandFunction2_Double {
@@ -54,6 +75,16 @@ public class RandomFunctions {
         public final double execute(double a, double b, RandomNumberProvider rand) {
             return execute(a, rand);
         }
+
+        @SuppressWarnings("unused")
+        public int getUniformsPerValue(double a, RandomNumberProvider rand) {
+            return -1;
+        }
+
+        @Override
+        public final int getUniformsPerValue(double a, double b, RandomNumberProvider rand) {
+            return getUniformsPerValue(a, rand);
+        }
     }
 
     /**
@@ -72,6 +103,22 @@ public class RandomFunctions {
             return new RandomNumberProvider(RRNG.currentGenerator(), RRNG.currentNormKind());
         }
 
+        /**
+         * Returns a provider with the same "norm kind" that takes its random numbers from
+         * {@code other}.
+         */
+        public RandomNumberProvider withGenerator(RandomNumberGenerator other) {
+            return new RandomNumberProvider(other, normKind);
+        }
+
+        public RandomNumberGenerator getGenerator() {
+            return generator;
+        }
+
+        public NormKind getNormKind() {
+            return normKind;
+        }
+
         public boolean isSame(RandomNumberProvider other) {
             return this.generator == other.generator && this.normKind == other.normKind;
         }
@@ -17,6 +17,7 @@ import com.oracle.truffle.api.profiles.ValueProfile;
 import com.oracle.truffle.r.runtime.nmath.RMathError;
 import com.oracle.truffle.r.runtime.nmath.RandomFunctions.RandFunction2_Double;
 import com.oracle.truffle.r.runtime.nmath.RandomFunctions.RandomNumberProvider;
+import com.oracle.truffle.r.runtime.rng.RRNG.NormKind;
 
 public final class Rnorm extends RandFunction2_Double {
     private final BranchProfile errorProfile = BranchProfile.create();
@@ -38,4 +39,13 @@ public final class Rnorm extends RandFunction2_Double {
             return mu + sigma * rand.normRand();
         }
     }
+
+    @Override
+    public int getUniformsPerValue(double mu, double sigma, RandomNumberProvider rand) {
+        if (Double.isFinite(mu) && Double.isFinite(sigma) && sigma > 0. && rand.getNormKind() == NormKind.INVERSION) {
+            // see SNorm.normRand
+            return 2;
+        }
+        return -1;
+    }
 }
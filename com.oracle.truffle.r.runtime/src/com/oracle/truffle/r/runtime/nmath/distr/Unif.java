@@ -47,6 +47,11 @@ public final class Unif {
             }
             return min + rand.unifRand() * (max - min);
         }
+
+        @Override
+        public int getUniformsPerValue(double min, double max, RandomNumberProvider rand) {
+            return RRuntime.isFinite(min) && RRuntime.isFinite(max) && min < max ? 1 : -1;
+        }
     }
 
     public static final class PUnif implements Function3_2 {
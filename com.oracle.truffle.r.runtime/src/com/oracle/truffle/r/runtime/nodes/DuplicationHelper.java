@@ -13,8 +13,14 @@ package com.oracle.truffle.r.runtime.nodes;
 import java.util.HashSet;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSetCharacter;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSetDouble;
+import com.oracle.truffle.r.runtime.Collections.NonRecursiveHashSetInt;
 import com.oracle.truffle.r.runtime.RRuntime;
 import com.oracle.truffle.r.runtime.data.model.RAbstractContainer;
+import com.oracle.truffle.r.runtime.data.model.RAbstractDoubleVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractIntVector;
+import com.oracle.truffle.r.runtime.data.model.RAbstractStringVector;
 
 /**
  * Code sharing vehicle for the slight differences in behavior between {@code duplicated} and
@@ -23,14 +29,26 @@ import com.oracle.truffle.r.runtime.data.model.RAbstractContainer;
  */
 public class DuplicationHelper {
     private final RAbstractContainer x;
-    private final HashSet<Object> vectorContents = new HashSet<>();
+    /*
+     * The elements of int, double and character vectors are kept in primitive hash sets, the others
+     * in vectorContents.
+     */
+    private final NonRecursiveHashSetInt intContents;
+    private final NonRecursiveHashSetDouble doubleContents;
+    private final NonRecursiveHashSetCharacter stringContents;
+    private final HashSet<Object> vectorContents;
     private final HashSet<Object> incompContents;
     private final byte[] dupVec;
     private int index;
 
     public DuplicationHelper(RAbstractContainer x, RAbstractContainer incomparables, boolean justIndex, boolean fromLast) {
         this.x = x;
-        vectorContents.add(x.getDataAtAsObject(fromLast ? x.getLength() - 1 : 0));
+        int length = x.getLength();
+        intContents = x instanceof RAbstractIntVector ? new NonRecursiveHashSetInt(length) : null;
+        doubleContents = x instanceof RAbstractDoubleVector ? new NonRecursiveHashSetDouble(length) : null;
+        stringContents = x instanceof RAbstractStringVector ? new NonRecursiveHashSetCharacter(length) : null;
+        vectorContents = intContents == null && doubleContents == null && stringContents == null ? new HashSet<>() : null;
+        add(fromLast ? length - 1 : 0);
 
         if (incomparables != null) {
             incompContents = new HashSet<>();
@@ -43,17 +61,32 @@ public class DuplicationHelper {
         dupVec = justIndex ? null : new byte[x.getLength()];
     }
 
+    /**
+     * Adds the i-th element of {@code x} to the elements seen so far.
+     *
+     * @return {@code true} if the element was seen before
+     */
+    private boolean add(int i) {
+        if (intContents != null) {
+            return intContents.add(((RAbstractIntVector) x).getDataAt(i));
+        } else if (doubleContents != null) {
+            return doubleContents.add(((RAbstractDoubleVector) x).getDataAt(i));
+        } else if (stringContents != null) {
+            return stringContents.add(((RAbstractStringVector) x).getDataAt(i));
+        } else {
+            return !vectorContents.add(x.getDataAtAsObject(i));
+        }
+    }
+
     public boolean doIt(int i) {
         if (incompContents == null || !incompContents.contains(x.getDataAtAsObject(i))) {
-            if (vectorContents.contains(x.getDataAtAsObject(i))) {
+            if (add(i)) {
                 if (dupVec == null) {
                     index = i + 1;
                     return true;
                 } else {
                     dupVec[i] = RRuntime.LOGICAL_TRUE;
                 }
-            } else {
-                vectorContents.add(x.getDataAtAsObject(i));
             }
         } else {
             if (dupVec != null) {
@@ -26,14 +26,15 @@ import com.oracle.truffle.r.runtime.data.RPromise;
 import com.oracle.truffle.r.runtime.data.RTypedValue;
 import com.oracle.truffle.r.runtime.env.REnvironment;
 import com.oracle.truffle.r.runtime.ffi.BaseRFFI;
+import com.oracle.truffle.r.runtime.rng.lecuyer.LEcuyerCMRG;
 import com.oracle.truffle.r.runtime.rng.mm.MarsagliaMulticarry;
 import com.oracle.truffle.r.runtime.rng.mt.MersenneTwister;
 import com.oracle.truffle.r.runtime.rng.user.UserRNG;
 
 /**
  * Facade class to the R random number generators, (see src/main/RNG.c in GnuR). The individual
- * generators are implemented in their own class. Currently there are only two implemented, the
- * default, {@link MersenneTwister} and {@link MarsagliaMulticarry}.
+ * generators are implemented in their own class. Currently there are only three implemented, the
+ * default, {@link MersenneTwister}, {@link MarsagliaMulticarry} and {@link LEcuyerCMRG}.
  *
  * The fact that the R programmer can set {@code .Random.seed} explicitly, as opposed to the
  * recommended approach of calling {@code set.seed}, is something of a pain as it changes the
@@ -58,7 +59,7 @@ public class RRNG {
         KNUTH_TAOCP(),
         USER_UNIF(UserRNG::new),
         KNUTH_TAOCP2(),
-        LECUYER_CMRG();
+        LECUYER_CMRG(LEcuyerCMRG::new);
 
         @CompilationFinal static final Kind[] VALUES = values();
 
@@ -310,6 +311,14 @@ public class RRNG {
         getContextState().updateCurrentNormKind(DEFAULT_NORM_KIND, false);
     }
 
+    /**
+     * Switches back to the default kinds with a random seed, as in a new context. The caller is
+     * expected to remove {@code .Random.seed}.
+     */
+    public static void reset() {
+        handleInvalidSeed();
+    }
+
     /**
      * Sets the current generator according to the flag under index 0 of given vector
      * {@code seedsObj}.
@@ -11,6 +11,7 @@
  */
 package com.oracle.truffle.r.runtime.rng;
 
+import com.oracle.truffle.r.runtime.RInternalError;
 import com.oracle.truffle.r.runtime.rng.RRNG.Kind;
 
 /**
@@ -29,6 +30,33 @@ public interface RandomNumberGenerator {
 
     double genrandDouble();
 
+    /**
+     * Stores the next {@code n} values of {@link #genrandDouble()} into {@code result}. Generators
+     * override this if they can produce many values faster than one by one.
+     */
+    default void fillDoubles(double[] result, int n) {
+        for (int i = 0; i < n; i++) {
+            result[i] = genrandDouble();
+        }
+    }
+
+    /**
+     * Whether the generator can skip values efficiently, see {@link #jumpAhead(long)}.
+     */
+    default boolean canJumpAhead() {
+        return false;
+    }
+
+    /**
+     * Returns a new generator in the state that this generator would be in after {@code n} more
+     * calls of {@link #genrandDouble()}, without changing the state of this generator. This allows
+     * to generate consecutive parts of a sequence in parallel. Must only be called if
+     * {@link #canJumpAhead()} returns {@code true}.
+     */
+    default RandomNumberGenerator jumpAhead(@SuppressWarnings("unused") long n) {
+        throw RInternalError.shouldNotReachHere();
+    }
+
     Kind getKind();
 
     /**
@@ -32,9 +32,7 @@ public final class RandomNumberNode extends RBaseNode {
 
     public double[] executeDouble(int count) {
         double[] result = new double[count];
-        for (int i = 0; i < count; i++) {
-            result[i] = executeSingleDouble();
-        }
+        generatorClassProfile.profile(generatorProfile.profile(RRNG.currentGenerator())).fillDoubles(result, count);
         return result;
     }
 
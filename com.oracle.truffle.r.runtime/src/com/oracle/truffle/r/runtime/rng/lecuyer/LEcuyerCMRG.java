@@ -0,0 +1,270 @@
+/*
+ * This material is distributed under the GNU General Public License
+ * Version 2. You may review the terms of this license at
+ * http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * Copyright (c) 1995-2012, The R Core Team
+ * Copyright (c) 2003, The R Foundation
+ * Copyright (c) 2017, Oracle and/or its affiliates
+ *
+ * All rights reserved.
+ */
+package com.oracle.truffle.r.runtime.rng.lecuyer;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.r.runtime.rng.RNGInitAdapter;
+import com.oracle.truffle.r.runtime.rng.RRNG;
+import com.oracle.truffle.r.runtime.rng.RRNG.Kind;
+import com.oracle.truffle.r.runtime.rng.RandomNumberGenerator;
+
+/**
+ * "L'Ecuyer-CMRG" RNG, i.e., the combined multiple-recursive generator MRG32k3a. Transcribed from
+ * GnuR RNG.c, the stream functions from rngstream.c of the parallel package.
+ *
+ * The generator consists of two linear recurrences of order three, so advancing it by {@code n}
+ * values amounts to multiplying the two parts of its state by the {@code n}-th powers of their
+ * transition matrices. The streams of the parallel package are {@code 2^127} values apart, their
+ * sub-streams {@code 2^76}.
+ */
+public final class LEcuyerCMRG extends RNGInitAdapter {
+
+    private static final long M1 = 4294967087L;
+    private static final long M2 = 4294944443L;
+    private static final long A12 = 1403580;
+    private static final long A13N = 810728;
+    private static final long A21 = 527612;
+    private static final long A23N = 1370589;
+    private static final double NORMC = 2.328306549295727688e-10;
+
+    private static final long[][] A1 = {{0, 1, 0}, {0, 0, 1}, {M1 - A13N, A12, 0}};
+    private static final long[][] A2 = {{0, 1, 0}, {0, 0, 1}, {M2 - A23N, 0, A21}};
+
+    private static final long[][] A1P76 = {
+                    {82758667L, 1871391091L, 4127413238L},
+                    {3672831523L, 69195019L, 1871391091L},
+                    {3672091415L, 3528743235L, 69195019L}
+    };
+
+    private static final long[][] A2P76 = {
+                    {1511326704L, 3759209742L, 1610795712L},
+                    {4292754251L, 1511326704L, 3889917532L},
+                    {3859662829L, 4292754251L, 3708466080L}
+    };
+
+    private static final long[][] A1P127 = {
+                    {2427906178L, 3580155704L, 949770784L},
+                    {226153695L, 1230515664L, 3580155704L},
+                    {1988835001L, 986791581L, 1230515664L}
+    };
+
+    private static final long[][] A2P127 = {
+                    {1464411153L, 277697599L, 1610723613L},
+                    {32183930L, 1464411153L, 1022607788L},
+                    {2824425944L, 32183930L, 2093834863L}
+    };
+
+    private static final int N_SEED = 6;
+
+    public LEcuyerCMRG() {
+        super(N_SEED);
+    }
+
+    /**
+     * This function is derived from GNU R, RNG.c (RNG_Init), which makes sure that all seeds are
+     * less than {@code m2}.
+     */
+    @Override
+    @TruffleBoundary
+    public void init(int seedParam) {
+        int seed = seedParam;
+        for (int i = 0; i < getNSeed(); i++) {
+            seed = (69069 * seed + 1);
+            while (Integer.toUnsignedLong(seed) >= M2) {
+                seed = (69069 * seed + 1);
+            }
+            setISeedItem(i, seed);
+        }
+        fixupSeeds(true);
+    }
+
+    /**
+     * The first three seeds must not be all zero and less than {@code m1}, the other three must
+     * not be all zero and less than {@code m2}.
+     */
+    @Override
+    @TruffleBoundary
+    public void fixupSeeds(boolean initial) {
+        if (!validSeeds(0, M1) || !validSeeds(3, M2)) {
+            init(RRNG.timeToSeed());
+        }
+    }
+
+    private boolean validSeeds(int from, long m) {
+        boolean notAllZero = false;
+        for (int i = from; i < from + 3; i++) {
+            long seed = Integer.toUnsignedLong(getISeedItem(i));
+            if (seed >= m) {
+                return false;
+            }
+            notAllZero |= seed != 0;
+        }
+        return notAllZero;
+    }
+
+    @Override
+    public double genrandDouble() {
+        long p1 = A12 * Integer.toUnsignedLong(getISeedItem(1)) - A13N * Integer.toUnsignedLong(getISeedItem(0));
+        /* p1 % m1 would surely do */
+        long k = p1 / M1;
+        p1 -= k * M1;
+        if (p1 < 0) {
+            p1 += M1;
+        }
+        setISeedItem(0, getISeedItem(1));
+        setISeedItem(1, getISeedItem(2));
+        setISeedItem(2, (int) p1);
+
+        long p2 = A21 * Integer.toUnsignedLong(getISeedItem(5)) - A23N * Integer.toUnsignedLong(getISeedItem(3));
+        k = p2 / M2;
+        p2 -= k * M2;
+        if (p2 < 0) {
+            p2 += M2;
+        }
+        setISeedItem(3, getISeedItem(4));
+        setISeedItem(4, getISeedItem(5));
+        setISeedItem(5, (int) p2);
+
+        return ((p1 > p2) ? (p1 - p2) : (p1 - p2 + M1)) * NORMC;
+    }
+
+    @Override
+    public void fillDoubles(double[] result, int n) {
+        long s0 = Integer.toUnsignedLong(getISeedItem(0));
+        long s1 = Integer.toUnsignedLong(getISeedItem(1));
+        long s2 = Integer.toUnsignedLong(getISeedItem(2));
+        long s3 = Integer.toUnsignedLong(getISeedItem(3));
+        long s4 = Integer.toUnsignedLong(getISeedItem(4));
+        long s5 = Integer.toUnsignedLong(getISeedItem(5));
+        for (int i = 0; i < n; i++) {
+            long p1 = (A12 * s1 - A13N * s0) % M1;
+            if (p1 < 0) {
+                p1 += M1;
+            }
+            s0 = s1;
+            s1 = s2;
+            s2 = p1;
+            long p2 = (A21 * s5 - A23N * s3) % M2;
+            if (p2 < 0) {
+                p2 += M2;
+            }
+            s3 = s4;
+            s4 = s5;
+            s5 = p2;
+            result[i] = ((p1 > p2) ? (p1 - p2) : (p1 - p2 + M1)) * NORMC;
+        }
+        setISeedItem(0, (int) s0);
+        setISeedItem(1, (int) s1);
+        setISeedItem(2, (int) s2);
+        setISeedItem(3, (int) s3);
+        setISeedItem(4, (int) s4);
+        setISeedItem(5, (int) s5);
+    }
+
+    @Override
+    public boolean canJumpAhead() {
+        return true;
+    }
+
+    @Override
+    @TruffleBoundary
+    public RandomNumberGenerator jumpAhead(long n) {
+        LEcuyerCMRG result = new LEcuyerCMRG();
+        int[] seeds = advance(getSeeds(), power(A1, n, M1), power(A2, n, M2));
+        for (int i = 0; i < N_SEED; i++) {
+            result.setISeedItem(i, seeds[i + 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the seeds of the next stream, cf. {@code nextRNGStream} of the parallel package.
+     *
+     * @param seeds in the format of {@code .Random.seed}
+     */
+    public static int[] nextStream(int[] seeds) {
+        return advance(seeds, A1P127, A2P127);
+    }
+
+    /**
+     * Returns the seeds of the next sub-stream, cf. {@code nextRNGSubStream} of the parallel
+     * package.
+     *
+     * @param seeds in the format of {@code .Random.seed}
+     */
+    public static int[] nextSubStream(int[] seeds) {
+        return advance(seeds, A1P76, A2P76);
+    }
+
+    /**
+     * Multiplies the two parts of the seeds in {@code .Random.seed} format by the given matrices.
+     */
+    private static int[] advance(int[] seeds, long[][] a1, long[][] a2) {
+        int[] result = new int[N_SEED + 1];
+        result[0] = seeds[0];
+        for (int i = 0; i < 3; i++) {
+            long tmp1 = 0;
+            long tmp2 = 0;
+            for (int j = 0; j < 3; j++) {
+                tmp1 = (tmp1 + mulMod(a1[i][j], Integer.toUnsignedLong(seeds[j + 1]), M1)) % M1;
+                tmp2 = (tmp2 + mulMod(a2[i][j], Integer.toUnsignedLong(seeds[j + 4]), M2)) % M2;
+            }
+            result[i + 1] = (int) tmp1;
+            result[i + 4] = (int) tmp2;
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code a * b mod m} for {@code a, b < 2^32} without overflowing.
+     */
+    private static long mulMod(long a, long b, long m) {
+        long high = (a * (b >>> 16)) % m;
+        return ((high << 16) + a * (b & 0xFFFF)) % m;
+    }
+
+    private static long[][] multiply(long[][] a, long[][] b, long m) {
+        long[][] result = new long[3][3];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                long sum = 0;
+                for (int k = 0; k < 3; k++) {
+                    sum = (sum + mulMod(a[i][k], b[k][j], m)) % m;
+                }
+                result[i][j] = sum;
+            }
+        }
+        return result;
+    }
+
+    private static long[][] power(long[][] a, long n, long m) {
+        long[][] result = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
+        long[][] square = a;
+        for (long e = n; e != 0; e >>>= 1) {
+            if ((e & 1) != 0) {
+                result = multiply(result, square, m);
+            }
+            square = multiply(square, square, m);
+        }
+        return result;
+    }
+
+    @Override
+    public Kind getKind() {
+        return Kind.LECUYER_CMRG;
+    }
+
+    @Override
+    public int getNSeed() {
+        return N_SEED;
+    }
+}
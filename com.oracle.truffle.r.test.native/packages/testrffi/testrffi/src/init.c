@@ -58,11 +58,17 @@ static const R_CallMethodDef CallEntries[] = {
         CALLDEF(r_home, 0),
         CALLDEF(mkStringFromChar, 0),
         CALLDEF(mkStringFromBytes, 0),
+        CALLDEF(mkCharTwice, 1),
         CALLDEF(null, 0),
         CALLDEF(iterate_iarray, 1),
         CALLDEF(iterate_iptr, 1),
+        CALLDEF(set_int_elt, 3),
+        CALLDEF(native_arrays, 1),
+        CALLDEF(string_elts, 3),
+        CALLDEF(string_elts_error, 1),
         CALLDEF(preserve_object, 0),
         CALLDEF(release_object, 1),
+        CALLDEF(install_symbol, 1),
         CALLDEF(findvar, 2),
         CALLDEF(test_asReal, 1),
         CALLDEF(test_asChar, 1),
@@ -232,6 +232,17 @@ SEXP mkStringFromChar(void) {
 	return mkString("hello");
 }
 
+SEXP mkCharTwice(SEXP n) {
+	char buf[32];
+	snprintf(buf, sizeof(buf), "testrffi%d", INTEGER(n)[0]);
+	SEXP a, b;
+	PROTECT(a = mkChar(buf));
+	PROTECT(b = mkChar(buf));
+	SEXP result = ScalarString(b);
+	UNPROTECT(2);
+	return result;
+}
+
 SEXP mkStringFromBytes(void) {
 	char *helloworld = "hello world";
 	return ScalarString(mkCharLen(helloworld, 5));
@@ -269,6 +280,74 @@ SEXP iterate_iptr(SEXP x) {
     return v;
 }
 
+SEXP set_int_elt(SEXP x, SEXP i, SEXP v) {
+	// updates x in place, as e.g. data.table does
+	INTEGER(x)[INTEGER_VALUE(i)] = INTEGER_VALUE(v);
+	return R_NilValue;
+}
+
+SEXP native_arrays(SEXP x) {
+	int n = LENGTH(x);
+	SEXP result;
+	PROTECT(result = allocVector(VECSXP, n));
+	for (int i = 0; i < n; i++) {
+		SEXP v = VECTOR_ELT(x, i);
+		int len = LENGTH(v);
+		SEXP w = allocVector(TYPEOF(v), len);
+		SET_VECTOR_ELT(result, i, w);
+		for (int j = 0; j < len; j++) {
+			if (TYPEOF(v) == INTSXP) {
+				INTEGER(w)[j] = INTEGER(v)[j] * 2;
+			} else {
+				REAL(w)[j] = REAL(v)[j] * 2;
+			}
+		}
+	}
+	// other references to the same vectors
+	for (int i = 0; i < n; i++) {
+		SEXP w = VECTOR_ELT(result, i);
+		int len = LENGTH(w);
+		for (int j = 0; j < len; j++) {
+			if (TYPEOF(w) == INTSXP) {
+				INTEGER(w)[j] += 1;
+			} else {
+				REAL(w)[j] += 1;
+			}
+		}
+	}
+	UNPROTECT(1);
+	return result;
+}
+
+SEXP string_elts(SEXP x, SEXP expr, SEXP env) {
+	int n = LENGTH(x);
+	SEXP a, b, result;
+	PROTECT(a = allocVector(STRSXP, n));
+	PROTECT(b = allocVector(STRSXP, n));
+	PROTECT(result = allocVector(VECSXP, 3));
+	SET_VECTOR_ELT(result, 0, a);
+	SET_VECTOR_ELT(result, 1, b);
+	for (int i = 0; i < n; i++) {
+		// writes interleaved with reads of the same and of other vectors
+		SET_STRING_ELT(a, i, STRING_ELT(x, i));
+		SET_STRING_ELT(b, n - 1 - i, STRING_ELT(a, i));
+		if (i % 10 == 0) {
+			// up calls that may observe the vectors
+			SET_VECTOR_ELT(result, 2, Rf_eval(expr, env));
+			SET_STRING_ELT(VECTOR_ELT(result, 0), i, mkChar("x"));
+		}
+	}
+	UNPROTECT(3);
+	return result;
+}
+
+SEXP string_elts_error(SEXP msg) {
+	SEXP x;
+	PROTECT(x = allocVector(STRSXP, 1));
+	SET_STRING_ELT(x, 0, STRING_ELT(msg, 0));
+	Rf_error("%s", R_CHAR(STRING_ELT(x, 0)));
+}
+
 SEXP preserve_object(void) {
 	SEXP v;
 	v = allocVector(INTSXP, 1);
@@ -281,6 +360,10 @@ SEXP release_object(SEXP x) {
     return R_NilValue;
 }
 
+SEXP install_symbol(SEXP name) {
+	return Rf_install(R_CHAR(STRING_ELT(name, 0)));
+}
+
 SEXP findvar(SEXP x, SEXP env) {
 	SEXP v = Rf_findVar(x, env);
 	if (v == R_UnboundValue) {
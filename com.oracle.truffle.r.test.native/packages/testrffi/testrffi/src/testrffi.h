@@ -60,16 +60,28 @@ extern SEXP mkStringFromChar(void);
 
 extern SEXP mkStringFromBytes(void);
 
+extern SEXP mkCharTwice(SEXP n);
+
 extern SEXP null(void);
 
 extern SEXP iterate_iarray(SEXP x);
 
 extern SEXP iterate_iptr(SEXP x);
 
+extern SEXP set_int_elt(SEXP x, SEXP i, SEXP v);
+
+extern SEXP native_arrays(SEXP x);
+
+extern SEXP string_elts(SEXP x, SEXP expr, SEXP env);
+
+extern SEXP string_elts_error(SEXP msg);
+
 extern SEXP preserve_object(void);
 
 extern SEXP release_object(SEXP x);
 
+extern SEXP install_symbol(SEXP name);
+
 extern SEXP findvar(SEXP x, SEXP env);
 
 extern SEXP test_asReal(SEXP x);
@@ -129,6 +129,15 @@ public class TestS4 extends TestRBase {
         assertEval("{ setClass('A2', representation(a = 'numeric')); setMethod('rep', 'A2', function(x, a, b, c) { c(x@a, a, b, c) }); setMethod('ifelse', c(yes = 'A2'), function(test, yes, no) print(test)) }");
     }
 
+    @Test
+    public void testMegamorphicDispatch() {
+        // enough signatures at one call site to use the dispatch table, with inherited methods and
+        // methods defined and removed in between
+        assertEval("{ setClass('B'); for (cl in paste0('B', 1:6)) setClass(cl, contains = 'B'); setGeneric('mgen', function(o) standardGeneric('mgen')); setMethod('mgen', 'B', function(o) 'B'); " +
+                        "setMethod('mgen', 'B2', function(o) 'B2'); objs <- lapply(paste0('B', 1:6), new); g <- function() vapply(c(objs, objs), mgen, ''); r1 <- g(); " +
+                        "setMethod('mgen', 'B3', function(o) 'B3'); r2 <- g(); removeMethod('mgen', 'B2'); r3 <- g(); removeGeneric('mgen'); list(r1, r2, r3) }");
+    }
+
     @Test
     public void testInternalDispatch() {
         assertEval("setClass('foo', representation(d='numeric')); setMethod(`$`, signature('foo'), function(x, name) 'FOO'); obj <- new('foo'); obj$asdf");
@@ -72,4 +72,16 @@ public class TestBuiltin_crossprod extends TestBase {
 
         assertEval(Output.ImprovedErrorContext, "{ crossprod('asdf', matrix(1:6, ncol=2)) }");
     }
+
+    @Test
+    public void testCrossprodLarge() {
+        assertEval("{ x <- matrix(sin(1:30000), nrow=300); r <- crossprod(x); c(dim(r), isSymmetric(r), round(sum(r), 6), round(r[3, 97] - sum(x[, 3] * x[, 97]), 9)) }");
+        assertEval("{ x <- matrix(cos(1:20000), nrow=100); y <- matrix(sin(1:30000), nrow=100); r <- crossprod(x, y); c(dim(r), round(r[150, 250] - sum(x[, 150] * y[, 250]), 9)) }");
+        assertEval("{ x <- matrix(cos(1:20000), nrow=200); y <- matrix(sin(1:15000), nrow=100); r <- x %*% y; c(dim(r), round(r[199, 150] - sum(x[199, ] * y[, 150]), 9)) }");
+        assertEval("{ x <- matrix(cos(1:20000), nrow=200); x[5, 7] <- NA; y <- matrix(sin(1:15000), nrow=100); y[3, 2] <- NaN; r <- x %*% y; c(sum(is.na(r)), is.na(r[5, 1]), is.nan(r[1, 2])) }");
+        assertEval("{ x <- matrix(cos(1:20000), nrow=100); r <- tcrossprod(x); c(dim(r), isSymmetric(r), round(r[7, 93] - sum(x[7, ] * x[93, ]), 9)) }");
+        assertEval("{ tcrossprod(matrix(1:6, 2), matrix(1:9, 3)) }");
+        assertEval("{ tcrossprod(1:3) }");
+        assertEval("{ tcrossprod(matrix(c(1, 2, NA, 4), 2)) }");
+    }
 }
@@ -66,4 +66,15 @@ public class TestBuiltin_eval extends TestBase {
         assertEval("f1 <- function(x) { eval(quote(if(x>2){return()}else 1)); 10 };f1(5);f1(0)");
     }
 
+    @Test
+    public void testEvalRepeated() {
+        assertEval("{ e <- quote(x + 1); r <- 0; for (x in 1:100) r <- r + eval(e); r }");
+        assertEval("{ e <- quote(x * 2); f <- function(x) eval(e); g <- function(y, x) eval(e); c(f(1), g(0, 2), f(3), eval(e, list(x=4)), { x <- 5; eval(e) }, eval(e, new.env())) }");
+        assertEval("{ r <- 0; for (i in 1:50) r <- r + eval(parse(text='i * 2')[[1]]); r }");
+        assertEval("{ x <- 1L; sapply(c('x + 1', 'x + 1L', 'x + 2', 'x - 1', '\"x\"', 'x + 1'), function(t) eval(parse(text=t), globalenv())) }");
+        assertEval("{ f <- function(x) x * 10; x <- 2; c(eval(quote(f(x))), eval(parse(text='f(x)')[[1]]), eval(quote(f(x = x))), eval(quote(f(x))), eval(expression(f(x), x))) }");
+        assertEval("{ l <- lapply(1:3, function(i) bquote(.(i) + 1)); sapply(rep(l, 3), eval) }");
+        assertEval("{ e <- quote(function(a) a + 1); f1 <- eval(e); f2 <- eval(e); c(f1(1), f2(2), identical(body(f1), body(f2))) }");
+    }
+
 }
@@ -106,4 +106,10 @@ public class TestBuiltin_grep extends TestBase {
         assertEval("{ abc <- 1; ls(pattern=\"[[:alpha:]]*\")}");
         assertEval("{ f <- function(abc) { ls(pattern=\"[a-z]*\") }; f(1) }");
     }
+
+    @Test
+    public void testGrepLongVector() {
+        assertEval("{ x <- rep(c('GET /index.html', 'POST /login', 'GET /favicon.ico'), 40000); c(length(grep('^GET', x)), sum(grepl('login', x, fixed=TRUE)), grep('ico$', x)[1:3]) }");
+        assertEval("{ x <- rep(c('abcdefgh', 'xbcdefgx', NA), 30000); c(sum(grepl('bcdefg', x, fixed=TRUE)), sum(grepl('cdefgh', x, fixed=TRUE))) }");
+    }
 }
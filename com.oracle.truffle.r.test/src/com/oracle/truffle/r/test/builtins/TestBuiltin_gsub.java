@@ -193,4 +193,15 @@ public class TestBuiltin_gsub extends TestBase {
         // FastR output: [1] "axxxxxb"
         assertEval(Ignored.Unknown, "{ gsub(pattern = 'Ä*', replacement = 'x', x = 'aÄÄÄÄÄb', perl = TRUE) }");
     }
+
+    @Test
+    public void testGsubRepeated() {
+        assertEval("{ x <- c('a.b.c', 'd.e'); for (i in 1:3) x <- gsub('[.]', '-', x); x }");
+        assertEval("{ r <- character(); for (p in c('b+', 'c', 'b+')) r <- c(r, gsub(p, 'X', 'abbcbd')); r }");
+        assertEval("{ r <- character(); for (p in c('a+', 'a+')) r <- c(r, gsub(p, '<\\\\U\\\\0>', 'caab', perl=TRUE)); r }");
+        assertEval("{ gsub('needle', 'pin', c('haystack needle haystack needle', 'needl', NA, 'needleneedle'), fixed=TRUE) }");
+        assertEval("{ sub('needle', 'pin', c('haystack needle haystack needle', 'needl', NA, 'needleneedle'), fixed=TRUE) }");
+        assertEval("{ x <- rep(c('10.0.0.1 GET /index.html 200', '10.0.0.2 POST /login 302', NA), 40000); y <- gsub('([0-9]+)\\\\.([0-9]+)', '\\\\2.\\\\1', x); c(length(y), y[c(1, 2, 3, 119998, 119999)]) }");
+        assertEval("{ x <- rep(c('aaaab', 'abab', 'bbbb'), 30000); y <- gsub('abab', 'X', x, fixed=TRUE); c(length(y), y[c(1, 2, 3, 89999)]) }");
+    }
 }
@@ -204,4 +204,17 @@ public class TestBuiltin_match extends TestBase {
         assertEval("{ match(c(7, 42), NULL, 1L) }");
         assertEval("{ match(NULL, NULL) }");
     }
+
+    @Test
+    public void testMatchLargeTable() {
+        assertEval("{ t <- c(NA, 200000:1, NA); x <- c(5L, NA, 0L, 200000L); r <- NULL; for (i in 1:3) r <- c(r, match(x, t)); r }");
+        assertEval("{ t <- as.double(1:200000); x <- c(3, -0, 1e5, NaN); r <- match(x, t); t[100000] <- NaN; list(r, match(x, t), match(x, t), x %in% t) }");
+        assertEval("{ t <- as.character(1:200000); for (i in 1:3) { t[i] <- 'x'; print(match(c('x', '2', '3', '100000', NA), t)) } }");
+        assertEval("{ x <- c(1:300000, NA, 5L); m <- match(x, x); c(m[c(1, 300000, 300001, 300002)], sum(m)) }");
+        assertEval("{ x <- c(NA, NaN, as.double(300000:1), -0, 0, NA); m <- match(x, x); m[c(1, 2, 3, 300002, 300003, 300004, 300005)] }");
+        assertEval("{ x <- paste0('s', c(1:300000, 1:10)); sum(duplicated(x)) }");
+        assertEval("{ duplicated(c(NA, NaN, 0, -0, NA, NaN)) }");
+        assertEval("{ rowsum(1:6, c('b', 'a', 'b', 'c', 'a', NA)) }");
+        assertEval("{ rowsum(c(1.5, 2, 3, 4), c(2.5, 1, 2.5, NA)) }");
+    }
 }
@@ -165,4 +165,23 @@ public class TestBuiltin_order extends TestBase {
 
         assertEval("order(c(1,2,0), decreasing=NA)");
     }
+
+    @Test
+    public void testOrderRadix() {
+        assertEval("{ order(c(3L,NA,1L,2L,1L), method='radix') }");
+        assertEval("{ order(c(3L,NA,1L,2L,1L), method='radix', decreasing=TRUE) }");
+        assertEval("{ order(c(3L,NA,1L,2L,1L), method='radix', na.last=FALSE) }");
+        assertEval("{ order(c(3L,NA,1L,2L,1L), method='radix', na.last=NA) }");
+        assertEval("{ order(c(0.5,NaN,-0,0,-Inf,Inf,NA,-2.5), method='radix') }");
+        assertEval("{ order(c(0.5,NaN,-0,0,-Inf,Inf,NA,-2.5), method='radix', decreasing=TRUE) }");
+        assertEval("{ order(c('b','a',NA,'B','a'), method='radix') }");
+        assertEval("{ order(c(TRUE,NA,FALSE,TRUE), method='radix') }");
+        assertEval("{ order(as.raw(c(3,255,0,128,3)), method='radix') }");
+        assertEval("{ order(as.raw(c(3,255,0,128,3)), method='radix', decreasing=TRUE) }");
+        assertEval("{ order(as.raw(c(1,1,2,2,1)), c(3L,2L,1L,1L,NA), method='radix', decreasing=c(TRUE,FALSE)) }");
+        assertEval("{ order(c(1,1,2,2,1), c('b','a','d','c','a'), method='radix', decreasing=c(TRUE,FALSE)) }");
+        assertEval("{ order(c(1,1,2,NA,1), c(3L,2L,1L,1L,NA), method='radix', na.last=NA) }");
+        assertEval("{ x <- rep(c(5L,3L,NA,1L), 300000); o <- order(x); identical(x[o], sort(x, na.last=TRUE)) && !is.unsorted(o[x[o] %in% 3L]) }");
+        assertEval("{ x <- sin(1:1500000); o <- order(x, decreasing=TRUE); identical(x[o], sort(x, decreasing=TRUE)) }");
+    }
 }
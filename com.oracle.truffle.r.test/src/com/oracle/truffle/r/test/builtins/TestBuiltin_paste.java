@@ -92,4 +92,16 @@ public class TestBuiltin_paste extends TestBase {
         assertEval("{ as.character.myc <- function(x) '42'; val <- 3.14; class(val) <- 'myc'; paste(val, 'world') }");
         assertEval("{ assign('as.character.myc', function(x) '42', envir=.__S3MethodsTable__.); val <- 3.14; class(val) <- 'myc'; res <- paste(val, 'world'); rm('as.character.myc', envir=.__S3MethodsTable__.); res }");
     }
+
+    @Test
+    public void testPasteIntegers() {
+        assertEval("{ paste('id', c(-12L, NA, 0L, 2147483647L, -2147483647L)) }");
+        assertEval("{ paste(1:3, c('a', 'b', 'c', 'd', 'e', 'f'), sep='_') }");
+        assertEval("{ paste(1:3, 4:6, collapse='+') }");
+        assertEval("{ paste(c(a=1L, b=2L), integer(), 'x') }");
+        assertEval("{ paste(factor(c('u', 'v')), 1:2) }");
+        assertEval("{ paste(matrix(1:4, 2), collapse='') }");
+        assertEval("{ x <- paste0('row', seq_len(100000)); c(length(x), x[c(1, 99999, 100000)]) }");
+        assertEval("{ nchar(paste0('r', seq_len(100000), collapse=',')) }");
+    }
 }
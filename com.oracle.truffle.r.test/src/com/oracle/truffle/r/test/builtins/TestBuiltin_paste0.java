@@ -81,4 +81,11 @@ public class TestBuiltin_paste0 extends TestBase {
     public void testpaste015() {
         assertEval("argv <- list(list('cnstrO> ', 'constrOptim(c(2,-1,-1), fQP, gQP, ui = t(Amat), ci = bvec)'), '\\n'); .Internal(paste0(argv[[1]], argv[[2]]))");
     }
+
+    @Test
+    public void testpaste0Integers() {
+        assertEval("{ paste0('x', 1:3, c(TRUE, NA, FALSE)) }");
+        assertEval("{ paste0(c(7L, NA), collapse='') }");
+        assertEval("{ paste0(rep(1L, 3), 'a') }");
+    }
 }
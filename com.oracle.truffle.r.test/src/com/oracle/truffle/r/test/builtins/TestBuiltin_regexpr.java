@@ -109,4 +109,11 @@ public class TestBuiltin_regexpr extends TestBase {
         assertEval("{ x<-c(\"Aaa bbb Aaa bbb\", \"Aaa Bbb Aaa Bbb\", \"Aaa bbb Aaa bbb\"); p<-\"(?<first>[[:upper:]][[:lower:]]+) (?<last>[[:upper:]][[:lower:]]+)\"; regexpr(p, x, perl=TRUE) }");
 
     }
+
+    @Test
+    public void testRegexprFixed() {
+        assertEval("{ regexpr('[[', c('a[[b', 'ab'), fixed=TRUE) }");
+        assertEval("{ gregexpr('abab', 'ababababxabab', fixed=TRUE) }");
+        assertEval("{ regexec('defg', c('abcdefgh', 'defdefg'), fixed=TRUE) }");
+    }
 }
@@ -51,6 +51,12 @@ public class TestBuiltin_scan extends TestBase {
 
         // sep should not be treated as a regex:
         assertEval("con <- textConnection(\"A|B|C\\n1|2|3\\n4|5|6\"); read.csv(con, sep=\"|\")");
+
+        assertEval("{ con<-textConnection(c(\"1,2,\", \"# comment\", \"3,4,5 # trailing\")); scan(con, sep=\",\", quiet=TRUE) }");
+        assertEval("{ con<-textConnection(c(\"a,\\\"b,c\\\"\", \"\\\"d\\\"\\\"e\\\",f\")); scan(con, what=\"\", sep=\",\", quiet=TRUE) }");
+        assertEval("{ con<-textConnection(c(\"x y\", \"1 'a b'\", \"2 'c\", \"d'\")); scan(con, what=list(0, \"\"), skip=1, quiet=TRUE) }");
+        assertEval("{ con<-textConnection(c(\"1 2 3\", \"4 5\")); count.fields(con) }");
+        assertEval("{ con<-textConnection(c(\"1,2,3\", \"\", \"'4,5',6\", \"7,'8\", \"9'\")); count.fields(con, sep=\",\", blank.lines.skip=FALSE) }");
     }
 
     @Test
@@ -148,4 +148,17 @@ public class TestBuiltin_sprintf extends TestBase {
         assertEval("{ sprintf(\"%.3g\", 1.234) }");
         assertEval("{ sprintf('plot_%02g', 3L) }");
     }
+
+    @Test
+    public void testSprintfFlags() {
+        assertEval("{ sprintf('%s_%05d', c('a', 'bb'), c(7L, -42L)) }");
+        assertEval("{ sprintf('[%-6d|%+d|% d|%6d]', 42L, 42L, 42L, -42L) }");
+        assertEval("{ sprintf('[%8s|%-8s|%.2s|%5.1s]', 'abc', 'abc', 'abc', 'abc') }");
+        assertEval("{ sprintf('%*d|%-*s', 5L, 42L, 4L, 'ab') }");
+        assertEval("{ sprintf('%2$s %1$s %%', 'world', 'hello') }");
+        assertEval("{ sprintf('%s is %d', c('a', 'b', 'c'), 1:3) }");
+        assertEval("{ sprintf('%d', c(3, 4, 5)) }");
+        assertEval("{ sprintf('%5.2f and %s', c(pi, exp(1)), c(TRUE, FALSE)) }");
+        assertEval("{ x <- sprintf('%s_%05d', 'id', seq_len(100000)); c(length(x), x[c(1, 100000)]) }");
+    }
 }
@@ -144,4 +144,12 @@ public class TestBuiltin_strsplit extends TestBase {
         assertEval("strsplit(c('a1a', 'a1b'), '1', fixed=FALSE)");
 
     }
+
+    @Test
+    public void testStrsplitRepeated() {
+        assertEval("{ strsplit(c('a--b--c', 'd--', '--e'), '--', fixed=TRUE) }");
+        assertEval("{ strsplit(c('a::b::::c', 'x'), '::::', fixed=TRUE) }");
+        assertEval("{ r <- list(); for (i in 1:3) r[[i]] <- strsplit('a1b22c333d', '[0-9]+'); r }");
+        assertEval("{ r <- list(); for (i in 1:2) r[[i]] <- strsplit('a1b22c333d', '[0-9]+', perl=TRUE); r }");
+    }
 }
@@ -38,6 +38,16 @@ public class TestBuiltin_unserialize extends TestBase {
         assertEval(template("unserialize(serialize(%0, NULL))", BASIC_TYPE_VALUES));
     }
 
+    @Test
+    public void testLargeVectors() {
+        // larger than the serialization buffers
+        assertEval("x <- c(1:20000 + 0.5, NA); identical(unserialize(serialize(x, NULL)), x)");
+        assertEval("x <- c(1:20000, NA); identical(unserialize(serialize(x, NULL)), x)");
+        assertEval("x <- c(complex(real=1:10000, imaginary=-1), NA); identical(unserialize(serialize(x, NULL)), x)");
+        assertEval("x <- paste(rep('a', 50000), collapse=''); identical(unserialize(serialize(x, NULL)), x)");
+        assertEval("f <- tempfile(); x <- list(a=c(1:20000 + 0.5, NA), b=1:20000, c=as.raw(1:50000 %% 256)); saveRDS(x, f); y <- readRDS(f); unlink(f); identical(x, y)");
+    }
+
     @Test
     public void testserializeAndUnserializeClosure() {
         // N.B.: FastR does not preserve code formatting like GNU R does
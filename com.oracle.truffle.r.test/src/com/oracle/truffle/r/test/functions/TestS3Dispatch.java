@@ -142,6 +142,15 @@ public class TestS3Dispatch extends TestRBase {
         assertEval("{ assign('[[.myclass', function(a,b) 42, envir=.__S3MethodsTable__.); x<-1; class(x)<-'myclass'; res <- x[[99]]; rm('[[.myclass', envir=.__S3MethodsTable__.); res; }");
     }
 
+    @Test
+    public void testMegamorphicDispatch() {
+        // more classes than the call site caches inline, so that the global dispatch table is used
+        assertEval("{ f <- function(x) UseMethod('f'); f.default <- function(x) 'default'; for (cl in letters[1:8]) assign(paste0('f.', cl), eval(bquote(function(x) .(cl)))); " +
+                        "g <- function() sapply(c(letters[1:10], letters[1:10]), function(cl) f(structure(1, class=c(cl, 'z')))); r1 <- g(); f.c <- function(x) 'new c'; f.z <- function(x) 'z'; " +
+                        "rm(f.d); list(r1, g()) }");
+        assertEval("{ for (i in 1:3) for (x in list(1L, 1.5, 'a', factor('b'), as.Date('2017-01-01'), structure(1, class='foo'), table(1:2))) print(format(x)) }");
+    }
+
     @Override
     public String getTestDir() {
         return "functions/S3";
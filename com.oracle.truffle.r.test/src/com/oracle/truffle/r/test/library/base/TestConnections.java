@@ -187,6 +187,37 @@ public class TestConnections extends TestRBase {
         assertEval("{ zz <- file(\"" + tempFileGzip + "\", \"r\", raw=T); res <- readBin(zz, raw(), 4); close(zz); res }");
     }
 
+    @Test
+    public void testCompressedWriteRead() {
+        // larger than a compression block, so that the result consists of several gzip members/xz
+        // streams
+        assertEval(TestBase.template("{ fn <- tempfile(); x <- as.numeric(1:3000000); zz <- %0(fn, 'wb'); writeBin(x, zz); close(zz); zz <- %0(fn, 'rb'); y <- readBin(zz, double(), 4000000); close(zz); unlink(fn); identical(x, y) }",
+                        arr("gzfile", "xzfile")));
+        assertEval("{ fn <- tempfile(); x <- list(a=1:3000000, b=rep(c('a', 'b', NA), 1000)); saveRDS(x, fn); y <- readRDS(fn); unlink(fn); identical(x, y) }");
+        assertEval("{ fn <- tempfile(); x <- 1:3000000; saveRDS(x, fn, compress='xz'); y <- readRDS(fn); unlink(fn); identical(x, y) }");
+        // the highest presets, several blocks are compressed at the same time
+        assertEval(TestBase.template("{ fn <- tempfile(); x <- as.numeric(1:3000000); zz <- xzfile(fn, 'wb', compression=%0); writeBin(x, zz); close(zz); zz <- xzfile(fn, 'rb'); y <- readBin(zz, double(), 4000000); close(zz); unlink(fn); identical(x, y) }",
+                        arr("9", "-9")));
+    }
+
+    @Test
+    public void testCompressedReadLines() {
+        // several xz blocks, which are decompressed in parallel, and a bzip2 file streamed from a
+        // sub-process
+        assertEval(TestBase.template("{ fn <- tempfile(); x <- as.character(1:2000000); zz <- %0(fn, 'w'); writeLines(x, zz); close(zz); zz <- %0(fn, 'r'); y <- readLines(zz); close(zz); unlink(fn); identical(x, y) }",
+                        arr("xzfile", "bzfile")));
+        assertEval("{ fn <- tempfile(); zz <- bzfile(fn, 'w'); writeLines(c('a', 'b', 'c'), zz); close(zz); zz <- bzfile(fn, 'r'); y <- readLines(zz, 1); close(zz); unlink(fn); y }");
+    }
+
+    @Test
+    public void testCompressedSeek() {
+        // seeks back and forth across the boundaries of the 8MB xz blocks, GNU R cannot seek in
+        // xzfile connections
+        assertEvalFastR("{ fn <- tempfile(); x <- as.numeric(1:3000000); zz <- xzfile(fn, 'wb'); writeBin(x, zz); close(zz); zz <- xzfile(fn, 'rb'); " +
+                        "seek(zz, 8 * 2500000); a <- readBin(zz, double(), 1); seek(zz, 8 * 1048575); b <- readBin(zz, double(), 2); seek(zz, 8 * 2097151); c <- readBin(zz, double(), 2); " +
+                        "seek(zz, 0); d <- readBin(zz, double(), 1); close(zz); unlink(fn); c(a, b, c, d) }", "c(2500001, 1048576, 1048577, 2097152, 2097153, 1)");
+    }
+
     @Test
     public void testEncoding() {
         // use inexisting charset
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.test.library.fastr;
+
+import org.junit.Test;
+
+import com.oracle.truffle.r.test.TestBase;
+
+// Checkstyle: stop line length check
+public class TestCacheStats extends TestBase {
+
+    @Test
+    public void testCacheStats() {
+        assertEvalFastR("{ s <- .fastr.cache.stats(); names(s) }", "c('eval', 's3dispatch', 's4dispatch', 'regexp', 'lazydb', 'charsxp', 'globalrefs')");
+        assertEvalFastR("{ s <- .fastr.cache.stats()$globalrefs; c(names(s), s[['created']] - s[['released']] == s[['live']]) }", "c('created', 'reused', 'released', 'live', 'TRUE')");
+        assertEvalFastR("{ names(.fastr.cache.stats()$charsxp) }", "c('hits', 'misses', 'size')");
+        assertEvalFastR("{ names(.fastr.cache.stats()$eval) }", "c('hits', 'structuralHits', 'misses', 'evictions', 'size')");
+        // nothing is cached for a frame descriptor until it is seen a second time
+        assertEvalFastR("{ e <- quote(x + 1); x <- 1; eval(e); s1 <- .fastr.cache.stats()$eval; for (i in 1:10) eval(e); s2 <- .fastr.cache.stats()$eval; s2[['hits']] - s1[['hits']] >= 9 }", "TRUE");
+        assertEvalFastR("{ x <- 1; eval(parse(text='x + 41')[[1]]); s1 <- .fastr.cache.stats()$eval; for (i in 1:10) eval(parse(text='x + 41')[[1]]); s2 <- .fastr.cache.stats()$eval; s2[['structuralHits']] - s1[['structuralHits']] >= 9 }", "TRUE");
+        // more re-parsed expressions than half the bound all stay cached
+        assertEvalFastR("{ x <- 1; eval(quote(x)); t <- paste('x +', 1:3000); for (s in t) eval(parse(text=s)[[1]]); s1 <- .fastr.cache.stats()$eval; for (s in t) eval(parse(text=s)[[1]]); s2 <- .fastr.cache.stats()$eval; " +
+                        "c(s2[['structuralHits']] - s1[['structuralHits']], s2[['misses']] - s1[['misses']]) }", "c(3000, 0)");
+        // frames created for a single evaluation do not fill the cache
+        assertEvalFastR("{ e <- quote(x + 1); s1 <- .fastr.cache.stats()$eval; for (i in 1:5000) eval(e, list(x = i)); s2 <- .fastr.cache.stats()$eval; s2[['size']] - s1[['size']] < 10 }", "TRUE");
+        assertEvalFastR("{ s1 <- .fastr.cache.stats()$regexp; for (i in 1:10) grepl('a+b', 'aab'); s2 <- .fastr.cache.stats()$regexp; s2[['hits']] - s1[['hits']] >= 9 }", "TRUE");
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.test.library.fastr;
+
+import org.junit.Test;
+
+import com.oracle.truffle.r.test.TestBase;
+
+// Checkstyle: stop line length check
+public class TestContextPool extends TestBase {
+
+    @Test
+    public void testReset() {
+        // the second job reuses the context and must not see anything the first one left behind
+        assertEvalFastR("{ .fastr.context.pool(1L); wd <- getwd(); .fastr.context.eval('Sys.setenv(FASTR_POOL_TEST = \"x\"); options(digits = 3, pool.test = TRUE); RNGkind(\"Wichmann-Hill\"); set.seed(1); setwd(tempdir()); y <- 1'); " +
+                        "r <- .fastr.context.eval('list(Sys.getenv(\"FASTR_POOL_TEST\"), getOption(\"digits\"), getOption(\"pool.test\"), RNGkind()[[1L]], exists(\".Random.seed\", globalenv()), exists(\"y\"), getwd())'); " +
+                        ".fastr.context.pool(0L); r <- r[[1L]][[1L]]; r[[7L]] <- identical(r[[7L]], wd); r }",
+                        "list('', 7L, NULL, 'Mersenne-Twister', FALSE, FALSE, TRUE)");
+        // a context with a newly loaded namespace is replaced
+        assertEvalFastR("{ .fastr.context.pool(1L); .fastr.context.eval('loadNamespace(\"splines\")'); r <- .fastr.context.eval('isNamespaceLoaded(\"splines\")'); .fastr.context.pool(0L); r[[1L]][[1L]] }", "FALSE");
+        assertEvalFastR("{ .fastr.context.pool(1L); h <- .fastr.context.spawn('1'); .fastr.context.join(h); .fastr.context.join(h); .fastr.context.pool(0L); h < 0L }", "TRUE");
+    }
+}
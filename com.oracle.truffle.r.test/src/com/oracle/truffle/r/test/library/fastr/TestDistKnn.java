@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.truffle.r.test.library.fastr;
+
+import org.junit.Test;
+
+import com.oracle.truffle.r.test.TestBase;
+
+// Checkstyle: stop line length check
+public class TestDistKnn extends TestBase {
+
+    @Test
+    public void testKnn() {
+        assertEvalFastR("{ m <- matrix(c(0,1,3,7,0,0,0,0), 4, 2); .fastr.dist.knn(m, 2L)$index }", "matrix(c(2L,1L,2L,3L,3L,3L,1L,2L), 4, 2)");
+        assertEvalFastR("{ m <- matrix(c(0,1,3,7,0,0,0,0), 4, 2); .fastr.dist.knn(m, 1L, 'manhattan')$distance }", "matrix(c(1,1,2,4), 4, 1)");
+        assertEvalFastR("{ m <- matrix(c(0,1,3,7,0,0,0,0), 4, 2); dim(.fastr.dist.knn(m, 10L)$index) }", "c(4L, 3L)");
+        assertEvalFastR("{ set.seed(1); m <- matrix(rnorm(3000), 300, 10); r <- .fastr.dist.knn(m, 5L); d <- as.matrix(dist(m)); diag(d) <- Inf; identical(r$index, unname(t(apply(d, 1, function(v) order(v)[1:5])))) }", "TRUE");
+        assertEvalFastR("{ set.seed(1); m <- matrix(rnorm(3000), 300, 10); m[7, 3] <- NA; r <- .fastr.dist.knn(m, 4L, 'maximum'); d <- as.matrix(dist(m, 'maximum')); diag(d) <- Inf; isTRUE(all.equal(r$distance, unname(t(apply(d, 1, function(v) sort(v)[1:4]))))) }", "TRUE");
+    }
+}
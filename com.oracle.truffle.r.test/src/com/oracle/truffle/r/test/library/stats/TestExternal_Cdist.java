@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.oracle.truffle.r.test.library.stats;
+
+import org.junit.Test;
+
+import com.oracle.truffle.r.test.TestBase;
+
+public class TestExternal_Cdist extends TestBase {
+    @Test
+    public void testCdist() {
+        assertEval("{ m <- matrix(c(1,4,2,8,5,7,3,6,9,0,2,5), 4, 3); dist(m) }");
+        assertEval("{ m <- matrix(c(1,4,2,8,5,7,3,6,9,0,2,5), 4, 3); dist(m, method='maximum') }");
+        assertEval("{ m <- matrix(c(1,4,2,8,5,7,3,6,9,0,2,5), 4, 3); dist(m, method='manhattan') }");
+        assertEval("{ m <- matrix(c(1,4,2,8,5,7,3,6,9,0,2,5), 4, 3); dist(m, method='canberra') }");
+        assertEval("{ m <- matrix(c(1,0,2,0,5,0,0,6,9,0,2,0), 4, 3); dist(m, method='binary') }");
+        assertEval("{ m <- matrix(c(1,4,2,8,5,7,3,6,9,0,2,5), 4, 3); dist(m, method='minkowski', p=3) }");
+        assertEval("{ m <- matrix(c(1,NA,2,8,5,7,NA,6,9,0,2,5), 4, 3); dist(m) }");
+        assertEval("{ m <- matrix(c(1,Inf,2,8,5,7,3,6,9,0,2,5), 4, 3); dist(m) }");
+        assertEval("{ m <- matrix(c(1,Inf,2,0,5,0,3,6,9,0,2,5), 4, 3); dist(m, method='binary') }");
+        assertEval("{ m <- matrix(c(1e10,1e10+1,1e10+3,5,6,8), 3, 2); dist(m) }");
+        assertEval("{ set.seed(1); m <- matrix(rnorm(12000), 400, 30); d <- dist(m); c(length(d), all.equal(d[[3 * 796 / 2 + 7]], sqrt(sum((m[11,] - m[4,])^2)))) }");
+        assertEval("{ set.seed(1); m <- matrix(rnorm(12000), 400, 30); d <- dist(m, method='manhattan'); all.equal(as.matrix(d)[397, 12], sum(abs(m[397,] - m[12,]))) }");
+    }
+}
@@ -32,6 +32,13 @@ public class TestExternal_covcor extends TestBase {
     public void testCovcor() {
         assertEval(".Call(stats:::C_cov, 1:5, 1:5, 4, FALSE)");
         assertEval(".Call(stats:::C_cov, 1:5, c(1,5,1,5,10), 4, FALSE)");
+        assertEval("{ m <- cbind(c(1,2,NA,4,5), c(2,4,6,8,11), c(5,NA,3,1,0)); cov(m, use='pairwise.complete.obs') }");
+        assertEval("{ m <- cbind(c(1,2,NA,4,5), c(2,4,6,8,11), c(5,NA,3,1,0)); cor(m, use='pairwise.complete.obs') }");
+        assertEval("{ m <- cbind(c(1,2,NA,4,5), c(2,4,6,8,11), c(5,NA,3,1,0)); cor(m, use='complete.obs') }");
+        assertEval("{ m <- cbind(c(1,2,NA,4,5), c(2,4,6,8,11), c(5,NA,3,1,0)); cov(m, m[,2:3], use='na.or.complete') }");
+        assertEval("{ m <- cbind(c(1,2,NA,4,5), c(2,4,6,8,11)); cor(m, use='all.obs') }");
+        assertEval("{ set.seed(1); m <- matrix(runif(60000), 2000, 30); all.equal(cor(m)[7, 23], sum(scale(m[,7]) * scale(m[,23])) / 1999) }");
+        assertEval("{ set.seed(1); m <- matrix(runif(60000), 2000, 30); m[3, 5] <- NA; r <- cor(m, use='pairwise'); c(all.equal(r[5, 6], cor(m[-3, 5], m[-3, 6])), all.equal(r[1, 2], cor(m[, 1], m[, 2]))) }");
     }
 
     @Test
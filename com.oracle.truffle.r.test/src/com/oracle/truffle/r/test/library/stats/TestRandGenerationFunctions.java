@@ -59,6 +59,22 @@ public class TestRandGenerationFunctions extends TestBase {
         assertEval("runif(-1, 1, 2)");
     }
 
+    @Test
+    public void testBulkGeneration() {
+        assertEval("{ set.seed(2); x <- runif(100000); set.seed(2); y <- sapply(1:10, function(i) runif(10000)); identical(x, as.vector(y)) }");
+        assertEval("{ set.seed(3); x <- rnorm(5000, 2, 3); set.seed(3); y <- c(rnorm(10, 2, 3), rnorm(4990, 2, 3)); identical(x, y) }");
+        assertEval("{ set.seed(4, kind='Marsaglia-Multicarry'); x <- runif(1000); RNGkind('default'); x[c(1, 500, 1000)] }");
+    }
+
+    @Test
+    public void testLEcuyerCMRG() {
+        assertEval("{ set.seed(42, kind=\"L'Ecuyer-CMRG\"); x <- runif(5); s <- .Random.seed; RNGkind('default'); list(x, s) }");
+        assertEval("{ set.seed(42, kind=\"L'Ecuyer-CMRG\"); x <- rnorm(5); RNGkind('default'); x }");
+        assertEval("{ set.seed(1, kind=\"L'Ecuyer-CMRG\"); s <- .Random.seed; RNGkind('default'); list(parallel::nextRNGStream(s), parallel::nextRNGSubStream(s)) }");
+        assertEval("{ set.seed(1, kind=\"L'Ecuyer-CMRG\"); x <- rnorm(2e6); s1 <- .Random.seed; set.seed(1, kind=\"L'Ecuyer-CMRG\"); y <- c(rnorm(5e5), rnorm(5e5), rnorm(1e6)); s2 <- .Random.seed; RNGkind('default'); c(identical(x, y), identical(s1, s2)) }");
+        assertEval("{ set.seed(1, kind=\"L'Ecuyer-CMRG\"); x <- runif(3e6, 1, 2); s1 <- .Random.seed; set.seed(1, kind=\"L'Ecuyer-CMRG\"); y <- runif(1e6, 1, 2); y <- c(y, runif(2e6, 1, 2)); s2 <- .Random.seed; RNGkind('default'); c(identical(x, y), identical(s1, s2), x[2999999]) }");
+    }
+
     private static final String[] FUNCTION1_NAMES = {"rchisq", "rexp", "rgeom", "rpois", "rt"};
 
     @Test
@@ -38,6 +38,17 @@ public class TestTypeConvert extends TestBase {
         assertEval("type.convert(c(NA, '44.5'))");  // string NA
         // looks like integer, but is double (because it would be INT_NA)
         assertEval("type.convert('-2147483648')");
+        assertEval("type.convert(c('1', '', ' ', NA))");
+        assertEval("type.convert(c(' 1', '2 ', '3.5'))");
+        assertEval("type.convert(c('b', 'a', NA, 'b', ''))");
+    }
+
+    @Test
+    public void testLongVectors() {
+        assertEval("{ x <- type.convert(as.character(1:300000)); c(typeof(x), length(x), x[299999]) }");
+        assertEval("{ x <- type.convert(c(as.character(1:300000), '0.5')); c(typeof(x), x[300001]) }");
+        assertEval("{ x <- type.convert(c(rep(NA, 200000), 'TRUE', 'F')); c(typeof(x), sum(is.na(x))) }");
+        assertEval("{ x <- type.convert(c(as.character(1:300000), 'a')); c(class(x), nlevels(x)) }");
     }
 
     private static final String[] LIT_VALUES = new String[]{"0xFFF", "0xFFFFFFFFFFF", "123", "2147483648"};